@@ -1,9 +1,12 @@
 package org.jolokia.backend;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.management.*;
 
@@ -12,6 +15,8 @@ import org.jolokia.config.ConfigKey;
 import org.jolokia.config.Configuration;
 import org.jolokia.converter.Converters;
 import org.jolokia.converter.json.JsonConvertOptions;
+import org.jolokia.converter.json.StreamingJsonValue;
+import org.jolokia.converter.json.ValueFaultHandler;
 import org.jolokia.detector.ServerHandle;
 import org.jolokia.discovery.AgentDetails;
 import org.jolokia.discovery.AgentDetailsHolder;
@@ -80,6 +85,9 @@ public class BackendManager implements AgentDetailsHolder {
     // --> http://www.cs.umd.edu/~pugh/java/memoryModel/DoubleCheckedLocking.html)
     private volatile Initializer initializer;
 
+    // Lock guarding the lazy initialization
+    private final Lock initLock = new ReentrantLock();
+
     // Details about the agent inclding the server handle
     private AgentDetails agentDetails;
 
@@ -171,7 +179,7 @@ public class BackendManager implements AgentDetailsHolder {
 
         if (debug) {
             debug("Execution time: " + (System.currentTimeMillis() - time) + " ms");
-            debug("Response: " + json);
+            debug("Response: " + toDebugString(json));
         }
 
         return json;
@@ -206,6 +214,13 @@ public class BackendManager implements AgentDetailsHolder {
         } catch (JMException e) {
             error("Cannot unregister MBean: " + e,e);
         }
+        if (historyStore != null) {
+            try {
+                historyStore.close();
+            } catch (IOException e) {
+                error("Cannot close history file: " + e,e);
+            }
+        }
     }
 
     /**
@@ -309,14 +324,18 @@ public class BackendManager implements AgentDetailsHolder {
         }
     }
 
-    // Run initialized if not already done
+    // Run initialized if not already done. A lock is used instead of a monitor, so that
+    // virtual threads waiting for the (possibly slow) initialization don't pin their carrier thread
     private void lazyInitIfNeeded() {
         if (initializer != null) {
-            synchronized (this) {
+            initLock.lock();
+            try {
                 if (initializer != null) {
                     initializer.init();
                     initializer = null;
                 }
+            } finally {
+                initLock.unlock();
             }
         }
     }
@@ -436,11 +455,16 @@ public class BackendManager implements AgentDetailsHolder {
             throw new IllegalStateException("Internal error: No dispatcher found for handling " + pJmxReq);
         }
 
-        JsonConvertOptions opts =  getJsonConvertOptions(pJmxReq);
-
-        Object jsonResult =
-                converters.getToJsonConverter()
-                          .convertToJson(retValue, useValueWithPath ? pJmxReq.getPathParts() : null, opts);
+        List<String> pathParts = useValueWithPath ? pJmxReq.getPathParts() : null;
+        Object jsonResult;
+        if (useStreamingValue(pJmxReq, pathParts)) {
+            // Errors can't be reported anymore when the value is written, so they are included as value
+            JsonConvertOptions opts = getJsonConvertOptions(pJmxReq, ValueFaultHandler.IGNORING_VALUE_FAULT_HANDLER);
+            jsonResult = converters.getToJsonConverter().convertToStreamingJson(retValue, opts);
+        } else {
+            JsonConvertOptions opts = getJsonConvertOptions(pJmxReq);
+            jsonResult = converters.getToJsonConverter().convertToJson(retValue, pathParts, opts);
+        }
 
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("value",jsonResult);
@@ -448,12 +472,35 @@ public class BackendManager implements AgentDetailsHolder {
         return jsonObject;
     }
 
+    // A value is written lazily only if no path needs to be applied and when it is not needed for
+    // the history of this request (which is never the case for a history export)
+    private boolean useStreamingValue(JmxRequest pJmxReq, List<String> pPathParts) {
+        return pJmxReq.getParameterAsBool(ConfigKey.STREAM_VALUES) &&
+               (pPathParts == null || pPathParts.isEmpty()) &&
+               (pJmxReq.getType() == RequestType.HISTORY || !historyStore.isTracked(pJmxReq));
+    }
+
+    // Response for debug output, a streaming value is not converted for this
+    private String toDebugString(JSONObject pJson) {
+        Object value = pJson.get("value");
+        if (value instanceof StreamingJsonValue) {
+            JSONObject copy = new JSONObject(pJson);
+            copy.put("value", value.toString());
+            return copy.toJSONString();
+        }
+        return pJson.toJSONString();
+    }
+
     private JsonConvertOptions getJsonConvertOptions(JmxRequest pJmxReq) {
+        return getJsonConvertOptions(pJmxReq, pJmxReq.getValueFaultHandler());
+    }
+
+    private JsonConvertOptions getJsonConvertOptions(JmxRequest pJmxReq, ValueFaultHandler pFaultHandler) {
         return convertOptionsBuilder.
                     maxDepth(pJmxReq.getParameterAsInt(ConfigKey.MAX_DEPTH)).
                     maxCollectionSize(pJmxReq.getParameterAsInt(ConfigKey.MAX_COLLECTION_SIZE)).
                     maxObjects(pJmxReq.getParameterAsInt(ConfigKey.MAX_OBJECTS)).
-                    faultHandler(pJmxReq.getValueFaultHandler()).
+                    faultHandler(pFaultHandler).
                     useAttributeFilter(pJmxReq.getPathParts() != null).
                     build();
     }
@@ -464,8 +511,10 @@ public class BackendManager implements AgentDetailsHolder {
         int maxDebugEntries = pConfig.getAsInt(DEBUG_MAX_ENTRIES);
 
 
-        historyStore = new HistoryStore(maxEntries);
+        // The debug store is needed for reporting errors when creating the history store
         debugStore = new DebugStore(maxDebugEntries, pConfig.getAsBoolean(DEBUG));
+        historyStore = createHistoryStore(pConfig, maxEntries);
+        historyStore.setMaxSize(pConfig.getAsInt(HISTORY_MAX_SIZE));
 
         try {
             localDispatcher.initMBeans(historyStore, debugStore);
@@ -478,6 +527,19 @@ public class BackendManager implements AgentDetailsHolder {
         }
     }
 
+    // Create a history store, which is persisted if a history file is configured
+    private HistoryStore createHistoryStore(Configuration pConfig, int pMaxEntries) {
+        String historyFile = pConfig.get(HISTORY_FILE);
+        if (historyFile != null && historyFile.length() > 0) {
+            try {
+                return new HistoryStore(pMaxEntries, new File(historyFile));
+            } catch (IOException e) {
+                intError("Cannot open history file " + historyFile + ", keeping the history in memory only: " + e, e);
+            }
+        }
+        return new HistoryStore(pMaxEntries);
+    }
+
     // Final private error log for use in the constructor above
     private void intError(String message,Throwable t) {
         logHandler.error(message, t);
@@ -1,7 +1,11 @@
 package org.jolokia.backend;
 
+import java.util.List;
+
 import javax.management.*;
 
+import org.jolokia.backend.executor.MBeanCallGuard;
+import org.jolokia.backend.executor.MBeanInfoCache;
 import org.jolokia.history.*;
 import org.jolokia.util.DebugStore;
 
@@ -34,6 +38,9 @@ public class Config implements ConfigMBean,MBeanRegistration {
     // Stores for various informations
     private HistoryStore historyStore;
     private DebugStore debugStore;
+    private MBeanInfoCache mBeanInfoCache;
+    private HistorySampler historySampler;
+    private MBeanCallGuard mBeanCallGuard;
 
     // MBean Objectname under which this bean should be registered
     private String objectName;
@@ -46,8 +53,52 @@ public class Config implements ConfigMBean,MBeanRegistration {
      * @param pOName object name under which to register this MBean
      */
     public Config(HistoryStore pHistoryStore, DebugStore pDebugStore, String pOName) {
+        this(pHistoryStore, pDebugStore, null, pOName);
+    }
+
+    /**
+     * Constructor with the configurable objects as parameters.
+     *
+     * @param pHistoryStore history store where to hold historical values
+     * @param pDebugStore debug store for holding debug messages
+     * @param pMBeanInfoCache cache for MBean meta data whose statistics are exported (might be null)
+     * @param pOName object name under which to register this MBean
+     */
+    public Config(HistoryStore pHistoryStore, DebugStore pDebugStore, MBeanInfoCache pMBeanInfoCache, String pOName) {
+        this(pHistoryStore, pDebugStore, pMBeanInfoCache, null, pOName);
+    }
+
+    /**
+     * Constructor with the configurable objects as parameters.
+     *
+     * @param pHistoryStore history store where to hold historical values
+     * @param pDebugStore debug store for holding debug messages
+     * @param pMBeanInfoCache cache for MBean meta data whose statistics are exported (might be null)
+     * @param pHistorySampler sampler for periodically recording attributes (might be null)
+     * @param pOName object name under which to register this MBean
+     */
+    public Config(HistoryStore pHistoryStore, DebugStore pDebugStore, MBeanInfoCache pMBeanInfoCache,
+                  HistorySampler pHistorySampler, String pOName) {
+        this(pHistoryStore, pDebugStore, pMBeanInfoCache, pHistorySampler, null, pOName);
+    }
+
+    /**
+     * Constructor with the configurable objects as parameters.
+     *
+     * @param pHistoryStore history store where to hold historical values
+     * @param pDebugStore debug store for holding debug messages
+     * @param pMBeanInfoCache cache for MBean meta data whose statistics are exported (might be null)
+     * @param pHistorySampler sampler for periodically recording attributes (might be null)
+     * @param pMBeanCallGuard guard for MBean calls whose abandoned calls are exported (might be null)
+     * @param pOName object name under which to register this MBean
+     */
+    public Config(HistoryStore pHistoryStore, DebugStore pDebugStore, MBeanInfoCache pMBeanInfoCache,
+                  HistorySampler pHistorySampler, MBeanCallGuard pMBeanCallGuard, String pOName) {
         historyStore = pHistoryStore;
         debugStore = pDebugStore;
+        mBeanInfoCache = pMBeanInfoCache;
+        historySampler = pHistorySampler;
+        mBeanCallGuard = pMBeanCallGuard;
         objectName = pOName;
     }
 
@@ -63,6 +114,15 @@ public class Config implements ConfigMBean,MBeanRegistration {
         historyStore.configure(key,limitOrNull(pMaxEntries, pMaxDuration));
     }
 
+    /** {@inheritDoc} */
+    public void setHistoryRollupsForAttribute(String pMBean, String pAttribute, String pPath, String pTarget, int pMaxEntries, long pMaxDuration,
+                                              int pMinuteRollups, int pHourRollups) throws MalformedObjectNameException {
+        HistoryKey key = new HistoryKey(pMBean,pAttribute,pPath,pTarget);
+        historyStore.configure(key, limitOrNull(pMaxEntries, pMaxDuration) != null ?
+                new HistoryLimit(pMaxEntries, pMaxDuration, pMinuteRollups, pHourRollups) :
+                null);
+    }
+
     /** {@inheritDoc} */
     public void setHistoryEntriesForOperation(String pMBean, String pOperation, String pTarget, int pMaxEntries) throws MalformedObjectNameException {
         setHistoryLimitForOperation(pMBean, pOperation, pTarget, pMaxEntries, 0L);
@@ -74,8 +134,38 @@ public class Config implements ConfigMBean,MBeanRegistration {
         historyStore.configure(key, limitOrNull(pMaxEntries,pMaxDuration));
     }
 
+    /** {@inheritDoc} */
+    public void setHistorySamplingForAttribute(String pMBean, String pAttribute, long pInterval, int pMaxEntries, long pMaxDuration)
+            throws MalformedObjectNameException {
+        if (historySampler == null) {
+            throw new UnsupportedOperationException("No history sampling available");
+        }
+        ObjectName name = new ObjectName(pMBean);
+        HistoryKey key = new HistoryKey(pMBean,pAttribute,null,null);
+        if (pInterval > 0) {
+            HistoryLimit limit = limitOrNull(pMaxEntries, pMaxDuration);
+            if (limit == null) {
+                throw new IllegalArgumentException("A limit must be given for sampling " + pMBean + ", attribute " + pAttribute);
+            }
+            historyStore.configure(key,limit);
+            historySampler.addAttribute(name, pAttribute, pInterval);
+        } else {
+            historySampler.removeAttribute(name, pAttribute);
+            historyStore.configure(key,null);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public List getHistoryForAttribute(String pMBean, String pAttribute, String pPath, String pTarget)
+            throws MalformedObjectNameException {
+        return (List) historyStore.getHistory(new HistoryKey(pMBean,pAttribute,pPath,pTarget), false);
+    }
+
     /** {@inheritDoc} */
     public void resetHistoryEntries() {
+        if (historySampler != null) {
+            historySampler.clear();
+        }
         historyStore.reset();
     }
 
@@ -84,11 +174,21 @@ public class Config implements ConfigMBean,MBeanRegistration {
         return debugStore.debugInfo();
     }
 
+    /** {@inheritDoc} */
+    public List debugInfoAsJson() {
+        return debugStore.debugInfoAsJson();
+    }
+
     /** {@inheritDoc} */
     public void resetDebugInfo() {
         debugStore.resetDebugInfo();
     }
 
+    /** {@inheritDoc} */
+    public int getHistorySampledAttributes() {
+        return historySampler != null ? historySampler.getSize() : 0;
+    }
+
     /** {@inheritDoc} */
     public int getHistoryMaxEntries() {
         return historyStore.getGlobalMaxEntries();
@@ -124,6 +224,53 @@ public class Config implements ConfigMBean,MBeanRegistration {
         return historyStore.getSize();
     }
 
+    /** {@inheritDoc} */
+    public int getHistoryMaxSize() {
+        return historyStore.getMaxSize();
+    }
+
+    /** {@inheritDoc} */
+    public void setHistoryMaxSize(int pMaxSize) {
+        historyStore.setMaxSize(pMaxSize);
+    }
+
+    /** {@inheritDoc} */
+    public long getHistoryEvictedEntries() {
+        return historyStore.getEvictedEntries();
+    }
+
+    /** {@inheritDoc} */
+    public void resetMBeanInfoCache() {
+        if (mBeanInfoCache != null) {
+            mBeanInfoCache.reset();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public long getMBeanInfoCacheHits() {
+        return mBeanInfoCache != null ? mBeanInfoCache.getHits() : 0L;
+    }
+
+    /** {@inheritDoc} */
+    public long getMBeanInfoCacheMisses() {
+        return mBeanInfoCache != null ? mBeanInfoCache.getMisses() : 0L;
+    }
+
+    /** {@inheritDoc} */
+    public int getMBeanInfoCacheSize() {
+        return mBeanInfoCache != null ? mBeanInfoCache.getSize() : 0;
+    }
+
+    /** {@inheritDoc} */
+    public long getAbandonedMBeanCalls() {
+        return mBeanCallGuard != null ? mBeanCallGuard.getAbandonedCalls() : 0L;
+    }
+
+    /** {@inheritDoc} */
+    public int getBlockedMBeanCalls() {
+        return mBeanCallGuard != null ? mBeanCallGuard.getBlockedCalls() : 0;
+    }
+
     // The limit or null if the entry should be disabled in the history store
     private HistoryLimit limitOrNull(int pMaxEntries, long pMaxDuration) {
         return pMaxEntries != 0 || pMaxDuration != 0 ? new HistoryLimit(pMaxEntries, pMaxDuration) : null;
@@ -1,6 +1,7 @@
 package org.jolokia.backend;
 
 import java.io.IOException;
+import java.util.List;
 
 import javax.management.MalformedObjectNameException;
 
@@ -70,6 +71,25 @@ public interface ConfigMBean {
             throws MalformedObjectNameException;
 
 
+    /**
+     * Switch on history tracking for a specific attribute and keep aggregated values of numeric values
+     * per minute and per hour in addition to the raw values. The aggregates can be fetched with the
+     * processing parameter <code>historyResolution</code>.
+     *
+     * @param pMBean MBean object name
+     * @param pAttribute attribute name
+     * @param pPath inner path (optional)
+     * @param pTarget remote target or null for a local mbean
+     * @param pMaxEntries max last raw entries to remember
+     * @param pMaxDuration maximum duration for how long to keep a raw value (in seconds)
+     * @param pMinuteRollups number of one minute aggregates to keep
+     * @param pHourRollups number of one hour aggregates to keep
+     * @throws MalformedObjectNameException if the given name is not proper object name
+     */
+    void setHistoryRollupsForAttribute(String pMBean,String pAttribute,String pPath,String pTarget,int pMaxEntries,long pMaxDuration,
+                                       int pMinuteRollups,int pHourRollups)
+            throws MalformedObjectNameException;
+
     /**
      * Switch on history tracking for an operation. If <code>pMaxEntries</code> is 0
      * history tracking is switched off. The return value of the operation will be tracked.
@@ -98,8 +118,41 @@ public interface ConfigMBean {
     void setHistoryLimitForOperation(String pMBean,String pOperation,String pTarget,int pMaxEntries,long pMaxDuration)
             throws MalformedObjectNameException;
 
+    /**
+     * Sample an attribute periodically within the agent and record its values in the history. The
+     * history limit is configured like with {@link #setHistoryLimitForAttribute(String, String, String, String, int, long)}.
+     * All attributes of the same MBean which are due are read with a single call.
+     *
+     * If <code>pInterval</code> is 0, sampling is switched off and the history for this attribute is removed.
+     *
+     * @param pMBean MBean object name, which can be a pattern
+     * @param pAttribute attribute name
+     * @param pInterval sampling interval in seconds or 0 to stop sampling
+     * @param pMaxEntries max last entries to remember
+     * @param pMaxDuration maximum duration for how long to keep a value (in seconds)
+     * @throws MalformedObjectNameException if the given name is not proper object name
+     */
+    void setHistorySamplingForAttribute(String pMBean,String pAttribute,long pInterval,int pMaxEntries,long pMaxDuration)
+            throws MalformedObjectNameException;
+
+    /**
+     * Get the recorded history of an attribute without reading the attribute itself. The history
+     * is returned as a list of objects with the keys <code>value</code> and <code>timestamp</code>,
+     * the most recent value first.
+     *
+     * @param pMBean MBean object name (no pattern)
+     * @param pAttribute attribute name
+     * @param pPath inner path (optional)
+     * @param pTarget remote target or null for a local mbean
+     * @return the history or null if no history is recorded for this attribute
+     * @throws MalformedObjectNameException if the given name is not proper object name
+     */
+    List getHistoryForAttribute(String pMBean,String pAttribute,String pPath,String pTarget)
+            throws MalformedObjectNameException;
+
     /**
      * Remove all history entries and switch off history tracking globally.
+     * This also stops sampling of all attributes.
      */
     void resetHistoryEntries();
 
@@ -111,21 +164,65 @@ public interface ConfigMBean {
      */
     String debugInfo();
 
+    /**
+     * Get latest debug information as a list of objects, the oldest message first. Each object
+     * contains the keys <code>timestamp</code> (in milliseconds), <code>thread</code>,
+     * <code>message</code> and, if an exception has been logged, <code>exception</code>
+     * with its stack trace.
+     *
+     * @return debug messages, empty if debugging is switched off
+     */
+    List debugInfoAsJson();
+
     /**
      * Reset all debug information stored internally
      */
     void resetDebugInfo();
 
+    /**
+     * Remove all cached MBeanInfos and reset the cache statistics
+     */
+    void resetMBeanInfoCache();
+
     // Attributes
 
     /**
-     * Get the size in bytes which the history mechanism requires in total if serialized.
+     * Get the estimated size in bytes of the memory which the history mechanism requires in total.
      *
      * @return size of the complete history in bytes
-     * @throws IOException if serialization (which is required for the size determination) fails.
+     * @throws IOException declared for compatibility only, the size is not determined by serialization anymore
      */
     int getHistorySize() throws IOException;
 
+    /**
+     * Get the memory budget for the history. If the estimated size exceeds this budget, the
+     * history entries which have not been updated for the longest time are removed.
+     *
+     * @return memory budget in bytes or 0 if unlimited
+     */
+    int getHistoryMaxSize();
+
+    /**
+     * Set the memory budget for the history
+     *
+     * @param pMaxSize memory budget in bytes or 0 for no limit
+     */
+    void setHistoryMaxSize(int pMaxSize);
+
+    /**
+     * Number of history entries which have been removed because the memory budget was exceeded
+     *
+     * @return number of evicted entries
+     */
+    long getHistoryEvictedEntries();
+
+    /**
+     * Number of attributes which are sampled periodically
+     *
+     * @return number of sampled attributes
+     */
+    int getHistorySampledAttributes();
+
     /**
      * Number of global limit for history entries. No attribute historization can exceed this
      * limit (i.e if in {@link #setHistoryLimitForAttribute(String, String, String, String, int, long)}
@@ -165,4 +262,41 @@ public interface ConfigMBean {
      * @param pNumber entries to set
      */
     void setMaxDebugEntries(int pNumber);
+
+    /**
+     * Number of MBeanInfo lookups which could be served from the cache
+     *
+     * @return number of cache hits
+     */
+    long getMBeanInfoCacheHits();
+
+    /**
+     * Number of MBeanInfo lookups which had to be done on the MBeanServer
+     *
+     * @return number of cache misses
+     */
+    long getMBeanInfoCacheMisses();
+
+    /**
+     * Number of MBeans whose MBeanInfo is currently cached
+     *
+     * @return number of cached MBeanInfos
+     */
+    int getMBeanInfoCacheSize();
+
+    /**
+     * Number of MBean calls which have been abandoned because they didn't finish within
+     * the timeout given with the processing parameter <code>requestTimeout</code>
+     *
+     * @return number of abandoned calls
+     */
+    long getAbandonedMBeanCalls();
+
+    /**
+     * Number of abandoned MBean calls which still have not returned and hence still
+     * occupy a thread
+     *
+     * @return number of blocked calls
+     */
+    int getBlockedMBeanCalls();
 }
@@ -0,0 +1,301 @@
+package org.jolokia.backend;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.management.*;
+
+import org.jolokia.backend.executor.MBeanCallGuard;
+import org.jolokia.backend.executor.MBeanCallTimeoutException;
+import org.jolokia.backend.executor.MBeanServerExecutor;
+import org.jolokia.converter.json.JsonConvertOptions;
+import org.jolokia.converter.json.ObjectToJsonConverter;
+import org.jolokia.history.HistoryKey;
+import org.jolokia.history.HistoryStore;
+import org.jolokia.util.LogHandler;
+
+/**
+ * Sampler which periodically reads attributes on a dedicated thread and feeds their values
+ * into the {@link HistoryStore}, so that the history is recorded independently of how often clients
+ * read these attributes. Attributes are registered with a sampling interval for an MBean name, which can be
+ * a pattern. On each tick, all attributes of an MBean which are due are read with a single
+ * <code>getAttributes</code> call.
+ *
+ * Each call is limited to the shortest sampling interval of the attributes read, so that
+ * a hanging getter of one MBean doesn't stop the sampling of all others. The sampler uses its own
+ * {@link MBeanCallGuard}, so that blocked sampling calls don't count against the calls of client requests.
+ *
+ * The sampling thread is started when the first attribute is registered.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class HistorySampler {
+
+    // Period of the sampling thread in milliseconds
+    private static final long TICK_PERIOD = 1000L;
+
+    private final MBeanServerExecutor executor;
+    private final MBeanCallGuard callGuard;
+    private final HistoryStore historyStore;
+    private final ObjectToJsonConverter converter;
+    private final LogHandler log;
+
+    // Registered attributes with their next due time, grouped by MBean name. Guarded by this.
+    private final Map<ObjectName, Map<String, Job>> jobs = new HashMap<ObjectName, Map<String, Job>>();
+
+    // Created lazily, guarded by this
+    private ScheduledExecutorService scheduler;
+
+    // Action for reading multiple attributes at once
+    private static final MBeanServerExecutor.MBeanAction<AttributeList> GET_ATTRIBUTES =
+            new MBeanServerExecutor.MBeanAction<AttributeList>() {
+                /** {@inheritDoc} */
+                public AttributeList execute(MBeanServerConnection pConn, ObjectName pName, Object... extraArgs)
+                        throws ReflectionException, InstanceNotFoundException, IOException {
+                    return pConn.getAttributes(pName, (String[]) extraArgs[0]);
+                }
+            };
+
+    /**
+     * Constructor
+     *
+     * @param pExecutor executor for accessing the MBeanServers
+     * @param pMaxBlockedCalls maximum number of abandoned sampling calls per MBean which may still be blocked
+     * @param pHistoryStore store to add the sampled values to
+     * @param pConverter converter for creating the JSON representation of the sampled values
+     * @param pLog log handler for reporting failed samples
+     */
+    public HistorySampler(MBeanServerExecutor pExecutor, int pMaxBlockedCalls, HistoryStore pHistoryStore,
+                          ObjectToJsonConverter pConverter, LogHandler pLog) {
+        executor = pExecutor;
+        callGuard = new MBeanCallGuard(pMaxBlockedCalls);
+        historyStore = pHistoryStore;
+        converter = pConverter;
+        log = pLog;
+    }
+
+    /**
+     * Sample an attribute periodically. An already registered attribute gets the new interval.
+     *
+     * @param pMBean MBean name, which can be a pattern
+     * @param pAttribute attribute to sample
+     * @param pInterval sampling interval in seconds, must be positive
+     */
+    public synchronized void addAttribute(ObjectName pMBean, String pAttribute, long pInterval) {
+        if (pInterval <= 0) {
+            throw new IllegalArgumentException("Sampling interval must be positive, not " + pInterval);
+        }
+        if (pAttribute == null) {
+            throw new IllegalArgumentException("No attribute given for sampling " + pMBean);
+        }
+        Map<String, Job> attributes = jobs.get(pMBean);
+        if (attributes == null) {
+            attributes = new HashMap<String, Job>();
+            jobs.put(pMBean, attributes);
+        }
+        attributes.put(pAttribute, new Job(pInterval * 1000L, System.currentTimeMillis()));
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new SamplerThreadFactory());
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                /** {@inheritDoc} */
+                public void run() {
+                    try {
+                        sample(System.currentTimeMillis());
+                    } catch (RuntimeException exp) {
+                        // Keep the sampler running
+                        log.error("Error while sampling attributes: " + exp, exp);
+                    }
+                }
+            }, TICK_PERIOD, TICK_PERIOD, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop sampling an attribute
+     *
+     * @param pMBean MBean name as given when registering
+     * @param pAttribute attribute
+     * @return true if the attribute was sampled before
+     */
+    public synchronized boolean removeAttribute(ObjectName pMBean, String pAttribute) {
+        Map<String, Job> attributes = jobs.get(pMBean);
+        if (attributes == null || attributes.remove(pAttribute) == null) {
+            return false;
+        }
+        if (attributes.isEmpty()) {
+            jobs.remove(pMBean);
+        }
+        return true;
+    }
+
+    /**
+     * Stop sampling all attributes
+     */
+    public synchronized void clear() {
+        jobs.clear();
+    }
+
+    /**
+     * Number of attributes sampled
+     *
+     * @return number of registered attributes
+     */
+    public synchronized int getSize() {
+        int size = 0;
+        for (Map<String, Job> attributes : jobs.values()) {
+            size += attributes.size();
+        }
+        return size;
+    }
+
+    /**
+     * Stop the sampling thread and interrupt blocked sampling calls. Attributes registered
+     * afterwards will start it again.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        callGuard.destroy();
+    }
+
+    /**
+     * Guard used for the sampling calls
+     *
+     * @return the call guard
+     */
+    MBeanCallGuard getCallGuard() {
+        return callGuard;
+    }
+
+    /**
+     * Sample all attributes which are due at the given time
+     *
+     * @param pNow current time in milliseconds
+     */
+    void sample(long pNow) {
+        long timestamp = pNow / 1000;
+        for (Map.Entry<ObjectName, DueAttributes> entry : getDueAttributes(pNow).entrySet()) {
+            ObjectName name = entry.getKey();
+            DueAttributes due = entry.getValue();
+            MBeanServerExecutor guarded = callGuard.withTimeout(executor, due.timeout);
+            try {
+                if (name.isPattern()) {
+                    for (ObjectName found : executor.queryNames(name)) {
+                        sampleMBean(guarded, found, due.names, timestamp);
+                    }
+                } else {
+                    sampleMBean(guarded, name, due.names, timestamp);
+                }
+            } catch (IOException exp) {
+                log.debug("Cannot query " + name + " for sampling: " + exp);
+            }
+        }
+    }
+
+    // ==========================================================================================
+
+    // Collect all attributes which are due and schedule their next run
+    private synchronized Map<ObjectName, DueAttributes> getDueAttributes(long pNow) {
+        Map<ObjectName, DueAttributes> ret = new HashMap<ObjectName, DueAttributes>();
+        for (Map.Entry<ObjectName, Map<String, Job>> entry : jobs.entrySet()) {
+            List<String> due = new ArrayList<String>();
+            long timeout = Long.MAX_VALUE;
+            for (Map.Entry<String, Job> attrEntry : entry.getValue().entrySet()) {
+                Job job = attrEntry.getValue();
+                if (job.nextRun <= pNow) {
+                    due.add(attrEntry.getKey());
+                    timeout = Math.min(timeout, job.interval);
+                    // Don't try to catch up missed runs
+                    job.nextRun = Math.max(job.nextRun + job.interval, pNow + job.interval - TICK_PERIOD / 2);
+                }
+            }
+            if (!due.isEmpty()) {
+                ret.put(entry.getKey(), new DueAttributes(due.toArray(new String[due.size()]), timeout));
+            }
+        }
+        return ret;
+    }
+
+    private void sampleMBean(MBeanServerExecutor pExecutor, ObjectName pName, String[] pAttributes, long pTimestamp) {
+        AttributeList values;
+        try {
+            values = pExecutor.call(pName, GET_ATTRIBUTES, (Object) pAttributes);
+        } catch (JMException exp) {
+            log.debug("Cannot sample " + Arrays.asList(pAttributes) + " of " + pName + ": " + exp);
+            return;
+        } catch (IOException exp) {
+            log.debug("Cannot sample " + Arrays.asList(pAttributes) + " of " + pName + ": " + exp);
+            return;
+        } catch (IllegalArgumentException exp) {
+            // MBean is not registered (anymore)
+            log.debug("Cannot sample " + Arrays.asList(pAttributes) + " of " + pName + ": " + exp);
+            return;
+        } catch (MBeanCallTimeoutException exp) {
+            log.debug("Cannot sample " + Arrays.asList(pAttributes) + " of " + pName + ": " + exp.getMessage());
+            return;
+        }
+        for (Object value : values) {
+            Attribute attribute = (Attribute) value;
+            try {
+                HistoryKey key = new HistoryKey(pName.getCanonicalName(), attribute.getName(), null, null);
+                historyStore.addValue(key, converter.convertToJson(attribute.getValue(), null, JsonConvertOptions.DEFAULT), pTimestamp);
+            } catch (JMException exp) {
+                log.debug("Cannot store sample of " + pName + ", attribute " + attribute.getName() + ": " + exp);
+            } catch (RuntimeException exp) {
+                log.debug("Cannot store sample of " + pName + ", attribute " + attribute.getName() + ": " + exp);
+            }
+        }
+    }
+
+    // Sampling state of a single attribute
+    private static final class Job {
+        private final long interval;
+        private long nextRun;
+
+        private Job(long pInterval, long pNextRun) {
+            interval = pInterval;
+            nextRun = pNextRun;
+        }
+    }
+
+    // Attributes of an MBean to sample in one call, along with the time limit for this call
+    private static final class DueAttributes {
+        private final String[] names;
+        private final long timeout;
+
+        private DueAttributes(String[] pNames, long pTimeout) {
+            names = pNames;
+            timeout = pTimeout;
+        }
+    }
+
+    // Creates the daemon thread used for sampling
+    private static class SamplerThreadFactory implements ThreadFactory {
+        /** {@inheritDoc} */
+        public Thread newThread(Runnable pRunnable) {
+            Thread t = new Thread(pRunnable, "jolokia-history-sampler");
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -20,6 +20,8 @@ import java.util.UUID;
 
 import javax.management.*;
 
+import org.jolokia.backend.executor.MBeanCallGuard;
+import org.jolokia.backend.executor.MBeanInfoCache;
 import org.jolokia.backend.executor.NotChangedException;
 import org.jolokia.config.ConfigKey;
 import org.jolokia.config.Configuration;
@@ -27,6 +29,7 @@ import org.jolokia.converter.Converters;
 import org.jolokia.detector.ServerHandle;
 import org.jolokia.discovery.JolokiaDiscovery;
 import org.jolokia.discovery.JolokiaDiscoveryMBean;
+import org.jolokia.handler.HistoryHandler;
 import org.jolokia.handler.JsonRequestHandler;
 import org.jolokia.handler.RequestHandlerManager;
 import org.jolokia.history.HistoryStore;
@@ -58,6 +61,18 @@ public class LocalRequestDispatcher implements RequestDispatcher {
     // Logger
     private LogHandler log;
 
+    // Converters used for the sampled values
+    private Converters converters;
+
+    // Sampler feeding the history store, created when the MBeans are initialised
+    private HistorySampler historySampler;
+
+    // Limit of blocked calls for the sampler's own call guard
+    private final int maxBlockedCalls;
+
+    // Restrictor, also used for the history export
+    private Restrictor restrictor;
+
     /**
      * Create a new local dispatcher which accesses local MBeans.
      *
@@ -72,11 +87,20 @@ public class LocalRequestDispatcher implements RequestDispatcher {
         mBeanServerHandler = new MBeanServerHandler(pConfig,pLogHandler);
         qualifier = pConfig.get(ConfigKey.MBEAN_QUALIFIER);
         log = pLogHandler;
+        converters = pConverters;
+        restrictor = pRestrictor;
         agentId = NetworkUtil.replaceExpression(pConfig.get(ConfigKey.AGENT_ID));
-
-        // Request handling manager 
+        maxBlockedCalls = pConfig.getAsInt(ConfigKey.MAX_BLOCKED_CALLS);
+
+        // Request handling manager, sharing the MBeanInfo cache of the local MBeanServers if enabled
+        MBeanInfoCache mBeanInfoCache = pConfig.getAsBoolean(ConfigKey.MBEAN_INFO_CACHE) ?
+                mBeanServerHandler.getMBeanServerManager().getMBeanInfoCache() :
+                null;
+        if (mBeanInfoCache != null) {
+            mBeanInfoCache.setImmutableOnly(pConfig.getAsBoolean(ConfigKey.MBEAN_INFO_CACHE_IMMUTABLE_ONLY));
+        }
         requestHandlerManager =
-                new RequestHandlerManager(pConfig,pConverters,mBeanServerHandler.getServerHandle(),pRestrictor);
+                new RequestHandlerManager(pConfig,pConverters,mBeanServerHandler.getServerHandle(),pRestrictor,mBeanInfoCache);
 
     }
 
@@ -102,7 +126,7 @@ public class LocalRequestDispatcher implements RequestDispatcher {
     /**
      * Initialise this request dispatcher, which will register a {@link ConfigMBean} for easy external
      * access to the {@link HistoryStore} and {@link DebugStore}. Also a {@link JolokiaDiscoveryMBean}
-     * is registered
+     * is registered. Requests for exporting the history are handled from now on.
      *
      * @param pHistoryStore history store to be managed from within an MBean
      * @param pDebugStore managed debug store
@@ -113,10 +137,14 @@ public class LocalRequestDispatcher implements RequestDispatcher {
     public void initMBeans(HistoryStore pHistoryStore, DebugStore pDebugStore)
             throws MalformedObjectNameException, MBeanRegistrationException, NotCompliantMBeanException {
 
+        historySampler = new HistorySampler(mBeanServerHandler.getMBeanServerManager(), maxBlockedCalls,
+                                            pHistoryStore, converters.getToJsonConverter(), log);
+        requestHandlerManager.addRequestHandler(new HistoryHandler(restrictor, pHistoryStore));
+
         // Register the Config MBean
         String oName = createObjectNameWithQualifier(Config.OBJECT_NAME);
         try {
-            Config config = new Config(pHistoryStore,pDebugStore,oName);
+            Config config = new Config(pHistoryStore,pDebugStore,getMBeanInfoCache(),historySampler,getMBeanCallGuard(),oName);
             mBeanServerHandler.registerMBean(config,oName);
         } catch (InstanceAlreadyExistsException exp) {
             String alternativeOName = oName + ",uuid=" + UUID.randomUUID();
@@ -126,7 +154,7 @@ public class LocalRequestDispatcher implements RequestDispatcher {
                 // a random number, but this can already be performed with a qualifier
                 log.info(oName + " is already registered. Adding it with " + alternativeOName + ", but you should revise your setup in " +
                          "order to either use a qualifier or ensure, that only a single agent gets registered (otherwise history functionality might not work)");
-                Config config = new Config(pHistoryStore,pDebugStore,alternativeOName);
+                Config config = new Config(pHistoryStore,pDebugStore,getMBeanInfoCache(),historySampler,getMBeanCallGuard(),alternativeOName);
                 mBeanServerHandler.registerMBean(config,alternativeOName);
             } catch (InstanceAlreadyExistsException e) {
                 log.error("Cannot even register fallback MBean with name " + alternativeOName + ". Should never happen. Really.",e);
@@ -137,7 +165,7 @@ public class LocalRequestDispatcher implements RequestDispatcher {
         // jmx4perl version < 0.80
         String legacyOName = createObjectNameWithQualifier(Config.LEGACY_OBJECT_NAME);
         try {
-            Config legacyConfig = new Config(pHistoryStore,pDebugStore,legacyOName);
+            Config legacyConfig = new Config(pHistoryStore,pDebugStore,getMBeanInfoCache(),historySampler,getMBeanCallGuard(),legacyOName);
             mBeanServerHandler.registerMBean(legacyConfig,legacyOName);
         } catch (InstanceAlreadyExistsException exp) {
             log.info("Cannot register (legacy) MBean handler for config store with name " + legacyOName + " since it already exists. " +
@@ -153,11 +181,14 @@ public class LocalRequestDispatcher implements RequestDispatcher {
     }
 
     /**
-     * Unregister the config MBean
+     * Unregister the config MBean and stop sampling
      *
      * @throws JMException if unregistration fails
      */
     public void destroy() throws JMException {
+        if (historySampler != null) {
+            historySampler.stop();
+        }
         mBeanServerHandler.destroy();
     }
 
@@ -169,6 +200,16 @@ public class LocalRequestDispatcher implements RequestDispatcher {
         return mBeanServerHandler.getServerHandle();
     }
 
+    // The MBeanInfo cache whose statistics are exported by the config MBean
+    private MBeanInfoCache getMBeanInfoCache() {
+        return mBeanServerHandler.getMBeanServerManager().getMBeanInfoCache();
+    }
+
+    // The guard whose abandoned MBean calls are exported by the config MBean
+    private MBeanCallGuard getMBeanCallGuard() {
+        return mBeanServerHandler.getMBeanCallGuard();
+    }
+
     private String createObjectNameWithQualifier(String pOName) {
         return pOName + (qualifier != null ? "," + qualifier : "");
     }
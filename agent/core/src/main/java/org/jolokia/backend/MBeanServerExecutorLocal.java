@@ -25,6 +25,7 @@ import org.jolokia.backend.executor.AbstractMBeanServerExecutor;
 import org.jolokia.backend.executor.NotChangedException;
 import org.jolokia.detector.ServerDetector;
 import org.jolokia.handler.JsonRequestHandler;
+import org.jolokia.request.JmxObjectNameRequest;
 import org.jolokia.request.JmxRequest;
 
 /**
@@ -101,12 +102,34 @@ public class MBeanServerExecutorLocal extends AbstractMBeanServerExecutor implem
      */
     public <R extends JmxRequest> Object handleRequest(JsonRequestHandler<R> pRequestHandler, R pJmxReq)
             throws MBeanException, ReflectionException, AttributeNotFoundException, InstanceNotFoundException, NotChangedException {
+        ObjectName oName = pJmxReq instanceof JmxObjectNameRequest ?
+                ((JmxObjectNameRequest) pJmxReq).getObjectName() : null;
+
+        // Try the server known to hold the MBean first
+        MBeanServerConnection indexed = lookupMBeanServer(oName);
+        if (indexed != null) {
+            try {
+                return pRequestHandler.handleRequest(indexed, pJmxReq);
+            } catch (InstanceNotFoundException exp) {
+                forgetMBeanServer(oName);
+            } catch (AttributeNotFoundException exp) {
+                // Other servers might know the attribute, so we ask all of them below
+            } catch (IOException exp) {
+                throw new IllegalStateException("I/O Error while dispatching",exp);
+            }
+        }
+
         AttributeNotFoundException attrException = null;
         InstanceNotFoundException objNotFoundException = null;
 
         for (MBeanServerConnection conn : getMBeanServers()) {
             try {
-                return pRequestHandler.handleRequest(conn, pJmxReq);
+                Object ret = pRequestHandler.handleRequest(conn, pJmxReq);
+                if (attrException == null) {
+                    // Only if no server before knows about this MBean
+                    rememberMBeanServer(oName, conn);
+                }
+                return ret;
             } catch (InstanceNotFoundException exp) {
                 // Remember exceptions for later use
                 objNotFoundException = exp;
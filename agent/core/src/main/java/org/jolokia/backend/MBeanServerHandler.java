@@ -3,9 +3,11 @@ package org.jolokia.backend;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 import javax.management.*;
 
+import org.jolokia.backend.executor.MBeanCallGuard;
 import org.jolokia.backend.executor.MBeanServerExecutor;
 import org.jolokia.backend.executor.NotChangedException;
 import org.jolokia.backend.plugin.MBeanPlugin;
@@ -14,7 +16,7 @@ import org.jolokia.config.ConfigKey;
 import org.jolokia.config.Configuration;
 import org.jolokia.detector.*;
 import org.jolokia.handler.JsonRequestHandler;
-import org.jolokia.request.JmxRequest;
+import org.jolokia.request.*;
 import org.jolokia.util.LogHandler;
 import org.jolokia.util.ServiceObjectFactory;
 import org.json.simple.JSONObject;
@@ -50,6 +52,12 @@ public class MBeanServerHandler implements MBeanServerHandlerMBean, MBeanRegistr
     // The object dealing with all MBeanServers
     private MBeanServerExecutorLocal mBeanServerManager;
 
+    // Guard for MBean calls done with a timeout
+    private MBeanCallGuard mBeanCallGuard;
+
+    // Timeout for MBean calls as configured for the agent, 0 if switched off
+    private int requestTimeout;
+
     // Optional domain for registering this handler as a MBean
     private String qualifier;
 
@@ -73,6 +81,8 @@ public class MBeanServerHandler implements MBeanServerHandlerMBean, MBeanRegistr
         qualifier = pConfig.get(ConfigKey.MBEAN_QUALIFIER);
         List<ServerDetector> detectors = lookupDetectors();
         mBeanServerManager = new MBeanServerExecutorLocal(detectors);
+        mBeanCallGuard = new MBeanCallGuard(pConfig.getAsInt(ConfigKey.MAX_BLOCKED_CALLS));
+        requestTimeout = pConfig.getAsInt(ConfigKey.REQUEST_TIMEOUT);
         initServerHandle(pConfig, pLogHandler, detectors);
         initMBean();
         initPlugins(pConfig, pLogHandler);
@@ -151,17 +161,79 @@ public class MBeanServerHandler implements MBeanServerHandlerMBean, MBeanRegistr
     public Object dispatchRequest(JsonRequestHandler pRequestHandler, JmxRequest pJmxReq)
             throws InstanceNotFoundException, AttributeNotFoundException, ReflectionException, MBeanException, NotChangedException {
         serverHandle.preDispatch(mBeanServerManager,pJmxReq);
+        long timeout = getRequestTimeout(pJmxReq);
         if (pRequestHandler.handleAllServersAtOnce(pJmxReq)) {
             try {
-                return pRequestHandler.handleRequest(mBeanServerManager,pJmxReq);
+                // Every single MBean call of the handler is guarded by the timeout
+                return pRequestHandler.handleRequest(mBeanCallGuard.withTimeout(mBeanServerManager,timeout),pJmxReq);
             } catch (IOException e) {
                 throw new IllegalStateException("Internal: IOException " + e + ". Shouldn't happen.",e);
             }
+        } else if (timeout > 0) {
+            return dispatchRequestWithTimeout(pRequestHandler, pJmxReq, timeout);
         } else {
             return mBeanServerManager.handleRequest(pRequestHandler, pJmxReq);
         }
     }
 
+    // The timeout given with a request can only lower the configured timeout, so that
+    // a client can't make the agent abandon calls when no timeout is configured
+    private long getRequestTimeout(JmxRequest pJmxReq) {
+        if (requestTimeout <= 0) {
+            return 0;
+        }
+        int timeout = pJmxReq.getParameterAsInt(ConfigKey.REQUEST_TIMEOUT);
+        return timeout > 0 ? Math.min(timeout, requestTimeout) : requestTimeout;
+    }
+
+    // A request for a single MBean is handled as a single MBean call
+    private Object dispatchRequestWithTimeout(final JsonRequestHandler pRequestHandler, final JmxRequest pJmxReq, long pTimeout)
+            throws InstanceNotFoundException, AttributeNotFoundException, ReflectionException, MBeanException, NotChangedException {
+        try {
+            return mBeanCallGuard.execute(getGuardedMBean(pJmxReq), getGuardedMembers(pJmxReq), pTimeout, new Callable<Object>() {
+                /** {@inheritDoc} */
+                public Object call() throws Exception {
+                    return mBeanServerManager.handleRequest(pRequestHandler, pJmxReq);
+                }
+            });
+        } catch (InstanceNotFoundException e) {
+            throw e;
+        } catch (AttributeNotFoundException e) {
+            throw e;
+        } catch (ReflectionException e) {
+            throw e;
+        } catch (MBeanException e) {
+            throw e;
+        } catch (NotChangedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Internal: " + e + ". Shouldn't happen.",e);
+        }
+    }
+
+    // MBean called by a request, so that blocked calls only affect requests for the same MBean
+    private String getGuardedMBean(JmxRequest pJmxReq) {
+        if (pJmxReq instanceof JmxObjectNameRequest) {
+            return ((JmxObjectNameRequest) pJmxReq).getObjectName().getCanonicalName();
+        }
+        return pJmxReq.getType().getName();
+    }
+
+    // Attribute or operation touched by a request or null if the request is for the MBean itself
+    private List<String> getGuardedMembers(JmxRequest pJmxReq) {
+        String member = null;
+        if (pJmxReq instanceof JmxReadRequest && !((JmxReadRequest) pJmxReq).isMultiAttributeMode()) {
+            member = ((JmxReadRequest) pJmxReq).getAttributeName();
+        } else if (pJmxReq instanceof JmxWriteRequest) {
+            member = ((JmxWriteRequest) pJmxReq).getAttributeName();
+        } else if (pJmxReq instanceof JmxExecRequest) {
+            member = ((JmxExecRequest) pJmxReq).getOperation();
+        }
+        return member != null ? Collections.singletonList(member) : null;
+    }
+
     /**
      * Register a MBean under a certain name to the platform MBeanServer
      *
@@ -226,6 +298,7 @@ public class MBeanServerHandler implements MBeanServerHandlerMBean, MBeanRegistr
 
         // Unregister any notification listener
         mBeanServerManager.destroy();
+        mBeanCallGuard.destroy();
     }
 
     /**
@@ -237,6 +310,15 @@ public class MBeanServerHandler implements MBeanServerHandlerMBean, MBeanRegistr
         return mBeanServerManager;
     }
 
+    /**
+     * Get the guard for MBean calls done with a timeout
+     *
+     * @return the guard for keeping track of abandoned calls
+     */
+    public MBeanCallGuard getMBeanCallGuard() {
+        return mBeanCallGuard;
+    }
+
     /**
      * Get information about the detected server this agent is running on.
      *
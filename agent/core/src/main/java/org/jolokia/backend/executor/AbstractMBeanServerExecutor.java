@@ -18,6 +18,8 @@ package org.jolokia.backend.executor;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.management.*;
 
@@ -34,6 +36,17 @@ public abstract class AbstractMBeanServerExecutor implements MBeanServerExecutor
     // Timestamp of last MBeanServer change in milliseconds
     private long lastMBeanRegistrationChange;
 
+    // Cache for MBeanInfos, kept up to date by registration notifications
+    private final MBeanInfoCache mBeanInfoCache = new MBeanInfoCache();
+
+    // Index of MBean names to the MBeanServer holding this MBean, filled lazily when an MBean
+    // has been found and invalidated by registration notifications
+    private final ConcurrentMap<ObjectName, MBeanServerConnection> serverIndex =
+            new ConcurrentHashMap<ObjectName, MBeanServerConnection>();
+
+    // The index can only be used as long as we get notified about MBean (un)registrations
+    private volatile boolean serverIndexEnabled;
+
     /**
      * Get all MBeanServers
      *
@@ -77,18 +90,24 @@ public abstract class AbstractMBeanServerExecutor implements MBeanServerExecutor
     /** {@inheritDoc} */
     public <T> T call(ObjectName pObjectName, MBeanAction<T> pMBeanAction, Object ... pExtraArgs)
             throws IOException, ReflectionException, MBeanException, AttributeNotFoundException, InstanceNotFoundException {
+        // Go directly to the server which is known to hold the MBean
+        MBeanServerConnection indexed = lookupMBeanServer(pObjectName);
+        if (indexed != null) {
+            try {
+                return pMBeanAction.execute(indexed, pObjectName, pExtraArgs);
+            } catch (InstanceNotFoundException exp) {
+                // Outdated, fall back to asking every server
+                forgetMBeanServer(pObjectName);
+            }
+        }
+
         InstanceNotFoundException objNotFoundException = null;
         for (MBeanServerConnection server : getMBeanServers()) {
             // Only the first MBeanServer holding the MBean wins
             try {
-                // Still to decide: Should we check eagerly or let an InstanceNotFound Exception
-                // bubble ? Exception bubbling was the former behaviour, so it is left in. However,
-                // it would be interesting how large the performance impact is here. All unit tests BTW are
-                // prepared for switching the guard below on or off.
-
-                //if (server.isRegistered(pObjectName)) {
-                return pMBeanAction.execute(server, pObjectName, pExtraArgs);
-                //}
+                T ret = pMBeanAction.execute(server, pObjectName, pExtraArgs);
+                rememberMBeanServer(pObjectName, server);
+                return ret;
             } catch (InstanceNotFoundException exp) {
                 // Remember exceptions for later use
                 objNotFoundException = exp;
@@ -97,13 +116,6 @@ public abstract class AbstractMBeanServerExecutor implements MBeanServerExecutor
 
         // Must be != null, otherwise we would not have left the loop
         throw objNotFoundException;
-
-        // When we reach this, no MBeanServer know about the requested MBean.
-        // Hence, we throw our own InstanceNotFoundException here
-
-        //throw exception != null ?
-        //        new IllegalArgumentException(errorMsg + ": " + exception,exception) :
-        //        new IllegalArgumentException(errorMsg);
     }
 
     /** {@inheritDoc} */
@@ -133,6 +145,7 @@ public abstract class AbstractMBeanServerExecutor implements MBeanServerExecutor
         if (lastExp != null) {
             throw new IllegalStateException(errors.substring(0,errors.length()-1),lastExp);
         }
+        serverIndexEnabled = true;
     }
 
     /**
@@ -149,16 +162,36 @@ public abstract class AbstractMBeanServerExecutor implements MBeanServerExecutor
                 lastExp = updateErrorMsg(errors, e);
             }
         }
+        // Without notifications the cache and the index can't be kept up to date anymore
+        serverIndexEnabled = false;
+        serverIndex.clear();
+        mBeanInfoCache.clear();
         if (lastExp != null) {
             throw new IllegalStateException(errors.substring(0,errors.length()-1),lastExp);
         }
     }
 
     /** {@inheritDoc} */
-    // Remember current timestamp
+    // Remember current timestamp and invalidate cached meta data
     public void handleNotification(Notification pNotification, Object pHandback) {
         // Update timestamp
         lastMBeanRegistrationChange = System.currentTimeMillis();
+        if (pNotification instanceof MBeanServerNotification) {
+            ObjectName name = ((MBeanServerNotification) pNotification).getMBeanName();
+            serverIndex.remove(name);
+            mBeanInfoCache.invalidate(name);
+        }
+    }
+
+    /**
+     * Get the cache for MBeanInfos of the MBeans managed by this executor. The cache is only
+     * kept up to date when this executor has been registered for MBean notifications with
+     * {@link #registerForMBeanNotifications()}.
+     *
+     * @return the MBeanInfo cache
+     */
+    public MBeanInfoCache getMBeanInfoCache() {
+        return mBeanInfoCache;
     }
 
     /** {@inheritDoc} */
@@ -166,6 +199,50 @@ public abstract class AbstractMBeanServerExecutor implements MBeanServerExecutor
         return (lastMBeanRegistrationChange / 1000) >= pTimestamp;
     }
 
+    /**
+     * Lookup the MBeanServer which is known to hold the given MBean.
+     *
+     * @param pObjectName MBean name to lookup
+     * @return the MBeanServer holding the MBean or null if not known. In this case all servers
+     *         must be asked in turn.
+     */
+    protected MBeanServerConnection lookupMBeanServer(ObjectName pObjectName) {
+        if (!serverIndexEnabled || pObjectName == null || pObjectName.isPattern()) {
+            return null;
+        }
+        MBeanServerConnection server = serverIndex.get(pObjectName);
+        if (server != null && !getMBeanServers().contains(server)) {
+            // Server has vanished in the meantime
+            serverIndex.remove(pObjectName);
+            return null;
+        }
+        return server;
+    }
+
+    /**
+     * Remember the MBeanServer on which a given MBean has been found
+     *
+     * @param pObjectName MBean name
+     * @param pServer server holding this MBean
+     */
+    protected void rememberMBeanServer(ObjectName pObjectName, MBeanServerConnection pServer) {
+        if (serverIndexEnabled && pObjectName != null && !pObjectName.isPattern()) {
+            serverIndex.put(pObjectName, pServer);
+        }
+    }
+
+    /**
+     * Forget about the server for a given MBean, e.g. when the MBean could not be found
+     * on the server remembered
+     *
+     * @param pObjectName MBean name
+     */
+    protected void forgetMBeanServer(ObjectName pObjectName) {
+        if (pObjectName != null) {
+            serverIndex.remove(pObjectName);
+        }
+    }
+
     // Helper method for adding the exception for an appropriate error message
     private Exception updateErrorMsg(StringBuilder pErrors, Exception exp) {
         pErrors.append(exp.getClass()).append(": ").append(exp.getMessage()).append("\n");
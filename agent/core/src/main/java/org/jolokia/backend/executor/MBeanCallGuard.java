@@ -0,0 +1,455 @@
+package org.jolokia.backend.executor;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.*;
+
+/**
+ * Guard for running MBean calls with a timeout. A guarded call is executed in a separate
+ * thread while the caller waits at most for the given timeout. If the call doesn't finish in
+ * time, it is abandoned: the waiting thread gets a {@link MBeanCallTimeoutException} and the
+ * thread executing the call is interrupted and left alone until the call returns on its own.
+ *
+ * Calls are identified by the MBean and the attributes or the operation they touch. As long as an
+ * abandoned call is still blocked, calls touching the same attribute or operation of the same MBean
+ * fail immediately so that a client polling a hanging attribute doesn't pile up blocked threads. The
+ * number of blocked calls is limited per MBean, too: when the limit is reached, every guarded call to this
+ * MBean fails immediately until some of its blocked calls have returned. Calls to other MBeans are not affected.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class MBeanCallGuard {
+
+    // Number of calls abandoned so far
+    private final AtomicLong abandonedCalls = new AtomicLong(0);
+
+    // Number of abandoned calls which are still blocked
+    private final AtomicInteger blockedCalls = new AtomicInteger(0);
+
+    // Abandoned calls still blocked, per MBean: the attribute, the operation or the attributes read together
+    // (null for a call to the MBean itself) along with the number of such calls
+    private final Map<String, Map<String, Integer>> blockedKeys = new HashMap<String, Map<String, Integer>>();
+
+    // Maximum number of abandoned calls per MBean which may be blocked at the same time
+    private final int maxBlockedCalls;
+
+    // Thread pool for the guarded calls, created lazily on first usage
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Create a guard
+     *
+     * @param pMaxBlockedCalls maximum number of abandoned calls per MBean which may still be blocked. If
+     *                         reached, guarded calls to this MBean fail immediately. Must be at least 1.
+     */
+    public MBeanCallGuard(int pMaxBlockedCalls) {
+        maxBlockedCalls = Math.max(pMaxBlockedCalls, 1);
+    }
+
+    /**
+     * Execute a call to an MBean itself (e.g. for getting its meta data) with a timeout.
+     *
+     * @param pMBean the MBean called, also used in error messages
+     * @param pTimeout timeout in milliseconds. If 0 or less, the call is executed directly
+     *                 within the calling thread
+     * @param pCall the call to execute
+     * @param <T> return type of the call
+     * @return the return value of the call
+     * @throws MBeanCallTimeoutException if the call doesn't finish within the timeout or if it is
+     *         not started because of blocked calls
+     * @throws Exception any exception thrown by the call itself
+     * @see #execute(String, List, long, Callable)
+     */
+    public <T> T execute(String pMBean, long pTimeout, Callable<T> pCall) throws Exception {
+        return execute(pMBean, null, pTimeout, pCall);
+    }
+
+    /**
+     * Execute a call with a timeout. The security context of the caller (e.g. a JAAS subject) is
+     * propagated to the executing thread. Exceptions thrown by the call are rethrown unchanged.
+     *
+     * @param pMBean the MBean called, also used in error messages
+     * @param pMembers attributes or operation touched by the call or null for a call to the MBean itself
+     * @param pTimeout timeout in milliseconds. If 0 or less, the call is executed directly
+     *                 within the calling thread
+     * @param pCall the call to execute
+     * @param <T> return type of the call
+     * @return the return value of the call
+     * @throws MBeanCallTimeoutException if the call doesn't finish within the timeout, if an
+     *         earlier call touching one of the given members (or the same members, if multiple are
+     *         given) has been abandoned and is still blocked or if too many abandoned calls to this
+     *         MBean are blocked
+     * @throws Exception any exception thrown by the call itself
+     */
+    public <T> T execute(String pMBean, List<String> pMembers, long pTimeout, Callable<T> pCall) throws Exception {
+        if (pTimeout <= 0) {
+            return pCall.call();
+        }
+        String member = pMembers == null ? null : pMembers.size() == 1 ? pMembers.get(0) : pMembers.toString();
+        String description = pMBean + (pMembers != null ? " " + pMembers : "");
+        checkBlocked(pMBean, pMembers, member, description);
+        GuardedCall<T> guarded = new GuardedCall<T>(pMBean, member, pCall, AccessController.getContext());
+        FutureTask<T> future = new FutureTask<T>(guarded);
+        try {
+            getExecutor().execute(future);
+        } catch (RejectedExecutionException exp) {
+            // Only happens when shutting down, so there is no need for a timeout anymore
+            return pCall.call();
+        }
+        try {
+            return future.get(pTimeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException exp) {
+            throw unwrap(exp);
+        } catch (TimeoutException exp) {
+            return abandon(guarded, future, "MBean call did not finish within " + pTimeout + " ms: " + description);
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            return abandon(guarded, future, "Interrupted while waiting for MBean call: " + description);
+        }
+    }
+
+    /**
+     * Decorate an executor so that every call done via {@link MBeanServerExecutor#call(ObjectName, MBeanServerExecutor.MBeanAction, Object...)}
+     * and every callback of {@link MBeanServerExecutor#each(ObjectName, MBeanServerExecutor.MBeanEachCallback)}
+     * is executed with the given timeout.
+     *
+     * @param pExecutor executor to decorate
+     * @param pTimeout timeout in milliseconds for every single call
+     * @return the decorated executor or the given executor if the timeout is 0 or less
+     */
+    public MBeanServerExecutor withTimeout(MBeanServerExecutor pExecutor, long pTimeout) {
+        return pTimeout > 0 ? new TimeLimitedExecutor(pExecutor, pTimeout) : pExecutor;
+    }
+
+    /**
+     * Number of calls which have been abandoned because they didn't finish in time
+     *
+     * @return number of abandoned calls
+     */
+    public long getAbandonedCalls() {
+        return abandonedCalls.get();
+    }
+
+    /**
+     * Number of abandoned calls which still have not returned
+     *
+     * @return number of blocked calls
+     */
+    public int getBlockedCalls() {
+        return blockedCalls.get();
+    }
+
+    /**
+     * Shutdown the thread pool and interrupt all blocked calls
+     */
+    public synchronized void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    // ==========================================================================================
+
+    private <T> T abandon(GuardedCall<T> pGuarded, FutureTask<T> pFuture, String pMessage) throws Exception {
+        // Count first, so that the call can't release its key before it has been registered
+        registerBlocked(pGuarded.mbean, pGuarded.member);
+        if (pGuarded.abandon()) {
+            abandonedCalls.incrementAndGet();
+            throw new MBeanCallTimeoutException(pMessage);
+        }
+        // Finished just in time
+        releaseBlocked(pGuarded.mbean, pGuarded.member);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return pFuture.get();
+                } catch (InterruptedException exp) {
+                    interrupted = true;
+                } catch (ExecutionException exp) {
+                    throw unwrap(exp);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Exception unwrap(ExecutionException pExp) {
+        Throwable cause = pExp.getCause();
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException("Error while executing MBean call: " + cause, cause);
+    }
+
+    // Fail fast if a call touching the same members is still blocked or if the MBean has too many blocked calls
+    private void checkBlocked(String pMBean, List<String> pMembers, String pMember, String pDescription) {
+        synchronized (blockedKeys) {
+            Map<String, Integer> blocked = blockedKeys.get(pMBean);
+            if (blocked == null) {
+                return;
+            }
+            boolean touched = blocked.containsKey(pMember);
+            if (!touched && pMembers != null) {
+                for (String member : pMembers) {
+                    touched |= blocked.containsKey(member);
+                }
+            }
+            if (touched) {
+                throw new MBeanCallTimeoutException("Earlier MBean call which timed out is still blocked: " + pDescription);
+            }
+            int count = 0;
+            for (Integer nr : blocked.values()) {
+                count += nr;
+            }
+            if (count >= maxBlockedCalls) {
+                throw new MBeanCallTimeoutException("Too many MBean calls to " + pMBean + " which timed out are still blocked (" +
+                                                    maxBlockedCalls + "), not calling " + pDescription);
+            }
+        }
+    }
+
+    private void registerBlocked(String pMBean, String pMember) {
+        synchronized (blockedKeys) {
+            Map<String, Integer> blocked = blockedKeys.get(pMBean);
+            if (blocked == null) {
+                blocked = new HashMap<String, Integer>();
+                blockedKeys.put(pMBean, blocked);
+            }
+            Integer count = blocked.get(pMember);
+            blocked.put(pMember, count != null ? count + 1 : 1);
+        }
+        blockedCalls.incrementAndGet();
+    }
+
+    private void releaseBlocked(String pMBean, String pMember) {
+        synchronized (blockedKeys) {
+            Map<String, Integer> blocked = blockedKeys.get(pMBean);
+            if (blocked != null) {
+                Integer count = blocked.get(pMember);
+                if (count == null || count <= 1) {
+                    blocked.remove(pMember);
+                } else {
+                    blocked.put(pMember, count - 1);
+                }
+                if (blocked.isEmpty()) {
+                    blockedKeys.remove(pMBean);
+                }
+            }
+        }
+        blockedCalls.decrementAndGet();
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            // No queueing: every call gets its own thread so that a blocked call never delays another one.
+            // The number of threads is bounded by the guarded calls in progress plus the blocked calls
+            executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                                              new SynchronousQueue<Runnable>(),
+                                              new DaemonThreadFactory());
+        }
+        return executor;
+    }
+
+    // A call running in the thread pool which can be abandoned by the waiting thread
+    private final class GuardedCall<T> implements Callable<T> {
+
+        private static final int RUNNING = 0;
+        private static final int DONE = 1;
+        private static final int ABANDONED = 2;
+
+        private final String mbean;
+        private final String member;
+        private final Callable<T> call;
+        private final AccessControlContext context;
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+        // Thread executing the call, null if not running
+        private Thread runner;
+
+        private GuardedCall(String pMBean, String pMember, Callable<T> pCall, AccessControlContext pContext) {
+            mbean = pMBean;
+            member = pMember;
+            call = pCall;
+            context = pContext;
+        }
+
+        /** {@inheritDoc} */
+        public T call() throws Exception {
+            try {
+                synchronized (this) {
+                    if (state.get() != RUNNING) {
+                        // Abandoned before it even started
+                        return null;
+                    }
+                    runner = Thread.currentThread();
+                }
+                return AccessController.doPrivileged(new PrivilegedExceptionAction<T>() {
+                    /** {@inheritDoc} */
+                    public T run() throws Exception {
+                        return call.call();
+                    }
+                }, context);
+            } catch (PrivilegedActionException exp) {
+                throw exp.getException();
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                if (!state.compareAndSet(RUNNING, DONE)) {
+                    releaseBlocked(mbean, member);
+                }
+            }
+        }
+
+        // Mark as abandoned and interrupt the executing thread. Returns false if the call has already finished
+        private synchronized boolean abandon() {
+            if (!state.compareAndSet(RUNNING, ABANDONED)) {
+                return false;
+            }
+            if (runner != null) {
+                runner.interrupt();
+            }
+            return true;
+        }
+    }
+
+    // Executor running each call and each callback with a timeout
+    private final class TimeLimitedExecutor implements MBeanServerExecutor {
+
+        private final MBeanServerExecutor delegate;
+        private final long timeout;
+
+        private TimeLimitedExecutor(MBeanServerExecutor pDelegate, long pTimeout) {
+            delegate = pDelegate;
+            timeout = pTimeout;
+        }
+
+        /** {@inheritDoc} */
+        public void each(ObjectName pObjectName, final MBeanEachCallback pCallback)
+                throws IOException, ReflectionException, MBeanException {
+            delegate.each(pObjectName, new MBeanEachCallback() {
+                /** {@inheritDoc} */
+                public void callback(final MBeanServerConnection pConn, final ObjectName pName)
+                        throws ReflectionException, InstanceNotFoundException, IOException, MBeanException {
+                    try {
+                        execute(pName.getCanonicalName(), timeout, new Callable<Void>() {
+                            /** {@inheritDoc} */
+                            public Void call() throws Exception {
+                                pCallback.callback(pConn, pName);
+                                return null;
+                            }
+                        });
+                    } catch (ReflectionException exp) {
+                        throw exp;
+                    } catch (InstanceNotFoundException exp) {
+                        throw exp;
+                    } catch (IOException exp) {
+                        throw exp;
+                    } catch (MBeanException exp) {
+                        throw exp;
+                    } catch (RuntimeException exp) {
+                        throw exp;
+                    } catch (Exception exp) {
+                        throw new IllegalStateException("Error while executing MBean call for " + pName + ": " + exp, exp);
+                    }
+                }
+            });
+        }
+
+        /** {@inheritDoc} */
+        public <R> R call(final ObjectName pObjectName, final MBeanAction<R> pMBeanAction, final Object... pExtraArgs)
+                throws IOException, ReflectionException, MBeanException, AttributeNotFoundException, InstanceNotFoundException {
+            String mbean = pObjectName.getCanonicalName();
+            List<String> members = getMembers(pExtraArgs);
+            try {
+                return execute(mbean, members, timeout, new Callable<R>() {
+                    /** {@inheritDoc} */
+                    public R call() throws Exception {
+                        return delegate.call(pObjectName, pMBeanAction, pExtraArgs);
+                    }
+                });
+            } catch (IOException exp) {
+                throw exp;
+            } catch (ReflectionException exp) {
+                throw exp;
+            } catch (MBeanException exp) {
+                throw exp;
+            } catch (AttributeNotFoundException exp) {
+                throw exp;
+            } catch (InstanceNotFoundException exp) {
+                throw exp;
+            } catch (RuntimeException exp) {
+                throw exp;
+            } catch (Exception exp) {
+                throw new IllegalStateException("Error while executing MBean call for " + mbean + ": " + exp, exp);
+            }
+        }
+
+        // Attribute or operation names given as extra arguments, either as single strings or as string arrays
+        private List<String> getMembers(Object... pExtraArgs) {
+            List<String> ret = new ArrayList<String>();
+            if (pExtraArgs != null) {
+                for (Object arg : pExtraArgs) {
+                    if (arg instanceof String) {
+                        ret.add((String) arg);
+                    } else if (arg instanceof String[]) {
+                        ret.addAll(Arrays.asList((String[]) arg));
+                    }
+                }
+            }
+            return ret.isEmpty() ? null : ret;
+        }
+
+        /** {@inheritDoc} */
+        public Set<ObjectName> queryNames(ObjectName pObjectName) throws IOException {
+            return delegate.queryNames(pObjectName);
+        }
+
+        /** {@inheritDoc} */
+        public boolean hasMBeansListChangedSince(long pTimestamp) {
+            return delegate.hasMBeansListChangedSince(pTimestamp);
+        }
+    }
+
+    // Thread factory for creating daemon threads only
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNr = new AtomicInteger(0);
+
+        /** {@inheritDoc} */
+        public Thread newThread(Runnable pRunnable) {
+            Thread t = new Thread(pRunnable, "jolokia-mbean-call-" + threadNr.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.jolokia.backend.executor;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Exception thrown when an MBean call did not finish within the timeout given
+ * with the processing parameter <code>requestTimeout</code>, or when an earlier
+ * identical call which has been abandoned is still blocked.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class MBeanCallTimeoutException extends RuntimeException {
+
+    /**
+     * Constructor
+     *
+     * @param pMessage error message
+     */
+    public MBeanCallTimeoutException(String pMessage) {
+        super(pMessage);
+    }
+}
@@ -0,0 +1,169 @@
+package org.jolokia.backend.executor;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.*;
+
+/**
+ * Cache for {@link MBeanInfo}s which are looked up on a certain MBeanServer. Optionally, only infos
+ * whose descriptor declares them as immutable (field <code>immutableInfo</code>, which is set
+ * for all standard MBeans and MXBeans) are cached, for setups where dynamic MBeans change their
+ * meta data while being registered. Entries are not expired by time but must be invalidated when an
+ * MBean gets registered or unregistered. This is done by {@link AbstractMBeanServerExecutor} which listens
+ * for these notifications on all MBeanServers it manages.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class MBeanInfoCache {
+
+    // Cached infos, first by MBean name then by the MBeanServer holding the MBean
+    private final ConcurrentMap<ObjectName, ConcurrentMap<MBeanServerConnection, MBeanInfo>> infos =
+            new ConcurrentHashMap<ObjectName, ConcurrentMap<MBeanServerConnection, MBeanInfo>>();
+
+    // Statistics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Incremented on every invalidation so that a lookup racing with an invalidation
+    // does not store an outdated MBeanInfo
+    private final AtomicLong generation = new AtomicLong();
+
+    // Whether to cache only infos marked as immutable
+    private volatile boolean immutableOnly;
+
+    /**
+     * Cache only infos whose descriptor field <code>immutableInfo</code> is <code>true</code>.
+     * Infos already cached are dropped when switching this on.
+     *
+     * @param pImmutableOnly true if only immutable infos should be cached
+     */
+    public void setImmutableOnly(boolean pImmutableOnly) {
+        immutableOnly = pImmutableOnly;
+        if (pImmutableOnly) {
+            clear();
+        }
+    }
+
+    /**
+     * Get the {@link MBeanInfo} of an MBean, either from the cache or from the given server
+     *
+     * @param pConn server holding the MBean
+     * @param pName name of the MBean
+     * @return the MBean's meta data
+     * @throws InstanceNotFoundException if the MBean is not registered at the given server
+     * @throws IntrospectionException if the MBean's meta data cannot be obtained
+     * @throws ReflectionException if the MBean's meta data cannot be obtained
+     * @throws IOException for a remote connection
+     */
+    public MBeanInfo getMBeanInfo(MBeanServerConnection pConn, ObjectName pName)
+            throws InstanceNotFoundException, IntrospectionException, ReflectionException, IOException {
+        ConcurrentMap<MBeanServerConnection, MBeanInfo> perServer = infos.get(pName);
+        MBeanInfo info = perServer != null ? perServer.get(pConn) : null;
+        if (info != null) {
+            hits.incrementAndGet();
+            return info;
+        }
+        misses.incrementAndGet();
+        long gen = generation.get();
+        info = pConn.getMBeanInfo(pName);
+        if (!immutableOnly || isImmutable(info)) {
+            if (perServer == null) {
+                perServer = new ConcurrentHashMap<MBeanServerConnection, MBeanInfo>();
+                ConcurrentMap<MBeanServerConnection, MBeanInfo> old = infos.putIfAbsent(pName, perServer);
+                if (old != null) {
+                    perServer = old;
+                }
+            }
+            perServer.put(pConn, info);
+            if (gen != generation.get()) {
+                // An invalidation happened in the meantime, so we can't be sure about what we got
+                invalidate(pName);
+            }
+        }
+        return info;
+    }
+
+    // Whether the info is declared as never changing
+    private boolean isImmutable(MBeanInfo pInfo) {
+        if (pInfo == null) {
+            return false;
+        }
+        Descriptor descriptor = pInfo.getDescriptor();
+        Object value = descriptor != null ? descriptor.getFieldValue(JMX.IMMUTABLE_INFO_FIELD) : null;
+        return value != null && "true".equalsIgnoreCase(value.toString());
+    }
+
+    /**
+     * Remove any cached meta data for the given MBean
+     *
+     * @param pName MBean name to invalidate
+     */
+    public void invalidate(ObjectName pName) {
+        generation.incrementAndGet();
+        infos.remove(pName);
+    }
+
+    /**
+     * Remove all cached entries
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        infos.clear();
+    }
+
+    /**
+     * Number of lookups answered from the cache
+     *
+     * @return number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of lookups which needed to ask the MBeanServer
+     *
+     * @return number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of MBeans for which meta data is cached
+     *
+     * @return number of cached MBeans
+     */
+    public int getSize() {
+        return infos.size();
+    }
+
+    /**
+     * Remove all cached entries and reset the statistics
+     */
+    public void reset() {
+        clear();
+        hits.set(0);
+        misses.set(0);
+    }
+}
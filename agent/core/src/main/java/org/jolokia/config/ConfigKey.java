@@ -37,6 +37,41 @@ public enum ConfigKey {
      */
     HISTORY_MAX_ENTRIES("historyMaxEntries",true, false, "10"),
 
+    /**
+     * Memory budget for the history in bytes (estimated). If exceeded, the history
+     * entries which have not been updated for the longest time are removed (explicitly
+     * configured entries only lose their values). 0 means no limit.
+     */
+    HISTORY_MAX_SIZE("historyMaxSize",true, false, "0"),
+
+    /**
+     * Whether to return the history of a value as an object with two parallel arrays
+     * "values" and "timestamps" instead of an array of objects holding value and timestamp.
+     * Default is "false".
+     */
+    HISTORY_COMPACT("historyCompact", true, true, "false"),
+
+    /**
+     * Resolution of the history returned: "raw" for the recorded values, "minute" or "hour" for
+     * aggregates (min, max, avg, count, last) per minute or hour, if configured for the history entry.
+     * Default is "raw".
+     */
+    HISTORY_RESOLUTION("historyResolution", true, true, "raw"),
+
+    /**
+     * Timestamp (in seconds since 1.1.1970) of the most recent history value a client
+     * already knows. Only values recorded after this timestamp are returned in the history,
+     * so that polling clients don't fetch the same values over and over again.
+     */
+    HISTORY_SINCE("historySince", false, true),
+
+    /**
+     * Path to a file in which the history is kept so that it survives a restart of the agent.
+     * Numeric values, rollups and the history configuration are persisted, other values are kept
+     * only in memory. By default, the history is not persisted.
+     */
+    HISTORY_FILE("historyFile", true, false),
+
     /**
      * Whether debug is switched on or not
      */
@@ -80,6 +115,15 @@ public enum ConfigKey {
      */
     MAX_OBJECTS("maxObjects",true, true),
 
+    /**
+     * Whether to write a returned value directly to the response without
+     * building up its complete JSON representation in memory first. Large arrays, collections
+     * and tabular data are then serialized element by element, which pays off when the response
+     * is streamed. This takes only effect for values without a path and when no history is tracked for the request.
+     * Errors during serialization are included as value like for "ignoreErrors". Default is "false".
+     */
+    STREAM_VALUES("streamValues", true, true, "false"),
+
     /**
      * Custom restrictor to be used instead of default one
      */
@@ -149,6 +193,97 @@ public enum ConfigKey {
      */
     STREAMING("streaming", true, false, "true"),
 
+    /**
+     * Whether the single requests of a bulk request should be executed in parallel.
+     * Can be given globally or as query parameter of a bulk POST request. Default is "false"
+     */
+    BULK_PARALLEL("bulkParallel", true, true, "false"),
+
+    /**
+     * Number of threads in the pool which is shared by all parallel bulk requests
+     */
+    BULK_THREADS("bulkThreads", true, false, "4"),
+
+    /**
+     * Maximum number of requests of a single bulk request which are executed concurrently,
+     * including the thread handling the HTTP request.
+     */
+    BULK_MAX_PARALLEL("bulkMaxParallel", true, false, "2"),
+
+    /**
+     * Whether the responses of a bulk request should be written out one by one as soon
+     * as each single request finishes instead of collecting all of them first. This is
+     * not used when {@link #BULK_PARALLEL} is enabled. Default is "false"
+     */
+    BULK_STREAMING("bulkStreaming", true, true, "false"),
+
+    /**
+     * Maximum size of the body of a POST request in characters. Larger requests
+     * are rejected. Default is "0" which means no limit.
+     */
+    MAX_REQUEST_SIZE("maxRequestSize", true, false, "0"),
+
+    /**
+     * Maximum number of requests within a bulk request. Larger bulk requests are
+     * rejected. Default is "0" which means no limit.
+     */
+    MAX_BULK_REQUESTS("maxBulkRequests", true, false, "0"),
+
+    /**
+     * Timeout in milliseconds for every single MBean call done while processing a request.
+     * A call which takes longer is abandoned and reported as an error. When reading multiple
+     * attributes, only the attributes which couldn't be read in time are affected if
+     * {@link #IGNORE_ERRORS} is set. A request can only lower the configured timeout, it can't
+     * switch it on. Default is "0" which means no timeout.
+     */
+    REQUEST_TIMEOUT("requestTimeout", true, true, "0"),
+
+    /**
+     * Maximum number of abandoned MBean calls (see {@link #REQUEST_TIMEOUT}) per MBean which may still be
+     * blocked. When reached, further calls with a timeout to this MBean fail immediately instead of occupying
+     * another thread. Default is "10"
+     */
+    MAX_BLOCKED_CALLS("maxBlockedCalls", true, false, "10"),
+
+    /**
+     * Minimum size in bytes of a response before it gets compressed with gzip or deflate.
+     * A response is only compressed if the client announces support for one of these
+     * encodings in its "Accept-Encoding" header. A negative value switches off response
+     * compression. Default is "-1"
+     */
+    COMPRESSION_THRESHOLD("compressionThreshold", true, false, "-1"),
+
+    /**
+     * Compression level between "1" (fastest) and "9" (best compression) used for
+     * compressed responses. Default is "6"
+     */
+    COMPRESSION_LEVEL("compressionLevel", true, false, "6"),
+
+    /**
+     * Maximum size in bytes to which the body of a compressed POST request (gzip or deflate)
+     * may expand. Larger requests are rejected. "0" means no limit. Default is "10485760" (10 MB)
+     */
+    MAX_DECOMPRESSED_REQUEST_SIZE("maxDecompressedRequestSize", true, false, "10485760"),
+
+    /**
+     * Whether to cache the MBeanInfo of MBeans. Cached infos are invalidated when
+     * an MBean gets registered or unregistered. Default is "true".
+     */
+    MBEAN_INFO_CACHE("mbeanInfoCache", true, false, "true"),
+
+    /**
+     * Whether to cache only MBeanInfos marked as immutable via the descriptor field
+     * "immutableInfo". Switch this on if MBeans change their MBeanInfo while being
+     * registered. Default is "false".
+     */
+    MBEAN_INFO_CACHE_IMMUTABLE_ONLY("mbeanInfoCacheImmutableOnly", true, false, "false"),
+
+    /**
+     * Number of parsed GET request URLs to cache, so that the same URLs polled
+     * repeatedly don't need to be parsed again. "0" switches off caching. Default is "500".
+     */
+    REQUEST_CACHE_SIZE("requestCacheSize", true, false, "500"),
+
     /**
      * Optional domain name for registering own MBeans
      */
@@ -3,15 +3,19 @@ package org.jolokia.converter.json;
 import java.io.OutputStream;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.*;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.management.AttributeNotFoundException;
 
 import org.jolokia.converter.object.StringToObjectConverter;
 import org.jolokia.util.EscapeUtil;
+import org.jolokia.util.WeakClassMap;
 import org.json.simple.JSONAware;
 import org.json.simple.JSONObject;
 
@@ -66,6 +70,10 @@ public class BeanExtractor implements Extractor {
 
     private static final String[] GETTER_PREFIX = new String[]{"get", "is", "has"};
 
+    // Reflection meta data per bean class. The meta data is referenced softly since it holds methods
+    // which in turn reference the class
+    private final WeakClassMap<SoftReference<BeanMetaData>> metaDataCache = new WeakClassMap<SoftReference<BeanMetaData>>();
+
     /** {@inheritDoc} */
     public Class getType() {
         return Object.class;
@@ -150,7 +158,7 @@ public class BeanExtractor implements Extractor {
             return pValue;
         } else {
             // For the rest we build up a JSON map with the attributes as keys and the value are
-            List<String> attributes = extractBeanAttributes(pValue);
+            List<String> attributes = getMetaData(pValue.getClass()).getAttributes();
             if (attributes.size() > 0) {
                 return extractBeanValues(pConverter, pValue, pPathParts, attributes);
             } else {
@@ -201,10 +209,21 @@ public class BeanExtractor implements Extractor {
         }
     }
 
-    // Extract all attributes from a given bean
-    private List<String> extractBeanAttributes(Object pValue) {
+    // Get the cached meta data for a class or create it
+    private BeanMetaData getMetaData(Class pClass) {
+        SoftReference<BeanMetaData> ref = metaDataCache.get(pClass);
+        BeanMetaData ret = ref != null ? ref.get() : null;
+        if (ret == null) {
+            ret = new BeanMetaData(extractBeanAttributes(pClass));
+            metaDataCache.put(pClass, new SoftReference<BeanMetaData>(ret));
+        }
+        return ret;
+    }
+
+    // Extract all attributes from a given bean class
+    private List<String> extractBeanAttributes(Class pClass) {
         List<String> attrs = new ArrayList<String>();
-        for (Method method : pValue.getClass().getMethods()) {
+        for (Method method : pClass.getMethods()) {
             if (!Modifier.isStatic(method.getModifiers()) &&
                 !IGNORE_METHODS.contains(method.getName()) &&
                 !isIgnoredType(method.getReturnType()) &&
@@ -212,7 +231,7 @@ public class BeanExtractor implements Extractor {
                 addAttributes(attrs, method);
             }
         }
-        return attrs;
+        return Collections.unmodifiableList(attrs);
     }
 
     private boolean hasAnnotation(Method method, String annotation) {
@@ -247,43 +266,68 @@ public class BeanExtractor implements Extractor {
     private Object extractBeanPropertyValue(Object pValue, String pAttribute, ValueFaultHandler pFaultHandler)
             throws AttributeNotFoundException {
         Class clazz = pValue.getClass();
+        BeanMetaData metaData = getMetaData(clazz);
+        Method method = metaData.getGetter(pAttribute);
+        if (method == null) {
+            method = lookupGetter(clazz, pAttribute);
+            if (method == null) {
+                return pFaultHandler.handleException(new AttributeNotFoundException(
+                        "No getter known for attribute " + pAttribute + " for class " + pValue.getClass().getName()));
+            }
+            method.setAccessible(true);
+            metaData.putGetter(pAttribute, method);
+        }
+        try {
+            return method.invoke(pValue);
+        } catch (IllegalAccessException e) {
+            return pFaultHandler.handleException(new IllegalStateException("Error while extracting " + pAttribute
+                    + " from " + pValue,e));
+        } catch (InvocationTargetException e) {
+            return pFaultHandler.handleException(new IllegalStateException("Error while extracting " + pAttribute
+                    + " from " + pValue,e));
+        }
+    }
 
-        Method method = null;
-
+    // Find the getter for an attribute, null if there is none
+    private Method lookupGetter(Class pClass, String pAttribute) {
         String suffix = new StringBuilder(pAttribute.substring(0,1).toUpperCase()).append(pAttribute.substring(1)).toString();
         for (String pref : GETTER_PREFIX) {
             try {
                 String methodName = new StringBuilder(pref).append(suffix).toString();
-                method = clazz.getMethod(methodName);
+                return pClass.getMethod(methodName);
             } catch (NoSuchMethodException e) {
                 // Try next one
-                continue;
             }
-            // We found a valid method
-            break;
         }
         // Finally, try the attribute name directly
-        if (method == null) {
-            try {
-                method = clazz.getMethod(new StringBuilder(pAttribute.substring(0,1).toLowerCase())
-                        .append(pAttribute.substring(1)).toString());
-            } catch (NoSuchMethodException exp) {
-                method = null;
-            }
+        try {
+            return pClass.getMethod(new StringBuilder(pAttribute.substring(0,1).toLowerCase())
+                    .append(pAttribute.substring(1)).toString());
+        } catch (NoSuchMethodException exp) {
+            return null;
         }
-        if (method == null) {
-            return pFaultHandler.handleException(new AttributeNotFoundException(
-                    "No getter known for attribute " + pAttribute + " for class " + pValue.getClass().getName()));
+    }
+
+    // Reflection information about a bean class: its attributes and the getters already looked up
+    private static final class BeanMetaData {
+
+        private final List<String> attributes;
+        private final ConcurrentMap<String, Method> getters = new ConcurrentHashMap<String, Method>();
+
+        private BeanMetaData(List<String> pAttributes) {
+            attributes = pAttributes;
         }
-        try {
-            method.setAccessible(true);
-            return method.invoke(pValue);
-        } catch (IllegalAccessException e) {
-            return pFaultHandler.handleException(new IllegalStateException("Error while extracting " + pAttribute
-                    + " from " + pValue,e));
-        } catch (InvocationTargetException e) {
-            return pFaultHandler.handleException(new IllegalStateException("Error while extracting " + pAttribute
-                    + " from " + pValue,e));
+
+        private List<String> getAttributes() {
+            return attributes;
+        }
+
+        private Method getGetter(String pAttribute) {
+            return getters.get(pAttribute);
+        }
+
+        private void putGetter(String pAttribute, Method pMethod) {
+            getters.put(pAttribute, pMethod);
         }
     }
 
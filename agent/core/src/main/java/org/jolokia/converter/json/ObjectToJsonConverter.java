@@ -9,6 +9,7 @@ import javax.management.AttributeNotFoundException;
 import org.jolokia.converter.object.StringToObjectConverter;
 import org.jolokia.util.EscapeUtil;
 import org.jolokia.util.ServiceObjectFactory;
+import org.jolokia.util.WeakClassMap;
 
 /*
  * Copyright 2009-2013 Roland Huss
@@ -45,6 +46,10 @@ public final class ObjectToJsonConverter {
 
     private ArrayExtractor arrayExtractor;
 
+    // Handlers resolved per class, for extracting and for setting values
+    private final WeakClassMap<Extractor> extractorCache = new WeakClassMap<Extractor>();
+    private final WeakClassMap<Extractor> setterCache = new WeakClassMap<Extractor>();
+
     // Thread-Local set in order to prevent infinite recursions
     private ThreadLocal<ObjectSerializationContext> stackContextLocal = new ThreadLocal<ObjectSerializationContext>();
 
@@ -111,6 +116,19 @@ public final class ObjectToJsonConverter {
         return extractObjectWithContext(pValue, extraStack, pOptions, true);
     }
 
+    /**
+     * Convert the return value to a JSON value which is serialized not before it gets written.
+     * Large arrays, collections and tabular data are then written element by element without
+     * keeping their full JSON representation in memory. No path can be applied here.
+     *
+     * @param pValue the value to convert
+     * @param pOptions options used for serialization
+     * @return a JSON value which can be written directly to a writer
+     */
+    public StreamingJsonValue convertToStreamingJson(Object pValue, JsonConvertOptions pOptions) {
+        return new StreamingJsonValue(this, pValue, pOptions);
+    }
+
     /**
      * Set an inner value of a complex object. A given path must point to the attribute/index to set within the outer object.
      *
@@ -267,6 +285,15 @@ public final class ObjectToJsonConverter {
         return ctx.getValueFaultHandler();
     }
 
+    /**
+     * Get the context used for the current serialization
+     *
+     * @return the serialization context
+     */
+    ObjectSerializationContext getSerializationContext() {
+        return stackContextLocal.get();
+    }
+
     /**
      * Clear the context used for counting objects and limits
      */
@@ -296,15 +323,20 @@ public final class ObjectToJsonConverter {
 
     // Get the extractor for a certain class
     private Extractor getExtractor(Class pClazz) {
-        for (Extractor handler : handlers) {
-            if (handler.canSetValue() && handler.getType() != null && handler.getType().isAssignableFrom(pClazz)) {
-                return handler;
+        Extractor ret = setterCache.get(pClazz);
+        if (ret == null) {
+            for (Extractor handler : handlers) {
+                if (handler.canSetValue() && handler.getType() != null && handler.getType().isAssignableFrom(pClazz)) {
+                    setterCache.put(pClazz, handler);
+                    return handler;
+                }
             }
         }
-        return null;
+        return ret;
     }
 
-    private String checkForLimits(Object pValue, ObjectSerializationContext pStackContext) {
+    // Check whether any limit is reached. Returns the string to use instead of the value if so
+    String checkForLimits(Object pValue, ObjectSerializationContext pStackContext) {
         if (pValue != null) {
             if (pStackContext.maxDepthReached()) {
                 // We use its string representation.
@@ -325,10 +357,9 @@ public final class ObjectToJsonConverter {
     private Object callHandler(Object pValue, Stack<String> pPathParts, boolean pJsonify)
             throws AttributeNotFoundException {
         Class pClazz = pValue.getClass();
-        for (Extractor handler : handlers) {
-            if (handler.getType() != null && handler.getType().isAssignableFrom(pClazz)) {
-                return handler.extractObject(this,pValue,pPathParts,pJsonify);
-            }
+        Extractor handler = lookupHandler(pClazz);
+        if (handler != null) {
+            return handler.extractObject(this,pValue,pPathParts,pJsonify);
         }
         throw new IllegalStateException(
                 "Internal error: No handler found for class " + pClazz +
@@ -336,6 +367,21 @@ public final class ObjectToJsonConverter {
     }
 
 
+    // Find the first handler which can deal with the given class. Since the list of handlers
+    // doesn't change, the result is remembered per class.
+    private Extractor lookupHandler(Class pClazz) {
+        Extractor ret = extractorCache.get(pClazz);
+        if (ret == null) {
+            for (Extractor handler : handlers) {
+                if (handler.getType() != null && handler.getType().isAssignableFrom(pClazz)) {
+                    extractorCache.put(pClazz, handler);
+                    return handler;
+                }
+            }
+        }
+        return ret;
+    }
+
     // Used for testing only. Hence final and package local
     ThreadLocal<ObjectSerializationContext> getStackContextLocal() {
         return stackContextLocal;
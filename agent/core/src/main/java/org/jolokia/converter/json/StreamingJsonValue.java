@@ -0,0 +1,217 @@
+package org.jolokia.converter.json;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.util.*;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.openmbean.*;
+
+import org.json.simple.*;
+
+/**
+ * JSON value which is converted not before it gets written. Arrays, collections and
+ * tabular data are written element by element directly to the writer, so that only
+ * the JSON representation of a single element is kept in memory at a time. All other
+ * values are converted by the {@link ObjectToJsonConverter} as usual before they are written.
+ *
+ * The same limits (depth, collection size, number of objects) apply as for a
+ * conversion with {@link ObjectToJsonConverter#convertToJson(Object, List, JsonConvertOptions)}.
+ * Since the output might be already partially written when an error occurs, errors
+ * during the conversion of an element are written as value like it is done for the
+ * <code>ignoreErrors</code> processing parameter.
+ *
+ * The value is converted anew each time it is written. {@link #toString()} returns only a placeholder
+ * so that e.g. logging a response doesn't trigger a conversion.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class StreamingJsonValue implements JSONAware, JSONStreamAware {
+
+    private final ObjectToJsonConverter converter;
+    private final Object value;
+    private final JsonConvertOptions options;
+
+    /**
+     * Constructor, used by {@link ObjectToJsonConverter#convertToStreamingJson(Object, JsonConvertOptions)}
+     *
+     * @param pConverter converter to use for the elements
+     * @param pValue value to write
+     * @param pOptions serialization options
+     */
+    StreamingJsonValue(ObjectToJsonConverter pConverter, Object pValue, JsonConvertOptions pOptions) {
+        converter = pConverter;
+        value = pValue;
+        options = pOptions;
+    }
+
+    /** {@inheritDoc} */
+    public void writeJSONString(Writer pOut) throws IOException {
+        converter.setupContext(options);
+        try {
+            writeValue(value, pOut);
+        } finally {
+            converter.clearContext();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public String toJSONString() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeJSONString(writer);
+        } catch (IOException exp) {
+            throw new IllegalStateException("Cannot write to a string: " + exp, exp);
+        }
+        return writer.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "[streamed " + (value != null ? value.getClass().getName() : "null") + "]";
+    }
+
+    // ==========================================================================================
+
+    private void writeValue(Object pValue, Writer pOut) throws IOException {
+        if (isStreamable(pValue)) {
+            ObjectSerializationContext ctx = converter.getSerializationContext();
+            String limitReached = converter.checkForLimits(pValue, ctx);
+            if (limitReached != null) {
+                JSONValue.writeJSONString(limitReached, pOut);
+                return;
+            }
+            ctx.push(pValue);
+            try {
+                if (pValue instanceof TabularData) {
+                    writeTabularData((TabularData) pValue, pOut);
+                } else if (pValue instanceof Collection) {
+                    writeCollection((Collection) pValue, pOut);
+                } else {
+                    writeArray(pValue, pOut);
+                }
+            } finally {
+                ctx.pop();
+            }
+        } else {
+            JSONValue.writeJSONString(extract(pValue), pOut);
+        }
+    }
+
+    // Only values whose conversion would be done by the array, list, collection or tabular data extractor
+    // and which are not simplified otherwise are written element by element
+    private boolean isStreamable(Object pValue) {
+        if (pValue == null) {
+            return false;
+        }
+        if (pValue.getClass().isArray()) {
+            return true;
+        }
+        if (pValue instanceof TabularData) {
+            // Nested maps for multiple simple keys are still converted as a whole
+            TabularType type = ((TabularData) pValue).getTabularType();
+            return TabularDataExtractor.checkForMxBeanMap(type) || TabularDataExtractor.hasComplexKeys(type) ||
+                   type.getIndexNames().size() == 1;
+        }
+        return pValue instanceof Collection && !(pValue instanceof CompositeData) && !(pValue instanceof Map);
+    }
+
+    private void writeArray(Object pArray, Writer pOut) throws IOException {
+        int length = converter.getCollectionLength(Array.getLength(pArray));
+        pOut.write('[');
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                pOut.write(',');
+            }
+            writeValue(Array.get(pArray, i), pOut);
+        }
+        pOut.write(']');
+    }
+
+    private void writeCollection(Collection pCollection, Writer pOut) throws IOException {
+        int length = converter.getCollectionLength(pCollection.size());
+        Iterator it = pCollection.iterator();
+        pOut.write('[');
+        for (int i = 0; i < length && it.hasNext(); i++) {
+            if (i > 0) {
+                pOut.write(',');
+            }
+            writeValue(it.next(), pOut);
+        }
+        pOut.write(']');
+    }
+
+    // Same layout as created by the TabularDataExtractor
+    private void writeTabularData(TabularData pTd, Writer pOut) throws IOException {
+        TabularType type = pTd.getTabularType();
+        boolean mxBeanMap = TabularDataExtractor.checkForMxBeanMap(type);
+        boolean complexKey = !mxBeanMap && TabularDataExtractor.hasComplexKeys(type);
+        String index = type.getIndexNames().get(0);
+        if (complexKey) {
+            pOut.write("{\"indexNames\":");
+            JSONValue.writeJSONString(type.getIndexNames(), pOut);
+            pOut.write(",\"values\":[");
+        } else {
+            pOut.write('{');
+        }
+        boolean first = true;
+        for (CompositeData row : (Collection<CompositeData>) pTd.values()) {
+            Object key = null;
+            if (!complexKey) {
+                key = mxBeanMap ? row.get("key") : extract(row.get(index));
+                if (key == null) {
+                    continue;
+                }
+            }
+            if (!first) {
+                pOut.write(',');
+            }
+            first = false;
+            if (!complexKey) {
+                pOut.write('"');
+                pOut.write(JSONValue.escape(key.toString()));
+                pOut.write("\":");
+            }
+            writeValue(mxBeanMap ? row.get("value") : row, pOut);
+        }
+        pOut.write(complexKey ? "]}" : "}");
+    }
+
+    // Convert a single value, errors are included as value
+    private Object extract(Object pValue) {
+        try {
+            return converter.extractObject(pValue, new Stack<String>(), true);
+        } catch (ValueFaultHandler.AttributeFilteredException exp) {
+            return null;
+        } catch (AttributeNotFoundException exp) {
+            return handleError(exp);
+        } catch (RuntimeException exp) {
+            return handleError(exp);
+        }
+    }
+
+    private Object handleError(Exception pExp) {
+        try {
+            return ValueFaultHandler.IGNORING_VALUE_FAULT_HANDLER.handleException(pExp);
+        } catch (Exception exp) {
+            throw new IllegalStateException("Internal: Ignoring fault handler has thrown " + exp, exp);
+        }
+    }
+}
@@ -143,7 +143,7 @@ public class TabularDataExtractor implements Extractor {
      * @param pType type of tabular data to convert
      * @return true if this type represents an MXBean map, false otherwise.
      */
-    private boolean checkForMxBeanMap(TabularType pType) {
+    static boolean checkForMxBeanMap(TabularType pType) {
         CompositeType rowType = pType.getRowType();
         return rowType.containsKey("key") && rowType.containsKey("value") && rowType.keySet().size() == 2
                // Only convert to map for simple types for all others use normal conversion. See #105 for details.
@@ -161,7 +161,7 @@ public class TabularDataExtractor implements Extractor {
     }
 
     // Check, whether all keys are simple types or not
-    private boolean hasComplexKeys(TabularType pType) {
+    static boolean hasComplexKeys(TabularType pType) {
         List<String> indexes = pType.getIndexNames();
         CompositeType rowType = pType.getRowType();
         for (String index : indexes) {
@@ -25,6 +25,7 @@ import javax.management.*;
 import javax.management.openmbean.OpenMBeanParameterInfo;
 import javax.management.openmbean.OpenType;
 
+import org.jolokia.backend.executor.MBeanInfoCache;
 import org.jolokia.converter.*;
 import org.jolokia.request.*;
 import org.jolokia.restrictor.Restrictor;
@@ -47,7 +48,17 @@ public class ExecHandler extends JsonRequestHandler<JmxExecRequest> {
      * @param pConverters converters for serialization
      */
     public ExecHandler(Restrictor pRestrictor, Converters pConverters) {
-        super(pRestrictor);
+        this(pRestrictor, pConverters, null);
+    }
+
+    /**
+     * Constructor
+     * @param pRestrictor restrictor for checking access restrictions
+     * @param pConverters converters for serialization
+     * @param pMBeanInfoCache cache for MBean meta data or null if no caching should be done
+     */
+    public ExecHandler(Restrictor pRestrictor, Converters pConverters, MBeanInfoCache pMBeanInfoCache) {
+        super(pRestrictor, pMBeanInfoCache);
         converters = pConverters;
     }
 
@@ -164,7 +175,7 @@ public class ExecHandler extends JsonRequestHandler<JmxExecRequest> {
                                                                   String pOperation)
             throws InstanceNotFoundException, ReflectionException, IOException {
         try {
-            MBeanInfo mBeanInfo = pServer.getMBeanInfo(pRequest.getObjectName());
+            MBeanInfo mBeanInfo = getMBeanInfo(pServer, pRequest.getObjectName());
             List<MBeanParameterInfo[]> paramInfos = new ArrayList<MBeanParameterInfo[]>();
             for (MBeanOperationInfo opInfo : mBeanInfo.getOperations()) {
                 if (opInfo.getName().equals(pOperation)) {
@@ -0,0 +1,101 @@
+package org.jolokia.handler;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServerConnection;
+
+import org.jolokia.backend.executor.MBeanServerExecutor;
+import org.jolokia.history.HistoryKey;
+import org.jolokia.history.HistoryStore;
+import org.jolokia.request.JmxHistoryRequest;
+import org.jolokia.restrictor.Restrictor;
+import org.jolokia.util.RequestType;
+
+/**
+ * Handler for exporting the recorded history of multiple attributes and operations at once. The
+ * history is taken from the {@link HistoryStore} only, so no MBeanServer is contacted. Histories
+ * of attributes or operations which are not accessible according to the policy are left out.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class HistoryHandler extends JsonRequestHandler<JmxHistoryRequest> {
+
+    private final HistoryStore historyStore;
+
+    /**
+     * Create a history handler
+     *
+     * @param pRestrictor access restriction to apply
+     * @param pHistoryStore store holding the history to export
+     */
+    public HistoryHandler(Restrictor pRestrictor, HistoryStore pHistoryStore) {
+        super(pRestrictor);
+        historyStore = pHistoryStore;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RequestType getType() {
+        return RequestType.HISTORY;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void checkForRestriction(JmxHistoryRequest pRequest) {
+        checkType();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean handleAllServersAtOnce(JmxHistoryRequest pRequest) {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object doHandleRequest(MBeanServerExecutor serverManager, JmxHistoryRequest request) {
+        // The history is exported lazily, possibly after the response has been started, so invalid
+        // parameters must be detected up front
+        historyStore.checkHistoryParameters(request);
+        List<HistoryKey> keys = new ArrayList<HistoryKey>();
+        for (HistoryKey key : historyStore.getHistoryKeys(request.getObjectName(), request.getAttributeName())) {
+            if (isAllowed(key)) {
+                keys.add(key);
+            }
+        }
+        return historyStore.exportHistory(keys, request);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    // Wont be called
+    protected Object doHandleRequest(MBeanServerConnection server, JmxHistoryRequest request) {
+        throw new UnsupportedOperationException("Internal: Method must not be called when all MBeanServers are handled at once");
+    }
+
+    // The history of a key is only exported if the value itself could be read
+    private boolean isAllowed(HistoryKey pKey) {
+        Restrictor restrictor = getRestrictor();
+        return "operation".equals(pKey.getType()) ?
+                restrictor.isOperationAllowed(pKey.getMBean(), pKey.getSecondary()) :
+                restrictor.isAttributeReadAllowed(pKey.getMBean(), pKey.getSecondary());
+    }
+}
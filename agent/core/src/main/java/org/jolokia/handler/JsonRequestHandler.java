@@ -4,6 +4,7 @@ import java.io.IOException;
 
 import javax.management.*;
 
+import org.jolokia.backend.executor.MBeanInfoCache;
 import org.jolokia.backend.executor.MBeanServerExecutor;
 import org.jolokia.backend.executor.NotChangedException;
 import org.jolokia.config.ConfigKey;
@@ -38,8 +39,16 @@ public abstract class JsonRequestHandler<R extends JmxRequest> {
 
     private final Restrictor restrictor;
 
+    // Cache for MBeanInfos, null if MBeanInfos should not be cached
+    private final MBeanInfoCache mBeanInfoCache;
+
     protected JsonRequestHandler(Restrictor pRestrictor) {
+        this(pRestrictor, null);
+    }
+
+    protected JsonRequestHandler(Restrictor pRestrictor, MBeanInfoCache pMBeanInfoCache) {
         restrictor = pRestrictor;
+        mBeanInfoCache = pMBeanInfoCache;
     }
 
 
@@ -198,6 +207,25 @@ public abstract class JsonRequestHandler<R extends JmxRequest> {
         return restrictor;
     }
 
+    /**
+     * Get the meta data of an MBean, using the MBeanInfo cache if one is configured for
+     * this handler.
+     *
+     * @param pConn server holding the MBean
+     * @param pName name of the MBean
+     * @return the MBean's meta data
+     * @throws InstanceNotFoundException if the MBean is not registered at the given server
+     * @throws IntrospectionException if the MBean's meta data cannot be obtained
+     * @throws ReflectionException if the MBean's meta data cannot be obtained
+     * @throws IOException for a remote connection
+     */
+    protected MBeanInfo getMBeanInfo(MBeanServerConnection pConn, ObjectName pName)
+            throws InstanceNotFoundException, IntrospectionException, ReflectionException, IOException {
+        return mBeanInfoCache != null ?
+                mBeanInfoCache.getMBeanInfo(pConn, pName) :
+                pConn.getMBeanInfo(pName);
+    }
+
     /**
      * Check, whether the set of MBeans for any managed MBeanServer has been change since the timestamp
      * provided in the given request
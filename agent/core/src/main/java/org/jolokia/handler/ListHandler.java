@@ -6,6 +6,7 @@ import java.util.Stack;
 
 import javax.management.*;
 
+import org.jolokia.backend.executor.MBeanInfoCache;
 import org.jolokia.backend.executor.MBeanServerExecutor;
 import org.jolokia.backend.executor.NotChangedException;
 import org.jolokia.config.ConfigKey;
@@ -53,7 +54,17 @@ public class ListHandler extends JsonRequestHandler<JmxListRequest> {
      * @param pRestrictor restrictor to apply
      */
     public ListHandler(Restrictor pRestrictor) {
-        super(pRestrictor);
+        this(pRestrictor, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param pRestrictor restrictor to apply
+     * @param pMBeanInfoCache cache for MBean meta data or null if no caching should be done
+     */
+    public ListHandler(Restrictor pRestrictor, MBeanInfoCache pMBeanInfoCache) {
+        super(pRestrictor, pMBeanInfoCache);
     }
 
     /**
@@ -151,7 +162,7 @@ public class ListHandler extends JsonRequestHandler<JmxListRequest> {
     }
 
     // Class for handling list queries
-    private static class ListMBeanEachAction implements MBeanServerExecutor.MBeanEachCallback, MBeanServerExecutor.MBeanAction<Void> {
+    private class ListMBeanEachAction implements MBeanServerExecutor.MBeanEachCallback, MBeanServerExecutor.MBeanAction<Void> {
 
         // Meta data which will get collected
         private final MBeanInfoData infoMap;
@@ -204,7 +215,7 @@ public class ListHandler extends JsonRequestHandler<JmxListRequest> {
         private void lookupMBeanInfo(MBeanServerConnection pConn, ObjectName pName) throws InstanceNotFoundException, ReflectionException, IOException {
             if (!infoMap.handleFirstOrSecondLevel(pName)) {
                 try {
-                    MBeanInfo mBeanInfo = pConn.getMBeanInfo(pName);
+                    MBeanInfo mBeanInfo = getMBeanInfo(pConn, pName);
                     infoMap.addMBeanInfo(mBeanInfo, pName);
                 } catch (IOException exp) {
                     infoMap.handleException(pName, exp);
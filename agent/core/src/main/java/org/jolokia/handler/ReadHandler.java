@@ -5,6 +5,8 @@ import java.util.*;
 
 import javax.management.*;
 
+import org.jolokia.backend.executor.MBeanCallTimeoutException;
+import org.jolokia.backend.executor.MBeanInfoCache;
 import org.jolokia.backend.executor.MBeanServerExecutor;
 import org.jolokia.converter.json.ValueFaultHandler;
 import org.jolokia.request.JmxReadRequest;
@@ -37,13 +39,13 @@ import org.jolokia.util.RequestType;
 public class ReadHandler extends JsonRequestHandler<JmxReadRequest> {
 
     // MBean Handler used for extracting MBean Meta data
-    private static final MBeanServerExecutor.MBeanAction<MBeanInfo> MBEAN_INFO_HANDLER =
+    private final MBeanServerExecutor.MBeanAction<MBeanInfo> mBeanInfoHandler =
             new MBeanServerExecutor.MBeanAction<MBeanInfo>() {
                 /** {@inheritDoc} */
                 public MBeanInfo execute(MBeanServerConnection pConn, ObjectName pName, Object... extraArgs)
                         throws ReflectionException, InstanceNotFoundException, IOException {
                     try {
-                        return pConn.getMBeanInfo(pName);
+                        return ReadHandler.this.getMBeanInfo(pConn, pName);
                     } catch (IntrospectionException e) {
                         throw new IllegalArgumentException("Cannot inspect " + pName + ": " + e, e);
                     }
@@ -61,13 +63,33 @@ public class ReadHandler extends JsonRequestHandler<JmxReadRequest> {
                 }
             };
 
+    // MBean Handler for getting multiple attributes at once
+    private static final MBeanServerExecutor.MBeanAction<AttributeList> MBEAN_ATTRIBUTES_READ_HANDLER =
+            new MBeanServerExecutor.MBeanAction<AttributeList>() {
+                /** {@inheritDoc} */
+                public AttributeList execute(MBeanServerConnection pConn, ObjectName pName, Object... extraArgs)
+                        throws ReflectionException, InstanceNotFoundException, IOException {
+                    return pConn.getAttributes(pName, (String[]) extraArgs[0]);
+                }
+            };
+
     /**
      * Read handler constructor
      *
      * @param pRestrictor access restriction to apply
      */
     public ReadHandler(Restrictor pRestrictor) {
-        super(pRestrictor);
+        this(pRestrictor, null);
+    }
+
+    /**
+     * Read handler constructor
+     *
+     * @param pRestrictor access restriction to apply
+     * @param pMBeanInfoCache cache for MBean meta data or null if no caching should be done
+     */
+    public ReadHandler(Restrictor pRestrictor, MBeanInfoCache pMBeanInfoCache) {
+        super(pRestrictor, pMBeanInfoCache);
     }
 
     @Override
@@ -145,6 +167,10 @@ public class ReadHandler extends JsonRequestHandler<JmxReadRequest> {
                 // Since MBean can be registered/deregistered dynamically, it can happen here, that
                 // an MBean has been already unregistered in the meantime. We simply ignore an InstanceNotFoundException
                 // here and go on ....
+            } catch (MBeanCallTimeoutException exp) {
+                // The meta data of this MBean couldn't be fetched in time. Like for a single attribute, the fault
+                // handler decides whether to fail or to use a replacement value for this MBean
+                ret.put(pRequest.getOrderedObjectName(name), faultHandler.handleException(exp));
             }
         }
         if (ret.size() == 0) {
@@ -183,9 +209,25 @@ public class ReadHandler extends JsonRequestHandler<JmxReadRequest> {
         List<String> attributes = resolveAttributes(pServerManager, pMBeanName, pAttributeNames);
         Map<String,Object> ret = new HashMap<String, Object>();
 
+        List<String> allowed = new ArrayList<String>();
         for (String attribute : attributes) {
             try {
                 checkRestriction(pMBeanName, attribute);
+                allowed.add(attribute);
+            } catch (SecurityException e) {
+                ret.put(attribute, pFaultHandler.handleException(e));
+            }
+        }
+
+        // Fetch all values at once and read single attributes only for those which could not be fetched
+        // in the bulk call, so that the fault handler gets to see the proper exception
+        Map<String,Object> values = getAttributes(pServerManager, pMBeanName, allowed);
+        for (String attribute : allowed) {
+            if (values.containsKey(attribute)) {
+                ret.put(attribute, values.get(attribute));
+                continue;
+            }
+            try {
                 ret.put(attribute,getAttribute(pServerManager, pMBeanName, attribute));
             } catch (MBeanException e) {
                 // The fault handler might to decide to rethrow the
@@ -226,7 +268,34 @@ public class ReadHandler extends JsonRequestHandler<JmxReadRequest> {
     // Get the MBeanInfo from one of the provided MBeanServers
     private MBeanInfo getMBeanInfo(MBeanServerExecutor pServerManager, ObjectName pObjectName)
             throws IOException, ReflectionException, MBeanException, AttributeNotFoundException, InstanceNotFoundException {
-        return pServerManager.call(pObjectName, MBEAN_INFO_HANDLER);
+        return pServerManager.call(pObjectName, mBeanInfoHandler);
+    }
+
+    // Fetch multiple attributes with a single call. Attributes which can't be read are missing in the returned map.
+    // If the bulk call fails as a whole, an empty map is returned so that all attributes are read one by one.
+    private Map<String,Object> getAttributes(MBeanServerExecutor pServerManager, ObjectName pMBeanName, List<String> pAttributes)
+            throws InstanceNotFoundException {
+        Map<String,Object> ret = new HashMap<String, Object>();
+        if (pAttributes.size() < 2) {
+            return ret;
+        }
+        try {
+            AttributeList values =
+                    pServerManager.call(pMBeanName, MBEAN_ATTRIBUTES_READ_HANDLER, (Object) pAttributes.toArray(new String[pAttributes.size()]));
+            for (Object value : values) {
+                Attribute attribute = (Attribute) value;
+                ret.put(attribute.getName(), attribute.getValue());
+            }
+        } catch (InstanceNotFoundException e) {
+            throw e;
+        } catch (JMException e) {
+            ret.clear();
+        } catch (IOException e) {
+            ret.clear();
+        } catch (RuntimeException e) {
+            ret.clear();
+        }
+        return ret;
     }
 
     // Try multiple servers for fetching an attribute
@@ -16,9 +16,10 @@ package org.jolokia.handler;
  * limitations under the License.
  */
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.jolokia.backend.executor.MBeanInfoCache;
 import org.jolokia.config.Configuration;
 import org.jolokia.converter.Converters;
 import org.jolokia.detector.ServerHandle;
@@ -35,7 +36,7 @@ import org.jolokia.util.RequestType;
 public class RequestHandlerManager {
 
     // Map with all json request handlers
-    private final Map<RequestType, JsonRequestHandler> requestHandlerMap = new HashMap<RequestType, JsonRequestHandler>();
+    private final Map<RequestType, JsonRequestHandler> requestHandlerMap = new ConcurrentHashMap<RequestType, JsonRequestHandler>();
 
     /**
      * Manager and dispatcher for incoming requests
@@ -46,11 +47,25 @@ public class RequestHandlerManager {
      * @param pRestrictor handler for access restrictions
      */
     public RequestHandlerManager(Configuration pConfig, Converters pConverters, ServerHandle pServerHandle, Restrictor pRestrictor) {
+        this(pConfig, pConverters, pServerHandle, pRestrictor, null);
+    }
+
+    /**
+     * Manager and dispatcher for incoming requests
+     *
+     * @param pConfig configuration from which to obtain agent meta information
+     * @param pConverters string/object converters
+     * @param pServerHandle server handle for obtaining MBeanServer
+     * @param pRestrictor handler for access restrictions
+     * @param pMBeanInfoCache cache for MBean meta data shared by all handlers or null if no caching should be done
+     */
+    public RequestHandlerManager(Configuration pConfig, Converters pConverters, ServerHandle pServerHandle, Restrictor pRestrictor,
+                                 MBeanInfoCache pMBeanInfoCache) {
         JsonRequestHandler handlers[] = {
-                new ReadHandler(pRestrictor),
-                new WriteHandler(pRestrictor, pConverters),
-                new ExecHandler(pRestrictor, pConverters),
-                new ListHandler(pRestrictor),
+                new ReadHandler(pRestrictor, pMBeanInfoCache),
+                new WriteHandler(pRestrictor, pConverters, pMBeanInfoCache),
+                new ExecHandler(pRestrictor, pConverters, pMBeanInfoCache),
+                new ListHandler(pRestrictor, pMBeanInfoCache),
                 new VersionHandler(pConfig,pRestrictor, pServerHandle),
                 new SearchHandler(pRestrictor)
         };
@@ -70,6 +85,16 @@ public class RequestHandlerManager {
         this(null,pConverters,pServerHandle,pRestrictor);
     }
 
+    /**
+     * Add a handler which can only be created after this manager, e.g. because it depends on
+     * stores created later on. An already registered handler for the same type is replaced.
+     *
+     * @param pHandler handler to add
+     */
+    public void addRequestHandler(JsonRequestHandler pHandler) {
+        requestHandlerMap.put(pHandler.getType(), pHandler);
+    }
+
     /**
      * Get the request handler for the given type
      *
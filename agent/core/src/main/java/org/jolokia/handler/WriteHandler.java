@@ -7,6 +7,7 @@ import java.util.List;
 import javax.management.*;
 import javax.management.openmbean.OpenMBeanAttributeInfo;
 
+import org.jolokia.backend.executor.MBeanInfoCache;
 import org.jolokia.converter.Converters;
 import org.jolokia.request.JmxWriteRequest;
 import org.jolokia.restrictor.Restrictor;
@@ -46,7 +47,18 @@ public class WriteHandler extends JsonRequestHandler<JmxWriteRequest> {
      * @param pConverters converters used for serialization
      */
     public WriteHandler(Restrictor pRestrictor, Converters pConverters) {
-        super(pRestrictor);
+        this(pRestrictor, pConverters, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param pRestrictor access restriction to apply
+     * @param pConverters converters used for serialization
+     * @param pMBeanInfoCache cache for MBean meta data or null if no caching should be done
+     */
+    public WriteHandler(Restrictor pRestrictor, Converters pConverters, MBeanInfoCache pMBeanInfoCache) {
+        super(pRestrictor, pMBeanInfoCache);
         converters = pConverters;
     }
 
@@ -92,7 +104,7 @@ public class WriteHandler extends JsonRequestHandler<JmxWriteRequest> {
         // Old value, will throw an exception if attribute is not known. That's good.
         Object oldValue = server.getAttribute(request.getObjectName(), request.getAttributeName());
 
-        MBeanInfo mInfo = server.getMBeanInfo(request.getObjectName());
+        MBeanInfo mInfo = getMBeanInfo(server, request.getObjectName());
         MBeanAttributeInfo aInfo = null;
         
         for (MBeanAttributeInfo i : mInfo.getAttributes()) {
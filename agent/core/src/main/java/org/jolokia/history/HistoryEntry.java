@@ -4,6 +4,7 @@ import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.Serializable;
 
 /*
@@ -29,6 +30,19 @@ import java.io.Serializable;
  * is keyed with the attribute/operation which was called. It has a maximum  number of values
  * which are stored and truncates the oldest one if more values are added.
  *
+ * Numeric values are kept as primitives in a {@link NumericHistoryBuffer} as long as all values
+ * added are of the same numeric kind and a maximum number of entries is set. Otherwise the values
+ * are stored as {@link ValueEntry} objects.
+ *
+ * If configured in the limit, numeric values are also aggregated per minute and per hour in
+ * {@link HistoryRollup}s.
+ *
+ * If the entry is backed by a {@link HistoryFile}, its limit, its numeric values and its rollups are mirrored
+ * to the file. Values which are not numeric are not persisted.
+ *
+ * The memory used by an entry is estimated whenever it changes, so that the {@link HistoryStore} can keep
+ * track of the memory used in total without having to inspect all entries.
+ *
  * @author roland
  * @since Jun 12, 2009
  */
@@ -36,11 +50,53 @@ class HistoryEntry implements Serializable {
 
     private static final long serialVersionUID = 42L;
 
+    // Keys used in JSON representation
+    private static final String KEY_VALUE = "value";
+    private static final String KEY_TIMESTAMP = "timestamp";
+    private static final String KEY_VALUES = "values";
+    private static final String KEY_TIMESTAMPS = "timestamps";
+
+    // Resolutions of the rollups in seconds
+    static final long MINUTE = 60L;
+    static final long HOUR = 3600L;
 
+    // Generic values, null if values are stored in the numeric buffer
     @SuppressWarnings("PMD.LooseCoupling")
     private LinkedList<ValueEntry> values;
+
+    // Numeric values, only set as long as all values are numbers of the same kind
+    private NumericHistoryBuffer numericValues;
+
     private HistoryLimit limit;
 
+    // Whether the entry has been configured explicitly and not for a pattern
+    private boolean configured;
+
+    // Aggregated values, null if not configured
+    private HistoryRollup minuteRollup;
+    private HistoryRollup hourRollup;
+
+    // Estimated memory used by the whole entry and by the generic values only
+    private long size;
+    private long valuesSize;
+
+    // Estimated memory of the parts of an entry in bytes: The entry itself along with its key, limit and
+    // the store's map node, a single generic value without the value itself, a single numeric value,
+    // a numeric buffer without values, and a single rollup bucket
+    private static final long ENTRY_OVERHEAD = 256L;
+    private static final long VALUE_OVERHEAD = 48L;
+    private static final long NUMERIC_VALUE = 16L;
+    private static final long NUMERIC_OVERHEAD = 64L;
+    private static final long ROLLUP_BUCKET = 48L;
+
+    // Counter for the estimated memory of all entries of a store, the own size is added to it
+    private transient AtomicLong totalSize;
+
+    // Persistence, only set if this entry is backed by a file
+    private transient HistoryFile file;
+    private transient HistoryKey key;
+    private transient HistoryFile.Slot slot;
+
     /**
      * Constructor
      *
@@ -49,6 +105,136 @@ class HistoryEntry implements Serializable {
     HistoryEntry(HistoryLimit pLimit) {
         limit = pLimit;
         values = new LinkedList<ValueEntry>();
+        updateRollups();
+        updateSize();
+    }
+
+    /**
+     * Constructor for an entry with restored numeric values and rollups
+     *
+     * @param pLimit how many values to keep and/or how long
+     * @param pValues restored values, can be null
+     * @param pMinuteRollup restored minute rollup, can be null
+     * @param pHourRollup restored hour rollup, can be null
+     */
+    HistoryEntry(HistoryLimit pLimit, NumericHistoryBuffer pValues, HistoryRollup pMinuteRollup, HistoryRollup pHourRollup) {
+        this(pLimit);
+        if (pValues != null && pValues.size() > 0 && pLimit.getMaxEntries() > 0) {
+            numericValues = pValues;
+            values = null;
+            numericValues.resize(pLimit.getMaxEntries());
+            trim();
+        }
+        if (pMinuteRollup != null && minuteRollup != null) {
+            minuteRollup = pMinuteRollup.withCapacity(minuteRollup.capacity());
+        }
+        if (pHourRollup != null && hourRollup != null) {
+            hourRollup = pHourRollup.withCapacity(hourRollup.capacity());
+        }
+        updateSize();
+    }
+
+    /**
+     * Add the estimated memory used by this entry to the given counter and keep it updated from now on.
+     * The entry is removed from a previously used counter.
+     *
+     * @param pTotalSize counter to update or null if the memory used by this entry should not be tracked anymore
+     */
+    void accountTo(AtomicLong pTotalSize) {
+        if (totalSize != null) {
+            totalSize.addAndGet(-size);
+        }
+        totalSize = pTotalSize;
+        if (totalSize != null) {
+            totalSize.addAndGet(size);
+        }
+    }
+
+    /**
+     * Estimated memory used by this entry
+     *
+     * @return size in bytes
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Timestamp of the most recent value
+     *
+     * @return timestamp or {@link Long#MAX_VALUE} if this entry contains no values
+     */
+    long getLatestTimestamp() {
+        if (numericValues != null) {
+            return numericValues.size() > 0 ? numericValues.getTimestamp(0) : Long.MAX_VALUE;
+        }
+        return values.isEmpty() ? Long.MAX_VALUE : values.getFirst().getTimestamp();
+    }
+
+    /**
+     * Whether this entry has been configured explicitly. Such an entry is kept when the
+     * memory budget is exceeded, only its values are dropped.
+     *
+     * @return true if configured explicitly, false if created for a pattern
+     */
+    boolean isConfigured() {
+        return configured;
+    }
+
+    /**
+     * Mark this entry as configured explicitly or not
+     *
+     * @param pConfigured whether the entry has been configured explicitly
+     */
+    void setConfigured(boolean pConfigured) {
+        if (configured != pConfigured) {
+            configured = pConfigured;
+            updateSlot(false);
+        }
+    }
+
+    /**
+     * Drop all values and aggregates, but keep the limit
+     *
+     * @return true if there was anything to drop
+     */
+    boolean clearValues() {
+        if (getLatestTimestamp() == Long.MAX_VALUE && minuteRollup == null && hourRollup == null) {
+            return false;
+        }
+        values = new LinkedList<ValueEntry>();
+        valuesSize = 0;
+        numericValues = null;
+        // Recreated with the next value
+        minuteRollup = null;
+        hourRollup = null;
+        updateSlot(false);
+        updateSize();
+        return true;
+    }
+
+    /**
+     * Mirror this entry to a history file from now on
+     *
+     * @param pFile file to write to
+     * @param pKey key under which this entry is stored
+     */
+    void persistTo(HistoryFile pFile, HistoryKey pKey) {
+        file = pFile;
+        key = pKey;
+        updateSlot(false);
+    }
+
+    /**
+     * Remove this entry from the history file it is mirrored to
+     */
+    void release() {
+        if (slot != null) {
+            HistoryFile.Slot old = slot;
+            slot = null;
+            file.free(old);
+        }
+        file = null;
     }
 
     /**
@@ -57,16 +243,102 @@ class HistoryEntry implements Serializable {
      * @return array of values
      */
     public JSONArray jsonifyValues() {
+        return jsonifyValues(Long.MIN_VALUE);
+    }
+
+    /**
+     * Get an JSON array with the values (along with their timestamps) which have been
+     * added after a given time
+     *
+     * @param pSince timestamp in seconds, only values with a later timestamp are returned
+     * @return array of values
+     */
+    public JSONArray jsonifyValues(long pSince) {
         JSONArray jValues = new JSONArray();
-        for (ValueEntry vEntry : values) {
-            JSONObject o = new JSONObject();
-            o.put("value",vEntry.getValue());
-            o.put("timestamp",vEntry.getTimestamp());
-            jValues.add(o);
+        if (numericValues != null) {
+            for (int i = 0; i < numericValues.size() && numericValues.getTimestamp(i) > pSince; i++) {
+                jValues.add(jsonifyValue(numericValues.getValue(i), numericValues.getTimestamp(i)));
+            }
+        } else {
+            for (ValueEntry vEntry : values) {
+                if (vEntry.getTimestamp() <= pSince) {
+                    break;
+                }
+                jValues.add(jsonifyValue(vEntry.getValue(), vEntry.getTimestamp()));
+            }
         }
         return jValues;
     }
 
+    /**
+     * Get the values and their timestamps as two JSON arrays of the same length, which are stored
+     * under the keys <code>values</code> and <code>timestamps</code>. Like for {@link #jsonifyValues()},
+     * the most recent value comes first.
+     *
+     * @return object with the parallel arrays of values and timestamps
+     */
+    public JSONObject jsonifyValuesCompact() {
+        return jsonifyValuesCompact(Long.MIN_VALUE);
+    }
+
+    /**
+     * Same as {@link #jsonifyValuesCompact()}, but only for the values added after a given time
+     *
+     * @param pSince timestamp in seconds, only values with a later timestamp are returned
+     * @return object with the parallel arrays of values and timestamps
+     */
+    public JSONObject jsonifyValuesCompact(long pSince) {
+        JSONArray jValues = new JSONArray();
+        JSONArray jTimestamps = new JSONArray();
+        if (numericValues != null) {
+            for (int i = 0; i < numericValues.size() && numericValues.getTimestamp(i) > pSince; i++) {
+                jValues.add(numericValues.getValue(i));
+                jTimestamps.add(numericValues.getTimestamp(i));
+            }
+        } else {
+            for (ValueEntry vEntry : values) {
+                if (vEntry.getTimestamp() <= pSince) {
+                    break;
+                }
+                jValues.add(vEntry.getValue());
+                jTimestamps.add(vEntry.getTimestamp());
+            }
+        }
+        JSONObject ret = new JSONObject();
+        ret.put(KEY_VALUES, jValues);
+        ret.put(KEY_TIMESTAMPS, jTimestamps);
+        return ret;
+    }
+
+    /**
+     * Get the aggregated values for a given resolution, the most recent aggregate first
+     *
+     * @param pResolution either {@link #MINUTE} or {@link #HOUR}
+     * @param pCompact whether to return the aggregates as parallel arrays
+     * @return JSON representation as created by {@link HistoryRollup#jsonify(long)} or {@link HistoryRollup#jsonifyCompact(long)}.
+     *         Without rollups for the given resolution, no aggregates are contained.
+     */
+    public Object jsonifyRollup(long pResolution, boolean pCompact) {
+        return jsonifyRollup(pResolution, pCompact, Long.MIN_VALUE);
+    }
+
+    /**
+     * Get the aggregated values for a given resolution which might have changed after a given time, i.e.
+     * whose interval ends after this time. This includes the aggregate of the current interval.
+     *
+     * @param pResolution either {@link #MINUTE} or {@link #HOUR}
+     * @param pCompact whether to return the aggregates as parallel arrays
+     * @param pSince timestamp in seconds
+     * @return JSON representation of the aggregates
+     */
+    public Object jsonifyRollup(long pResolution, boolean pCompact, long pSince) {
+        HistoryRollup rollup = pResolution == MINUTE ? minuteRollup : pResolution == HOUR ? hourRollup : null;
+        if (rollup == null) {
+            // Empty, but in the same layout
+            rollup = new HistoryRollup(pResolution, 1);
+        }
+        return pCompact ? rollup.jsonifyCompact(pSince) : rollup.jsonify(pSince);
+    }
 
     /**
      * Set the limit (maximum number, maximum duration) for entries and truncate if necessary
@@ -75,7 +347,17 @@ class HistoryEntry implements Serializable {
      */
     public void setLimit(HistoryLimit pLimit) {
         limit = pLimit;
+        updateRollups();
+        if (numericValues != null) {
+            if (limit.getMaxEntries() > 0) {
+                numericValues.resize(limit.getMaxEntries());
+            } else {
+                switchToGenericValues();
+            }
+        }
         trim();
+        updateSlot(false);
+        updateSize();
     }
 
     /**
@@ -84,7 +366,7 @@ class HistoryEntry implements Serializable {
      * @param pMaxEntries maximum number of values to keep
      */
     public void setMaxEntries(int pMaxEntries) {
-        setLimit(new HistoryLimit(pMaxEntries,limit.getMaxDuration()));
+        setLimit(new HistoryLimit(pMaxEntries,limit.getMaxDuration(),limit.getMinuteRollups(),limit.getHourRollups()));
     }
 
     /**
@@ -94,16 +376,114 @@ class HistoryEntry implements Serializable {
      * @param pTime timestamp in milliseconds
      */
     public void add(Object pObject, long pTime) {
-        values.addFirst(new ValueEntry(pObject,pTime));
+        // Rollups dropped by clearValues() are recreated, so the whole entry needs to be written
+        boolean rollupsCreated = false;
+        if (minuteRollup == null && hourRollup == null) {
+            updateRollups();
+            rollupsCreated = minuteRollup != null || hourRollup != null;
+        }
+        if (numericValues == null && values.isEmpty() && limit.getMaxEntries() > 0) {
+            numericValues = NumericHistoryBuffer.createFor(pObject, limit.getMaxEntries());
+            if (numericValues != null) {
+                values = null;
+            }
+        }
+        if (numericValues != null && !numericValues.add(pObject, pTime)) {
+            switchToGenericValues();
+        }
+        if (values != null) {
+            values.addFirst(new ValueEntry(pObject,pTime));
+            valuesSize += estimate(pObject);
+        }
         trim();
+        if (pObject instanceof Number) {
+            double value = ((Number) pObject).doubleValue();
+            if (minuteRollup != null) {
+                minuteRollup.add(pTime, value);
+            }
+            if (hourRollup != null) {
+                hourRollup.add(pTime, value);
+            }
+        }
+        updateSlot(!rollupsCreated);
+        updateSize();
+    }
+
+    // Estimate the memory used by this entry and update the counter with the difference
+    private void updateSize() {
+        long newSize = ENTRY_OVERHEAD;
+        if (numericValues != null) {
+            newSize += NUMERIC_OVERHEAD + NUMERIC_VALUE * numericValues.capacity();
+        } else {
+            newSize += valuesSize;
+        }
+        if (minuteRollup != null) {
+            newSize += ROLLUP_BUCKET * minuteRollup.capacity();
+        }
+        if (hourRollup != null) {
+            newSize += ROLLUP_BUCKET * hourRollup.capacity();
+        }
+        if (totalSize != null) {
+            totalSize.addAndGet(newSize - size);
+        }
+        size = newSize;
+    }
+
+    private long estimate(Object pValue) {
+        return VALUE_OVERHEAD + SizeEstimator.estimate(pValue);
+    }
+
+    private void removeLastValue() {
+        valuesSize -= estimate(values.removeLast().getValue());
+    }
+
+    // Create, resize or drop the rollups according to the limit
+    private void updateRollups() {
+        minuteRollup = adaptRollup(minuteRollup, MINUTE, limit.getMinuteRollups());
+        hourRollup = adaptRollup(hourRollup, HOUR, limit.getHourRollups());
+    }
+
+    private HistoryRollup adaptRollup(HistoryRollup pRollup, long pResolution, int pCapacity) {
+        if (pCapacity <= 0) {
+            return null;
+        }
+        return pRollup != null ? pRollup.withCapacity(pCapacity) : new HistoryRollup(pResolution, pCapacity);
+    }
+
+    // Write the changes to the history file, if any. Either only the most recent
+    // value along with the current rollup buckets or the complete entry is written.
+    private void updateSlot(boolean pOnlyLatest) {
+        if (file == null) {
+            return;
+        }
+        if (slot != null && slot.matches(numericValues)) {
+            if (pOnlyLatest) {
+                if (numericValues != null) {
+                    slot.addLatest(numericValues);
+                }
+                slot.updateRollups(minuteRollup, hourRollup);
+                return;
+            }
+            if (slot.update(key, limit, configured, numericValues, minuteRollup, hourRollup)) {
+                return;
+            }
+        }
+        if (slot != null) {
+            file.free(slot);
+        }
+        slot = file.allocate(key, limit, false, configured, numericValues, minuteRollup, hourRollup);
     }
 
     // Truncate list so that no more than max entries are stored in the list
     private void trim() {
+        if (numericValues != null) {
+            trimNumericValues();
+            return;
+        }
 
         // Trim
         while (values.size() > limit.getMaxEntries()) {
-            values.removeLast();
+            removeLastValue();
         }
 
         // Trim according to duration
@@ -111,16 +491,58 @@ class HistoryEntry implements Serializable {
             long duration = limit.getMaxDuration();
             long start = values.getFirst().getTimestamp();
             while (start - values.getLast().getTimestamp() > duration) {
-                values.removeLast();
+                removeLastValue();
+            }
+        }
+    }
+
+    private void trimNumericValues() {
+        // The number of entries is already limited by the buffer's capacity
+        numericValues.truncate(limit.getMaxEntries());
+        if (limit.getMaxDuration() > 0 && numericValues.size() > 0) {
+            long duration = limit.getMaxDuration();
+            long start = numericValues.getTimestamp(0);
+            int keep = numericValues.size();
+            while (start - numericValues.getTimestamp(keep - 1) > duration) {
+                keep--;
             }
+            numericValues.truncate(keep);
         }
+        if (slot != null) {
+            slot.setSize(numericValues.size());
+        }
+    }
+
+    // Move the numeric values over to the generic representation
+    private void switchToGenericValues() {
+        values = new LinkedList<ValueEntry>();
+        valuesSize = 0;
+        for (int i = 0; i < numericValues.size(); i++) {
+            Object value = numericValues.getValue(i);
+            values.addLast(new ValueEntry(value, numericValues.getTimestamp(i)));
+            valuesSize += estimate(value);
+        }
+        numericValues = null;
+    }
+
+    private JSONObject jsonifyValue(Object pValue, long pTimestamp) {
+        JSONObject o = new JSONObject();
+        o.put(KEY_VALUE,pValue);
+        o.put(KEY_TIMESTAMP,pTimestamp);
+        return o;
     }
 
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
         sb.append("HistoryEntry");
-        sb.append("{values=").append(values);
+        sb.append("{values=").append(numericValues != null ? numericValues : values);
+        if (minuteRollup != null) {
+            sb.append(", minuteRollup=").append(minuteRollup);
+        }
+        if (hourRollup != null) {
+            sb.append(", hourRollup=").append(hourRollup);
+        }
         sb.append(", limit=").append(limit);
         sb.append('}');
         return sb.toString();
@@ -0,0 +1,572 @@
+package org.jolokia.history;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.*;
+
+/**
+ * Memory mapped file holding the configuration and the numeric values of a {@link HistoryStore}, so that
+ * they survive a restart of the agent. The file consists of records, one for each history entry and for each
+ * configured pattern. A record contains the serialized {@link HistoryKey} and {@link HistoryLimit} along with
+ * whether the entry has been configured explicitly, for
+ * numeric entries a copy of the entry's ring buffer and finally the entry's minute and hour {@link HistoryRollup}s.
+ *
+ * Values are written directly into the mapped memory and it is up to the operating system when they reach the
+ * disk. The file is only forced to disk when it is closed. When the file is opened, all records are read in and
+ * the file is rewritten from scratch so that it only occupies the space needed for the current entries. Space of
+ * removed records is reused for new ones. The file is locked while it is open, so that it
+ * cannot be used by two agents at the same time.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+class HistoryFile {
+
+    // File header: magic, version, end of the last record
+    private static final int MAGIC = 0x4A4F4C48;
+    private static final int VERSION = 3;
+    // Files of these versions have no rollups or don't mark configured entries, but are still read
+    private static final int VERSION_WITHOUT_ROLLUPS = 1;
+    private static final int VERSION_WITHOUT_CONFIGURED = 2;
+    private static final int HEADER_SIZE = 12;
+    private static final int END_OFFSET = 8;
+
+    // Minimal size of the mapped region
+    private static final int MIN_MAPPED_SIZE = 64 * 1024;
+
+    // Record header: length, state, capacity, head, size, length of the meta data
+    private static final int RECORD_STATE = 4;
+    private static final int RECORD_CAPACITY = 5;
+    private static final int RECORD_HEAD = 9;
+    private static final int RECORD_SIZE = 13;
+    private static final int RECORD_META_LENGTH = 17;
+    private static final int RECORD_META = 21;
+
+    // States of a record
+    static final byte FREE = 0;
+    static final byte PATTERN = 1;
+    static final byte OBJECT = 2;
+    static final byte LONG = 3;
+    static final byte DOUBLE = 4;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    // Replaced when the file grows. Records only use absolute access, so concurrent
+    // writes to different records don't interfere.
+    private volatile MappedByteBuffer buffer;
+
+    // Offset behind the last record and records which can be reused, guarded by this
+    private int end;
+    private final List<Slot> freeSlots = new ArrayList<Slot>();
+    private boolean closed;
+
+    // Records found when opening the file
+    private final List<Record> restoredRecords;
+
+    /**
+     * Open a history file, reading in all records stored. The file is created if it
+     * doesn't exist. An existing file which is not a history file is overwritten.
+     *
+     * @param pFile file to use
+     * @throws IOException if the file cannot be read or mapped or if it is locked by someone else
+     */
+    HistoryFile(File pFile) throws IOException {
+        file = pFile;
+        raf = new RandomAccessFile(pFile, "rw");
+        try {
+            channel = raf.getChannel();
+            // The lock is released when the file is closed
+            if (tryLock(channel) == null) {
+                throw new IOException("History file " + pFile + " is already in use");
+            }
+            restoredRecords = readRecords();
+            // Start from scratch. The records are written again when the store is restored.
+            channel.truncate(0);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, MIN_MAPPED_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            end = HEADER_SIZE;
+            buffer.putInt(END_OFFSET, end);
+        } catch (IOException exp) {
+            raf.close();
+            throw exp;
+        }
+    }
+
+    /**
+     * Get the records which have been stored in the file when it was opened. The records
+     * are not part of the file anymore and must be allocated again if needed.
+     *
+     * @return restored records
+     */
+    List<Record> getRestoredRecords() {
+        return restoredRecords;
+    }
+
+    /**
+     * Allocate and write a record
+     *
+     * @param pKey key of the entry or pattern
+     * @param pLimit limit to store
+     * @param pPattern whether the record is for a pattern configuration
+     * @param pConfigured whether the entry has been configured explicitly, ignored for patterns
+     * @param pValues numeric values to store or null if the values are not numeric
+     * @param pMinuteRollup minute rollup to store or null
+     * @param pHourRollup hour rollup to store or null
+     * @return the slot of the record or null if the file is closed or cannot be extended
+     */
+    synchronized Slot allocate(HistoryKey pKey, HistoryLimit pLimit, boolean pPattern, boolean pConfigured,
+                               NumericHistoryBuffer pValues, HistoryRollup pMinuteRollup, HistoryRollup pHourRollup) {
+        if (closed) {
+            return null;
+        }
+        byte[] meta = serializeMeta(pKey, pLimit, pPattern || pConfigured);
+        byte state = pPattern ? PATTERN : getState(pValues);
+        int capacity = pValues != null ? pValues.capacity() : 0;
+        int length = recordLength(meta.length, capacity, pMinuteRollup, pHourRollup);
+        Slot slot = takeFreeSlot(length);
+        if (slot == null) {
+            if (!ensureCapacity(end + length)) {
+                return null;
+            }
+            slot = new Slot(end, length);
+            end += length;
+            buffer.putInt(END_OFFSET, end);
+        }
+        slot.init(state, capacity, meta, pValues, pMinuteRollup, pHourRollup);
+        return slot;
+    }
+
+    /**
+     * Mark the record of a slot as free so that its space can be reused
+     *
+     * @param pSlot slot to free
+     */
+    synchronized void free(Slot pSlot) {
+        if (!closed && pSlot.state != FREE) {
+            pSlot.state = FREE;
+            buffer.put(pSlot.offset + RECORD_STATE, FREE);
+            freeSlots.add(pSlot);
+        }
+    }
+
+    /**
+     * Close the file after forcing all changes to disk
+     *
+     * @throws IOException if closing fails
+     */
+    synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                buffer.force();
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryFile{" + file + "}";
+    }
+
+    // Lock the whole file, null if it is locked by another process or within this JVM
+    private static FileLock tryLock(FileChannel pChannel) throws IOException {
+        try {
+            return pChannel.tryLock();
+        } catch (OverlappingFileLockException exp) {
+            return null;
+        }
+    }
+
+    /**
+     * State to use for storing the given values
+     *
+     * @param pValues numeric values or null
+     * @return the state of the record
+     */
+    static byte getState(NumericHistoryBuffer pValues) {
+        if (pValues == null) {
+            return OBJECT;
+        }
+        return pValues.isFloating() ? DOUBLE : LONG;
+    }
+
+    // ============================================================================================
+
+    // First fit, the slot keeps its original length
+    private Slot takeFreeSlot(int pLength) {
+        for (Iterator<Slot> it = freeSlots.iterator(); it.hasNext(); ) {
+            Slot slot = it.next();
+            if (slot.length >= pLength) {
+                it.remove();
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    private boolean ensureCapacity(int pSize) {
+        if (pSize <= buffer.capacity()) {
+            return true;
+        }
+        try {
+            long newSize = Math.max((long) buffer.capacity() * 2, pSize);
+            if (newSize > Integer.MAX_VALUE) {
+                return false;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+            return true;
+        } catch (IOException exp) {
+            return false;
+        }
+    }
+
+    private static int recordLength(int pMetaLength, int pCapacity) {
+        return RECORD_META + pMetaLength + 16 * pCapacity;
+    }
+
+    private static int recordLength(int pMetaLength, int pCapacity, HistoryRollup pMinuteRollup, HistoryRollup pHourRollup) {
+        return recordLength(pMetaLength, pCapacity) + rollupLength(pMinuteRollup) + rollupLength(pHourRollup);
+    }
+
+    private static int rollupLength(HistoryRollup pRollup) {
+        return HistoryRollup.persistentLength(pRollup != null ? pRollup.capacity() : 0);
+    }
+
+    private static void writeRollup(ByteBuffer pBuf, int pOffset, HistoryRollup pRollup, boolean pOnlyCurrent) {
+        if (pRollup != null) {
+            pRollup.writeTo(pBuf, pOffset, pOnlyCurrent);
+        } else {
+            HistoryRollup.writeEmptyTo(pBuf, pOffset);
+        }
+    }
+
+    private static byte[] serializeMeta(HistoryKey pKey, HistoryLimit pLimit, boolean pConfigured) {
+        try {
+            ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+            ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+            oOut.writeObject(pKey);
+            oOut.writeObject(pLimit);
+            oOut.writeBoolean(pConfigured);
+            oOut.close();
+            return bOut.toByteArray();
+        } catch (IOException exp) {
+            throw new IllegalStateException("Cannot serialize history key " + pKey + ": " + exp,exp);
+        }
+    }
+
+    // Read all valid records of an existing file
+    private List<Record> readRecords() throws IOException {
+        List<Record> ret = new ArrayList<Record>();
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+            return ret;
+        }
+        ByteBuffer in = ByteBuffer.allocate((int) fileSize);
+        while (in.hasRemaining() && channel.read(in, in.position()) >= 0) {
+            // Read until the buffer is filled
+        }
+        int version = in.getInt(4);
+        if (in.getInt(0) != MAGIC || version < VERSION_WITHOUT_ROLLUPS || version > VERSION) {
+            return ret;
+        }
+        int recordsEnd = Math.min(in.getInt(END_OFFSET), in.capacity());
+        int offset = HEADER_SIZE;
+        while (offset + RECORD_META <= recordsEnd) {
+            int length = in.getInt(offset);
+            if (length < RECORD_META || offset + length > recordsEnd) {
+                // Corrupt record, ignore the rest
+                break;
+            }
+            Record record = readRecord(in, offset, length, version);
+            if (record != null) {
+                ret.add(record);
+            }
+            offset += length;
+        }
+        return ret;
+    }
+
+    private Record readRecord(ByteBuffer pIn, int pOffset, int pLength, int pVersion) {
+        byte state = pIn.get(pOffset + RECORD_STATE);
+        int capacity = pIn.getInt(pOffset + RECORD_CAPACITY);
+        int head = pIn.getInt(pOffset + RECORD_HEAD);
+        int size = pIn.getInt(pOffset + RECORD_SIZE);
+        int metaLength = pIn.getInt(pOffset + RECORD_META_LENGTH);
+        if (state == FREE || state > DOUBLE || metaLength < 0 || capacity < 0 ||
+            recordLength(metaLength, capacity) > pLength ||
+            (capacity > 0 && (head < 0 || head >= capacity || size < 0 || size > capacity))) {
+            return null;
+        }
+        try {
+            byte[] meta = new byte[metaLength];
+            for (int i = 0; i < metaLength; i++) {
+                meta[i] = pIn.get(pOffset + RECORD_META + i);
+            }
+            ObjectInputStream oIn = new ObjectInputStream(new ByteArrayInputStream(meta));
+            HistoryKey key = (HistoryKey) oIn.readObject();
+            HistoryLimit limit = (HistoryLimit) oIn.readObject();
+            // Entries of older files are kept like configured ones
+            boolean configured = pVersion == VERSION_WITHOUT_ROLLUPS || pVersion == VERSION_WITHOUT_CONFIGURED ||
+                                 oIn.readBoolean();
+            NumericHistoryBuffer values = null;
+            int data = pOffset + RECORD_META + metaLength;
+            if ((state == LONG || state == DOUBLE) && capacity > 0) {
+                long[] timestamps = new long[size];
+                long[] rawValues = new long[size];
+                for (int i = 0; i < size; i++) {
+                    int pos = head - i < 0 ? head - i + capacity : head - i;
+                    timestamps[i] = pIn.getLong(data + 8 * pos);
+                    rawValues[i] = pIn.getLong(data + 8 * (capacity + pos));
+                }
+                values = NumericHistoryBuffer.restore(state == DOUBLE, capacity, timestamps, rawValues, size);
+            }
+            HistoryRollup minuteRollup = null;
+            HistoryRollup hourRollup = null;
+            if (pVersion != VERSION_WITHOUT_ROLLUPS) {
+                int rollups = data + 16 * capacity;
+                minuteRollup = readRollup(pIn, rollups, pOffset + pLength, HistoryEntry.MINUTE);
+                rollups += rollupLength(minuteRollup);
+                hourRollup = readRollup(pIn, rollups, pOffset + pLength, HistoryEntry.HOUR);
+            }
+            return new Record(key, limit, state == PATTERN, configured, values, minuteRollup, hourRollup);
+        } catch (IOException exp) {
+            return null;
+        } catch (ClassNotFoundException exp) {
+            return null;
+        } catch (ClassCastException exp) {
+            return null;
+        } catch (IllegalArgumentException exp) {
+            return null;
+        }
+    }
+
+    // Read a rollup, checking that it doesn't exceed the record
+    private HistoryRollup readRollup(ByteBuffer pIn, int pOffset, int pRecordEnd, long pResolution) {
+        if (pOffset + HistoryRollup.persistentLength(0) > pRecordEnd) {
+            throw new IllegalArgumentException("No space for rollup");
+        }
+        int capacity = HistoryRollup.readCapacity(pIn, pOffset);
+        if (capacity < 0 || capacity > HistoryRollup.maxCapacity(pRecordEnd - pOffset)) {
+            throw new IllegalArgumentException("Invalid rollup capacity " + capacity);
+        }
+        return HistoryRollup.readFrom(pIn, pOffset, pResolution);
+    }
+
+    // ============================================================================================
+
+    /**
+     * Location of a record within the file. The values are mirrored from the
+     * entry's {@link NumericHistoryBuffer}, so the record's ring buffer has the same
+     * capacity and advances in the same way. Access must be synchronized by the owner of the slot.
+     */
+    final class Slot {
+
+        private final int offset;
+        private final int length;
+
+        private byte state;
+        private int capacity;
+        private int head;
+        private int dataOffset;
+        private int rollupOffset;
+        private int minuteCapacity;
+        private int hourCapacity;
+
+        private Slot(int pOffset, int pLength) {
+            offset = pOffset;
+            length = pLength;
+        }
+
+        /**
+         * Whether values of the given kind can be written to this slot
+         * with {@link #addLatest(NumericHistoryBuffer)}
+         *
+         * @param pValues values to check
+         * @return true if state and capacity match
+         */
+        boolean matches(NumericHistoryBuffer pValues) {
+            return state == getState(pValues) && capacity == (pValues != null ? pValues.capacity() : 0);
+        }
+
+        /**
+         * Rewrite the whole record
+         *
+         * @param pKey key of the entry
+         * @param pLimit current limit of the entry
+         * @param pConfigured whether the entry has been configured explicitly
+         * @param pValues values to store
+         * @param pMinuteRollup minute rollup to store or null
+         * @param pHourRollup hour rollup to store or null
+         * @return false if the record doesn't fit into this slot anymore
+         */
+        boolean update(HistoryKey pKey, HistoryLimit pLimit, boolean pConfigured, NumericHistoryBuffer pValues,
+                       HistoryRollup pMinuteRollup, HistoryRollup pHourRollup) {
+            byte[] meta = serializeMeta(pKey, pLimit, pConfigured);
+            int capacity = pValues != null ? pValues.capacity() : 0;
+            if (state == FREE || !matches(pValues) ||
+                recordLength(meta.length, capacity, pMinuteRollup, pHourRollup) > length) {
+                return false;
+            }
+            init(state, capacity, meta, pValues, pMinuteRollup, pHourRollup);
+            return true;
+        }
+
+        /**
+         * Write the current buckets of the given rollups, which must have the same
+         * capacities as when the record was written completely
+         *
+         * @param pMinuteRollup minute rollup or null
+         * @param pHourRollup hour rollup or null
+         */
+        void updateRollups(HistoryRollup pMinuteRollup, HistoryRollup pHourRollup) {
+            if (state == FREE) {
+                return;
+            }
+            MappedByteBuffer buf = buffer;
+            if (pMinuteRollup != null && pMinuteRollup.capacity() == minuteCapacity) {
+                pMinuteRollup.writeTo(buf, rollupOffset, true);
+            }
+            if (pHourRollup != null && pHourRollup.capacity() == hourCapacity) {
+                pHourRollup.writeTo(buf, rollupOffset + HistoryRollup.persistentLength(minuteCapacity), true);
+            }
+        }
+
+        /**
+         * Write the most recent value of the given buffer which must have been added just before
+         *
+         * @param pValues values holding the value to write
+         */
+        void addLatest(NumericHistoryBuffer pValues) {
+            if (state == FREE || capacity == 0 || pValues.size() == 0) {
+                return;
+            }
+            MappedByteBuffer buf = buffer;
+            head = (head + 1) % capacity;
+            buf.putLong(dataOffset + 8 * head, pValues.getTimestamp(0));
+            buf.putLong(dataOffset + 8 * (capacity + head), pValues.getRawValue(0));
+            buf.putInt(offset + RECORD_HEAD, head);
+            buf.putInt(offset + RECORD_SIZE, pValues.size());
+        }
+
+        /**
+         * Update the number of values, e.g. after older values have been dropped
+         *
+         * @param pSize new number of values
+         */
+        void setSize(int pSize) {
+            if (state != FREE && capacity > 0) {
+                buffer.putInt(offset + RECORD_SIZE, pSize);
+            }
+        }
+
+        // Write the complete record, the state is written last
+        private void init(byte pState, int pCapacity, byte[] pMeta, NumericHistoryBuffer pValues,
+                          HistoryRollup pMinuteRollup, HistoryRollup pHourRollup) {
+            MappedByteBuffer buf = buffer;
+            capacity = pCapacity;
+            dataOffset = offset + RECORD_META + pMeta.length;
+            rollupOffset = dataOffset + 16 * pCapacity;
+            minuteCapacity = pMinuteRollup != null ? pMinuteRollup.capacity() : 0;
+            hourCapacity = pHourRollup != null ? pHourRollup.capacity() : 0;
+            int size = pValues != null ? pValues.size() : 0;
+            // Values are written with the oldest at index 0
+            head = size > 0 ? size - 1 : pCapacity - 1;
+            buf.putInt(offset, length);
+            buf.put(offset + RECORD_STATE, FREE);
+            buf.putInt(offset + RECORD_CAPACITY, pCapacity);
+            buf.putInt(offset + RECORD_HEAD, Math.max(head, 0));
+            buf.putInt(offset + RECORD_SIZE, size);
+            buf.putInt(offset + RECORD_META_LENGTH, pMeta.length);
+            for (int i = 0; i < pMeta.length; i++) {
+                buf.put(offset + RECORD_META + i, pMeta[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                int pos = size - 1 - i;
+                buf.putLong(dataOffset + 8 * pos, pValues.getTimestamp(i));
+                buf.putLong(dataOffset + 8 * (pCapacity + pos), pValues.getRawValue(i));
+            }
+            writeRollup(buf, rollupOffset, pMinuteRollup, false);
+            writeRollup(buf, rollupOffset + HistoryRollup.persistentLength(minuteCapacity), pHourRollup, false);
+            state = pState;
+            buf.put(offset + RECORD_STATE, pState);
+        }
+    }
+
+    /**
+     * A record read from the file
+     */
+    static final class Record {
+
+        private final HistoryKey key;
+        private final HistoryLimit limit;
+        private final boolean pattern;
+        private final boolean configured;
+        private final NumericHistoryBuffer values;
+        private final HistoryRollup minuteRollup;
+        private final HistoryRollup hourRollup;
+
+        private Record(HistoryKey pKey, HistoryLimit pLimit, boolean pPattern, boolean pConfigured,
+                       NumericHistoryBuffer pValues, HistoryRollup pMinuteRollup, HistoryRollup pHourRollup) {
+            key = pKey;
+            limit = pLimit;
+            pattern = pPattern;
+            configured = pConfigured;
+            values = pValues;
+            minuteRollup = pMinuteRollup;
+            hourRollup = pHourRollup;
+        }
+
+        HistoryKey getKey() {
+            return key;
+        }
+
+        HistoryLimit getLimit() {
+            return limit;
+        }
+
+        boolean isPattern() {
+            return pattern;
+        }
+
+        boolean isConfigured() {
+            return configured;
+        }
+
+        NumericHistoryBuffer getValues() {
+            return values;
+        }
+
+        HistoryRollup getMinuteRollup() {
+            return minuteRollup;
+        }
+
+        HistoryRollup getHourRollup() {
+            return hourRollup;
+        }
+    }
+}
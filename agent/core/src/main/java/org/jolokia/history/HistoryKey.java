@@ -6,6 +6,7 @@ import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 
 import org.jolokia.request.*;
+import org.json.simple.JSONObject;
 
 /*
  * Copyright 2009-2013 Roland Huss
@@ -168,6 +169,70 @@ public class HistoryKey implements Serializable {
         return mBean.apply(pKey.mBean);
     }
 
+    /**
+     * Type of this key, either <code>attribute</code> or <code>operation</code>
+     *
+     * @return key type
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * MBean name of this key
+     *
+     * @return MBean name
+     */
+    public ObjectName getMBean() {
+        return mBean;
+    }
+
+    /**
+     * Attribute or operation name of this key, depending on its type
+     *
+     * @return attribute or operation name
+     */
+    public String getSecondary() {
+        return secondary;
+    }
+
+    /**
+     * JSON representation of this key as used when the history is exported. It contains the MBean name,
+     * the attribute or operation name (with the type as key) and the path and the target if set.
+     *
+     * @return JSON object describing this key
+     */
+    JSONObject toJSON() {
+        JSONObject ret = new JSONObject();
+        ret.put("mbean", mBean.getCanonicalName());
+        ret.put(type, secondary);
+        if (path != null) {
+            ret.put("path", path);
+        }
+        if (target != null) {
+            ret.put("target", target);
+        }
+        return ret;
+    }
+
+    /**
+     * Domain of the MBean included in this key
+     *
+     * @return MBean domain, which might be a pattern itself
+     */
+    String getDomain() {
+        return mBean.getDomain();
+    }
+
+    /**
+     * Whether the domain of the included MBean is a pattern
+     *
+     * @return true if the domain contains wildcards
+     */
+    boolean isDomainPattern() {
+        return mBean.isDomainPattern();
+    }
+
     // CHECKSTYLE:OFF
     /** {@inheritDoc} */
     @Override
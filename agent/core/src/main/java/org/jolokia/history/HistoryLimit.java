@@ -34,6 +34,10 @@ public class HistoryLimit implements Serializable {
     // maximum duration to keep
     private long maxDuration;
 
+    // number of one minute and one hour aggregates to keep
+    private int minuteRollups;
+    private int hourRollups;
+
     /**
      * Create a limit with either or both maxEntries and maxDuration set
      *
@@ -54,6 +58,24 @@ public class HistoryLimit implements Serializable {
         maxDuration = pMaxDuration;
     }
 
+    /**
+     * Create a limit which additionally keeps aggregates (min, max, average, count and last value) of
+     * numeric values per minute and per hour. These are kept much longer than the raw values.
+     *
+     * @param pMaxEntries maximum number of entries to keep
+     * @param pMaxDuration maximum duration for entries to keep (in seconds)
+     * @param pMinuteRollups number of one minute aggregates to keep (e.g. 1440 for a day)
+     * @param pHourRollups number of one hour aggregates to keep (e.g. 168 for a week)
+     */
+    public HistoryLimit(int pMaxEntries, long pMaxDuration, int pMinuteRollups, int pHourRollups) {
+        this(pMaxEntries, pMaxDuration);
+        if (pMinuteRollups < 0 || pHourRollups < 0) {
+            throw new IllegalArgumentException("Invalid limit, the number of rollups must be >= 0");
+        }
+        minuteRollups = pMinuteRollups;
+        hourRollups = pHourRollups;
+    }
+
     public int getMaxEntries() {
         return maxEntries;
     }
@@ -62,6 +84,14 @@ public class HistoryLimit implements Serializable {
         return maxDuration;
     }
 
+    public int getMinuteRollups() {
+        return minuteRollups;
+    }
+
+    public int getHourRollups() {
+        return hourRollups;
+    }
+
     // Return a limit which has for sure as upper limit the given argument
 
     /**
@@ -83,6 +113,8 @@ public class HistoryLimit implements Serializable {
         return "HistoryLimit{" +
                "maxEntries=" + maxEntries +
                ", maxDuration=" + maxDuration +
+               ", minuteRollups=" + minuteRollups +
+               ", hourRollups=" + hourRollups +
                '}';
     }
 }
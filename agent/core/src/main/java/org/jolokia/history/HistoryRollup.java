@@ -0,0 +1,350 @@
+package org.jolokia.history;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * Aggregates of numeric history values over fixed time buckets (e.g. one minute). For each bucket,
+ * minimum, maximum, average, number and last value are kept. Buckets are stored in a ring buffer with
+ * a fixed number of buckets, the oldest bucket is dropped when a new bucket is started and the buffer is full.
+ *
+ * Values must be added in chronological order, values older than the current bucket are ignored.
+ * This class is not thread safe, access is synchronized by the owning {@link HistoryEntry}.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+class HistoryRollup implements Serializable {
+
+    private static final long serialVersionUID = 42L;
+
+    // Keys used in JSON representation
+    private static final String KEY_TIMESTAMP = "timestamp";
+    private static final String KEY_MIN = "min";
+    private static final String KEY_MAX = "max";
+    private static final String KEY_AVG = "avg";
+    private static final String KEY_COUNT = "count";
+    private static final String KEY_LAST = "last";
+
+    // Persistent layout: capacity, head and size followed by the buckets, each
+    // with start, count, min, max, sum and last
+    private static final int PERSISTENT_HEADER = 12;
+    private static final int PERSISTENT_BUCKET = 48;
+
+    // Length of a bucket in seconds
+    private final long resolution;
+
+    // Bucket data
+    private final long[] starts;
+    private final long[] counts;
+    private final double[] mins;
+    private final double[] maxs;
+    private final double[] sums;
+    private final double[] lasts;
+
+    // Position of the current bucket and number of buckets used
+    private int head;
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param pResolution length of a bucket in seconds
+     * @param pCapacity number of buckets to keep
+     */
+    HistoryRollup(long pResolution, int pCapacity) {
+        if (pResolution <= 0 || pCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid rollup with resolution " + pResolution + " and capacity " + pCapacity);
+        }
+        resolution = pResolution;
+        starts = new long[pCapacity];
+        counts = new long[pCapacity];
+        mins = new double[pCapacity];
+        maxs = new double[pCapacity];
+        sums = new double[pCapacity];
+        lasts = new double[pCapacity];
+        head = -1;
+    }
+
+    /**
+     * Create a rollup with a new capacity, keeping the most recent buckets
+     *
+     * @param pCapacity new capacity
+     * @return a new rollup or this if the capacity is the same
+     */
+    HistoryRollup withCapacity(int pCapacity) {
+        if (pCapacity == starts.length) {
+            return this;
+        }
+        HistoryRollup ret = new HistoryRollup(resolution, pCapacity);
+        for (int i = Math.min(size, pCapacity) - 1; i >= 0; i--) {
+            int from = position(i);
+            int to = ret.head = ret.head + 1;
+            ret.starts[to] = starts[from];
+            ret.counts[to] = counts[from];
+            ret.mins[to] = mins[from];
+            ret.maxs[to] = maxs[from];
+            ret.sums[to] = sums[from];
+            ret.lasts[to] = lasts[from];
+            ret.size++;
+        }
+        return ret;
+    }
+
+    /**
+     * Add a value to the bucket its timestamp belongs to
+     *
+     * @param pTimestamp timestamp in seconds
+     * @param pValue value to add
+     */
+    void add(long pTimestamp, double pValue) {
+        long start = pTimestamp - pTimestamp % resolution;
+        if (size == 0 || start > starts[head]) {
+            head = (head + 1) % starts.length;
+            if (size < starts.length) {
+                size++;
+            }
+            starts[head] = start;
+            counts[head] = 1;
+            mins[head] = pValue;
+            maxs[head] = pValue;
+            sums[head] = pValue;
+        } else if (start == starts[head]) {
+            counts[head]++;
+            mins[head] = Math.min(mins[head], pValue);
+            maxs[head] = Math.max(maxs[head], pValue);
+            sums[head] += pValue;
+        } else {
+            // Too old
+            return;
+        }
+        lasts[head] = pValue;
+    }
+
+    /**
+     * Maximum number of buckets
+     *
+     * @return capacity
+     */
+    int capacity() {
+        return starts.length;
+    }
+
+    /**
+     * Number of buckets in use
+     *
+     * @return number of buckets
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the buckets as JSON array of objects, the most recent bucket first. Each object
+     * holds the bucket's start time and the aggregated values.
+     *
+     * @param pSince only buckets which end after this timestamp (in seconds) are returned, i.e. buckets
+     *               which could have been updated since then. Use {@link Long#MIN_VALUE} for all buckets.
+     * @return array of buckets
+     */
+    JSONArray jsonify(long pSince) {
+        JSONArray ret = new JSONArray();
+        int count = size(pSince);
+        for (int i = 0; i < count; i++) {
+            int pos = position(i);
+            JSONObject bucket = new JSONObject();
+            bucket.put(KEY_TIMESTAMP, starts[pos]);
+            bucket.put(KEY_MIN, mins[pos]);
+            bucket.put(KEY_MAX, maxs[pos]);
+            bucket.put(KEY_AVG, sums[pos] / counts[pos]);
+            bucket.put(KEY_COUNT, counts[pos]);
+            bucket.put(KEY_LAST, lasts[pos]);
+            ret.add(bucket);
+        }
+        return ret;
+    }
+
+    /**
+     * Get the buckets as parallel arrays, one for the start times and one for each aggregate. The
+     * keys are the plural forms of the keys used by {@link #jsonify(long)}.
+     *
+     * @param pSince only buckets which end after this timestamp are returned
+     * @return object holding the arrays
+     */
+    JSONObject jsonifyCompact(long pSince) {
+        JSONArray jStarts = new JSONArray();
+        JSONArray jMins = new JSONArray();
+        JSONArray jMaxs = new JSONArray();
+        JSONArray jAvgs = new JSONArray();
+        JSONArray jCounts = new JSONArray();
+        JSONArray jLasts = new JSONArray();
+        int count = size(pSince);
+        for (int i = 0; i < count; i++) {
+            int pos = position(i);
+            jStarts.add(starts[pos]);
+            jMins.add(mins[pos]);
+            jMaxs.add(maxs[pos]);
+            jAvgs.add(sums[pos] / counts[pos]);
+            jCounts.add(counts[pos]);
+            jLasts.add(lasts[pos]);
+        }
+        JSONObject ret = new JSONObject();
+        ret.put(KEY_TIMESTAMP + "s", jStarts);
+        ret.put(KEY_MIN + "s", jMins);
+        ret.put(KEY_MAX + "s", jMaxs);
+        ret.put(KEY_AVG + "s", jAvgs);
+        ret.put(KEY_COUNT + "s", jCounts);
+        ret.put(KEY_LAST + "s", jLasts);
+        return ret;
+    }
+
+    /**
+     * Number of bytes needed by {@link #writeTo(ByteBuffer, int, boolean)} for a rollup with the given capacity
+     *
+     * @param pCapacity number of buckets, 0 for a missing rollup
+     * @return length in bytes
+     */
+    static int persistentLength(int pCapacity) {
+        return PERSISTENT_HEADER + PERSISTENT_BUCKET * pCapacity;
+    }
+
+    /**
+     * Maximum capacity of a rollup which can be written into the given number of bytes
+     *
+     * @param pLength available length in bytes
+     * @return maximum number of buckets
+     */
+    static int maxCapacity(int pLength) {
+        return (pLength - PERSISTENT_HEADER) / PERSISTENT_BUCKET;
+    }
+
+    /**
+     * Write this rollup at the given offset. The buckets keep their positions, so that
+     * after a complete write it is enough to write the current bucket when a value has been added.
+     *
+     * @param pBuf buffer to write to
+     * @param pOffset where to start
+     * @param pOnlyCurrent whether to write the current bucket only
+     */
+    void writeTo(ByteBuffer pBuf, int pOffset, boolean pOnlyCurrent) {
+        pBuf.putInt(pOffset, starts.length);
+        pBuf.putInt(pOffset + 4, head);
+        pBuf.putInt(pOffset + 8, size);
+        if (pOnlyCurrent) {
+            if (size > 0) {
+                writeBucket(pBuf, pOffset, head);
+            }
+        } else {
+            for (int i = 0; i < starts.length; i++) {
+                writeBucket(pBuf, pOffset, i);
+            }
+        }
+    }
+
+    /**
+     * Write the header of a missing rollup
+     *
+     * @param pBuf buffer to write to
+     * @param pOffset where to start
+     */
+    static void writeEmptyTo(ByteBuffer pBuf, int pOffset) {
+        pBuf.putInt(pOffset, 0);
+        pBuf.putInt(pOffset + 4, -1);
+        pBuf.putInt(pOffset + 8, 0);
+    }
+
+    /**
+     * Capacity of a rollup written at the given offset
+     *
+     * @param pBuf buffer to read from
+     * @param pOffset start of the rollup
+     * @return the number of buckets, 0 if the rollup was missing
+     */
+    static int readCapacity(ByteBuffer pBuf, int pOffset) {
+        return pBuf.getInt(pOffset);
+    }
+
+    /**
+     * Read a rollup written with {@link #writeTo(ByteBuffer, int, boolean)}. The caller must ensure
+     * that the buffer holds {@link #persistentLength(int)} bytes for the capacity stored.
+     *
+     * @param pBuf buffer to read from
+     * @param pOffset start of the rollup
+     * @param pResolution length of a bucket in seconds
+     * @return the restored rollup or null if the rollup was missing
+     * @throws IllegalArgumentException if the data is not consistent
+     */
+    static HistoryRollup readFrom(ByteBuffer pBuf, int pOffset, long pResolution) {
+        int capacity = readCapacity(pBuf, pOffset);
+        if (capacity == 0) {
+            return null;
+        }
+        int head = pBuf.getInt(pOffset + 4);
+        int size = pBuf.getInt(pOffset + 8);
+        if (size < 0 || size > capacity || head < (size > 0 ? 0 : -1) || head >= capacity) {
+            throw new IllegalArgumentException("Invalid rollup with head " + head + " and size " + size + " for capacity " + capacity);
+        }
+        HistoryRollup ret = new HistoryRollup(pResolution, capacity);
+        ret.head = head;
+        ret.size = size;
+        for (int i = 0; i < capacity; i++) {
+            int pos = pOffset + PERSISTENT_HEADER + PERSISTENT_BUCKET * i;
+            ret.starts[i] = pBuf.getLong(pos);
+            ret.counts[i] = pBuf.getLong(pos + 8);
+            ret.mins[i] = pBuf.getDouble(pos + 16);
+            ret.maxs[i] = pBuf.getDouble(pos + 24);
+            ret.sums[i] = pBuf.getDouble(pos + 32);
+            ret.lasts[i] = pBuf.getDouble(pos + 40);
+        }
+        return ret;
+    }
+
+    private void writeBucket(ByteBuffer pBuf, int pOffset, int pIdx) {
+        int pos = pOffset + PERSISTENT_HEADER + PERSISTENT_BUCKET * pIdx;
+        pBuf.putLong(pos, starts[pIdx]);
+        pBuf.putLong(pos + 8, counts[pIdx]);
+        pBuf.putDouble(pos + 16, mins[pIdx]);
+        pBuf.putDouble(pos + 24, maxs[pIdx]);
+        pBuf.putDouble(pos + 32, sums[pIdx]);
+        pBuf.putDouble(pos + 40, lasts[pIdx]);
+    }
+
+    // Number of buckets ending after the given timestamp
+    private int size(long pSince) {
+        int ret = 0;
+        while (ret < size && starts[position(ret)] + resolution > pSince) {
+            ret++;
+        }
+        return ret;
+    }
+
+    // Position within the arrays, index 0 is the most recent bucket
+    private int position(int pIdx) {
+        int pos = head - pIdx;
+        return pos < 0 ? pos + starts.length : pos;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryRollup{resolution=" + resolution + ", buckets=" + size + "/" + starts.length + "}";
+    }
+}
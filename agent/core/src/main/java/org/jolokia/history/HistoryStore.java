@@ -2,10 +2,15 @@ package org.jolokia.history;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 
+import org.jolokia.config.ConfigKey;
 import org.jolokia.request.*;
 import org.jolokia.util.RequestType;
 import org.json.simple.JSONObject;
@@ -31,22 +36,58 @@ import org.json.simple.JSONObject;
  * Store for remembering values which has been fetched through a previous
  * request.
  *
+ * Updating and looking up history entries doesn't lock the store as a whole. Entries are
+ * kept in a concurrent map and each {@link HistoryEntry} is locked on its own while it is
+ * read or updated. Only configuration changes are serialized on the store itself. Configured
+ * MBean patterns are looked up via an immutable index which is rebuilt on every configuration
+ * change.
+ *
+ * Optionally, the store can be backed by a {@link HistoryFile}, which keeps the configuration and
+ * the numeric values in a memory mapped file so that they are restored after a restart.
+ *
+ * The memory used by the entries is estimated incrementally. If a memory budget is set, the entries which haven't
+ * been updated for the longest time are evicted when the budget is exceeded.
+ *
  * @author roland
  * @since Jun 12, 2009
  */
-@SuppressWarnings("IS2_INCONSISTENT_SYNC") // FindBugs gets confused with inner classes accessing objects in the parent
 public class HistoryStore {
 
     // Hard limit for number of entries for a single history track
-    private int globalMaxEntries;
+    private volatile int globalMaxEntries;
+
+    private final ConcurrentMap<HistoryKey, HistoryEntry> historyStore;
+
+    // Estimated memory used by all entries, maintained by the entries themselves
+    private final AtomicLong totalSize = new AtomicLong();
+
+    // Memory budget in bytes, 0 if unlimited
+    private volatile int maxSize;
 
-    private Map<HistoryKey, HistoryEntry> historyStore;
-    private Map<HistoryKey, HistoryLimit> patterns;
+    // Set while entries are evicted and number of evicted entries
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AtomicLong evictedEntries = new AtomicLong();
+
+    // Configured patterns, modified only while holding the lock on this store
+    private final Map<HistoryKey, HistoryLimit> patterns;
+
+    // Read only view on the patterns used for lookups
+    private volatile PatternIndex patternIndex;
+
+    // Optional file for persisting the history and the records of the configured patterns
+    private final HistoryFile historyFile;
+    private final Map<HistoryKey, HistoryFile.Slot> patternSlots;
 
     // Keys used in JSON representation
     private static final String KEY_HISTORY = "history";
     private static final String KEY_VALUE = "value";
     private static final String KEY_TIMESTAMP = "timestamp";
+    private static final String KEY_ATTRIBUTE = "attribute";
+
+    // Values for the history resolution
+    private static final String RESOLUTION_RAW = "raw";
+    private static final String RESOLUTION_MINUTE = "minute";
+    private static final String RESOLUTION_HOUR = "hour";
 
     private Map<RequestType,HistoryUpdater> historyUpdaters = new HashMap<RequestType, HistoryUpdater>();
 
@@ -57,9 +98,31 @@ public class HistoryStore {
      *        be overwritten. This is a hard limit.
      */
     public HistoryStore(int pTotalMaxEntries) {
+        this(pTotalMaxEntries, (HistoryFile) null);
+    }
+
+    /**
+     * Constructor for a history store which is persisted in the given file. Numeric values
+     * and the configuration stored in this file are restored. Values are written to the memory mapped
+     * file without forcing them to disk, which happens only when the store is closed.
+     *
+     * @param pTotalMaxEntries number of entries to hold at max. Even when configured, this maximum can not
+     *        be overwritten. This is a hard limit.
+     * @param pFile file to keep the history in. It is created if it doesn't exist.
+     * @throws IOException if the file cannot be opened
+     */
+    public HistoryStore(int pTotalMaxEntries, File pFile) throws IOException {
+        this(pTotalMaxEntries, new HistoryFile(pFile));
+        restore();
+    }
+
+    private HistoryStore(int pTotalMaxEntries, HistoryFile pHistoryFile) {
         globalMaxEntries = pTotalMaxEntries;
-        historyStore = new HashMap<HistoryKey, HistoryEntry>();
+        historyStore = new ConcurrentHashMap<HistoryKey, HistoryEntry>();
         patterns = new HashMap<HistoryKey, HistoryLimit>();
+        patternIndex = PatternIndex.EMPTY;
+        historyFile = pHistoryFile;
+        patternSlots = new HashMap<HistoryKey, HistoryFile.Slot>();
         initHistoryUpdaters();
     }
 
@@ -68,7 +131,7 @@ public class HistoryStore {
      *
      * @return the maximum number of entries
      */
-    public synchronized int getGlobalMaxEntries() {
+    public int getGlobalMaxEntries() {
         return globalMaxEntries;
     }
 
@@ -81,7 +144,9 @@ public class HistoryStore {
         globalMaxEntries = pGlobalMaxEntries;
         // Refresh all entries
         for (HistoryEntry entry : historyStore.values()) {
-            entry.setMaxEntries(globalMaxEntries);
+            synchronized (entry) {
+                entry.setMaxEntries(globalMaxEntries);
+            }
         }
     }
 
@@ -103,30 +168,102 @@ public class HistoryStore {
 
         if (pKey.isMBeanPattern()) {
             patterns.put(pKey,limit);
+            patternIndex = new PatternIndex(patterns);
+            persistPattern(pKey, limit);
             // Trim all already stored keys
-            for (HistoryKey key : historyStore.keySet()) {
-                if (pKey.matches(key)) {
-                    HistoryEntry entry = historyStore.get(key);
-                    entry.setLimit(limit);
+            for (Map.Entry<HistoryKey, HistoryEntry> storeEntry : historyStore.entrySet()) {
+                if (pKey.matches(storeEntry.getKey())) {
+                    HistoryEntry entry = storeEntry.getValue();
+                    synchronized (entry) {
+                        entry.setLimit(limit);
+                    }
                 }
             }
         } else {
-            HistoryEntry entry = historyStore.get(pKey);
-            if (entry != null) {
-                entry.setLimit(limit);
-            } else {
-                entry = new HistoryEntry(limit);
-                historyStore.put(pKey,entry);
-            }
+            HistoryEntry entry;
+            do {
+                entry = historyStore.get(pKey);
+                if (entry == null) {
+                    HistoryEntry created = new HistoryEntry(limit);
+                    created.setConfigured(true);
+                    register(pKey, created);
+                    // An entry might have been created for a pattern in the meantime
+                    entry = historyStore.putIfAbsent(pKey, created);
+                    if (entry == null) {
+                        break;
+                    }
+                    release(created);
+                }
+            } while (!configureEntry(pKey, entry, limit));
         }
+        checkMaxSize();
     }
 
     /**
      * Reset the complete store.
      */
     public synchronized void reset() {
-        historyStore = new HashMap<HistoryKey, HistoryEntry>();
-        patterns = new HashMap<HistoryKey, HistoryLimit>();
+        patterns.clear();
+        patternIndex = PatternIndex.EMPTY;
+        for (HistoryKey key : new ArrayList<HistoryKey>(patternSlots.keySet())) {
+            persistPattern(key, null);
+        }
+        Iterator<HistoryEntry> it = historyStore.values().iterator();
+        while (it.hasNext()) {
+            HistoryEntry entry = it.next();
+            it.remove();
+            release(entry);
+        }
+    }
+
+    /**
+     * Close the file backing this store, if any, after forcing all changes to disk. The store can still
+     * be used afterwards, but changes are not persisted anymore.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        if (historyFile != null) {
+            historyFile.close();
+        }
+    }
+
+    /**
+     * Check whether no history tracking is configured at all
+     *
+     * @return true if no history is recorded for any request
+     */
+    public boolean isEmpty() {
+        return historyStore.isEmpty() && patternIndex.isEmpty();
+    }
+
+    /**
+     * Check whether history is recorded for the given request so that its result is needed by
+     * {@link #updateAndAdd(JmxRequest, JSONObject)}. For reads of multiple attributes or of an MBean
+     * pattern, this is assumed as soon as any history is configured.
+     *
+     * @param pJmxReq request to check
+     * @return true if history is or might be recorded for this request
+     */
+    public boolean isTracked(JmxRequest pJmxReq) {
+        if (isEmpty()) {
+            return false;
+        }
+        switch (pJmxReq.getType()) {
+            case EXEC:
+                return historyStore.containsKey(new HistoryKey((JmxExecRequest) pJmxReq));
+            case WRITE:
+                return historyStore.containsKey(new HistoryKey((JmxWriteRequest) pJmxReq));
+            case READ:
+                JmxReadRequest readReq = (JmxReadRequest) pJmxReq;
+                if (readReq.getObjectName().isPattern() || readReq.isMultiAttributeMode() || !readReq.hasAttribute()) {
+                    return true;
+                }
+                HistoryKey key = new HistoryKey(readReq);
+                return historyStore.containsKey(key) || patternIndex.lookup(key) != null;
+            default:
+                return false;
+        }
     }
 
     /**
@@ -136,7 +273,7 @@ public class HistoryStore {
      * @param pJmxReq request for which an entry should be added in this history store
      * @param pJson the JSONObject to which to add the history.
      */
-    public synchronized void updateAndAdd(JmxRequest pJmxReq, JSONObject pJson) {
+    public void updateAndAdd(JmxRequest pJmxReq, JSONObject pJson) {
         long timestamp = System.currentTimeMillis() / 1000;
         pJson.put(KEY_TIMESTAMP,timestamp);
 
@@ -144,26 +281,177 @@ public class HistoryStore {
         HistoryUpdater updater = historyUpdaters.get(type);
         if (updater != null) {
             updater.updateHistory(pJson,pJmxReq,timestamp);
+            checkMaxSize();
         }
     }
 
     /**
-     * Get the size of this history store in bytes
+     * Add a value which has been obtained without a request, e.g. by periodic sampling.
+     * The value is only stored if history tracking is switched on for the given key, either
+     * directly or via a pattern.
      *
-     * @return size in bytes
+     * @param pKey key for which to store the value
+     * @param pValue value to add, already converted to its JSON representation
+     * @param pTimestamp timestamp of the value in seconds
      */
-    public synchronized int getSize() {
-        try {
-            ByteArrayOutputStream bOut = new ByteArrayOutputStream();
-            ObjectOutputStream oOut = new ObjectOutputStream(bOut);
-            oOut.writeObject(historyStore);
-            bOut.close();
-            return bOut.size();
-        } catch (IOException e) {
-            throw new IllegalStateException("Cannot serialize internal store: " + e,e);
+    public void addValue(HistoryKey pKey, Object pValue, long pTimestamp) {
+        HistoryEntry entry = historyStore.get(pKey);
+        if (entry == null) {
+            // A lazily created entry already contains the value
+            getEntry(pKey, pValue, pTimestamp);
+        } else {
+            synchronized (entry) {
+                entry.add(pValue, pTimestamp);
+            }
+        }
+        checkMaxSize();
+    }
+
+    /**
+     * Get the values recorded for a key without adding a new value
+     *
+     * @param pKey key to lookup
+     * @param pCompact whether to return the values in the compact layout
+     * @return the history in the same layout as added to a response or null if no history is
+     *         recorded for this key
+     */
+    public Object getHistory(HistoryKey pKey, boolean pCompact) {
+        HistoryEntry entry = historyStore.get(pKey);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return pCompact ? entry.jsonifyValuesCompact() : entry.jsonifyValues();
         }
     }
 
+    /**
+     * Get the keys of all history entries whose MBean matches the given name or pattern.
+     *
+     * @param pMBean MBean name or pattern
+     * @param pAttribute if not null, only keys for this attribute are returned
+     * @return matching keys
+     */
+    public List<HistoryKey> getHistoryKeys(ObjectName pMBean, String pAttribute) {
+        List<HistoryKey> ret = new ArrayList<HistoryKey>();
+        for (HistoryKey key : historyStore.keySet()) {
+            if (pMBean.apply(key.getMBean()) &&
+                (pAttribute == null || (KEY_ATTRIBUTE.equals(key.getType()) && pAttribute.equals(key.getSecondary())))) {
+                ret.add(key);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Export the history of the given keys. The returned collection is created lazily: The history of a single key is
+     * converted to JSON only when the collection's iterator reaches it, so that the collection can be written
+     * element by element without holding the history of all keys in memory. Each element
+     * contains the key (as returned by {@link HistoryKey#toJSON()}) and the history in the layout, resolution and
+     * range selected by the processing parameters of the given request, as it would be added to a response.
+     * Since these parameters are evaluated lazily, too, they should be checked with
+     * {@link #checkHistoryParameters(JmxRequest)} before.
+     *
+     * @param pKeys keys to export, as obtained by {@link #getHistoryKeys(ObjectName, String)}. Keys for which the
+     *              history has been removed in the meantime are skipped.
+     * @param pJmxReq request holding the processing parameters
+     * @return collection of JSON objects, one for each key
+     */
+    public Collection<JSONObject> exportHistory(List<HistoryKey> pKeys, final JmxRequest pJmxReq) {
+        final Map<HistoryKey, HistoryEntry> entries = new LinkedHashMap<HistoryKey, HistoryEntry>();
+        for (HistoryKey key : pKeys) {
+            HistoryEntry entry = historyStore.get(key);
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        return new AbstractCollection<JSONObject>() {
+            @Override
+            public Iterator<JSONObject> iterator() {
+                final Iterator<Map.Entry<HistoryKey, HistoryEntry>> it = entries.entrySet().iterator();
+                return new Iterator<JSONObject>() {
+                    /** {@inheritDoc} */
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    /** {@inheritDoc} */
+                    public JSONObject next() {
+                        Map.Entry<HistoryKey, HistoryEntry> storeEntry = it.next();
+                        JSONObject ret = storeEntry.getKey().toJSON();
+                        HistoryEntry entry = storeEntry.getValue();
+                        synchronized (entry) {
+                            ret.put(KEY_HISTORY, jsonifyHistory(pJmxReq, entry));
+                        }
+                        return ret;
+                    }
+
+                    /** {@inheritDoc} */
+                    public void remove() {
+                        throw new UnsupportedOperationException("History export is read-only");
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+    /**
+     * Check the processing parameters selecting the resolution and the range of the history
+     *
+     * @param pJmxReq request holding the processing parameters
+     * @throws IllegalArgumentException if the resolution is unknown or the timestamp is not a number
+     */
+    public void checkHistoryParameters(JmxRequest pJmxReq) {
+        getHistoryResolution(pJmxReq);
+        getHistorySince(pJmxReq);
+    }
+
+    /**
+     * Get the estimated memory used by this history store in bytes. The estimation is updated
+     * whenever an entry changes, so this method is cheap and doesn't lock anything.
+     *
+     * @return size in bytes
+     */
+    public int getSize() {
+        return (int) Math.min(totalSize.get(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the memory budget for the history
+     *
+     * @return maximum estimated size in bytes or 0 if unlimited
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Set the memory budget for the history. If the estimated size of all entries exceeds this
+     * budget, the entries which have not been updated for the longest time are removed until
+     * the size is 10% below the budget. Entries created for a configured pattern are removed and
+     * recreated on the next update, explicitly configured entries only lose their values.
+     *
+     * @param pMaxSize maximum estimated size in bytes or 0 for no limit
+     */
+    public void setMaxSize(int pMaxSize) {
+        maxSize = pMaxSize;
+        checkMaxSize();
+    }
+
+    /**
+     * Number of entries removed or cleared so far because the memory budget was exceeded
+     *
+     * @return number of evicted entries
+     */
+    public long getEvictedEntries() {
+        return evictedEntries.get();
+    }
+
     // =======================================================================================================
 
     // Interface for updating a history entry for a certain type
@@ -193,7 +481,7 @@ public class HistoryStore {
                                     HistoryEntry entry = historyStore.get(new HistoryKey(request));
                                     if (entry != null) {
                                         synchronized(entry) {
-                                            pJson.put(KEY_HISTORY,entry.jsonifyValues());
+                                            pJson.put(KEY_HISTORY,jsonifyHistory(request,entry));
                                             entry.add(pJson.get(KEY_VALUE),pTimestamp);
                                         }
                                     }
@@ -206,7 +494,7 @@ public class HistoryStore {
                                     HistoryEntry entry = historyStore.get(new HistoryKey(request));
                                     if (entry != null) {
                                         synchronized(entry) {
-                                            pJson.put(KEY_HISTORY,entry.jsonifyValues());
+                                            pJson.put(KEY_HISTORY,jsonifyHistory(request,entry));
                                             entry.add(request.getValue(),pTimestamp);
                                         }
                                     }
@@ -227,20 +515,139 @@ public class HistoryStore {
     private void removeEntries(HistoryKey pKey) {
         if (pKey.isMBeanPattern()) {
             patterns.remove(pKey);
-            List<HistoryKey> toRemove = new ArrayList<HistoryKey>();
-            for (HistoryKey key : historyStore.keySet()) {
-                if (pKey.matches(key)) {
-                    toRemove.add(key);
+            patternIndex = new PatternIndex(patterns);
+            persistPattern(pKey, null);
+            Iterator<Map.Entry<HistoryKey, HistoryEntry>> it = historyStore.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<HistoryKey, HistoryEntry> storeEntry = it.next();
+                if (pKey.matches(storeEntry.getKey())) {
+                    it.remove();
+                    release(storeEntry.getValue());
                 }
             }
-            // Avoid concurrent modification exceptions
-            for (HistoryKey key : toRemove) {
-                historyStore.remove(key);
-            }
         } else {
-            HistoryEntry entry = historyStore.get(pKey);
-            if (entry != null) {
-                historyStore.remove(pKey);
+            release(historyStore.remove(pKey));
+        }
+    }
+
+    // Restore the configuration and the values kept in the history file
+    private synchronized void restore() {
+        for (HistoryFile.Record record : historyFile.getRestoredRecords()) {
+            if (record.isPattern()) {
+                configure(record.getKey(), record.getLimit());
+            } else {
+                HistoryLimit limit = record.getLimit().respectGlobalMaxEntries(globalMaxEntries);
+                HistoryEntry entry = new HistoryEntry(limit, record.getValues(),
+                                                      record.getMinuteRollup(), record.getHourRollup());
+                entry.setConfigured(record.isConfigured());
+                register(record.getKey(), entry);
+                historyStore.put(record.getKey(), entry);
+            }
+        }
+    }
+
+    // Track the memory used by an entry and mirror it to the history file. Must be
+    // called before the entry is added to the store.
+    private void register(HistoryKey pKey, HistoryEntry pEntry) {
+        synchronized (pEntry) {
+            pEntry.accountTo(totalSize);
+            if (historyFile != null) {
+                pEntry.persistTo(historyFile, pKey);
+            }
+        }
+    }
+
+    // Stop tracking the memory of a removed entry and remove it from the history file
+    private void release(HistoryEntry pEntry) {
+        if (pEntry != null) {
+            synchronized (pEntry) {
+                pEntry.accountTo(null);
+                if (historyFile != null) {
+                    pEntry.release();
+                }
+            }
+        }
+    }
+
+    // Evict entries if the memory budget is exceeded. Only one thread evicts at a time, others
+    // continue without waiting.
+    private void checkMaxSize() {
+        int max = maxSize;
+        if (max <= 0 || totalSize.get() <= max || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // Free some more space so that not every single update leads to an eviction
+            evictOldestEntries(max - max / 10);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    // Evict the entries which have not been updated for the longest time until the total size is
+    // below the given limit. Entries without values are evicted last. Entries created for a pattern are
+    // removed, explicitly configured entries are kept with their limit so that tracking continues.
+    private void evictOldestEntries(long pLimit) {
+        List<EvictionCandidate> candidates = new ArrayList<EvictionCandidate>(historyStore.size());
+        for (Map.Entry<HistoryKey, HistoryEntry> storeEntry : historyStore.entrySet()) {
+            HistoryEntry entry = storeEntry.getValue();
+            synchronized (entry) {
+                candidates.add(new EvictionCandidate(storeEntry.getKey(), entry, entry.getLatestTimestamp()));
+            }
+        }
+        Collections.sort(candidates);
+        for (EvictionCandidate candidate : candidates) {
+            if (totalSize.get() <= pLimit) {
+                break;
+            }
+            if (removeUnlessConfigured(candidate.key, candidate.entry)) {
+                release(candidate.entry);
+                evictedEntries.incrementAndGet();
+            } else if (clearValues(candidate.entry)) {
+                evictedEntries.incrementAndGet();
+            }
+        }
+    }
+
+    // Drop the values of an entry which is kept
+    private boolean clearValues(HistoryEntry pEntry) {
+        synchronized (pEntry) {
+            return pEntry.isConfigured() && pEntry.clearValues();
+        }
+    }
+
+    // Remove an entry created for a pattern. An explicitly configured entry is kept, the decision
+    // is made with the lock on the entry held so that it cannot be configured concurrently.
+    private boolean removeUnlessConfigured(HistoryKey pKey, HistoryEntry pEntry) {
+        synchronized (pEntry) {
+            return !pEntry.isConfigured() && historyStore.remove(pKey, pEntry);
+        }
+    }
+
+    // Apply an explicit configuration to an existing entry. Returns false if the entry has been
+    // removed in the meantime, since it was created for a pattern then.
+    private boolean configureEntry(HistoryKey pKey, HistoryEntry pEntry, HistoryLimit pLimit) {
+        synchronized (pEntry) {
+            pEntry.setLimit(pLimit);
+            pEntry.setConfigured(true);
+            return historyStore.get(pKey) == pEntry;
+        }
+    }
+
+    // Store or remove (if the limit is null) the record of a pattern in the history file.
+    // Must be called with the lock on this store held.
+    private void persistPattern(HistoryKey pKey, HistoryLimit pLimit) {
+        if (historyFile == null) {
+            return;
+        }
+        HistoryFile.Slot old = patternSlots.remove(pKey);
+        if (old != null) {
+            historyFile.free(old);
+        }
+        if (pLimit != null) {
+            HistoryFile.Slot slot = historyFile.allocate(pKey, pLimit, true, true, null, null, null);
+            if (slot != null) {
+                patternSlots.put(pKey, slot);
             }
         }
     }
@@ -275,7 +682,8 @@ public class HistoryStore {
         } else {
             // Single attribute, single bean. Value is the attribute_value
             // itself.
-            addAttributeFromSingleValue(pJson,
+            addAttributeFromSingleValue(pJmxReq,
+                                        pJson,
                                         new HistoryKey(pJmxReq), KEY_HISTORY,
                                         pJson.get(KEY_VALUE),
                                         pTimestamp);
@@ -314,7 +722,7 @@ public class HistoryStore {
         // value
         String attribute = pJmxReq.getPathParts().get(1);
         HistoryKey key = createHistoryKey(pJmxReq, pBeanName,attribute,pJmxReq.getPath());
-        return addAttributeFromSingleValue(key,attribute,pValue,pTimestamp);
+        return addAttributeFromSingleValue(pJmxReq,key,attribute,pValue,pTimestamp);
     }
 
     private JSONObject updateHistoryForPatternReadWithMBeanAsPath(JmxReadRequest pJmxReq, long pTimestamp, Map<String, Object> pValues) {
@@ -340,7 +748,8 @@ public class HistoryStore {
             Object value = attrEntry.getValue();
             String path = pJmxReq.getPath();
             HistoryKey key = createHistoryKey(pJmxReq, pBeanName, attrName, path);
-            addAttributeFromSingleValue(ret,
+            addAttributeFromSingleValue(pJmxReq,
+                                        ret,
                                         key,
                                         attrName,
                                         value,
@@ -363,46 +772,166 @@ public class HistoryStore {
     }
 
     // Return a fresh map
-    private JSONObject addAttributeFromSingleValue(HistoryKey pKey, String pAttrName, Object pValue, long pTimestamp) {
+    private JSONObject addAttributeFromSingleValue(JmxRequest pJmxReq, HistoryKey pKey, String pAttrName,
+                                                   Object pValue, long pTimestamp) {
         HistoryEntry entry = getEntry(pKey,pValue,pTimestamp);
         return entry != null ?
-                addToHistoryEntryAndGetCurrentHistory(new JSONObject(), entry, pAttrName, pValue, pTimestamp) :
+                addToHistoryEntryAndGetCurrentHistory(pJmxReq, new JSONObject(), entry, pAttrName, pValue, pTimestamp) :
                 null;
     }
 
     // Use an existing map
-    private void addAttributeFromSingleValue(JSONObject pHistMap, HistoryKey pKey, String pAttrName,
+    private void addAttributeFromSingleValue(JmxRequest pJmxReq, JSONObject pHistMap, HistoryKey pKey, String pAttrName,
                                              Object pValue, long pTimestamp) {
         HistoryEntry entry = getEntry(pKey, pValue, pTimestamp);
         if (entry != null) {
-            addToHistoryEntryAndGetCurrentHistory(pHistMap, entry, pAttrName, pValue, pTimestamp);
+            addToHistoryEntryAndGetCurrentHistory(pJmxReq, pHistMap, entry, pAttrName, pValue, pTimestamp);
         }
     }
 
-    private JSONObject addToHistoryEntryAndGetCurrentHistory(JSONObject pHistMap, HistoryEntry pEntry, String pAttrName,
-                                                             Object pValue, long pTimestamp) {
+    private JSONObject addToHistoryEntryAndGetCurrentHistory(JmxRequest pJmxReq, JSONObject pHistMap, HistoryEntry pEntry,
+                                                             String pAttrName, Object pValue, long pTimestamp) {
         synchronized (pEntry) {
-                pHistMap.put(pAttrName, pEntry.jsonifyValues());
+                pHistMap.put(pAttrName, jsonifyHistory(pJmxReq, pEntry));
                 pEntry.add(pValue, pTimestamp);
         }
         return pHistMap;
     }
 
-    private synchronized HistoryEntry getEntry(HistoryKey pKey,Object pValue,long pTimestamp) {
+    // Get the history values in the resolution and layout requested, optionally only the values newer
+    // than the given watermark. Must be called with the lock on the entry held.
+    private Object jsonifyHistory(JmxRequest pJmxReq, HistoryEntry pEntry) {
+        boolean compact = pJmxReq.getParameterAsBool(ConfigKey.HISTORY_COMPACT);
+        long resolution = getHistoryResolution(pJmxReq);
+        long since = getHistorySince(pJmxReq);
+        if (resolution == 0) {
+            return compact ? pEntry.jsonifyValuesCompact(since) : pEntry.jsonifyValues(since);
+        } else {
+            return pEntry.jsonifyRollup(resolution, compact, since);
+        }
+    }
+
+    // Resolution of the rollup to return in seconds, 0 for the raw values
+    private long getHistoryResolution(JmxRequest pJmxReq) {
+        String resolution = pJmxReq.getParameter(ConfigKey.HISTORY_RESOLUTION);
+        if (resolution == null || RESOLUTION_RAW.equals(resolution)) {
+            return 0;
+        } else if (RESOLUTION_MINUTE.equals(resolution)) {
+            return HistoryEntry.MINUTE;
+        } else if (RESOLUTION_HOUR.equals(resolution)) {
+            return HistoryEntry.HOUR;
+        } else {
+            throw new IllegalArgumentException("Invalid history resolution '" + resolution + "' (must be one of " +
+                                               RESOLUTION_RAW + ", " + RESOLUTION_MINUTE + ", " + RESOLUTION_HOUR + ")");
+        }
+    }
+
+    private long getHistorySince(JmxRequest pJmxReq) {
+        String since = pJmxReq.getParameter(ConfigKey.HISTORY_SINCE);
+        if (since == null) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return Long.parseLong(since);
+        } catch (NumberFormatException exp) {
+            throw new IllegalArgumentException("Invalid history timestamp '" + since + "' (must be seconds since 1.1.1970)",exp);
+        }
+    }
+
+    private HistoryEntry getEntry(HistoryKey pKey,Object pValue,long pTimestamp) {
         HistoryEntry entry = historyStore.get(pKey);
         if (entry != null) {
             return entry;
         }
-        // Now try all known patterns and add lazily the key
-        for (HistoryKey key : patterns.keySet()) {
-            if (key.matches(pKey)) {
-                entry = new HistoryEntry(patterns.get(key));
-                entry.add(pValue,pTimestamp);
-                historyStore.put(pKey,entry);
-                return entry;
-            }
+        // Now try the known patterns and add lazily the key
+        PatternIndex index = patternIndex;
+        HistoryLimit limit = index.lookup(pKey);
+        if (limit == null) {
+            return null;
+        }
+        entry = new HistoryEntry(limit);
+        entry.add(pValue,pTimestamp);
+        register(pKey, entry);
+        HistoryEntry existing = historyStore.putIfAbsent(pKey,entry);
+        if (existing != null) {
+            release(entry);
+            return existing;
+        }
+        if (index != patternIndex && removeUnlessConfigured(pKey, entry)) {
+            // Patterns have been reconfigured in the meantime, so the entry might
+            // have missed a removal or a new limit. Let the next request try again.
+            release(entry);
+        }
+        return entry;
+    }
+
+    // Entry which might be evicted, with the timestamp of its latest value at the time of the check
+    private static final class EvictionCandidate implements Comparable<EvictionCandidate> {
+
+        private final HistoryKey key;
+        private final HistoryEntry entry;
+        private final long latestTimestamp;
+
+        private EvictionCandidate(HistoryKey pKey, HistoryEntry pEntry, long pLatestTimestamp) {
+            key = pKey;
+            entry = pEntry;
+            latestTimestamp = pLatestTimestamp;
+        }
+
+        /** {@inheritDoc} */
+        public int compareTo(EvictionCandidate pOther) {
+            return latestTimestamp < pOther.latestTimestamp ? -1 : (latestTimestamp == pOther.latestTimestamp ? 0 : 1);
         }
-        return null;
     }
 
+    // Immutable index of the configured patterns. Patterns with a fixed domain are
+    // grouped by domain so that only these and the patterns with a wildcard domain need to be checked.
+    private static final class PatternIndex {
+
+        private static final PatternIndex EMPTY = new PatternIndex(Collections.<HistoryKey, HistoryLimit>emptyMap());
+
+        private final Map<String, List<Map.Entry<HistoryKey, HistoryLimit>>> patternsByDomain;
+        private final List<Map.Entry<HistoryKey, HistoryLimit>> domainPatterns;
+
+        private PatternIndex(Map<HistoryKey, HistoryLimit> pPatterns) {
+            patternsByDomain = new HashMap<String, List<Map.Entry<HistoryKey, HistoryLimit>>>();
+            domainPatterns = new ArrayList<Map.Entry<HistoryKey, HistoryLimit>>();
+            for (Map.Entry<HistoryKey, HistoryLimit> entry : pPatterns.entrySet()) {
+                Map.Entry<HistoryKey, HistoryLimit> copy =
+                        new AbstractMap.SimpleImmutableEntry<HistoryKey, HistoryLimit>(entry);
+                HistoryKey key = entry.getKey();
+                if (key.isDomainPattern()) {
+                    domainPatterns.add(copy);
+                } else {
+                    List<Map.Entry<HistoryKey, HistoryLimit>> list = patternsByDomain.get(key.getDomain());
+                    if (list == null) {
+                        list = new ArrayList<Map.Entry<HistoryKey, HistoryLimit>>();
+                        patternsByDomain.put(key.getDomain(), list);
+                    }
+                    list.add(copy);
+                }
+            }
+        }
+
+        // Get the limit of the first pattern matching the given key or null
+        private HistoryLimit lookup(HistoryKey pKey) {
+            HistoryLimit limit = lookup(patternsByDomain.get(pKey.getDomain()), pKey);
+            return limit != null ? limit : lookup(domainPatterns, pKey);
+        }
+
+        private HistoryLimit lookup(List<Map.Entry<HistoryKey, HistoryLimit>> pPatterns, HistoryKey pKey) {
+            if (pPatterns != null) {
+                for (Map.Entry<HistoryKey, HistoryLimit> entry : pPatterns) {
+                    if (entry.getKey().matches(pKey)) {
+                        return entry.getValue();
+                    }
+                }
+            }
+            return null;
+        }
+
+        private boolean isEmpty() {
+            return patternsByDomain.isEmpty() && domainPatterns.isEmpty();
+        }
+    }
 }
@@ -0,0 +1,256 @@
+package org.jolokia.history;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Serializable;
+
+/**
+ * Ring buffer holding numeric history values as primitives along with their timestamps. Integral
+ * values are kept as <code>long</code>, floating point values as <code>double</code>. A buffer
+ * holds either integral or floating point values, but not both. Index 0 always refers to the
+ * most recent value.
+ *
+ * This class is not thread safe, access is synchronized by the owning {@link HistoryEntry}.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+class NumericHistoryBuffer implements Serializable {
+
+    private static final long serialVersionUID = 42L;
+
+    // Exactly one of both is set
+    private long[] longValues;
+    private double[] doubleValues;
+
+    private long[] timestamps;
+
+    // Position of the most recent value and number of values stored
+    private int head;
+    private int size;
+
+    /**
+     * Create a buffer suitable for the given value
+     *
+     * @param pValue first value which is about to be stored
+     * @param pCapacity number of values to keep
+     * @return the buffer or null if the value is not a supported number
+     */
+    static NumericHistoryBuffer createFor(Object pValue, int pCapacity) {
+        if (isIntegral(pValue)) {
+            return new NumericHistoryBuffer(false, pCapacity);
+        } else if (pValue instanceof Double) {
+            return new NumericHistoryBuffer(true, pCapacity);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Recreate a buffer from raw values as returned by {@link #getRawValue(int)}
+     *
+     * @param pFloating whether the raw values are floating point values
+     * @param pCapacity capacity of the new buffer
+     * @param pTimestamps timestamps, the most recent one first
+     * @param pRawValues raw values, the most recent one first
+     * @param pSize number of values to take over
+     * @return the new buffer holding the most recent values which fit into it
+     */
+    static NumericHistoryBuffer restore(boolean pFloating, int pCapacity, long[] pTimestamps, long[] pRawValues, int pSize) {
+        NumericHistoryBuffer buffer = new NumericHistoryBuffer(pFloating, pCapacity);
+        for (int i = Math.min(pSize, pCapacity) - 1; i >= 0; i--) {
+            int pos = buffer.head = (buffer.head + 1) % pCapacity;
+            if (pFloating) {
+                buffer.doubleValues[pos] = Double.longBitsToDouble(pRawValues[i]);
+            } else {
+                buffer.longValues[pos] = pRawValues[i];
+            }
+            buffer.timestamps[pos] = pTimestamps[i];
+            buffer.size++;
+        }
+        return buffer;
+    }
+
+    private NumericHistoryBuffer(boolean pFloating, int pCapacity) {
+        if (pCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, not " + pCapacity);
+        }
+        if (pFloating) {
+            doubleValues = new double[pCapacity];
+        } else {
+            longValues = new long[pCapacity];
+        }
+        timestamps = new long[pCapacity];
+        head = -1;
+    }
+
+    /**
+     * Add a value as the most recent one, overwriting the oldest one if the
+     * buffer is full.
+     *
+     * @param pValue value to add
+     * @param pTimestamp timestamp of the value
+     * @return false if the value cannot be stored in this buffer, true otherwise
+     */
+    boolean add(Object pValue, long pTimestamp) {
+        int pos = (head + 1) % timestamps.length;
+        if (longValues != null && isIntegral(pValue)) {
+            longValues[pos] = ((Number) pValue).longValue();
+        } else if (doubleValues != null && pValue instanceof Double) {
+            doubleValues[pos] = (Double) pValue;
+        } else {
+            return false;
+        }
+        timestamps[pos] = pTimestamp;
+        head = pos;
+        if (size < timestamps.length) {
+            size++;
+        }
+        return true;
+    }
+
+    /**
+     * Number of values stored
+     *
+     * @return size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Maximum number of values which can be stored
+     *
+     * @return capacity
+     */
+    int capacity() {
+        return timestamps.length;
+    }
+
+    /**
+     * Get a value as boxed number
+     *
+     * @param pIdx index, 0 for the most recent value
+     * @return the value as {@link Long} or {@link Double}
+     */
+    Object getValue(int pIdx) {
+        int pos = position(pIdx);
+        return longValues != null ? (Object) longValues[pos] : (Object) doubleValues[pos];
+    }
+
+    /**
+     * Get a value as raw <code>long</code>. For floating point values these are the
+     * bits as returned by {@link Double#doubleToRawLongBits(double)}
+     *
+     * @param pIdx index, 0 for the most recent value
+     * @return the raw value
+     */
+    long getRawValue(int pIdx) {
+        int pos = position(pIdx);
+        return longValues != null ? longValues[pos] : Double.doubleToRawLongBits(doubleValues[pos]);
+    }
+
+    /**
+     * Whether this buffer holds floating point values
+     *
+     * @return true for <code>double</code> values, false for <code>long</code> values
+     */
+    boolean isFloating() {
+        return doubleValues != null;
+    }
+
+    /**
+     * Get the timestamp of a value
+     *
+     * @param pIdx index, 0 for the most recent value
+     * @return timestamp
+     */
+    long getTimestamp(int pIdx) {
+        return timestamps[position(pIdx)];
+    }
+
+    /**
+     * Drop the oldest values so that only the given number of values remain
+     *
+     * @param pSize number of values to keep
+     */
+    void truncate(int pSize) {
+        if (pSize < size) {
+            size = Math.max(pSize, 0);
+        }
+    }
+
+    /**
+     * Change the capacity, keeping as many of the most recent values as possible
+     *
+     * @param pCapacity new capacity
+     */
+    void resize(int pCapacity) {
+        if (pCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, not " + pCapacity);
+        }
+        if (pCapacity == timestamps.length) {
+            return;
+        }
+        int newSize = Math.min(size, pCapacity);
+        long[] newTimestamps = new long[pCapacity];
+        long[] newLongs = longValues != null ? new long[pCapacity] : null;
+        double[] newDoubles = doubleValues != null ? new double[pCapacity] : null;
+        // Oldest value goes to index 0 so that the most recent one is at newSize - 1
+        for (int i = 0; i < newSize; i++) {
+            int pos = position(newSize - 1 - i);
+            newTimestamps[i] = timestamps[pos];
+            if (newLongs != null) {
+                newLongs[i] = longValues[pos];
+            } else {
+                newDoubles[i] = doubleValues[pos];
+            }
+        }
+        timestamps = newTimestamps;
+        longValues = newLongs;
+        doubleValues = newDoubles;
+        size = newSize;
+        head = newSize - 1;
+    }
+
+    // Position within the arrays for a given index
+    private int position(int pIdx) {
+        if (pIdx < 0 || pIdx >= size) {
+            throw new IndexOutOfBoundsException("Index " + pIdx + " not within [0," + size + ")");
+        }
+        int pos = head - pIdx;
+        return pos < 0 ? pos + timestamps.length : pos;
+    }
+
+    private static boolean isIntegral(Object pValue) {
+        return pValue instanceof Long || pValue instanceof Integer || pValue instanceof Short || pValue instanceof Byte;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("NumericHistoryBuffer{values=[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(getValue(i)).append('@').append(getTimestamp(i));
+        }
+        sb.append("], capacity=").append(timestamps.length).append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package org.jolokia.history;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Rough estimation of the heap memory used by history values. Values are stored
+ * in their JSON representation, so only strings, numbers, booleans and the JSON
+ * maps and lists need to be considered. The numbers are based on a 64 bit JVM with
+ * compressed references and are meant for limiting the memory used by the history,
+ * not for exact measurements.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+final class SizeEstimator {
+
+    // Object header plus fields of a string and its character array
+    private static final long STRING_OVERHEAD = 40L;
+
+    // Boxed numbers and booleans
+    private static final long SIMPLE_VALUE = 16L;
+
+    // Map object and its table
+    private static final long MAP_OVERHEAD = 48L;
+
+    // Node within a map
+    private static final long MAP_ENTRY = 32L;
+
+    // List object
+    private static final long LIST_OVERHEAD = 40L;
+
+    // Reference within a list
+    private static final long LIST_ELEMENT = 8L;
+
+    private SizeEstimator() { }
+
+    /**
+     * Estimate the memory used by a JSON value
+     *
+     * @param pValue value to estimate, can be null
+     * @return estimated size in bytes
+     */
+    static long estimate(Object pValue) {
+        if (pValue == null) {
+            return 0L;
+        } else if (pValue instanceof String) {
+            return STRING_OVERHEAD + 2L * ((String) pValue).length();
+        } else if (pValue instanceof Map) {
+            long ret = MAP_OVERHEAD;
+            for (Map.Entry entry : ((Map<?, ?>) pValue).entrySet()) {
+                ret += MAP_ENTRY + estimate(entry.getKey()) + estimate(entry.getValue());
+            }
+            return ret;
+        } else if (pValue instanceof Collection) {
+            long ret = LIST_OVERHEAD;
+            for (Object element : (Collection) pValue) {
+                ret += LIST_ELEMENT + estimate(element);
+            }
+            return ret;
+        } else {
+            return SIMPLE_VALUE;
+        }
+    }
+}
@@ -82,6 +82,15 @@ public class AgentServlet extends HttpServlet {
     // whether to allow streaming mode for response
     private boolean streamingEnabled;
 
+    // minimal size of a response for compressing it, negative if switched off
+    private int compressionThreshold;
+
+    // compression level to use
+    private int compressionLevel;
+
+    // maximum size of a decompressed request body, 0 if unlimited
+    private int maxDecompressedRequestSize;
+
     /**
      * No argument constructor, used e.g. by an servlet
      * descriptor when creating the servlet out of web.xml
@@ -144,6 +153,9 @@ public class AgentServlet extends HttpServlet {
         requestHandler = new HttpRequestHandler(config, backendManager, logHandler);
         allowDnsReverseLookup = config.getAsBoolean(ConfigKey.ALLOW_DNS_REVERSE_LOOKUP);
         streamingEnabled = config.getAsBoolean(ConfigKey.STREAMING);
+        compressionThreshold = config.getAsInt(ConfigKey.COMPRESSION_THRESHOLD);
+        compressionLevel = CompressionUtil.checkLevel(config.getAsInt(ConfigKey.COMPRESSION_LEVEL));
+        maxDecompressedRequestSize = config.getAsInt(ConfigKey.MAX_DECOMPRESSED_REQUEST_SIZE);
 
         initDiscoveryMulticast(config);
     }
@@ -295,6 +307,7 @@ public class AgentServlet extends HttpServlet {
     /** {@inheritDoc} */
     @Override
     public void destroy() {
+        requestHandler.destroy();
         backendManager.destroy();
         if (discoveryMulticastResponder != null) {
             discoveryMulticastResponder.stop();
@@ -489,7 +502,8 @@ public class AgentServlet extends HttpServlet {
              public JSONAware handleRequest(HttpServletRequest pReq, HttpServletResponse pResp)
                     throws IOException {
                  String encoding = pReq.getCharacterEncoding();
-                 InputStream is = pReq.getInputStream();
+                 InputStream is = CompressionUtil.decompress(pReq.getInputStream(), pReq.getHeader("Content-Encoding"),
+                                                             maxDecompressedRequestSize);
                  return requestHandler.handlePostRequest(pReq.getRequestURI(),is, encoding, getParameterMap(pReq));
              }
         };
@@ -553,33 +567,64 @@ public class AgentServlet extends HttpServlet {
         if (pJson == null) {
             pResp.setContentLength(-1);
         } else {
+            String encoding = getResponseEncoding(pReq, pResp);
             if (isStreamingEnabled(pReq)) {
-                sendStreamingResponse(pResp, callback, (JSONStreamAware) pJson);
+                sendStreamingResponse(pResp, callback, (JSONStreamAware) pJson, encoding);
             } else {
                 // Fallback, send as one object
                 // TODO: Remove for 2.0 where should support only streaming
-                sendAllJSON(pResp, callback, pJson);
+                sendAllJSON(pResp, callback, pJson, encoding);
             }
         }
     }
 
+    // Content encoding to use for compressing the response or null if the response should be sent uncompressed
+    private String getResponseEncoding(HttpServletRequest pReq, HttpServletResponse pResp) {
+        if (compressionThreshold < 0) {
+            return null;
+        }
+        pResp.setHeader("Vary", "Accept-Encoding");
+        return CompressionUtil.selectEncoding(pReq.getHeader("Accept-Encoding"));
+    }
+
     private void validateCallbackIfGiven(HttpServletRequest pReq) {
         String callback = pReq.getParameter(ConfigKey.CALLBACK.getKeyValue());
         if (callback != null && !MimeTypeUtil.isValidCallback(callback)) {
             throw new IllegalArgumentException("Invalid callback name given, which must be a valid javascript function name");
         }
     }
-    private void sendStreamingResponse(HttpServletResponse pResp, String pCallback, JSONStreamAware pJson) throws IOException {
-        Writer writer = new OutputStreamWriter(pResp.getOutputStream(), "UTF-8");
+    private void sendStreamingResponse(final HttpServletResponse pResp, String pCallback, JSONStreamAware pJson, String pEncoding)
+            throws IOException {
+        OutputStream out;
+        if (pEncoding != null) {
+            out = new CompressingOutputStream(new CompressingOutputStream.ResponseOpener() {
+                /** {@inheritDoc} */
+                public OutputStream open(String pUsedEncoding, int pLength) throws IOException {
+                    if (pUsedEncoding != null) {
+                        pResp.setHeader("Content-Encoding", pUsedEncoding);
+                    } else {
+                        pResp.setContentLength(pLength);
+                    }
+                    return pResp.getOutputStream();
+                }
+            }, pEncoding, compressionThreshold, compressionLevel);
+        } else {
+            out = pResp.getOutputStream();
+        }
+        Writer writer = new OutputStreamWriter(out, "UTF-8");
         IoUtil.streamResponseAndClose(writer, pJson, pCallback);
     }
 
-    private void sendAllJSON(HttpServletResponse pResp, String callback, JSONAware pJson) throws IOException {
+    private void sendAllJSON(HttpServletResponse pResp, String callback, JSONAware pJson, String pEncoding) throws IOException {
         OutputStream out = null;
         try {
             String json = pJson.toJSONString();
             String content = callback == null ? json : callback + "(" + json + ");";
             byte[] response = content.getBytes("UTF8");
+            if (pEncoding != null && response.length >= compressionThreshold) {
+                response = CompressionUtil.compress(response, pEncoding, compressionLevel);
+                pResp.setHeader("Content-Encoding", pEncoding);
+            }
             pResp.setContentLength(response.length);
             out = pResp.getOutputStream();
             out.write(response);
@@ -0,0 +1,195 @@
+package org.jolokia.http;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jolokia.request.JmxRequest;
+import org.json.simple.JSONObject;
+
+/**
+ * Executor for running the single requests of a bulk request in parallel. All bulk requests
+ * share a bounded thread pool, and a single bulk request never occupies more than a configured
+ * number of threads (including the calling thread) so that one client can't starve the agent.
+ *
+ * If no pool thread is available, the calling thread simply processes the remaining requests
+ * on its own, so a bulk request never waits in a queue.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class BulkRequestExecutor {
+
+    // Size of the shared thread pool
+    private final int nrThreads;
+
+    // Max number of threads used for a single bulk request
+    private final int maxParallel;
+
+    // Thread pool, created lazily on first usage
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Create an executor for bulk requests
+     *
+     * @param pNrThreads number of threads in the pool shared by all bulk requests
+     * @param pMaxParallel maximum number of requests of a single bulk request which are processed
+     *                     concurrently. If smaller than 2, requests are processed sequentially
+     */
+    public BulkRequestExecutor(int pNrThreads, int pMaxParallel) {
+        nrThreads = Math.max(pNrThreads, 1);
+        maxParallel = pMaxParallel;
+    }
+
+    /**
+     * Execute the given requests and return the responses in the same order as the requests.
+     * The security context of the caller (e.g. a JAAS subject) is propagated to the worker threads.
+     *
+     * @param pRequests requests to execute
+     * @param pCallback callback doing the actual work for a single request
+     * @return list of responses in request order
+     */
+    public List<JSONObject> execute(final List<JmxRequest> pRequests, final RequestCallback pCallback) {
+        final int size = pRequests.size();
+        final JSONObject[] responses = new JSONObject[size];
+        final AtomicInteger next = new AtomicInteger(0);
+        final AccessControlContext context = AccessController.getContext();
+
+        Runnable worker = new Runnable() {
+            /** {@inheritDoc} */
+            public void run() {
+                AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                    /** {@inheritDoc} */
+                    public Void run() {
+                        int idx;
+                        while ((idx = next.getAndIncrement()) < size) {
+                            responses[idx] = pCallback.execute(pRequests.get(idx));
+                        }
+                        return null;
+                    }
+                }, context);
+            }
+        };
+
+        List<Future<?>> helpers = submitHelpers(worker, Math.min(maxParallel, size) - 1);
+        // The calling thread participates, too
+        worker.run();
+        waitForHelpers(helpers);
+
+        List<JSONObject> ret = new ArrayList<JSONObject>(size);
+        for (JSONObject response : responses) {
+            ret.add(response);
+        }
+        return ret;
+    }
+
+    /**
+     * Shutdown the thread pool
+     */
+    public synchronized void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Callback for executing a single request
+     */
+    public interface RequestCallback {
+        /**
+         * Execute a single request. Errors must be converted to an error response
+         *
+         * @param pRequest request to execute
+         * @return the response
+         */
+        JSONObject execute(JmxRequest pRequest);
+    }
+
+    // ==========================================================================================
+
+    private List<Future<?>> submitHelpers(Runnable pWorker, int pNrHelpers) {
+        List<Future<?>> ret = new ArrayList<Future<?>>();
+        for (int i = 0; i < pNrHelpers; i++) {
+            try {
+                ret.add(getExecutor().submit(pWorker));
+            } catch (RejectedExecutionException exp) {
+                // Pool is exhausted or shut down, the caller will do the rest
+                break;
+            }
+        }
+        return ret;
+    }
+
+    private void waitForHelpers(List<Future<?>> pHelpers) {
+        boolean interrupted = false;
+        try {
+            for (Future<?> helper : pHelpers) {
+                while (true) {
+                    try {
+                        helper.get();
+                        break;
+                    } catch (InterruptedException exp) {
+                        // Wait anyway, since the helper writes into our response array
+                        interrupted = true;
+                    } catch (ExecutionException exp) {
+                        Throwable cause = exp.getCause();
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        } else if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        throw new IllegalStateException("Error while executing bulk request: " + cause,cause);
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            // No queueing: If all threads are busy, a helper is rejected and the caller takes over
+            executor = new ThreadPoolExecutor(0, nrThreads, 60L, TimeUnit.SECONDS,
+                                              new SynchronousQueue<Runnable>(),
+                                              new DaemonThreadFactory());
+        }
+        return executor;
+    }
+
+    // Thread factory for creating daemon threads only
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNr = new AtomicInteger(0);
+
+        /** {@inheritDoc} */
+        public Thread newThread(Runnable pRunnable) {
+            Thread t = new Thread(pRunnable, "jolokia-bulk-" + threadNr.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
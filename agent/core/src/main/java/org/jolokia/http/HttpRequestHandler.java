@@ -9,13 +9,13 @@ import java.util.regex.Pattern;
 import javax.management.*;
 
 import org.jolokia.backend.BackendManager;
+import org.jolokia.backend.executor.MBeanCallTimeoutException;
 import org.jolokia.config.*;
+import org.jolokia.request.GetRequestCache;
 import org.jolokia.request.JmxRequest;
 import org.jolokia.request.JmxRequestFactory;
 import org.jolokia.util.LogHandler;
 import org.json.simple.*;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 /*
  * Copyright 2009-2013 Roland Huss
@@ -52,6 +52,15 @@ public class HttpRequestHandler {
     // Global configuration
     private Configuration config;
 
+    // Executor for parallel bulk requests
+    private BulkRequestExecutor bulkRequestExecutor;
+
+    // Parser for POST requests
+    private JsonRequestParser requestParser;
+
+    // Cache for parsed GET requests, null if switched off
+    private GetRequestCache getRequestCache;
+
     /**
      * Request handler for parsing HTTP request and dispatching to the appropriate
      * request handler (with help of the backend manager)
@@ -63,6 +72,19 @@ public class HttpRequestHandler {
         backendManager = pBackendManager;
         logHandler = pLogHandler;
         config = pConfig;
+        bulkRequestExecutor = new BulkRequestExecutor(pConfig.getAsInt(ConfigKey.BULK_THREADS),
+                                                      pConfig.getAsInt(ConfigKey.BULK_MAX_PARALLEL));
+        requestParser = new JsonRequestParser(pConfig.getAsInt(ConfigKey.MAX_REQUEST_SIZE),
+                                              pConfig.getAsInt(ConfigKey.MAX_BULK_REQUESTS));
+        int requestCacheSize = pConfig.getAsInt(ConfigKey.REQUEST_CACHE_SIZE);
+        getRequestCache = requestCacheSize > 0 ? new GetRequestCache(requestCacheSize) : null;
+    }
+
+    /**
+     * Release resources hold by this handler
+     */
+    public void destroy() {
+        bulkRequestExecutor.destroy();
     }
 
     /**
@@ -76,7 +98,7 @@ public class HttpRequestHandler {
         String pathInfo = extractPathInfo(pUri, pPathInfo);
 
         JmxRequest jmxReq =
-                JmxRequestFactory.createGetRequest(pathInfo,getProcessingParameter(pParameterMap));
+                JmxRequestFactory.createGetRequest(pathInfo,getProcessingParameter(pParameterMap),getRequestCache);
 
         if (backendManager.isDebug()) {
             logHandler.debug("URI: " + pUri);
@@ -108,7 +130,8 @@ public class HttpRequestHandler {
      * @param pEncoding optional encoding for the stream. If null, the default encoding is used
      * @param pParameterMap additional processing parameters
      * @return the JSON object containing the json results for one or more {@link JmxRequest} contained
-     *         within the answer.
+     *         within the answer. For a bulk request with {@link ConfigKey#BULK_STREAMING} enabled, the requests
+     *         are executed only when the returned response is written out.
      *
      * @throws IOException if reading from the input stream fails
      */
@@ -118,25 +141,43 @@ public class HttpRequestHandler {
             logHandler.debug("URI: " + pUri);
         }
 
-        Object jsonRequest = extractJsonRequest(pInputStream,pEncoding);
-        if (jsonRequest instanceof JSONArray) {
-            List<JmxRequest> jmxRequests = JmxRequestFactory.createPostRequests((List) jsonRequest,getProcessingParameter(pParameterMap));
+        ProcessingParameters processingParams = getProcessingParameter(pParameterMap);
+        Object request = extractJmxRequest(pInputStream, pEncoding, processingParams);
+        if (request instanceof List) {
+            List<JmxRequest> jmxRequests = (List<JmxRequest>) request;
+
+            boolean parallel = jmxRequests.size() > 1 && Boolean.parseBoolean(processingParams.get(ConfigKey.BULK_PARALLEL));
+            if (!parallel && Boolean.parseBoolean(processingParams.get(ConfigKey.BULK_STREAMING))) {
+                // Requests are executed only when the response is written out
+                return new StreamingBulkResponse(jmxRequests, new BulkRequestExecutor.RequestCallback() {
+                    /** {@inheritDoc} */
+                    public JSONObject execute(JmxRequest pJmxReq) {
+                        try {
+                            return executeBulkRequest(pJmxReq);
+                        } catch (RuntimeException exp) {
+                            // Headers are already sent, so we can only report within the single response
+                            return handleThrowable(exp);
+                        }
+                    }
+                });
+            }
 
             JSONArray responseList = new JSONArray();
-            for (JmxRequest jmxReq : jmxRequests) {
-                if (backendManager.isDebug()) {
-                    logHandler.debug("Request: " + jmxReq.toString());
+            if (parallel) {
+                responseList.addAll(bulkRequestExecutor.execute(jmxRequests, new BulkRequestExecutor.RequestCallback() {
+                    /** {@inheritDoc} */
+                    public JSONObject execute(JmxRequest pJmxReq) {
+                        return executeBulkRequest(pJmxReq);
+                    }
+                }));
+            } else {
+                for (JmxRequest jmxReq : jmxRequests) {
+                    responseList.add(executeBulkRequest(jmxReq));
                 }
-                // Call handler and retrieve return value
-                JSONObject resp = executeRequest(jmxReq);
-                responseList.add(resp);
             }
             return responseList;
-        } else if (jsonRequest instanceof JSONObject) {
-            JmxRequest jmxReq = JmxRequestFactory.createPostRequest((Map<String, ?>) jsonRequest,getProcessingParameter(pParameterMap));
-            return executeRequest(jmxReq);
         } else {
-            throw new IllegalArgumentException("Invalid JSON Request " + jsonRequest);
+            return executeRequest((JmxRequest) request);
         }
     }
 
@@ -168,18 +209,23 @@ public class HttpRequestHandler {
     }
 
 
-    private Object extractJsonRequest(InputStream pInputStream, String pEncoding) throws IOException {
-        InputStreamReader reader = null;
-        try {
-            reader =
-                    pEncoding != null ?
-                            new InputStreamReader(pInputStream, pEncoding) :
-                            new InputStreamReader(pInputStream);
-            JSONParser parser = new JSONParser();
-            return parser.parse(reader);
-        } catch (ParseException exp) {
-            throw new IllegalArgumentException("Invalid JSON request " + reader,exp);
+    // Parse the request body into either a single request or a list of requests
+    private Object extractJmxRequest(InputStream pInputStream, String pEncoding, ProcessingParameters pProcessingParams)
+            throws IOException {
+        InputStreamReader reader =
+                pEncoding != null ?
+                        new InputStreamReader(pInputStream, pEncoding) :
+                        new InputStreamReader(pInputStream);
+        return requestParser.parse(reader, pProcessingParams);
+    }
+
+    // Execute a single request which is part of a bulk request
+    private JSONObject executeBulkRequest(JmxRequest pJmxReq) {
+        if (backendManager.isDebug()) {
+            logHandler.debug("Request: " + pJmxReq.toString());
         }
+        // Call handler and retrieve return value
+        return executeRequest(pJmxReq);
     }
 
     /**
@@ -207,6 +253,8 @@ public class HttpRequestHandler {
             return getErrorJSON(500,e, pJmxReq);
         } catch (IOException e) {
             return getErrorJSON(500,e, pJmxReq);
+        } catch (MBeanCallTimeoutException e) {
+            return getErrorJSON(504,e, pJmxReq);
         } catch (IllegalArgumentException e) {
             return getErrorJSON(400,e, pJmxReq);
         } catch (SecurityException e) {
@@ -0,0 +1,251 @@
+package org.jolokia.http;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+import org.jolokia.config.ProcessingParameters;
+import org.jolokia.request.JmxRequest;
+import org.jolokia.request.JmxRequestFactory;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Streaming parser for the body of a POST request. The elements of a bulk request
+ * are converted into {@link JmxRequest}s one after the other while parsing, so that
+ * the JSON tree of the whole body is never kept in memory at once. Optionally, the
+ * size of the body (in characters) and the number of requests within a bulk request
+ * are limited. Bodies exceeding these limits are rejected as soon as the limit is
+ * crossed, without reading the rest of the body.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class JsonRequestParser {
+
+    // Marker for the top level array of a bulk request
+    private static final Object BULK_MARKER = new Object();
+
+    // Maximum number of characters to read, 0 if unlimited
+    private final int maxSize;
+
+    // Maximum number of requests in a bulk request, 0 if unlimited
+    private final int maxBulkRequests;
+
+    /**
+     * Create a parser with the given limits
+     *
+     * @param pMaxSize maximum number of characters of a request body. Use 0 for no limit.
+     * @param pMaxBulkRequests maximum number of requests within a bulk request. Use 0 for no limit.
+     */
+    public JsonRequestParser(int pMaxSize, int pMaxBulkRequests) {
+        maxSize = pMaxSize;
+        maxBulkRequests = pMaxBulkRequests;
+    }
+
+    /**
+     * Parse the request from the given reader.
+     *
+     * @param pReader reader from which to read the JSON request
+     * @param pProcessingParams processing parameters to use for the created requests
+     * @return either a single {@link JmxRequest} or a list of {@link JmxRequest}s for a bulk request
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the request is not valid or exceeds one of the limits
+     */
+    public Object parse(Reader pReader, ProcessingParameters pProcessingParams) throws IOException {
+        RequestContentHandler handler = new RequestContentHandler(pProcessingParams);
+        try {
+            new JSONParser().parse(maxSize > 0 ? new LimitedReader(pReader, maxSize) : pReader, handler);
+        } catch (ParseException exp) {
+            throw new IllegalArgumentException("Invalid JSON request: " + exp,exp);
+        }
+        return handler.getResult();
+    }
+
+    // ================================================================================================
+
+    // Content handler building up each request value and converting top level array elements
+    // immediately to a request
+    private final class RequestContentHandler implements ContentHandler {
+
+        private final ProcessingParameters processingParams;
+
+        // Containers currently being built. The top level array of a bulk request is represented
+        // by a marker since its elements are not collected
+        private final LinkedList<Object> containers = new LinkedList<Object>();
+
+        // Keys for the object entries currently being built
+        private final LinkedList<String> keys = new LinkedList<String>();
+
+        // Result
+        private List<JmxRequest> bulkRequests;
+        private JmxRequest singleRequest;
+        private Object invalidValue;
+
+        private RequestContentHandler(ProcessingParameters pProcessingParams) {
+            processingParams = pProcessingParams;
+        }
+
+        /** {@inheritDoc} */
+        public void startJSON() { }
+
+        /** {@inheritDoc} */
+        public void endJSON() { }
+
+        /** {@inheritDoc} */
+        public boolean startObject() {
+            checkBulkLimit();
+            containers.addFirst(new JSONObject());
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        public boolean endObject() {
+            valueFinished(containers.removeFirst());
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        public boolean startObjectEntry(String pKey) {
+            keys.addFirst(pKey);
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        public boolean endObjectEntry() {
+            keys.removeFirst();
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        public boolean startArray() {
+            if (containers.isEmpty() && bulkRequests == null) {
+                bulkRequests = new ArrayList<JmxRequest>();
+                containers.addFirst(BULK_MARKER);
+            } else {
+                checkBulkLimit();
+                containers.addFirst(new JSONArray());
+            }
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        public boolean endArray() {
+            valueFinished(containers.removeFirst());
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        public boolean primitive(Object pValue) {
+            checkBulkLimit();
+            valueFinished(pValue);
+            return true;
+        }
+
+        Object getResult() {
+            if (bulkRequests != null) {
+                return bulkRequests;
+            } else if (singleRequest != null) {
+                return singleRequest;
+            } else {
+                throw new IllegalArgumentException("Invalid JSON Request " + invalidValue);
+            }
+        }
+
+        // A value has been parsed completely
+        private void valueFinished(Object pValue) {
+            if (containers.isEmpty()) {
+                if (pValue instanceof Map) {
+                    singleRequest = JmxRequestFactory.createPostRequest((Map<String, ?>) pValue, processingParams);
+                } else if (pValue != BULK_MARKER) {
+                    invalidValue = pValue;
+                }
+                return;
+            }
+            Object parent = containers.getFirst();
+            if (parent == BULK_MARKER) {
+                if (!(pValue instanceof Map)) {
+                    throw new IllegalArgumentException("Not a request within the list of requests. " +
+                                                       "Expected map, but found: " + pValue);
+                }
+                bulkRequests.add(JmxRequestFactory.<JmxRequest>createPostRequest((Map<String, ?>) pValue, processingParams));
+            } else if (parent instanceof JSONArray) {
+                ((JSONArray) parent).add(pValue);
+            } else {
+                ((JSONObject) parent).put(keys.getFirst(), pValue);
+            }
+        }
+
+        // Reject a bulk request as soon as an element beyond the limit starts
+        private void checkBulkLimit() {
+            if (maxBulkRequests > 0 && !containers.isEmpty() && containers.getFirst() == BULK_MARKER &&
+                bulkRequests.size() >= maxBulkRequests) {
+                throw new IllegalArgumentException("Bulk request contains more than " + maxBulkRequests + " requests");
+            }
+        }
+    }
+
+    // Reader which throws an exception when more than a given number of characters is read
+    private static final class LimitedReader extends FilterReader {
+
+        private final int max;
+        private int count;
+
+        private LimitedReader(Reader pReader, int pMax) {
+            super(pReader);
+            max = pMax;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c != -1) {
+                count(1);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] pBuf, int pOff, int pLen) throws IOException {
+            int nr = super.read(pBuf, pOff, pLen);
+            if (nr > 0) {
+                count(nr);
+            }
+            return nr;
+        }
+
+        @Override
+        public long skip(long pNr) throws IOException {
+            long nr = super.skip(pNr);
+            count((int) nr);
+            return nr;
+        }
+
+        private void count(int pNr) {
+            count += pNr;
+            if (count > max) {
+                throw new IllegalArgumentException("Request exceeds the maximum size of " + max + " characters");
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.jolokia.http;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.security.*;
+import java.util.List;
+
+import org.jolokia.request.JmxRequest;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+/**
+ * Response for a bulk request, which executes the single requests only when the response gets
+ * written out. Each response is serialized directly to the writer as soon as its request has
+ * finished and is then dropped, so that the memory used is bounded by the largest single
+ * response and not by the whole batch.
+ *
+ * Since the requests are executed while writing, such a response can be written only once.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class StreamingBulkResponse implements JSONAware, JSONStreamAware {
+
+    // Requests to execute
+    private final List<JmxRequest> requests;
+
+    // Callback for doing the real work
+    private final BulkRequestExecutor.RequestCallback callback;
+
+    // Security context from the creation of this response
+    private final AccessControlContext context;
+
+    // Whether the response has been already written
+    private boolean written;
+
+    /**
+     * Create a response for the given requests. The security context of the caller is remembered
+     * and used when the requests are executed.
+     *
+     * @param pRequests requests to execute
+     * @param pCallback callback for executing a single request
+     */
+    public StreamingBulkResponse(List<JmxRequest> pRequests, BulkRequestExecutor.RequestCallback pCallback) {
+        requests = pRequests;
+        callback = pCallback;
+        context = AccessController.getContext();
+    }
+
+    /** {@inheritDoc} */
+    public void writeJSONString(Writer pWriter) throws IOException {
+        synchronized (this) {
+            if (written) {
+                throw new IllegalStateException("Bulk response has been already written");
+            }
+            written = true;
+        }
+        pWriter.write('[');
+        for (int i = 0; i < requests.size(); i++) {
+            if (i > 0) {
+                pWriter.write(',');
+            }
+            executeRequest(requests.get(i)).writeJSONString(pWriter);
+            pWriter.flush();
+        }
+        pWriter.write(']');
+    }
+
+    /** {@inheritDoc} */
+    public String toJSONString() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeJSONString(writer);
+        } catch (IOException e) {
+            // Cannot happen for a StringWriter
+            throw new IllegalStateException("Cannot serialize bulk response: " + e,e);
+        }
+        return writer.toString();
+    }
+
+    private JSONObject executeRequest(final JmxRequest pRequest) {
+        return AccessController.doPrivileged(new PrivilegedAction<JSONObject>() {
+            /** {@inheritDoc} */
+            public JSONObject run() {
+                return callback.execute(pRequest);
+            }
+        }, context);
+    }
+}
@@ -0,0 +1,115 @@
+package org.jolokia.request;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.*;
+
+import javax.management.ObjectName;
+
+import org.jolokia.util.LRUCache;
+import org.jolokia.util.RequestType;
+
+/**
+ * Cache for the parsed path infos of GET requests. Monitoring tools typically poll the very same
+ * URLs over and over again, so splitting and unescaping a path info as well as parsing the
+ * MBean name needs to be done only once.
+ * The cached templates are immutable and can be used concurrently. A fresh {@link JmxRequest}
+ * is still created for every request since it carries the request specific processing
+ * parameters.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class GetRequestCache {
+
+    private final LRUCache<String, Template> cache;
+
+    /**
+     * Create a cache
+     *
+     * @param pMaxSize maximum number of path infos to remember
+     */
+    public GetRequestCache(int pMaxSize) {
+        cache = new LRUCache<String, Template>(pMaxSize);
+    }
+
+    /**
+     * Number of cached path infos
+     *
+     * @return number of cached entries
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove all cached entries
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    Template get(String pPathInfo) {
+        return cache.get(pPathInfo);
+    }
+
+    void put(String pPathInfo, Template pTemplate) {
+        cache.put(pPathInfo, pTemplate);
+    }
+
+    // ===========================================================================
+
+    /**
+     * Parsed path info of a GET request
+     */
+    static final class Template {
+
+        private final RequestType type;
+
+        // Parsed MBean name or null if the request type doesn't take one
+        private final ObjectName objectName;
+
+        // Remaining path elements without the MBean name, the first one is at the end
+        private final List<String> elements;
+
+        Template(RequestType pType, ObjectName pObjectName, Stack<String> pElements) {
+            type = pType;
+            objectName = pObjectName;
+            elements = Collections.unmodifiableList(new ArrayList<String>(pElements));
+        }
+
+        RequestType getType() {
+            return type;
+        }
+
+        ObjectName getObjectName() {
+            return objectName;
+        }
+
+        /**
+         * Get the path elements as a stack with the first element on top. The stack can be modified
+         * by the caller.
+         *
+         * @return new stack holding the elements
+         */
+        Stack<String> getElements() {
+            Stack<String> ret = new Stack<String>();
+            ret.addAll(elements);
+            return ret;
+        }
+    }
+}
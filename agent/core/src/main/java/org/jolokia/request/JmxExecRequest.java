@@ -19,6 +19,7 @@ package org.jolokia.request;
 import java.util.*;
 
 import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 import org.jolokia.config.ProcessingParameters;
 import org.jolokia.converter.object.StringToObjectConverter;
@@ -48,10 +49,9 @@ public class JmxExecRequest extends JmxObjectNameRequest {
      * @param pOperation name of the operation to execute. Must not be null.
      * @param pArguments arguments to to used for executing the request. Can be null
      * @param pParams optional params used for processing the request.
-     * @throws MalformedObjectNameException if the object name is not in proper format
      */
-    JmxExecRequest(String pObjectName,String pOperation,List pArguments,
-                   ProcessingParameters pParams) throws MalformedObjectNameException {
+    JmxExecRequest(ObjectName pObjectName,String pOperation,List pArguments,
+                   ProcessingParameters pParams) {
         super(RequestType.EXEC, pObjectName, null /* path is not supported for exec requests */, pParams);
         operation = pOperation;
         arguments = pArguments;
@@ -108,12 +108,13 @@ public class JmxExecRequest extends JmxObjectNameRequest {
      *
      * @return the creator implementation
      */
-    static RequestCreator<JmxExecRequest> newCreator() {
-        return new RequestCreator<JmxExecRequest>() {
+    static ObjectNameRequestCreator<JmxExecRequest> newCreator() {
+        return new ObjectNameRequestCreator<JmxExecRequest>() {
             /** {@inheritDoc} */
-            public JmxExecRequest create(Stack<String> pStack, ProcessingParameters pParams) throws MalformedObjectNameException {
+            @Override
+            JmxExecRequest create(ObjectName pObjectName, Stack<String> pStack, ProcessingParameters pParams) {
                 return new JmxExecRequest(
-                        pStack.pop(), // Object name
+                        pObjectName,
                         pStack.pop(), // Operation name
                         convertSpecialStringTags(prepareExtraArgs(pStack)), // arguments
                         pParams);
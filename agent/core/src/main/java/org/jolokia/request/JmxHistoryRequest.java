@@ -0,0 +1,123 @@
+package org.jolokia.request;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Map;
+import java.util.Stack;
+
+import javax.management.MalformedObjectNameException;
+
+import org.jolokia.config.ProcessingParameters;
+import org.jolokia.util.RequestType;
+import org.json.simple.JSONObject;
+
+/**
+ * A request for exporting the recorded history of all attributes and operations of the MBeans matching
+ * a given name or pattern. Optionally, the export can be restricted to a single attribute. The
+ * values are taken from the history store only, MBeans are not accessed.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class JmxHistoryRequest extends JmxObjectNameRequest {
+
+    // Optional attribute name
+    private String attributeName;
+
+    /**
+     * Constructor for GET requests.
+     *
+     * @param pObjectName MBean name or pattern for which to export the history
+     * @param pAttribute attribute name to restrict the export to or null for all attributes and operations
+     * @param pParams optional processing parameters
+     * @throws MalformedObjectNameException if the name is not a proper object name
+     */
+    JmxHistoryRequest(String pObjectName, String pAttribute, ProcessingParameters pParams) throws MalformedObjectNameException {
+        super(RequestType.HISTORY, pObjectName, null, pParams);
+        attributeName = pAttribute;
+    }
+
+    /**
+     * Constructor for POST requests
+     *
+     * @param pRequestMap object representation of the request
+     * @param pParams processing parameters
+     * @throws MalformedObjectNameException if the name is not a proper object name
+     */
+    JmxHistoryRequest(Map<String, ?> pRequestMap, ProcessingParameters pParams) throws MalformedObjectNameException {
+        super(pRequestMap, pParams);
+        attributeName = (String) pRequestMap.get("attribute");
+    }
+
+    /**
+     * Get the attribute to which the export is restricted
+     *
+     * @return attribute name or null if the history of all attributes and operations is exported
+     */
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public JSONObject toJSON() {
+        JSONObject ret = super.toJSON();
+        if (attributeName != null) {
+            ret.put("attribute", attributeName);
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer ret = new StringBuffer("JmxHistoryRequest[");
+        if (attributeName != null) {
+            ret.append("attribute=").append(attributeName).append(", ");
+        }
+        String baseInfo = getInfo();
+        if (baseInfo != null) {
+            ret.append(baseInfo);
+        }
+        ret.append("]");
+        return ret.toString();
+    }
+
+    // ===========================================================================================
+
+    /**
+     * Creator for {@link JmxHistoryRequest}s
+     *
+     * @return the creator implementation
+     */
+    static RequestCreator<JmxHistoryRequest> newCreator() {
+        return new RequestCreator<JmxHistoryRequest>() {
+            /** {@inheritDoc} */
+            public JmxHistoryRequest create(Stack<String> pStack, ProcessingParameters pParams) throws MalformedObjectNameException {
+                return new JmxHistoryRequest(
+                        pStack.pop(), // object name
+                        popOrNull(pStack), // attribute (can be null)
+                        pParams);
+            }
+
+            /** {@inheritDoc} */
+            public JmxHistoryRequest create(Map<String, ?> requestMap, ProcessingParameters pParams)
+                    throws MalformedObjectNameException {
+                return new JmxHistoryRequest(requestMap,pParams);
+            }
+        };
+    }
+}
@@ -53,6 +53,23 @@ public abstract class JmxObjectNameRequest extends JmxRequest {
         initObjectName(pObjectName);
     }
 
+    /**
+     * Constructor for GET requests whose object name has been parsed already
+     *
+     * @param pType request type
+     * @param pObjectName object name, which must not be null.
+     * @param pPathParts parts of an path
+     * @param pProcessingParams optional init params
+     */
+    protected JmxObjectNameRequest(RequestType pType, ObjectName pObjectName, List<String> pPathParts,
+                                   ProcessingParameters pProcessingParams) {
+        super(pType,pPathParts,pProcessingParams);
+        if (pObjectName == null) {
+            throw new IllegalArgumentException("Objectname can not be null");
+        }
+        objectName = pObjectName;
+    }
+
     /**
      * Constructor for POST requests
      *
@@ -19,6 +19,7 @@ package org.jolokia.request;
 import java.util.*;
 
 import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 import org.jolokia.config.ProcessingParameters;
 import org.jolokia.util.EscapeUtil;
@@ -49,10 +50,9 @@ public class JmxReadRequest extends JmxObjectNameRequest {
      *                   separated list (attribute names with commas can not be use here, though).
      * @param pPathParts optional path parts from for filtering the return value
      * @param pInitParams optional processing parameters
-     * @throws MalformedObjectNameException if the name is not a proper object name.
      */
-    JmxReadRequest(String pObjectName,String pAttribute,List<String> pPathParts,
-                   ProcessingParameters pInitParams) throws MalformedObjectNameException {
+    JmxReadRequest(ObjectName pObjectName,String pAttribute,List<String> pPathParts,
+                   ProcessingParameters pInitParams) {
         super(RequestType.READ, pObjectName, pPathParts, pInitParams);
         initAttribute(pAttribute);
     }
@@ -147,12 +147,13 @@ public class JmxReadRequest extends JmxObjectNameRequest {
      *
      * @return the creator implementation
      */
-    static RequestCreator<JmxReadRequest> newCreator() {
-        return new RequestCreator<JmxReadRequest>() {
+    static ObjectNameRequestCreator<JmxReadRequest> newCreator() {
+        return new ObjectNameRequestCreator<JmxReadRequest>() {
             /** {@inheritDoc} */
-            public JmxReadRequest create(Stack<String> pStack, ProcessingParameters pParams) throws MalformedObjectNameException {
+            @Override
+            JmxReadRequest create(ObjectName pObjectName, Stack<String> pStack, ProcessingParameters pParams) {
                 return new JmxReadRequest(
-                        pStack.pop(),  // object name
+                        pObjectName,
                         popOrNull(pStack), // attribute(s) (can be null)
                         prepareExtraArgs(pStack), // path
                         pParams);
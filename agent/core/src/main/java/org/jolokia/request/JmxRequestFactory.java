@@ -3,6 +3,7 @@ package org.jolokia.request;
 import java.util.*;
 
 import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 import org.jolokia.config.ProcessingParameters;
 import org.jolokia.util.EscapeUtil;
@@ -77,24 +78,52 @@ public final class JmxRequestFactory {
      *        Parameters: none
      *    <li>Type: <b>search</b> ({@link RequestType#SEARCH}<br/>
      *        Parameters: <code>param1</code> = MBean name pattern
+     *    <li>Type: <b>history</b> ({@link RequestType#HISTORY}<br/>
+     *        Parameters: <code>param1</code> = MBean name or pattern, <code>param2</code> = optional attribute name
      * </ul>
      * @param pPathInfo path info of HTTP request
      * @param pProcessingParameters processing parameters. Must not be null/
      * @return a newly created {@link JmxRequest}
      */
     public static <R extends JmxRequest> R createGetRequest(String pPathInfo, ProcessingParameters pProcessingParameters) {
+        return JmxRequestFactory.<R>createGetRequest(pPathInfo, pProcessingParameters, null);
+    }
+
+    /**
+     * Create a JMX request from a GET Request with a REST Url as described in
+     * {@link #createGetRequest(String, ProcessingParameters)}. The parsed path info is looked up from and
+     * stored in the given cache.
+     *
+     * @param pPathInfo path info of HTTP request
+     * @param pProcessingParameters processing parameters. Must not be null/
+     * @param pCache cache for parsed path infos. Can be null in which case the path info is always parsed.
+     * @return a newly created {@link JmxRequest}
+     */
+    public static <R extends JmxRequest> R createGetRequest(String pPathInfo, ProcessingParameters pProcessingParameters,
+                                                            GetRequestCache pCache) {
         RequestType type = null;
         try {
             String pathInfo = extractPathInfo(pPathInfo, pProcessingParameters);
 
-            // Get all path elements as a reverse stack
-            Stack<String> elements = EscapeUtil.extractElementsFromPath(pathInfo);
-
-            // Use version by default if no type is given
-            type = elements.size() != 0 ? RequestType.getTypeByName(elements.pop()) : RequestType.VERSION;
+            GetRequestCache.Template template = pCache != null ? pCache.get(pathInfo) : null;
+            boolean cached = template != null;
+            if (!cached) {
+                template = parsePathInfo(pathInfo);
+            }
+            type = template.getType();
 
             // Parse request
-            return (R) getCreator(type).create(elements, pProcessingParameters);
+            RequestCreator creator = getCreator(type);
+            ObjectName objectName = template.getObjectName();
+            R request = (R) (objectName != null ?
+                    ((ObjectNameRequestCreator) creator).create(objectName, template.getElements(), pProcessingParameters) :
+                    creator.create(template.getElements(), pProcessingParameters));
+
+            // Remember only valid requests
+            if (pCache != null && !cached) {
+                pCache.put(pathInfo, template);
+            }
+            return request;
         } catch (MalformedObjectNameException e) {
             throw new IllegalArgumentException("Invalid object name. " + e.getMessage(),e);
         } catch (EmptyStackException exp) {
@@ -157,6 +186,19 @@ public final class JmxRequestFactory {
 
 
 
+    // Split up the path info, extract the request type and parse the MBean name
+    private static GetRequestCache.Template parsePathInfo(String pPathInfo) throws MalformedObjectNameException {
+        // Get all path elements as a reverse stack
+        Stack<String> elements = EscapeUtil.extractElementsFromPath(pPathInfo);
+
+        // Use version by default if no type is given
+        RequestType type = elements.size() != 0 ? RequestType.getTypeByName(elements.pop()) : RequestType.VERSION;
+        // A missing name is reported by the creator
+        ObjectName objectName = getCreator(type) instanceof ObjectNameRequestCreator && !elements.isEmpty() ?
+                new ObjectName(elements.pop()) : null;
+        return new GetRequestCache.Template(type, objectName, elements);
+    }
+
     // Return always a non-null string and strip of leading slash
     private static String normalizePathInfo(String pPathInfo) {
         if (pPathInfo != null && pPathInfo.length() > 0) {
@@ -188,6 +230,7 @@ public final class JmxRequestFactory {
         CREATOR_MAP.put(RequestType.LIST, JmxListRequest.newCreator());
         CREATOR_MAP.put(RequestType.VERSION, JmxVersionRequest.newCreator());
         CREATOR_MAP.put(RequestType.SEARCH, JmxSearchRequest.newCreator());
+        CREATOR_MAP.put(RequestType.HISTORY, JmxHistoryRequest.newCreator());
     }
 
 }
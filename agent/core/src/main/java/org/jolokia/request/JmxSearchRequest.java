@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Stack;
 
 import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 import org.jolokia.config.ProcessingParameters;
 import org.jolokia.util.RequestType;
@@ -37,9 +38,8 @@ public class JmxSearchRequest extends JmxObjectNameRequest {
      *
      * @param pObjectName object name pattern to search for, which must not be null.
      * @param pParams optional processing parameters
-     * @throws MalformedObjectNameException if the name is not a proper object name
      */
-    JmxSearchRequest(String pObjectName, ProcessingParameters pParams) throws MalformedObjectNameException {
+    JmxSearchRequest(ObjectName pObjectName, ProcessingParameters pParams) {
         super(RequestType.SEARCH, pObjectName, null, pParams);
     }
 
@@ -73,11 +73,12 @@ public class JmxSearchRequest extends JmxObjectNameRequest {
      *
      * @return the creator implementation
      */
-    static RequestCreator<JmxSearchRequest> newCreator() {
-        return new RequestCreator<JmxSearchRequest>() {
+    static ObjectNameRequestCreator<JmxSearchRequest> newCreator() {
+        return new ObjectNameRequestCreator<JmxSearchRequest>() {
             /** {@inheritDoc} */
-            public JmxSearchRequest create(Stack<String> pStack, ProcessingParameters pParams) throws MalformedObjectNameException {
-                return new JmxSearchRequest(pStack.pop(),pParams);
+            @Override
+            JmxSearchRequest create(ObjectName pObjectName, Stack<String> pStack, ProcessingParameters pParams) {
+                return new JmxSearchRequest(pObjectName,pParams);
             }
 
             /** {@inheritDoc} */
@@ -19,6 +19,7 @@ package org.jolokia.request;
 import java.util.*;
 
 import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 import org.jolokia.config.ProcessingParameters;
 import org.jolokia.converter.object.StringToObjectConverter;
@@ -47,10 +48,9 @@ public class JmxWriteRequest extends JmxObjectNameRequest {
      * @param pValue The value to set
      * @param pPathParts path parts to the inner part to set the valu on
      * @param pInitParams optional processing parameter
-     * @throws MalformedObjectNameException if the object name is not well formed.
      */
-    JmxWriteRequest(String pObjectName,String pAttribute,Object pValue,List<String> pPathParts,
-                    ProcessingParameters pInitParams) throws MalformedObjectNameException {
+    JmxWriteRequest(ObjectName pObjectName,String pAttribute,Object pValue,List<String> pPathParts,
+                    ProcessingParameters pInitParams) {
         super(RequestType.WRITE, pObjectName, pPathParts, pInitParams);
         attributeName = pAttribute;
         value = pValue;
@@ -120,12 +120,13 @@ public class JmxWriteRequest extends JmxObjectNameRequest {
      *
      * @return the creator implementation
      */
-    static RequestCreator<JmxWriteRequest> newCreator() {
-        return new RequestCreator<JmxWriteRequest>() {
+    static ObjectNameRequestCreator<JmxWriteRequest> newCreator() {
+        return new ObjectNameRequestCreator<JmxWriteRequest>() {
             /** {@inheritDoc} */
-            public JmxWriteRequest create(Stack<String> pStack, ProcessingParameters pParams) throws MalformedObjectNameException {
+            @Override
+            JmxWriteRequest create(ObjectName pObjectName, Stack<String> pStack, ProcessingParameters pParams) {
                 return new JmxWriteRequest(
-                        pStack.pop(), // object name
+                        pObjectName,
                         pStack.pop(), // attribute name
                         StringToObjectConverter.convertSpecialStringTags(pStack.pop()), // value
                         prepareExtraArgs(pStack), // path
@@ -0,0 +1,52 @@
+package org.jolokia.request;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import java.util.Stack;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.jolokia.config.ProcessingParameters;
+
+/**
+ * Creator for requests whose first GET url element after the type is an MBean name.
+ * The {@link JmxRequestFactory} parses this name only once per url and remembers it
+ * in the {@link GetRequestCache}, so that it can be handed over to
+ * {@link #create(ObjectName, Stack, ProcessingParameters)} directly.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+abstract class ObjectNameRequestCreator<R extends JmxObjectNameRequest> extends RequestCreator<R> {
+
+    /** {@inheritDoc} */
+    R create(Stack<String> pStack, ProcessingParameters pParams) throws MalformedObjectNameException {
+        return create(new ObjectName(pStack.pop()), pStack, pParams);
+    }
+
+    /**
+     * Create a GET request for an MBean whose name, the first element of the GET url,
+     * has been parsed already.
+     *
+     * @param pObjectName parsed object name
+     * @param pStack remaining elements of the GET url
+     * @param pParams optional query parameters
+     * @return the created request object
+     */
+    abstract R create(ObjectName pObjectName, Stack<String> pStack, ProcessingParameters pParams);
+}
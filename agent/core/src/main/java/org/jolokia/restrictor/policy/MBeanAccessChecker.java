@@ -22,6 +22,7 @@ import java.util.Set;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 
+import org.jolokia.util.LRUCache;
 import org.jolokia.util.RequestType;
 import org.w3c.dom.*;
 
@@ -59,6 +60,12 @@ public class MBeanAccessChecker extends AbstractChecker<MBeanAccessChecker.Arg>
     private MBeanPolicyConfig allow;
     private MBeanPolicyConfig deny;
 
+    // Maximum number of access decisions to remember
+    private static final int MAX_CACHED_DECISIONS = 1000;
+
+    // Remembered access decisions
+    private final LRUCache<Arg, Boolean> decisionCache = new LRUCache<Arg, Boolean>(MAX_CACHED_DECISIONS);
+
     /**
      * Constructor which extracts the information relevant for this checker from the given document.
      *
@@ -86,6 +93,18 @@ public class MBeanAccessChecker extends AbstractChecker<MBeanAccessChecker.Arg>
     /** {@inheritDoc} */
     @Override
     public boolean check(Arg pArg) {
+        // The policy doesn't change, so decisions can be remembered
+        Boolean ret = decisionCache.get(pArg);
+        if (ret == null) {
+            ret = decide(pArg);
+            decisionCache.put(pArg, ret);
+        }
+        return ret;
+    }
+
+    // =======================================================================================
+
+    private boolean decide(Arg pArg) {
         if (pArg.isTypeAllowed()) {
             // Its allowed in general, so we only need to check
             // the denied section, whether its forbidded
@@ -97,8 +116,6 @@ public class MBeanAccessChecker extends AbstractChecker<MBeanAccessChecker.Arg>
         }
     }
 
-    // =======================================================================================
-
     // Extract configuration and put it into a given MBeanPolicyConfig
     private void extractMbeanConfiguration(NodeList pNodes,MBeanPolicyConfig pConfig) throws MalformedObjectNameException {
         for (int i = 0;i< pNodes.getLength();i++) {
@@ -165,25 +182,7 @@ public class MBeanAccessChecker extends AbstractChecker<MBeanAccessChecker.Arg>
 
     // Lookup methods
     private boolean matches(MBeanPolicyConfig pConfig, Arg pArg) {
-
-        Set<String> values = pConfig.getValues(pArg.getType(),pArg.getName());
-        if (values == null) {
-            ObjectName pattern = pConfig.findMatchingMBeanPattern(pArg.getName());
-            if (pattern != null) {
-                values = pConfig.getValues(pArg.getType(),pattern);
-            }
-        }
-        return values != null && (values.contains(pArg.getValue()) || wildcardMatch(values,pArg.getValue()));
-    }
-
-    // Check whether a value matches patterns in pValues
-    private boolean wildcardMatch(Set<String> pValues, String pValue) {
-        for (String pattern : pValues) {
-            if (pattern.contains("*") && pValue.matches(pattern.replaceAll("\\*",".*"))) {
-                return true;
-            }
-        }
-        return false;
+        return pConfig.matches(pArg.getType(), pArg.getName(), pArg.getValue());
     }
 
 
@@ -248,5 +247,29 @@ public class MBeanAccessChecker extends AbstractChecker<MBeanAccessChecker.Arg>
         public String getValue() {
             return value;
         }
+
+        @Override
+        public boolean equals(Object pOther) {
+            if (this == pOther) {
+                return true;
+            }
+            if (pOther == null || getClass() != pOther.getClass()) {
+                return false;
+            }
+            Arg other = (Arg) pOther;
+            return isTypeAllowed == other.isTypeAllowed &&
+                   type == other.type &&
+                   (name != null ? name.equals(other.name) : other.name == null) &&
+                   (value != null ? value.equals(other.value) : other.value == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = isTypeAllowed ? 1 : 0;
+            result = 31 * result + (type != null ? type.hashCode() : 0);
+            result = 31 * result + (name != null ? name.hashCode() : 0);
+            result = 31 * result + (value != null ? value.hashCode() : 0);
+            return result;
+        }
     }
 }
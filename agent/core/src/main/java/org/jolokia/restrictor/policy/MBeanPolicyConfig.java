@@ -1,6 +1,7 @@
 package org.jolokia.restrictor.policy;
 
 import java.util.*;
+import java.util.regex.Pattern;
 
 import javax.management.ObjectName;
 
@@ -24,7 +25,8 @@ import org.jolokia.util.RequestType;
 
 /**
  * Class combining various maps for attributes, operations and name patterns. It is used
- * internally by {@libk MBeanAccessChecker} to store the policy configuration.
+ * internally by {@libk MBeanAccessChecker} to store the policy configuration. Attribute and
+ * operation names with wildcards are compiled when they are added.
  *
  * @author roland
  * @since 03.09.11
@@ -32,10 +34,13 @@ import org.jolokia.util.RequestType;
 
 class MBeanPolicyConfig {
 
-    private Set<ObjectName>             patterns = new HashSet<ObjectName>();
-    private Map<ObjectName,Set<String>> readAttributes = new HashMap<ObjectName, Set<String>>();
-    private Map<ObjectName,Set<String>> writeAttributes = new HashMap<ObjectName, Set<String>>();
-    private Map<ObjectName,Set<String>> operations = new HashMap<ObjectName, Set<String>>();
+    // Patterns indexed by their domain and patterns whose domain is a pattern, too
+    private Map<String,List<ObjectName>> patternsByDomain = new HashMap<String, List<ObjectName>>();
+    private List<ObjectName>              domainPatterns = new ArrayList<ObjectName>();
+
+    private Map<ObjectName,ValueMatcher> readAttributes = new HashMap<ObjectName, ValueMatcher>();
+    private Map<ObjectName,ValueMatcher> writeAttributes = new HashMap<ObjectName, ValueMatcher>();
+    private Map<ObjectName,ValueMatcher> operations = new HashMap<ObjectName, ValueMatcher>();
 
     /**
      * Add a object name pattern
@@ -43,7 +48,20 @@ class MBeanPolicyConfig {
      * @param pObjectName pattern to add
      */
     void addPattern(ObjectName pObjectName) {
-        patterns.add(pObjectName);
+        if (pObjectName.isDomainPattern()) {
+            if (!domainPatterns.contains(pObjectName)) {
+                domainPatterns.add(pObjectName);
+            }
+        } else {
+            List<ObjectName> patterns = patternsByDomain.get(pObjectName.getDomain());
+            if (patterns == null) {
+                patterns = new ArrayList<ObjectName>();
+                patternsByDomain.put(pObjectName.getDomain(), patterns);
+            }
+            if (!patterns.contains(pObjectName)) {
+                patterns.add(pObjectName);
+            }
+        }
     }
 
     /**
@@ -55,22 +73,42 @@ class MBeanPolicyConfig {
      * @param pOperations operations
      */
     void addValues(ObjectName pOName, Set<String> pReadAttributes, Set<String> pWriteAttributes, Set<String> pOperations) {
-        readAttributes.put(pOName,pReadAttributes);
-        writeAttributes.put(pOName,pWriteAttributes);
-        operations.put(pOName,pOperations);
+        readAttributes.put(pOName,new ValueMatcher(pReadAttributes));
+        writeAttributes.put(pOName,new ValueMatcher(pWriteAttributes));
+        operations.put(pOName,new ValueMatcher(pOperations));
         if (pOName.isPattern()) {
             addPattern(pOName);
         }
     }
 
     /**
-     * Get the set of stored values for a given MBean and type (read/write/exec)
+     * Check whether an attribute or operation has been added for the given MBean. If nothing has been
+     * added for this MBean, a matching pattern is looked up.
+     *
+     * @param pType request type (read/write/exec)
+     * @param pName MBean name
+     * @param pValue attribute or operation name
+     * @return true if the value has been added for the MBean or a matching pattern
+     */
+    boolean matches(RequestType pType, ObjectName pName, String pValue) {
+        ValueMatcher matcher = getValues(pType,pName);
+        if (matcher == null) {
+            ObjectName pattern = findMatchingMBeanPattern(pName);
+            if (pattern != null) {
+                matcher = getValues(pType,pattern);
+            }
+        }
+        return matcher != null && matcher.matches(pValue);
+    }
+
+    /**
+     * Get the stored values for a given MBean and type (read/write/exec)
      *
      * @param pType request type for which the previously added values should be retrieved.
      * @param pName MBean
-     * @return set of previously added value or <code>null</code> if none has been added for this MBean/type.
+     * @return matcher for the previously added values or <code>null</code> if none has been added for this MBean/type.
      */
-    Set<String> getValues(RequestType pType, ObjectName pName) {
+    ValueMatcher getValues(RequestType pType, ObjectName pName) {
         if (RequestType.READ == pType) {
             return readAttributes.get(pName);
         } else if (RequestType.WRITE == pType) {
@@ -90,12 +128,57 @@ class MBeanPolicyConfig {
      * @return the pattern found or <code>null</code> if none has been found.
      */
     ObjectName findMatchingMBeanPattern(ObjectName pName) {
-        // Check all stored patterns for a match and return the pattern if one is found
-        for (ObjectName pattern : patterns) {
-            if (pattern.apply(pName)) {
-                return pattern;
+        // Only patterns for the same domain need to be checked, plus those with a domain pattern
+        ObjectName ret = findMatchingMBeanPattern(patternsByDomain.get(pName.getDomain()), pName);
+        return ret != null ? ret : findMatchingMBeanPattern(domainPatterns, pName);
+    }
+
+    private ObjectName findMatchingMBeanPattern(List<ObjectName> pPatterns, ObjectName pName) {
+        if (pPatterns != null) {
+            for (ObjectName pattern : pPatterns) {
+                if (pattern.apply(pName)) {
+                    return pattern;
+                }
             }
         }
         return null;
     }
+
+    // ======================================================================================
+
+    /**
+     * Matcher for attribute or operation names, where names can contain the wildcard <code>*</code>
+     */
+    static final class ValueMatcher {
+
+        private final Set<String> values;
+        private final List<Pattern> wildcards = new ArrayList<Pattern>();
+
+        ValueMatcher(Set<String> pValues) {
+            values = pValues;
+            for (String value : pValues) {
+                if (value.contains("*")) {
+                    wildcards.add(Pattern.compile(value.replaceAll("\\*", ".*")));
+                }
+            }
+        }
+
+        /**
+         * Check whether the given name matches either directly or one of the wildcard names
+         *
+         * @param pValue name to check
+         * @return true if it matches
+         */
+        boolean matches(String pValue) {
+            if (values.contains(pValue)) {
+                return true;
+            }
+            for (Pattern wildcard : wildcards) {
+                if (wildcard.matcher(pValue).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
@@ -16,18 +16,17 @@ package org.jolokia.restrictor.policy;
  *  limitations under the License.
  */
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.regex.Pattern;
-
+import java.util.*;
 
 import org.jolokia.util.IpChecker;
+import org.jolokia.util.IpPrefixTrie;
 import org.w3c.dom.*;
 
 /**
  * Check whether a host is allowed to access the agent. The restriction
  * can be specified in the policy file with the <code>&lt;remote&gt;</code>
- * tag. Either plain host or subnet (in the CIDR notation) can be specified
+ * tag. Either plain host or subnet (in the CIDR notation) can be specified.
+ * IPv4 and IPv6 addresses are supported.
  * <br/>
  * Example:
  * <pre>
@@ -36,21 +35,27 @@ import org.w3c.dom.*;
  *   &lt;host&gt;10.0.11.125&lt;/host&gt;
  *   &lt;host&gt;11.0.0.0/16&lt;/host&gt;
  *   &lt;host&gt;192.168.15.3/255.255.255.0&lt;/host&gt;
+ *   &lt;host&gt;fd00:1::/64&lt;/host&gt;
  * &lt;/remote&gt;
  * </pre>
  *
+ * All addresses and subnets are compiled into a prefix tree, so that checking an
+ * address doesn't depend on the number of subnets configured.
+ *
  * @author roland
  * @since 02.09.11
  *
  */
 public class NetworkChecker extends AbstractChecker<String[]> {
 
+    // Host names, null if there are no restrictions
     private Set<String> allowedHostsSet;
-    private Set<String> allowedSubnetsSet;
 
-    // Simple patterns, could be mor specific
-    private static final Pattern IP_PATTERN = Pattern.compile("^[\\d.]+$");
-    private static final Pattern SUBNET_PATTERN = Pattern.compile("^[\\d.]+/[\\d.]+$");
+    // Allowed addresses and subnets
+    private IpPrefixTrie allowedNetworks;
+
+    // Subnets whose netmask is not a prefix (e.g. 255.0.255.0), checked one by one
+    private List<String> allowedSubnetsWithGaps;
 
     /**
      * Construct this checker from a given document
@@ -66,6 +71,8 @@ public class NetworkChecker extends AbstractChecker<String[]> {
         }
 
         allowedHostsSet = new HashSet<String>();
+        allowedNetworks = new IpPrefixTrie();
+        allowedSubnetsWithGaps = new ArrayList<String>();
         for (int i = 0;i<nodes.getLength();i++) {
             Node node = nodes.item(i);
             NodeList childs = node.getChildNodes();
@@ -75,15 +82,7 @@ public class NetworkChecker extends AbstractChecker<String[]> {
                     continue;
                 }
                 assertNodeName(hostNode,"host");
-                String host = hostNode.getTextContent().trim().toLowerCase();
-                if (SUBNET_PATTERN.matcher(host).matches()) {
-                    if (allowedSubnetsSet == null) {
-                        allowedSubnetsSet = new HashSet<String>();
-                    }
-                    allowedSubnetsSet.add(host);
-                } else {
-                    allowedHostsSet.add(host);
-                }
+                addHost(hostNode.getTextContent().trim().toLowerCase());
             }
         }
     }
@@ -103,8 +102,12 @@ public class NetworkChecker extends AbstractChecker<String[]> {
             if (allowedHostsSet.contains(addr)) {
                 return true;
             }
-            if (allowedSubnetsSet != null && IP_PATTERN.matcher(addr).matches()) {
-                for (String subnet : allowedSubnetsSet) {
+            byte[] ip = IpChecker.parseAddress(addr);
+            if (ip != null) {
+                if (allowedNetworks.contains(ip)) {
+                    return true;
+                }
+                for (String subnet : allowedSubnetsWithGaps) {
                     if (IpChecker.matches(subnet, addr)) {
                         return true;
                     }
@@ -113,4 +116,25 @@ public class NetworkChecker extends AbstractChecker<String[]> {
         }
         return false;
     }
+
+    // Add a host name, an IP address or a subnet
+    private void addHost(String pHost) {
+        String[] parts = pHost.split("/", 2);
+        byte[] ip = IpChecker.parseAddress(parts[0]);
+        if (parts.length == 2) {
+            if (ip == null) {
+                throw new IllegalArgumentException("Invalid IP-Adresse " + parts[0] + " in subnet " + pHost);
+            }
+            int prefixLength = IpChecker.getPrefixLength(IpChecker.parseNetmask(parts[1], ip.length));
+            if (prefixLength >= 0) {
+                allowedNetworks.add(ip, prefixLength);
+            } else {
+                allowedSubnetsWithGaps.add(pHost);
+            }
+        } else if (ip != null) {
+            allowedNetworks.add(ip, ip.length * 8);
+        } else {
+            allowedHostsSet.add(pHost);
+        }
+    }
 }
@@ -0,0 +1,134 @@
+package org.jolokia.util;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream for streaming responses, which are compressed only when they reach
+ * a certain size. Everything written is kept in memory until the threshold is
+ * reached. Then the response is opened for a compressed answer and written
+ * compressed from then on. If the stream is closed before the threshold is reached,
+ * the response is sent uncompressed with a known content length.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class CompressingOutputStream extends OutputStream {
+
+    /**
+     * Callback for setting up the response (headers) before the body gets written.
+     */
+    public interface ResponseOpener {
+        /**
+         * Prepare the response and return the stream for its body
+         *
+         * @param pEncoding content encoding used for the body or null if the body is not compressed
+         * @param pLength length of the body if known, -1 otherwise
+         * @return the stream to write the body to
+         * @throws IOException if the response cannot be opened
+         */
+        OutputStream open(String pEncoding, int pLength) throws IOException;
+    }
+
+    private final ResponseOpener opener;
+    private final String encoding;
+    private final int threshold;
+    private final int level;
+
+    // Holds the data until the threshold is reached
+    private ByteArrayOutputStream buffer;
+
+    // Stream opened, compressing when the threshold has been reached
+    private OutputStream out;
+
+    private boolean closed;
+
+    /**
+     * Constructor
+     *
+     * @param pOpener callback for opening the response
+     * @param pEncoding content encoding to use, either {@link CompressionUtil#GZIP} or {@link CompressionUtil#DEFLATE}
+     * @param pThreshold minimal number of bytes for compressing the response
+     * @param pLevel compression level
+     */
+    public CompressingOutputStream(ResponseOpener pOpener, String pEncoding, int pThreshold, int pLevel) {
+        opener = pOpener;
+        encoding = pEncoding;
+        threshold = pThreshold;
+        level = pLevel;
+        buffer = new ByteArrayOutputStream(Math.min(Math.max(pThreshold, 32), 8192));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (out == null) {
+            if (buffer.size() + len < threshold) {
+                buffer.write(b, off, len);
+                return;
+            }
+            out = CompressionUtil.compress(opener.open(encoding, -1), encoding, level);
+            buffer.writeTo(out);
+            buffer = null;
+        }
+        out.write(b, off, len);
+    }
+
+    /**
+     * Flush the data written so far. This has only an effect when the threshold has already
+     * been reached.
+     *
+     * @throws IOException if flushing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Finish the response. If the threshold has not been reached, the response is sent uncompressed.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (out == null) {
+            out = opener.open(null, buffer.size());
+            buffer.writeTo(out);
+            buffer = null;
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,250 @@
+package org.jolokia.util;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+import java.util.zip.*;
+
+/**
+ * Helper for the HTTP content encodings "gzip" and "deflate" which are used
+ * for compressing responses and for reading compressed POST requests.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public final class CompressionUtil {
+
+    /** Content encoding for gzip compression */
+    public static final String GZIP = "gzip";
+
+    /** Content encoding for deflate compression (zlib format as defined by RFC 1950) */
+    public static final String DEFLATE = "deflate";
+
+    private CompressionUtil() { }
+
+    /**
+     * Select the content encoding for a response from the value of an "Accept-Encoding" header.
+     * gzip is preferred over deflate, encodings with a quality of 0 are never selected.
+     *
+     * @param pAcceptEncoding value of the "Accept-Encoding" header, can be null
+     * @return {@link #GZIP}, {@link #DEFLATE} or null if the response should not be compressed
+     */
+    public static String selectEncoding(String pAcceptEncoding) {
+        if (pAcceptEncoding == null) {
+            return null;
+        }
+        float gzip = -1, deflate = -1, any = -1;
+        for (String part : pAcceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase();
+            float quality = getQuality(params);
+            if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+                gzip = quality;
+            } else if (DEFLATE.equals(coding)) {
+                deflate = quality;
+            } else if ("*".equals(coding)) {
+                any = quality;
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        return deflate > 0 ? DEFLATE : null;
+    }
+
+    /**
+     * Check the compression level
+     *
+     * @param pLevel level to check
+     * @return the given level
+     * @throws IllegalArgumentException if the level is not between 1 and 9
+     */
+    public static int checkLevel(int pLevel) {
+        if (pLevel < Deflater.BEST_SPEED || pLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + pLevel + " (must be between " +
+                                               Deflater.BEST_SPEED + " and " + Deflater.BEST_COMPRESSION + ")");
+        }
+        return pLevel;
+    }
+
+    /**
+     * Wrap a stream so that everything written to it gets compressed. The returned
+     * stream must be closed for finishing the compression.
+     *
+     * @param pOut stream to write the compressed data to
+     * @param pEncoding either {@link #GZIP} or {@link #DEFLATE}
+     * @param pLevel compression level
+     * @return compressing stream
+     * @throws IOException if the gzip header cannot be written
+     */
+    public static OutputStream compress(OutputStream pOut, String pEncoding, int pLevel) throws IOException {
+        if (GZIP.equals(pEncoding)) {
+            return new LevelGzipOutputStream(pOut, pLevel);
+        } else if (DEFLATE.equals(pEncoding)) {
+            return new EndingDeflaterOutputStream(pOut, pLevel);
+        } else {
+            throw new IllegalArgumentException("Unsupported content encoding " + pEncoding);
+        }
+    }
+
+    /**
+     * Compress a byte array
+     *
+     * @param pData data to compress
+     * @param pEncoding either {@link #GZIP} or {@link #DEFLATE}
+     * @param pLevel compression level
+     * @return the compressed data
+     * @throws IOException if compression fails
+     */
+    public static byte[] compress(byte[] pData, String pEncoding, int pLevel) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(pData.length / 4, 64));
+        OutputStream out = compress(bos, pEncoding, pLevel);
+        try {
+            out.write(pData);
+        } finally {
+            out.close();
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Wrap the body of a request according to its "Content-Encoding" header so that it
+     * can be read uncompressed. The uncompressed body of a compressed request is limited
+     * so that a small request cannot expand to an arbitrary size.
+     *
+     * @param pIn request body
+     * @param pContentEncoding value of the "Content-Encoding" header, can be null
+     * @param pMaxSize maximum number of bytes which can be read from a decompressed body, 0 for no limit
+     * @return stream returning the uncompressed body. Reading beyond the limit throws an
+     *         {@link IllegalArgumentException}.
+     * @throws IOException if the gzip header cannot be read
+     * @throws IllegalArgumentException if the content encoding is not supported
+     */
+    public static InputStream decompress(InputStream pIn, String pContentEncoding, long pMaxSize) throws IOException {
+        if (pContentEncoding == null) {
+            return pIn;
+        }
+        String encoding = pContentEncoding.trim().toLowerCase();
+        InputStream ret;
+        if (encoding.length() == 0 || "identity".equals(encoding)) {
+            return pIn;
+        } else if (GZIP.equals(encoding) || "x-gzip".equals(encoding)) {
+            ret = new GZIPInputStream(pIn);
+        } else if (DEFLATE.equals(encoding)) {
+            ret = new InflaterInputStream(pIn);
+        } else {
+            throw new IllegalArgumentException("Unsupported content encoding " + pContentEncoding + " of request");
+        }
+        return pMaxSize > 0 ? new LimitedInputStream(ret, pMaxSize) : ret;
+    }
+
+    // ===========================================================================================
+
+    // Quality given as parameter "q", 1 if not given
+    private static float getQuality(String[] pParams) {
+        for (int i = 1; i < pParams.length; i++) {
+            String param = pParams[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(param.substring(2).trim());
+                } catch (NumberFormatException exp) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // Stream which throws an exception when more than a given number of bytes is read
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long max;
+        private long count;
+
+        private LimitedInputStream(InputStream pIn, long pMax) {
+            super(pIn);
+            max = pMax;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] pBuf, int pOff, int pLen) throws IOException {
+            int nr = super.read(pBuf, pOff, pLen);
+            if (nr > 0) {
+                count(nr);
+            }
+            return nr;
+        }
+
+        @Override
+        public long skip(long pNr) throws IOException {
+            long nr = super.skip(pNr);
+            count(nr);
+            return nr;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long pNr) {
+            count += pNr;
+            if (count > max) {
+                throw new IllegalArgumentException("Decompressed request exceeds the maximum size of " + max + " bytes");
+            }
+        }
+    }
+
+    // GZIPOutputStream with a configurable level
+    private static final class LevelGzipOutputStream extends GZIPOutputStream {
+        private LevelGzipOutputStream(OutputStream pOut, int pLevel) throws IOException {
+            super(pOut);
+            def.setLevel(pLevel);
+        }
+    }
+
+    // A deflater given to a DeflaterOutputStream is not released on close
+    private static final class EndingDeflaterOutputStream extends DeflaterOutputStream {
+        private EndingDeflaterOutputStream(OutputStream pOut, int pLevel) {
+            super(pOut, new Deflater(pLevel));
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+}
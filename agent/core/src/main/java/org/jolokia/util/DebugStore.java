@@ -2,7 +2,12 @@ package org.jolokia.util;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.json.simple.JSONObject;
 
 /*
  * Copyright 2009-2013 Roland Huss
@@ -25,15 +30,25 @@ import java.util.LinkedList;
  * Simple store for remembering debug info and returning it via a JMX operation
  * (exposed in ConfigMBean)
  *
+ * Messages are kept in a fixed size ring buffer which is updated without locking, so that
+ * switching on debugging doesn't serialize all requests. When the buffer is full, the oldest
+ * message is overwritten. Along with each message, the time and the name of the logging
+ * thread is recorded.
+ *
  * @author roland
  * @since Jun 15, 2009
  */
 public class DebugStore {
 
-    @SuppressWarnings("PMD.LooseCoupling")
-    private LinkedList<Entry> debugEntries = new LinkedList<Entry>();
-    private int maxDebugEntries;
-    private boolean isDebug;
+    // Keys used in the JSON representation
+    private static final String KEY_TIMESTAMP = "timestamp";
+    private static final String KEY_THREAD = "thread";
+    private static final String KEY_MESSAGE = "message";
+    private static final String KEY_EXCEPTION = "exception";
+
+    // Replaced as a whole when resized or reset
+    private volatile Ring ring;
+    private volatile boolean isDebug;
 
     /**
      * Create the debug store for holding debug messages
@@ -42,7 +57,7 @@ public class DebugStore {
      * @param pDebug whether debug is switched on
      */
     public DebugStore(int pMaxDebugEntries, boolean pDebug) {
-        maxDebugEntries = pMaxDebugEntries;
+        ring = new Ring(pMaxDebugEntries);
         isDebug = pDebug;
     }
 
@@ -55,7 +70,7 @@ public class DebugStore {
         if (!isDebug) {
             return;
         }
-        add(System.currentTimeMillis() / 1000,pMessage);
+        ring.add(System.currentTimeMillis(), Thread.currentThread().getName(), pMessage, null);
     }
 
 
@@ -66,7 +81,7 @@ public class DebugStore {
      * @param pThrowable exception to store
      */
     public void log(String pMessage, Throwable pThrowable) {
-        add(System.currentTimeMillis() / 1000,pMessage,pThrowable);
+        ring.add(System.currentTimeMillis(), Thread.currentThread().getName(), pMessage, pThrowable);
     }
 
     /**
@@ -75,27 +90,51 @@ public class DebugStore {
      * @return debug string
      */
     public String debugInfo() {
-        if (!isDebug || debugEntries.size() == 0) {
+        if (!isDebug) {
             return "";
         }
         StringBuffer ret = new StringBuffer();
-        for (int i = debugEntries.size() - 1;i >= 0;i--) {
-            Entry entry = debugEntries.get(i);
-            ret.append(entry.timestamp).append(": ").append(entry.message).append("\n");
+        for (Entry entry : ring.getEntries()) {
+            ret.append(entry.timestamp / 1000).append(": [").append(entry.thread).append("] ")
+               .append(entry.message).append("\n");
             if (entry.throwable != null) {
-                StringWriter writer = new StringWriter();
-                entry.throwable.printStackTrace(new PrintWriter(writer));
-                ret.append(writer.toString());
+                ret.append(getStackTrace(entry.throwable));
             }
         }
         return ret.toString();
     }
 
+    /**
+     * Get back all previously logged and stored debug messages as a list of JSON objects, the oldest
+     * message first. Each object contains the time of the message in milliseconds (<code>timestamp</code>),
+     * the name of the logging thread (<code>thread</code>), the message itself (<code>message</code>)
+     * and the stack trace of an exception if one was logged (<code>exception</code>).
+     *
+     * @return list of debug messages, which is empty if debugging is switched off
+     */
+    public List<JSONObject> debugInfoAsJson() {
+        List<JSONObject> ret = new ArrayList<JSONObject>();
+        if (!isDebug) {
+            return ret;
+        }
+        for (Entry entry : ring.getEntries()) {
+            JSONObject json = new JSONObject();
+            json.put(KEY_TIMESTAMP, entry.timestamp);
+            json.put(KEY_THREAD, entry.thread);
+            json.put(KEY_MESSAGE, entry.message);
+            if (entry.throwable != null) {
+                json.put(KEY_EXCEPTION, getStackTrace(entry.throwable));
+            }
+            ret.add(json);
+        }
+        return ret;
+    }
+
     /**
      * Reset debug info
      */
     public void resetDebugInfo() {
-        debugEntries.clear();
+        ring = new Ring(ring.capacity());
     }
 
     /**
@@ -124,55 +163,97 @@ public class DebugStore {
      * @return number of maximum debug entries
      */
     public int getMaxDebugEntries() {
-        return maxDebugEntries;
+        return ring.capacity();
     }
 
     /**
      * Set the number of maximum debuggin entries and trim the list of
-     * debug entries
+     * debug entries. Messages logged while the size is changed might get lost.
      *
      * @param pNumber the maximal number of debug entries
      */
-    public void setMaxDebugEntries(int pNumber) {
-        maxDebugEntries = pNumber;
-        trim();
+    public synchronized void setMaxDebugEntries(int pNumber) {
+        Ring newRing = new Ring(pNumber);
+        for (Entry entry : ring.getEntries()) {
+            newRing.add(entry.timestamp, entry.thread, entry.message, entry.throwable);
+        }
+        ring = newRing;
     }
 
-    // add a message along with a time stamp
-    private synchronized void add(long pTime,String message) {
-        debugEntries.addFirst(new Entry(pTime,message));
-        trim();
+    private String getStackTrace(Throwable pThrowable) {
+        StringWriter writer = new StringWriter();
+        pThrowable.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
     }
 
-    private synchronized void add(long pTimestamp, String pMessage, Throwable pThrowable) {
-        debugEntries.addFirst(new Entry(pTimestamp,pMessage,pThrowable));
-        trim();
-    }
+    // ========================================================================
 
-    // trim list of debug entries
-    private synchronized void trim() {
-        while (debugEntries.size() > maxDebugEntries) {
-            debugEntries.removeLast();
+    // Ring buffer of entries. Writers reserve a sequence number and store the entry in the slot belonging
+    // to this number unless the slot already holds a newer entry. Readers check the sequence number of the entries found, so that entries which are
+    // not yet written or already overwritten are skipped.
+    private static final class Ring {
+
+        private final AtomicReferenceArray<Entry> slots;
+        private final AtomicLong nextSequence = new AtomicLong();
+
+        private Ring(int pCapacity) {
+            slots = new AtomicReferenceArray<Entry>(Math.max(pCapacity, 0));
         }
-    }
 
-    // ========================================================================
+        private int capacity() {
+            return slots.length();
+        }
+
+        private void add(long pTimestamp, String pThread, String pMessage, Throwable pThrowable) {
+            int capacity = slots.length();
+            if (capacity == 0) {
+                return;
+            }
+            long sequence = nextSequence.getAndIncrement();
+            int idx = (int) (sequence % capacity);
+            Entry entry = new Entry(sequence, pTimestamp, pThread, pMessage, pThrowable);
+            // A writer which has been delayed after reserving its sequence must not overwrite
+            // a newer entry which has been stored in the meantime
+            while (true) {
+                Entry current = slots.get(idx);
+                if (current != null && current.sequence > sequence) {
+                    return;
+                }
+                if (slots.compareAndSet(idx, current, entry)) {
+                    return;
+                }
+            }
+        }
+
+        // All entries, the oldest first
+        private List<Entry> getEntries() {
+            int capacity = slots.length();
+            long next = nextSequence.get();
+            List<Entry> ret = new ArrayList<Entry>();
+            for (long sequence = Math.max(0, next - capacity); sequence < next; sequence++) {
+                Entry entry = slots.get((int) (sequence % capacity));
+                if (entry != null && entry.sequence == sequence) {
+                    ret.add(entry);
+                }
+            }
+            return ret;
+        }
+    }
 
-    // a singel entry in the debug store
+    // a single entry in the debug store
     private static final class Entry {
-        private long timestamp;
-        private String message;
-        private Throwable throwable;
+        private final long sequence;
+        private final long timestamp;
+        private final String thread;
+        private final String message;
+        private final Throwable throwable;
 
-        private Entry(long pTimestamp, String pMessage, Throwable pThrowable) {
+        private Entry(long pSequence, long pTimestamp, String pThread, String pMessage, Throwable pThrowable) {
+            sequence = pSequence;
             timestamp = pTimestamp;
+            thread = pThread;
             message = pMessage;
             throwable = pThrowable;
         }
-
-        private Entry(long pTime, String pMessage) {
-            timestamp = pTime;
-            message = pMessage;
-        }
     }
 }
@@ -16,10 +16,13 @@ package org.jolokia.util;
  * limitations under the License.
  */
 
+import java.util.Arrays;
 
 /**
  * Checks whether a certain ip adresse is either equal another
- * address or falls within a subnet
+ * address or falls within a subnet. IPv4 and IPv6 addresses are supported,
+ * IPv4 addresses mapped into IPv6 (<code>::ffff:a.b.c.d</code>) are treated
+ * as IPv4 addresses.
  *
  * @author roland
  * @since Oct 8, 2009
@@ -40,20 +43,15 @@ public final class IpChecker {
      */
     public static boolean matches(String pExpected, String pToCheck) {
         String[] parts = pExpected.split("/",2);
+        byte[] ipPattern = parseValidAddress(parts[0]);
+        byte[] ipToCheck = parseValidAddress(pToCheck);
         if (parts.length == 1) {
             // No Net part given, check for equality ...
-            // Check for valid ips
-            convertToIntTuple(pExpected);
-            convertToIntTuple(pToCheck);
-            return pExpected.equals(pToCheck);
-        } else if (parts.length == 2) {
-            int ipToCheck[] = convertToIntTuple(pToCheck);
-            int ipPattern[] = convertToIntTuple(parts[0]);
-            int netmask[];
-            if (parts[1].length() <= 2) {
-                netmask = transformCidrToNetmask(parts[1]);
-            } else {
-                netmask = convertToIntTuple(parts[1]);
+            return Arrays.equals(ipPattern, ipToCheck);
+        } else {
+            byte[] netmask = parseNetmask(parts[1], ipPattern.length);
+            if (ipPattern.length != ipToCheck.length) {
+                return false;
             }
             for (int i = 0; i<ipToCheck.length; i++) {
                 if ((ipPattern[i] & netmask[i]) != (ipToCheck[i] & netmask[i])) {
@@ -61,30 +59,88 @@ public final class IpChecker {
                 }
             }
             return true;
-        } else {
-            throw new IllegalArgumentException("Invalid IP adress specification " + pExpected);
         }
-	}
+    }
+
+    /**
+     * Parse an IPv4 or IPv6 address literal. No name lookup is done.
+     *
+     * @param pAddress address to parse
+     * @return the address as 4 bytes (IPv4) or 16 bytes (IPv6) or <code>null</code> if the given string is
+     *         not a valid IP address
+     */
+    public static byte[] parseAddress(String pAddress) {
+        if (pAddress == null || pAddress.length() == 0) {
+            return null;
+        }
+        if (pAddress.indexOf(':') < 0) {
+            return parseIpv4(pAddress);
+        }
+        byte[] ret = parseIpv6(pAddress);
+        return ret != null && isIpv4Mapped(ret) ? Arrays.copyOfRange(ret, 12, 16) : ret;
+    }
+
+    /**
+     * Parse a netmask which is either given as prefix length (e.g. "24") or as address (e.g. "255.255.255.0")
+     *
+     * @param pNetmask netmask to parse
+     * @param pLength length of the address in bytes to which this mask applies
+     * @return the netmask as bytes
+     * @throws IllegalArgumentException if the netmask is invalid
+     */
+    public static byte[] parseNetmask(String pNetmask, int pLength) {
+        if (pNetmask.indexOf('.') >= 0 || pNetmask.indexOf(':') >= 0) {
+            byte[] ret = parseValidAddress(pNetmask);
+            if (ret.length != pLength) {
+                throw new IllegalArgumentException("Invalid netmask specification " + pNetmask);
+            }
+            return ret;
+        }
+        return transformCidrToNetmask(pNetmask, pLength);
+    }
+
+    /**
+     * Get the prefix length of a netmask
+     *
+     * @param pNetmask netmask to examine
+     * @return the number of leading one bits or -1 if the netmask has gaps
+     */
+    public static int getPrefixLength(byte[] pNetmask) {
+        int bits = 0;
+        while (bits < pNetmask.length * 8 && isBitSet(pNetmask, bits)) {
+            bits++;
+        }
+        for (int i = bits; i < pNetmask.length * 8; i++) {
+            if (isBitSet(pNetmask, i)) {
+                return -1;
+            }
+        }
+        return bits;
+    }
+
+    // ==============================================================================================
+
+    private static boolean isBitSet(byte[] pBytes, int pBit) {
+        return (pBytes[pBit >> 3] & (0x80 >> (pBit & 7))) != 0;
+    }
+
+    private static byte[] parseValidAddress(String pAddress) {
+        byte[] ret = parseAddress(pAddress);
+        if (ret == null) {
+            throw new IllegalArgumentException("Invalid IP-Adresse " + pAddress);
+        }
+        return ret;
+    }
 
-	private static int[] transformCidrToNetmask(String pCidrString) {
+    private static byte[] transformCidrToNetmask(String pCidrString, int pLength) {
         try {
             int pCidr = Integer.parseInt(pCidrString);
-            if (pCidr < 0 || pCidr > 32) {
+            if (pCidr < 0 || pCidr > pLength * 8) {
                 throw new IllegalArgumentException("Invalid netmask specification " + pCidr);
             }
-            StringBuffer buf = new StringBuffer();
-            for (int i=0;i<pCidr;i++) {
-                buf.append("1");
-            }
-            for (int i=pCidr;i<32;i++) {
-                buf.append("0");
-            }
-            int[] ret = new int[4];
-            int start = 0,end = 8;
-
-            for (int j=0;j<4;j++) {
-                ret[j] = (Integer.parseInt(buf.substring(start,end), 2));
-                start += 8; end += 8;
+            byte[] ret = new byte[pLength];
+            for (int i = 0; i < pCidr; i++) {
+                ret[i >> 3] |= 0x80 >> (i & 7);
             }
             return ret;
         } catch (NumberFormatException exp) {
@@ -92,23 +148,98 @@ public final class IpChecker {
         }
     }
 
-
-    private static int[] convertToIntTuple(String pAddress) {
-        String[] parts = pAddress.split("\\.");
+    private static byte[] parseIpv4(String pAddress) {
+        String[] parts = pAddress.split("\\.", -1);
         if (parts.length != 4) {
-            throw new IllegalArgumentException("Invalid IP-Adresse " + pAddress);
+            return null;
         }
-        int ret[] = new int[4];
+        byte[] ret = new byte[4];
         for (int i = 0; i < 4; i++) {
-            try {
-                ret[i] = Integer.parseInt(parts[i]);
-                if (ret[i] < 0 || ret[i] > 255) {
-                    throw new IllegalArgumentException("Invalid IP-Adresse " + pAddress);
+            int value = parseNumber(parts[i], 10, 3);
+            if (value < 0 || value > 255) {
+                return null;
+            }
+            ret[i] = (byte) value;
+        }
+        return ret;
+    }
+
+    private static byte[] parseIpv6(String pAddress) {
+        String address = pAddress;
+        if (address.startsWith("[") && address.endsWith("]")) {
+            address = address.substring(1, address.length() - 1);
+        }
+        // Strip off a scope
+        int scopeIdx = address.indexOf('%');
+        if (scopeIdx >= 0) {
+            address = address.substring(0, scopeIdx);
+        }
+        int compressIdx = address.indexOf("::");
+        if (compressIdx >= 0 && address.indexOf("::", compressIdx + 1) >= 0) {
+            return null;
+        }
+        byte[] head = compressIdx >= 0 ? parseIpv6Groups(address.substring(0, compressIdx)) : parseIpv6Groups(address);
+        byte[] tail = compressIdx >= 0 ? parseIpv6Groups(address.substring(compressIdx + 2)) : new byte[0];
+        if (head == null || tail == null ||
+            (compressIdx >= 0 ? head.length + tail.length >= 16 : head.length != 16)) {
+            return null;
+        }
+        byte[] ret = new byte[16];
+        System.arraycopy(head, 0, ret, 0, head.length);
+        System.arraycopy(tail, 0, ret, 16 - tail.length, tail.length);
+        return ret;
+    }
+
+    // Parse colon separated groups, where the last one can be an IPv4 address
+    private static byte[] parseIpv6Groups(String pGroups) {
+        if (pGroups.length() == 0) {
+            return new byte[0];
+        }
+        String[] groups = pGroups.split(":", -1);
+        byte[] ret = new byte[groups.length * 2 + 2];
+        int len = 0;
+        for (int i = 0; i < groups.length; i++) {
+            if (i == groups.length - 1 && groups[i].indexOf('.') >= 0) {
+                byte[] ipv4 = parseIpv4(groups[i]);
+                if (ipv4 == null) {
+                    return null;
+                }
+                System.arraycopy(ipv4, 0, ret, len, 4);
+                len += 4;
+            } else {
+                int value = parseNumber(groups[i], 16, 4);
+                if (value < 0) {
+                    return null;
                 }
-            } catch (NumberFormatException exp) {
-                throw new IllegalArgumentException("Invalid IP-Adresse " + pAddress,exp);
+                ret[len++] = (byte) (value >> 8);
+                ret[len++] = (byte) value;
+            }
+        }
+        return len > 16 ? null : Arrays.copyOf(ret, len);
+    }
+
+    // Parse a non-negative number with a maximum number of digits, return -1 if not valid
+    private static int parseNumber(String pNumber, int pRadix, int pMaxDigits) {
+        if (pNumber.length() == 0 || pNumber.length() > pMaxDigits) {
+            return -1;
+        }
+        int ret = 0;
+        for (int i = 0; i < pNumber.length(); i++) {
+            int digit = Character.digit(pNumber.charAt(i), pRadix);
+            if (digit < 0) {
+                return -1;
             }
+            ret = ret * pRadix + digit;
         }
         return ret;
     }
+
+    private static boolean isIpv4Mapped(byte[] pAddress) {
+        for (int i = 0; i < 10; i++) {
+            if (pAddress[i] != 0) {
+                return false;
+            }
+        }
+        return pAddress[10] == (byte) 0xff && pAddress[11] == (byte) 0xff;
+    }
 }
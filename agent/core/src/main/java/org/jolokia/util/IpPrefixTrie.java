@@ -0,0 +1,102 @@
+package org.jolokia.util;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Binary prefix tree holding IPv4 and IPv6 networks. Checking whether an address
+ * is contained in one of the networks costs at most one step per address bit, independent
+ * of the number of networks added. The addresses are in the format returned by
+ * {@link IpChecker#parseAddress(String)}.
+ *
+ * This class is not thread safe for adding networks, but can be used concurrently for
+ * lookups once it is filled.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class IpPrefixTrie {
+
+    private final Node ipv4Root = new Node();
+    private final Node ipv6Root = new Node();
+
+    /**
+     * Add a network
+     *
+     * @param pAddress address of the network
+     * @param pPrefixLength number of significant bits of the address
+     */
+    public void add(byte[] pAddress, int pPrefixLength) {
+        if (pPrefixLength < 0 || pPrefixLength > pAddress.length * 8) {
+            throw new IllegalArgumentException("Invalid prefix length " + pPrefixLength);
+        }
+        Node node = getRoot(pAddress);
+        for (int i = 0; i < pPrefixLength && !node.terminal; i++) {
+            int bit = getBit(pAddress, i);
+            if (node.children[bit] == null) {
+                node.children[bit] = new Node();
+            }
+            node = node.children[bit];
+        }
+        node.terminal = true;
+        // Any more specific network is covered now
+        node.children[0] = null;
+        node.children[1] = null;
+    }
+
+    /**
+     * Check whether an address is contained in any network added
+     *
+     * @param pAddress address to check
+     * @return true if the address belongs to one of the networks
+     */
+    public boolean contains(byte[] pAddress) {
+        Node node = getRoot(pAddress);
+        int bits = pAddress.length * 8;
+        for (int i = 0; node != null; i++) {
+            if (node.terminal) {
+                return true;
+            }
+            if (i == bits) {
+                return false;
+            }
+            node = node.children[getBit(pAddress, i)];
+        }
+        return false;
+    }
+
+    // ================================================================================
+
+    private Node getRoot(byte[] pAddress) {
+        if (pAddress.length == 4) {
+            return ipv4Root;
+        } else if (pAddress.length == 16) {
+            return ipv6Root;
+        } else {
+            throw new IllegalArgumentException("Invalid address length " + pAddress.length);
+        }
+    }
+
+    private static int getBit(byte[] pAddress, int pBit) {
+        return (pAddress[pBit >> 3] >> (7 - (pBit & 7))) & 1;
+    }
+
+    // Single node, terminal if a network ends here
+    private static final class Node {
+        private boolean terminal;
+        private final Node[] children = new Node[2];
+    }
+}
@@ -0,0 +1,137 @@
+package org.jolokia.util;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Simple thread safe cache which holds a bounded number of entries. When the
+ * maximum size is exceeded, the least recently accessed entry is removed.
+ *
+ * Larger caches are split into segments which are locked independently, so that concurrent
+ * lookups of different keys don't contend for a single lock. Since the eviction is done per
+ * segment, the entry removed is then the least recently accessed one of its segment.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class LRUCache<K, V> {
+
+    // Maximum number of segments, must be a power of two
+    private static final int MAX_SEGMENTS = 16;
+
+    // Minimum number of entries per segment
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    private final Segment<K, V>[] segments;
+
+    /**
+     * Create a cache
+     *
+     * @param pMaxSize maximum number of entries to hold
+     */
+    @SuppressWarnings("unchecked")
+    public LRUCache(int pMaxSize) {
+        int nr = 1;
+        while (nr * 2 <= MAX_SEGMENTS && nr * 2 * MIN_SEGMENT_SIZE <= pMaxSize) {
+            nr *= 2;
+        }
+        segments = new Segment[nr];
+        for (int i = 0; i < nr; i++) {
+            // Spread the remainder so that the sizes add up to the maximum size
+            segments[i] = new Segment<K, V>(pMaxSize / nr + (i < pMaxSize % nr ? 1 : 0));
+        }
+    }
+
+    /**
+     * Get a cached value
+     *
+     * @param pKey key to lookup
+     * @return the value or null if not cached
+     */
+    public V get(K pKey) {
+        Segment<K, V> segment = getSegment(pKey);
+        synchronized (segment) {
+            return segment.get(pKey);
+        }
+    }
+
+    /**
+     * Add a value to the cache, possibly removing the least recently used entry
+     *
+     * @param pKey key to store
+     * @param pValue value to store
+     */
+    public void put(K pKey, V pValue) {
+        Segment<K, V> segment = getSegment(pKey);
+        synchronized (segment) {
+            segment.put(pKey, pValue);
+        }
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Number of cached entries
+     *
+     * @return number of entries
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    // ==========================================================================================
+
+    private Segment<K, V> getSegment(K pKey) {
+        int hash = pKey != null ? pKey.hashCode() : 0;
+        // Use the high bits, too, since only the lowest bits select the segment
+        hash ^= hash >>> 16;
+        return segments[hash & (segments.length - 1)];
+    }
+
+    // Part of the cache, ordered by access. Must be accessed while holding its lock.
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+
+        private final int maxSize;
+
+        private Segment(int pMaxSize) {
+            super(16, 0.75f, true);
+            maxSize = pMaxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> pEldest) {
+            return size() > maxSize;
+        }
+    }
+}
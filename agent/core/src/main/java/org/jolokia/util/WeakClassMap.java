@@ -0,0 +1,149 @@
+package org.jolokia.util;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread safe map with classes as keys which are only weakly referenced, so
+ * that caching information for a class does not prevent its classloader
+ * from being garbage collected (e.g. after a redeploy). Lookups don't need
+ * to lock.
+ *
+ * Values must not reference the class of their key strongly, otherwise the
+ * key will never be released. Wrap such values into a {@link java.lang.ref.SoftReference}.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class WeakClassMap<V> {
+
+    private final ConcurrentMap<Object, V> map = new ConcurrentHashMap<Object, V>();
+
+    // Queue for keys whose class has been collected
+    private final ReferenceQueue<Class> queue = new ReferenceQueue<Class>();
+
+    /**
+     * Get the value for a class
+     *
+     * @param pClass class to lookup
+     * @return the value stored or null
+     */
+    public V get(Class pClass) {
+        expungeStaleEntries();
+        return map.get(new LookupKey(pClass));
+    }
+
+    /**
+     * Store a value for a class
+     *
+     * @param pClass class to use as key
+     * @param pValue value to store, must not be null
+     */
+    public void put(Class pClass, V pValue) {
+        expungeStaleEntries();
+        map.put(new WeakKey(pClass, queue), pValue);
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        map.clear();
+    }
+
+    /**
+     * Number of entries stored
+     *
+     * @return number of entries
+     */
+    public int size() {
+        expungeStaleEntries();
+        return map.size();
+    }
+
+    // Remove all entries whose class has been garbage collected
+    private void expungeStaleEntries() {
+        Object key;
+        while ((key = queue.poll()) != null) {
+            map.remove(key);
+        }
+    }
+
+    // ==================================================================================
+
+    // Common access to the class of a key
+    private interface ClassKey {
+        Class getKeyClass();
+    }
+
+    // Key used for storing
+    private static final class WeakKey extends WeakReference<Class> implements ClassKey {
+
+        private final int hash;
+
+        private WeakKey(Class pClass, ReferenceQueue<Class> pQueue) {
+            super(pClass, pQueue);
+            hash = System.identityHashCode(pClass);
+        }
+
+        public Class getKeyClass() {
+            return get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object pOther) {
+            if (pOther == this) {
+                return true;
+            }
+            Class clazz = get();
+            return clazz != null && pOther instanceof ClassKey && ((ClassKey) pOther).getKeyClass() == clazz;
+        }
+    }
+
+    // Key used for lookup only which avoids creating a weak reference
+    private static final class LookupKey implements ClassKey {
+
+        private final Class clazz;
+
+        private LookupKey(Class pClass) {
+            clazz = pClass;
+        }
+
+        public Class getKeyClass() {
+            return clazz;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(clazz);
+        }
+
+        @Override
+        public boolean equals(Object pOther) {
+            return pOther instanceof ClassKey && ((ClassKey) pOther).getKeyClass() == clazz;
+        }
+    }
+}
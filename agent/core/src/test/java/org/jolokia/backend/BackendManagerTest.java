@@ -16,6 +16,7 @@ package org.jolokia.backend;
  * limitations under the License.
  */
 
+import java.io.File;
 import java.io.IOException;
 import java.net.SocketException;
 import java.net.UnknownHostException;
@@ -27,7 +28,9 @@ import org.jolokia.backend.executor.NotChangedException;
 import org.jolokia.config.ConfigKey;
 import org.jolokia.config.Configuration;
 import org.jolokia.converter.Converters;
+import org.jolokia.converter.json.StreamingJsonValue;
 import org.jolokia.detector.ServerHandle;
+import org.jolokia.history.HistoryStore;
 import org.jolokia.request.JmxRequest;
 import org.jolokia.request.JmxRequestBuilder;
 import org.jolokia.restrictor.Restrictor;
@@ -65,6 +68,28 @@ public class BackendManagerTest {
         backendManager.destroy();
     }
 
+    @Test
+    public void streamValues() throws MalformedObjectNameException, InstanceNotFoundException, IOException, ReflectionException, AttributeNotFoundException, MBeanException {
+        Configuration config = new Configuration(ConfigKey.AGENT_ID,"test");
+        BackendManager backendManager = new BackendManager(config, log);
+        JmxRequest req = new JmxRequestBuilder(RequestType.READ,"java.lang:type=Memory")
+                .attribute("HeapMemoryUsage")
+                .option(ConfigKey.STREAM_VALUES, "true")
+                .build();
+        JSONObject ret = backendManager.handleRequest(req);
+        assertTrue(ret.get("value") instanceof StreamingJsonValue);
+        assertTrue(ret.toJSONString().contains("\"used\":"));
+
+        req = new JmxRequestBuilder(RequestType.READ,"java.lang:type=Memory")
+                .attribute("HeapMemoryUsage")
+                .path("used")
+                .option(ConfigKey.STREAM_VALUES, "true")
+                .build();
+        ret = backendManager.handleRequest(req);
+        assertTrue((Long) ret.get("value") > 0);
+        backendManager.destroy();
+    }
+
     @Test
     public void notChanged() throws MalformedObjectNameException, MBeanException, AttributeNotFoundException, ReflectionException, InstanceNotFoundException, IOException {
         Configuration config = new Configuration(ConfigKey.DISPATCHER_CLASSES,RequestDispatcherTest.class.getName(),ConfigKey.AGENT_ID,"test");
@@ -127,6 +152,27 @@ public class BackendManagerTest {
         backendManager.destroy();
     }
 
+    @Test
+    public void lockedHistoryFile() throws Exception {
+        File file = File.createTempFile("jolokia-history", ".dat");
+        HistoryStore other = new HistoryStore(10, file);
+        try {
+            Configuration config = new Configuration(ConfigKey.AGENT_ID, "test", ConfigKey.HISTORY_FILE, file.getPath());
+            RecordingLogHandler lhandler = new RecordingLogHandler();
+            BackendManager backendManager = new BackendManager(config, lhandler);
+            // Falls back to a history kept in memory
+            assertEquals(lhandler.error, 1);
+            JmxRequest req = new JmxRequestBuilder(RequestType.READ,"java.lang:type=Memory")
+                    .attribute("HeapMemoryUsage")
+                    .build();
+            assertEquals(backendManager.handleRequest(req).get("status"), 200);
+            backendManager.destroy();
+        } finally {
+            other.close();
+            file.delete();
+        }
+    }
+
     @Test
     public void defaultConfig() {
         Configuration config = new Configuration(ConfigKey.DEBUG_MAX_ENTRIES,"blabal",ConfigKey.AGENT_ID,"test");
@@ -0,0 +1,208 @@
+package org.jolokia.backend;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.*;
+
+import org.jolokia.backend.executor.MBeanServerExecutor;
+import org.jolokia.converter.Converters;
+import org.jolokia.history.HistoryStore;
+import org.jolokia.util.DebugStore;
+import org.jolokia.util.LogHandler;
+import org.testng.annotations.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author roland
+ * @since 18.10.26
+ */
+public class HistorySamplerTest {
+
+    private MBeanServerExecutorLocal executor;
+    private CountingExecutor countingExecutor;
+    private HistoryStore store;
+    private HistorySampler sampler;
+    private Config config;
+
+    @BeforeMethod
+    public void setup() {
+        executor = new MBeanServerExecutorLocal();
+        countingExecutor = new CountingExecutor();
+        store = new HistoryStore(20);
+        sampler = new HistorySampler(countingExecutor, 2, store, new Converters().getToJsonConverter(),
+                                     new LogHandler.StdoutLogHandler(false));
+        config = new Config(store, new DebugStore(10, false), null, sampler, "jolokia:type=Config");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        sampler.stop();
+        executor.destroy();
+    }
+
+    @Test
+    public void sampleGroupedByMBean() throws Exception {
+        config.setHistorySamplingForAttribute("java.lang:type=Threading", "ThreadCount", 10, 5, 0);
+        config.setHistorySamplingForAttribute("java.lang:type=Threading", "PeakThreadCount", 10, 5, 0);
+        config.setHistorySamplingForAttribute("java.lang:type=Runtime", "Uptime", 20, 5, 0);
+        assertEquals(config.getHistorySampledAttributes(), 3);
+
+        long now = System.currentTimeMillis() + 100;
+        sampler.sample(now);
+        assertEquals(countingExecutor.calls, 2);
+        // Nothing due
+        sampler.sample(now + 1000);
+        assertEquals(countingExecutor.calls, 2);
+        // Only threading is due
+        sampler.sample(now + 10000);
+        assertEquals(countingExecutor.calls, 3);
+        sampler.sample(now + 20000);
+        assertEquals(countingExecutor.calls, 5);
+
+        List threadCounts = config.getHistoryForAttribute("java.lang:type=Threading", "ThreadCount", null, null);
+        assertEquals(threadCounts.size(), 3);
+        assertTrue(((Map) threadCounts.get(0)).get("value") instanceof Number);
+        assertEquals(((Map) threadCounts.get(0)).get("timestamp"), (now + 20000) / 1000);
+        assertEquals(config.getHistoryForAttribute("java.lang:type=Runtime", "Uptime", null, null).size(), 2);
+        assertNull(config.getHistoryForAttribute("java.lang:type=Runtime", "Name", null, null));
+
+        // Switch off
+        config.setHistorySamplingForAttribute("java.lang:type=Runtime", "Uptime", 0, 0, 0);
+        assertEquals(config.getHistorySampledAttributes(), 2);
+        assertNull(config.getHistoryForAttribute("java.lang:type=Runtime", "Uptime", null, null));
+        config.resetHistoryEntries();
+        assertEquals(config.getHistorySampledAttributes(), 0);
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void samplePattern() throws Exception {
+        config.setHistorySamplingForAttribute("java.lang:type=Memory*", "ObjectPendingFinalizationCount", 1, 5, 0);
+        long now = System.currentTimeMillis() + 100;
+        sampler.sample(now);
+        sampler.sample(now + 1000);
+        List values = config.getHistoryForAttribute("java.lang:type=Memory", "ObjectPendingFinalizationCount", null, null);
+        assertEquals(values.size(), 2);
+    }
+
+    @Test
+    public void unknownMBeanOrAttribute() throws Exception {
+        config.setHistorySamplingForAttribute("test:type=unknown", "Bla", 1, 5, 0);
+        config.setHistorySamplingForAttribute("java.lang:type=Threading", "Unknown", 1, 5, 0);
+        sampler.sample(System.currentTimeMillis() + 100);
+        assertEquals(config.getHistoryForAttribute("java.lang:type=Threading", "Unknown", null, null).size(), 0);
+    }
+
+    @Test
+    public void samplingThread() throws Exception {
+        config.setHistorySamplingForAttribute("java.lang:type=Threading", "ThreadCount", 1, 5, 0);
+        for (int i = 0; i < 50 && config.getHistoryForAttribute("java.lang:type=Threading", "ThreadCount", null, null).size() == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(config.getHistoryForAttribute("java.lang:type=Threading", "ThreadCount", null, null).size() > 0);
+    }
+
+    @Test
+    public void hangingGetter() throws Exception {
+        ObjectName name = new ObjectName("jolokia.test:type=hanging");
+        Hanging hanging = new Hanging();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(hanging, name);
+        try {
+            config.setHistorySamplingForAttribute(name.toString(), "Value", 1, 5, 0);
+            config.setHistorySamplingForAttribute("java.lang:type=Threading", "ThreadCount", 1, 5, 0);
+            // Only sample explicitly
+            sampler.stop();
+            long start = System.currentTimeMillis();
+            sampler.sample(start + 100);
+            // Abandoned after the sampling interval
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            assertEquals(sampler.getCallGuard().getAbandonedCalls(), 1L);
+            assertEquals(config.getHistoryForAttribute(name.toString(), "Value", null, null).size(), 0);
+            assertEquals(config.getHistoryForAttribute("java.lang:type=Threading", "ThreadCount", null, null).size(), 1);
+        } finally {
+            hanging.release.countDown();
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void noLimit() throws MalformedObjectNameException {
+        config.setHistorySamplingForAttribute("java.lang:type=Threading", "ThreadCount", 1, 0, 0);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void noSampler() throws MalformedObjectNameException {
+        new Config(store, new DebugStore(10, false), "jolokia:type=Config")
+                .setHistorySamplingForAttribute("java.lang:type=Threading", "ThreadCount", 1, 5, 0);
+    }
+
+    // Executor counting the calls
+    private class CountingExecutor implements MBeanServerExecutor {
+
+        private int calls;
+
+        public void each(ObjectName pObjectName, MBeanEachCallback pCallback) throws IOException, ReflectionException, MBeanException {
+            executor.each(pObjectName, pCallback);
+        }
+
+        public <R> R call(ObjectName pObjectName, MBeanAction<R> pMBeanAction, Object... pExtraArgs)
+                throws IOException, ReflectionException, MBeanException, AttributeNotFoundException, InstanceNotFoundException {
+            calls++;
+            return executor.call(pObjectName, pMBeanAction, pExtraArgs);
+        }
+
+        public Set<ObjectName> queryNames(ObjectName pObjectName) throws IOException {
+            return executor.queryNames(pObjectName);
+        }
+
+        public boolean hasMBeansListChangedSince(long pTimestamp) {
+            return executor.hasMBeansListChangedSince(pTimestamp);
+        }
+    }
+
+    public interface HangingMBean {
+        int getValue();
+    }
+
+    // MBean whose getter hangs until released, ignoring interrupts
+    public static class Hanging implements HangingMBean {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        public int getValue() {
+            long end = System.currentTimeMillis() + 10000;
+            while (release.getCount() > 0 && System.currentTimeMillis() < end) {
+                try {
+                    release.await(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException exp) {
+                    // Ignored on purpose
+                }
+            }
+            return 42;
+        }
+    }
+}
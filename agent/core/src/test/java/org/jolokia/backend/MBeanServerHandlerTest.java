@@ -20,19 +20,26 @@ import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.*;
 import javax.management.openmbean.CompositeData;
 
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.jolokia.backend.executor.MBeanCallTimeoutException;
 import org.jolokia.backend.executor.MBeanServerExecutor;
 import org.jolokia.backend.executor.NotChangedException;
 import org.jolokia.config.*;
 import org.jolokia.config.Configuration;
 import org.jolokia.detector.ServerHandle;
 import org.jolokia.handler.JsonRequestHandler;
+import org.jolokia.handler.ReadHandler;
 import org.jolokia.request.JmxRequest;
 import org.jolokia.request.JmxRequestBuilder;
+import org.jolokia.restrictor.AllowAllRestrictor;
 import org.jolokia.util.LogHandler;
 import org.jolokia.util.RequestType;
 import org.testng.annotations.*;
@@ -148,6 +155,72 @@ public class MBeanServerHandlerTest {
     }
 
 
+    @Test
+    public void dispatchWithTimeout() throws Exception {
+        // Timeout must be configured for the agent
+        handler.destroy();
+        handler = new MBeanServerHandler(new Configuration(ConfigKey.REQUEST_TIMEOUT, "1000"), getEmptyLogHandler());
+        Blocking blocking = new Blocking();
+        handler.registerMBean(blocking, "test:type=blocking");
+        try {
+            // Only the slow attribute is affected when reading multiple attributes. The timeout
+            // given with the request lowers the configured one
+            JmxRequest req = new JmxRequestBuilder(RequestType.READ, "test:type=blocking")
+                    .attributes("Fast", "Slow")
+                    .option(ConfigKey.REQUEST_TIMEOUT, "100")
+                    .option(ConfigKey.IGNORE_ERRORS, "true")
+                    .build();
+            Map result = (Map) handler.dispatchRequest(new ReadHandler(new AllowAllRestrictor()), req);
+            assertEquals(result.get("Fast"), 42);
+            assertTrue(((String) result.get("Slow")).contains("MBeanCallTimeoutException"));
+            // The bulk read and the single read of the slow attribute
+            assertEquals(handler.getMBeanCallGuard().getAbandonedCalls(), 2L);
+            assertEquals(handler.getMBeanCallGuard().getBlockedCalls(), 2);
+
+            // A single attribute read is guarded as a whole and fails fast while the slow attribute is blocked ...
+            req = new JmxRequestBuilder(RequestType.READ, "test:type=blocking")
+                    .attribute("Slow")
+                    .option(ConfigKey.REQUEST_TIMEOUT, "100")
+                    .build();
+            try {
+                handler.dispatchRequest(new ReadHandler(new AllowAllRestrictor()), req);
+                fail("Timeout expected");
+            } catch (MBeanCallTimeoutException exp) {
+                assertTrue(exp.getMessage().contains("still blocked"));
+                assertTrue(exp.getMessage().contains("test:type=blocking [Slow]"));
+            }
+            assertEquals(handler.getMBeanCallGuard().getAbandonedCalls(), 2L);
+
+            // ... whereas other attributes of the same MBean can still be read
+            req = new JmxRequestBuilder(RequestType.READ, "test:type=blocking")
+                    .attribute("Fast")
+                    .option(ConfigKey.REQUEST_TIMEOUT, "100")
+                    .build();
+            assertEquals(handler.dispatchRequest(new ReadHandler(new AllowAllRestrictor()), req), 42);
+        } finally {
+            blocking.release.countDown();
+        }
+    }
+
+    @Test
+    public void requestTimeoutWithoutConfiguredTimeout() throws Exception {
+        // A request can't switch on the timeout when it is not configured for the agent
+        final Thread caller = Thread.currentThread();
+        JsonRequestHandler reqHandler = createMock(JsonRequestHandler.class);
+        JmxRequest req = new JmxRequestBuilder(RequestType.READ, "java.lang:type=Memory")
+                .attribute("HeapMemoryUsage")
+                .option(ConfigKey.REQUEST_TIMEOUT, "100")
+                .build();
+        expect(reqHandler.handleAllServersAtOnce(req)).andReturn(false);
+        expect(reqHandler.handleRequest(EasyMock.<MBeanServerConnection>anyObject(), eq(req))).andAnswer(new IAnswer<Object>() {
+            public Object answer() {
+                return Thread.currentThread();
+            }
+        });
+        replay(reqHandler);
+        assertSame(handler.dispatchRequest(reqHandler, req), caller);
+    }
+
     @Test
     public void mbeanServers() throws MBeanException, IOException, ReflectionException, MalformedObjectNameException {
         checkMBeans(new ObjectName("java.lang:type=Memory"));
@@ -224,6 +297,33 @@ public class MBeanServerHandlerTest {
     public interface DummyMBean {
 
     }
+
+    public interface BlockingMBean {
+        int getFast();
+        int getSlow();
+    }
+
+    // MBean whose slow attribute blocks until released, ignoring interrupts like a getter stuck in I/O
+    public static class Blocking implements BlockingMBean {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        public int getFast() {
+            return 42;
+        }
+
+        public int getSlow() {
+            long end = System.currentTimeMillis() + 10000;
+            while (release.getCount() > 0 && System.currentTimeMillis() < end) {
+                try {
+                    release.await(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException exp) {
+                    // Ignored on purpose
+                }
+            }
+            return 0;
+        }
+    }
     private class Dummy implements DummyMBean,MBeanRegistration {
 
         private boolean throwException;
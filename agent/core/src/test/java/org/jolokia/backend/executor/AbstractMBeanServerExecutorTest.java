@@ -99,6 +99,64 @@ public class AbstractMBeanServerExecutorTest {
         }
     }
 
+    @Test
+    public void mbeanInfoCache() throws MalformedObjectNameException, NotCompliantMBeanException, InstanceAlreadyExistsException, MBeanRegistrationException, InstanceNotFoundException, IntrospectionException, ReflectionException, IOException {
+        executor.registerForMBeanNotifications();
+        try {
+            MBeanInfoCache cache = executor.getMBeanInfoCache();
+            MBeanServer server = executor.getMBeanServerShuffled(1);
+            ObjectName name = new ObjectName("test:type=update,id=1");
+            executor.addMBean(1);
+            try {
+                MBeanInfo info = cache.getMBeanInfo(server, name);
+                assertEquals(info.getAttributes()[0].getName(), "Name");
+                assertTrue(cache.getMBeanInfo(server, name) == info);
+                assertEquals(cache.getMisses(), 1);
+                assertEquals(cache.getHits(), 1);
+                assertEquals(cache.getSize(), 1);
+            } finally {
+                executor.rmMBean(1);
+            }
+            assertEquals(cache.getSize(), 0, "Unregistration invalidates the cached info");
+
+            server.registerMBean(new Hidden(), name);
+            try {
+                assertEquals(cache.getMBeanInfo(server, name).getAttributes()[0].getName(), "Age");
+                assertEquals(cache.getMisses(), 2);
+            } finally {
+                server.unregisterMBean(name);
+            }
+        } finally {
+            executor.unregisterFromMBeanNotifications();
+        }
+        assertEquals(executor.getMBeanInfoCache().getSize(), 0);
+    }
+
+    @Test
+    public void mbeanInfoCacheWithMutableInfo() throws Exception {
+        MBeanInfoCache cache = executor.getMBeanInfoCache();
+        MBeanServer server = executor.getMBeanServerShuffled(1);
+        ObjectName name = new ObjectName("test:type=changing");
+        server.registerMBean(new ChangingInfo(), name);
+        try {
+            // Dynamic MBeans are cached by default ...
+            String first = cache.getMBeanInfo(server, name).getDescription();
+            assertEquals(cache.getMBeanInfo(server, name).getDescription(), first);
+            assertEquals(cache.getHits(), 1);
+
+            // ... but not if only immutable infos should be cached
+            cache.setImmutableOnly(true);
+            assertEquals(cache.getSize(), 0);
+            first = cache.getMBeanInfo(server, name).getDescription();
+            assertNotEquals(cache.getMBeanInfo(server, name).getDescription(), first);
+            assertEquals(cache.getHits(), 1);
+            assertEquals(cache.getSize(), 0);
+        } finally {
+            cache.setImmutableOnly(false);
+            server.unregisterMBean(name);
+        }
+    }
+
     @Test
     public void destroyWithoutPriorRegistration() throws NoSuchFieldException, IllegalAccessException {
         // Should always work, even when no registration has happened. Non exisiting listeners will be simplu ignored, since we didnt do any registration before
@@ -123,6 +181,40 @@ public class AbstractMBeanServerExecutorTest {
             },attribute);
     }
 
+    @Test
+    public void callWithServerIndex() throws MalformedObjectNameException, MBeanException, IOException, ReflectionException, AttributeNotFoundException, InstanceNotFoundException, NotCompliantMBeanException, InstanceAlreadyExistsException, MBeanRegistrationException {
+        final int[] count = new int[1];
+        MBeanServerExecutor.MBeanAction<Object> action = new MBeanServerExecutor.MBeanAction<Object>() {
+            public Object execute(MBeanServerConnection pConn, ObjectName pName, Object... extraArgs) throws ReflectionException, InstanceNotFoundException, IOException, MBeanException, AttributeNotFoundException {
+                count[0]++;
+                return pConn.getAttribute(pName, "Name");
+            }
+        };
+        ObjectName name = new ObjectName("test:type=two");
+        executor.registerForMBeanNotifications();
+        try {
+            assertEquals(executor.call(name, action), "jolokia");
+            assertEquals(count[0], 2, "Probing both servers");
+            assertEquals(executor.call(name, action), "jolokia");
+            assertEquals(count[0], 3, "Directly going to the second server");
+
+            // Move MBean to the first server
+            executor.otherMBeanServer.unregisterMBean(name);
+            executor.jolokiaMBeanServer.registerMBean(new Testing(), name);
+            try {
+                assertEquals(executor.call(name, action), "jolokia");
+                assertEquals(count[0], 4, "Index invalidated, found on first server");
+            } finally {
+                executor.jolokiaMBeanServer.unregisterMBean(name);
+                executor.otherMBeanServer.registerMBean(new Testing(), name);
+            }
+        } finally {
+            executor.unregisterFromMBeanNotifications();
+        }
+        assertEquals(executor.call(name, action), "jolokia");
+        assertEquals(count[0], 6, "No index when not listening for notifications");
+    }
+
     @Test(expectedExceptions = InstanceNotFoundException.class,expectedExceptionsMessageRegExp = ".*test:type=bla.*")
     public void callWithInvalidObjectName() throws MalformedObjectNameException, NotCompliantMBeanException, InstanceAlreadyExistsException, MBeanException, IOException, ReflectionException, AttributeNotFoundException, InstanceNotFoundException {
         getAttribute(executor,"test:type=bla","Name");
@@ -229,4 +321,36 @@ public class AbstractMBeanServerExecutorTest {
             return 1;
         }
     }
+
+    // Dynamic MBean which changes its meta data on every call
+    public static class ChangingInfo implements DynamicMBean {
+
+        private int version;
+
+        public synchronized MBeanInfo getMBeanInfo() {
+            version++;
+            return new MBeanInfo(ChangingInfo.class.getName(), "Version " + version,
+                                 null, null, null, null);
+        }
+
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName());
+        }
+
+        public AttributeList getAttributes(String[] attributes) {
+            return new AttributeList();
+        }
+
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+    }
 }
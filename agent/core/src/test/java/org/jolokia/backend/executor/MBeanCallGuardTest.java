@@ -0,0 +1,256 @@
+package org.jolokia.backend.executor;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.*;
+
+import org.testng.annotations.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author roland
+ * @since 18.10.26
+ */
+public class MBeanCallGuardTest {
+
+    private MBeanCallGuard guard;
+
+    private CountDownLatch release;
+
+    @BeforeMethod
+    public void setup() {
+        guard = new MBeanCallGuard(2);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        release.countDown();
+        guard.destroy();
+    }
+
+    @Test
+    public void noTimeout() throws Exception {
+        final Thread caller = Thread.currentThread();
+        Thread runner = guard.execute("test", 0, new Callable<Thread>() {
+            public Thread call() {
+                return Thread.currentThread();
+            }
+        });
+        assertSame(runner, caller);
+    }
+
+    @Test
+    public void inTime() throws Exception {
+        final Thread caller = Thread.currentThread();
+        Thread runner = guard.execute("test", 5000, new Callable<Thread>() {
+            public Thread call() {
+                return Thread.currentThread();
+            }
+        });
+        assertNotSame(runner, caller);
+        assertTrue(runner.getName().startsWith("jolokia-mbean-call-"));
+        assertEquals(guard.getAbandonedCalls(), 0L);
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "Connection lost")
+    public void exceptionPassedThrough() throws Exception {
+        guard.execute("test", 5000, new Callable<Object>() {
+            public Object call() throws Exception {
+                throw new IOException("Connection lost");
+            }
+        });
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        try {
+            guard.execute("test:type=slow", 100, new BlockingCall());
+            fail("Timeout expected");
+        } catch (MBeanCallTimeoutException exp) {
+            assertTrue(exp.getMessage().contains("100 ms"));
+            assertTrue(exp.getMessage().contains("test:type=slow"));
+        }
+        assertEquals(guard.getAbandonedCalls(), 1L);
+        assertEquals(guard.getBlockedCalls(), 1);
+
+        // Identical calls fail fast as long as the abandoned call is blocked ...
+        long start = System.currentTimeMillis();
+        try {
+            guard.execute("test:type=slow", 5000, new BlockingCall());
+            fail("Timeout expected");
+        } catch (MBeanCallTimeoutException exp) {
+            assertTrue(exp.getMessage().contains("still blocked"));
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(guard.getAbandonedCalls(), 1L);
+
+        // ... whereas other calls are not affected
+        assertEquals(guard.execute("test:type=fast", 5000, new Callable<String>() {
+            public String call() {
+                return "fast";
+            }
+        }), "fast");
+
+        // Blocked call returns eventually
+        release.countDown();
+        waitForNoBlockedCalls();
+        assertEquals(guard.execute("test:type=slow", 5000, new BlockingCall()), "slow");
+        assertEquals(guard.getAbandonedCalls(), 1L);
+    }
+
+    @Test
+    public void maxBlockedCalls() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            try {
+                guard.execute("test:type=slow", Collections.singletonList("Attr" + i), 50, new BlockingCall());
+                fail("Timeout expected");
+            } catch (MBeanCallTimeoutException exp) {
+                assertTrue(exp.getMessage().contains("50 ms"));
+                assertTrue(exp.getMessage().contains("test:type=slow [Attr" + i + "]"));
+            }
+        }
+        assertEquals(guard.getBlockedCalls(), 2);
+
+        // Limit reached for this MBean, so even a fast call is not started anymore ...
+        try {
+            guard.execute("test:type=slow", Collections.singletonList("Other"), 5000, new FastCall());
+            fail("Too many blocked calls expected");
+        } catch (MBeanCallTimeoutException exp) {
+            assertTrue(exp.getMessage().contains("Too many"));
+        }
+        assertEquals(guard.getAbandonedCalls(), 2L);
+
+        // ... whereas other MBeans are not affected
+        assertEquals(guard.execute("test:type=fast", 5000, new FastCall()), "fast");
+
+        // Calls without timeout are not guarded at all
+        assertEquals(guard.execute("test:type=slow", Collections.singletonList("Other"), 0, new FastCall()), "fast");
+
+        release.countDown();
+        waitForNoBlockedCalls();
+        assertEquals(guard.execute("test:type=slow", Collections.singletonList("Other"), 5000, new FastCall()), "fast");
+    }
+
+    @Test
+    public void blockedMembers() throws Exception {
+        try {
+            guard.execute("test:type=slow", Collections.singletonList("Hanging"), 50, new BlockingCall());
+            fail("Timeout expected");
+        } catch (MBeanCallTimeoutException exp) {
+            assertTrue(exp.getMessage().contains("50 ms"));
+        }
+
+        // Calls touching the blocked attribute fail fast, also when reading multiple attributes
+        for (List<String> members : Arrays.asList(Collections.singletonList("Hanging"), Arrays.asList("Fine", "Hanging"))) {
+            try {
+                guard.execute("test:type=slow", members, 5000, new FastCall());
+                fail("Blocked call expected");
+            } catch (MBeanCallTimeoutException exp) {
+                assertTrue(exp.getMessage().contains("still blocked"));
+            }
+        }
+
+        // Other attributes and the MBean itself can still be called
+        assertEquals(guard.execute("test:type=slow", Collections.singletonList("Fine"), 5000, new FastCall()), "fast");
+        assertEquals(guard.execute("test:type=slow", 5000, new FastCall()), "fast");
+        assertEquals(guard.getAbandonedCalls(), 1L);
+    }
+
+    @Test
+    public void executor() throws Exception {
+        MBeanServerExecutor executor = guard.withTimeout(new TestExecutor(), 100);
+        ObjectName name = new ObjectName("java.lang:type=Memory");
+        String value = executor.call(name, new MBeanServerExecutor.MBeanAction<String>() {
+            public String execute(MBeanServerConnection pConn, ObjectName pName, Object... extraArgs) {
+                return "ok " + extraArgs[0];
+            }
+        }, "arg");
+        assertEquals(value, "ok arg");
+
+        try {
+            executor.call(name, new MBeanServerExecutor.MBeanAction<String>() {
+                public String execute(MBeanServerConnection pConn, ObjectName pName, Object... extraArgs) {
+                    return new BlockingCall().call();
+                }
+            }, "arg");
+            fail("Timeout expected");
+        } catch (MBeanCallTimeoutException exp) {
+            assertTrue(exp.getMessage().contains("java.lang:type=Memory [arg]"));
+        }
+
+        try {
+            executor.each(name, new MBeanServerExecutor.MBeanEachCallback() {
+                public void callback(MBeanServerConnection pConn, ObjectName pName) {
+                    new BlockingCall().call();
+                }
+            });
+            fail("Timeout expected");
+        } catch (MBeanCallTimeoutException exp) {
+            assertTrue(exp.getMessage().contains("java.lang:type=Memory"));
+        }
+        assertEquals(guard.getAbandonedCalls(), 2L);
+
+        assertSame(guard.withTimeout(executor, 0), executor);
+    }
+
+    // ==========================================================================================
+
+    private void waitForNoBlockedCalls() throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (guard.getBlockedCalls() > 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(guard.getBlockedCalls(), 0);
+    }
+
+    private static class FastCall implements Callable<String> {
+        public String call() {
+            return "fast";
+        }
+    }
+
+    // Call which blocks until released, ignoring any interrupts like a call stuck in I/O
+    private class BlockingCall implements Callable<String> {
+        public String call() {
+            long end = System.currentTimeMillis() + 10000;
+            while (release.getCount() > 0 && System.currentTimeMillis() < end) {
+                try {
+                    release.await(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException exp) {
+                    // Ignored on purpose
+                }
+            }
+            return "slow";
+        }
+    }
+
+    private static class TestExecutor extends AbstractMBeanServerExecutor {
+        @Override
+        protected Set<MBeanServerConnection> getMBeanServers() {
+            return Collections.<MBeanServerConnection>singleton(ManagementFactory.getPlatformMBeanServer());
+        }
+    }
+}
@@ -91,6 +91,15 @@ public class BeanExtractorTest extends AbstractExtractorTest {
 
     }
 
+    @Test
+    public void cachedGetters() throws AttributeNotFoundException {
+        assertEquals(extractJson(this,"text"),"Test");
+        text = "Changed";
+        assertEquals(extractJson(this,"text"),"Changed");
+        assertEquals(extractJson(new Inner("other"),"innerText"),"other");
+        assertEquals(((JSONObject) extractJson(new Inner("again"))).get("innerText"),"again");
+    }
+
     @Test
     public void hiddenSelfTest() throws AttributeNotFoundException {
         String res = (String) extractJson(this,"hiddenSelf","text");
@@ -0,0 +1,154 @@
+package org.jolokia.converter.json;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.*;
+
+import javax.management.*;
+import javax.management.openmbean.*;
+
+import org.jolokia.converter.object.StringToObjectConverter;
+import org.jolokia.converter.util.CompositeTypeAndJson;
+import org.jolokia.converter.util.TabularTypeAndJson;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static javax.management.openmbean.SimpleType.*;
+import static org.testng.Assert.*;
+
+/**
+ * @author roland
+ * @since 18.10.26
+ */
+public class StreamingJsonValueTest {
+
+    private ObjectToJsonConverter converter;
+
+    @BeforeMethod
+    public void setup() {
+        converter = new ObjectToJsonConverter(new StringToObjectConverter(), null);
+    }
+
+    @Test
+    public void arraysAndCollections() throws Exception {
+        List<Object> list = new ArrayList<Object>();
+        list.add(Arrays.asList(1, 2, 3));
+        list.add(new TestBean("hello"));
+        list.add(new String[] { "a", "b" });
+        list.add(null);
+        list.add(new int[] { 4, 5 });
+        list.add(Collections.singletonMap("key", "value"));
+        list.add(new HashSet<String>(Arrays.asList("x")));
+        verifySameAsEager(list, JsonConvertOptions.DEFAULT);
+        verifySameAsEager(new Object[] { list, 10L, "text" }, JsonConvertOptions.DEFAULT);
+        verifySameAsEager("simple", JsonConvertOptions.DEFAULT);
+        verifySameAsEager(null, JsonConvertOptions.DEFAULT);
+    }
+
+    @Test
+    public void tabularData() throws Exception {
+        CompositeTypeAndJson ctj = new CompositeTypeAndJson(STRING, "key", null, OBJECTNAME, "value", null);
+        TabularTypeAndJson taj = new TabularTypeAndJson(new String[] { "key" }, ctj);
+        TabularData mxMap = new TabularDataSupport(taj.getType());
+        for (int i = 0; i < 20; i++) {
+            mxMap.put(new CompositeDataSupport(ctj.getType(), new String[] { "key", "value" },
+                                               new Object[] { "key" + i, new ObjectName("test:idx=" + i) }));
+        }
+        verifySameAsEager(mxMap, JsonConvertOptions.DEFAULT);
+
+        CompositeTypeAndJson keyCtj = new CompositeTypeAndJson(STRING, "name", "roland", INTEGER, "date", 1968);
+        CompositeTypeAndJson rowCtj = new CompositeTypeAndJson(keyCtj.getType(), "key", null, STRING, "value", "bla");
+        TabularData complex = new TabularDataSupport(new TabularTypeAndJson(new String[] { "key" }, rowCtj).getType());
+        complex.put(new CompositeDataSupport(rowCtj.getType(), new String[] { "key", "value" },
+                                             new Object[] { keyCtj.getCompositeData(), "bla" }));
+        verifySameAsEager(complex, JsonConvertOptions.DEFAULT);
+    }
+
+    @Test
+    public void limits() throws Exception {
+        List<Object> nested = new ArrayList<Object>();
+        for (int i = 0; i < 10; i++) {
+            nested.add(Arrays.asList(i, Arrays.asList(i, i + 1), new TestBean("bean" + i)));
+        }
+        verifySameAsEager(nested, new JsonConvertOptions.Builder().maxCollectionSize(3).build());
+        verifySameAsEager(nested, new JsonConvertOptions.Builder().maxDepth(2).build());
+        verifySameAsEager(nested, new JsonConvertOptions.Builder().maxObjects(12).build());
+
+        Object[] selfRef = new Object[] { "first", null };
+        selfRef[1] = selfRef;
+        String json = write(selfRef, JsonConvertOptions.DEFAULT);
+        JSONArray result = (JSONArray) new JSONParser().parse(json);
+        assertEquals(result.get(0), "first");
+        assertTrue(((String) result.get(1)).startsWith("[Reference"));
+    }
+
+    @Test
+    public void errorsIncludedAsValue() throws Exception {
+        JsonConvertOptions opts = new JsonConvertOptions.Builder()
+                .faultHandler(ValueFaultHandler.IGNORING_VALUE_FAULT_HANDLER).build();
+        String json = write(new Object[] { "ok", new TestBean(null) }, opts);
+        JSONArray result = (JSONArray) new JSONParser().parse(json);
+        assertEquals(result.size(), 2);
+        assertEquals(result.get(0), "ok");
+        assertTrue(((Map) result.get(1)).get("name").toString().startsWith("ERROR"));
+    }
+
+    @Test
+    public void repeatable() throws Exception {
+        StreamingJsonValue value = converter.convertToStreamingJson(Arrays.asList("a", 1L), JsonConvertOptions.DEFAULT);
+        assertEquals(value.toJSONString(), "[\"a\",1]");
+        assertEquals(value.toJSONString(), "[\"a\",1]");
+        assertNull(converter.getStackContextLocal().get());
+        // Not converted for debug output
+        assertEquals(value.toString(), "[streamed java.util.Arrays$ArrayList]");
+    }
+
+    // ==========================================================================================
+
+    private void verifySameAsEager(Object pValue, JsonConvertOptions pOpts) throws AttributeNotFoundException, ParseException, IOException {
+        Object eager = converter.convertToJson(pValue, null, pOpts);
+        assertEquals(new JSONParser().parse(write(pValue, pOpts)),
+                     new JSONParser().parse(JSONValue.toJSONString(eager)));
+    }
+
+    private String write(Object pValue, JsonConvertOptions pOpts) throws IOException {
+        StringWriter writer = new StringWriter();
+        converter.convertToStreamingJson(pValue, pOpts).writeJSONString(writer);
+        return writer.toString();
+    }
+
+    public static class TestBean {
+        private final String name;
+
+        public TestBean(String pName) {
+            name = pName;
+        }
+
+        public String getName() {
+            if (name == null) {
+                throw new IllegalStateException("No name");
+            }
+            return name;
+        }
+    }
+}
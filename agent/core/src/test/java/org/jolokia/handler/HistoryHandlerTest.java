@@ -0,0 +1,134 @@
+package org.jolokia.handler;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.*;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import org.jolokia.config.ConfigKey;
+import org.jolokia.history.HistoryKey;
+import org.jolokia.history.HistoryLimit;
+import org.jolokia.history.HistoryStore;
+import org.jolokia.request.JmxHistoryRequest;
+import org.jolokia.request.JmxRequestBuilder;
+import org.jolokia.restrictor.AllowAllRestrictor;
+import org.jolokia.restrictor.Restrictor;
+import org.jolokia.util.HttpMethod;
+import org.jolokia.util.RequestType;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.easymock.EasyMock.*;
+import static org.testng.Assert.*;
+
+/**
+ * @author roland
+ * @since 18.10.26
+ */
+public class HistoryHandlerTest extends BaseHandlerTest {
+
+    private HistoryStore store;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        store = new HistoryStore(10);
+        for (HistoryKey key : new HistoryKey[] {
+                new HistoryKey("test:type=mem", "used", null, null),
+                new HistoryKey("test:type=thread", "count", null, null),
+                new HistoryKey("test:type=thread", "dump", null) }) {
+            store.configure(key, new HistoryLimit(5, 0L));
+            store.addValue(key, 1, 100);
+            store.addValue(key, 2, 101);
+        }
+    }
+
+    @Test
+    public void export() throws Exception {
+        HistoryHandler handler = new HistoryHandler(new AllowAllRestrictor(), store);
+        assertTrue(handler.handleAllServersAtOnce(new JmxRequestBuilder(RequestType.HISTORY, "test:*").<JmxHistoryRequest>build()));
+
+        List<Map> result = export(handler, new JmxRequestBuilder(RequestType.HISTORY, "test:*").<JmxHistoryRequest>build());
+        assertEquals(result.size(), 3);
+
+        JmxHistoryRequest request = new JmxRequestBuilder(RequestType.HISTORY, "test:type=thread")
+                .attribute("count")
+                .option(ConfigKey.HISTORY_COMPACT, "true")
+                .build();
+        result = export(handler, request);
+        assertEquals(result.size(), 1);
+        assertEquals(result.get(0).get("attribute"), "count");
+        assertEquals(((Map) result.get(0).get("history")).get("values"), Arrays.asList(2L, 1L));
+    }
+
+    @Test
+    public void restrictAccess() throws Exception {
+        Restrictor restrictor = createMock(Restrictor.class);
+        expect(restrictor.isTypeAllowed(RequestType.HISTORY)).andReturn(true);
+        expect(restrictor.isHttpMethodAllowed(HttpMethod.POST)).andReturn(true);
+        expect(restrictor.isAttributeReadAllowed(new ObjectName("test:type=mem"), "used")).andReturn(false);
+        expect(restrictor.isAttributeReadAllowed(new ObjectName("test:type=thread"), "count")).andReturn(true);
+        expect(restrictor.isOperationAllowed(new ObjectName("test:type=thread"), "dump")).andReturn(false);
+        replay(restrictor);
+
+        List<Map> result = export(new HistoryHandler(restrictor, store),
+                                  new JmxRequestBuilder(RequestType.HISTORY, "test:*").<JmxHistoryRequest>build());
+        assertEquals(result.size(), 1);
+        assertEquals(result.get(0).get("mbean"), "test:type=thread");
+        verify(restrictor);
+    }
+
+    @Test(expectedExceptions = SecurityException.class)
+    public void restrictType() throws Exception {
+        Restrictor restrictor = createMock(Restrictor.class);
+        expect(restrictor.isTypeAllowed(RequestType.HISTORY)).andReturn(false);
+        replay(restrictor);
+        export(new HistoryHandler(restrictor, store),
+               new JmxRequestBuilder(RequestType.HISTORY, "test:*").<JmxHistoryRequest>build());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*resolution.*")
+    public void invalidResolution() throws Exception {
+        // Detected before the export is iterated
+        new HistoryHandler(new AllowAllRestrictor(), store)
+                .handleRequest(getMBeanServerManager(),
+                               new JmxRequestBuilder(RequestType.HISTORY, "test:*")
+                                       .option(ConfigKey.HISTORY_RESOLUTION, "day")
+                                       .<JmxHistoryRequest>build());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*timestamp.*")
+    public void invalidSince() throws Exception {
+        new HistoryHandler(new AllowAllRestrictor(), store)
+                .handleRequest(getMBeanServerManager(),
+                               new JmxRequestBuilder(RequestType.HISTORY, "test:*")
+                                       .option(ConfigKey.HISTORY_SINCE, "yesterday")
+                                       .<JmxHistoryRequest>build());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void unsupported() throws Exception {
+        new HistoryHandler(new AllowAllRestrictor(), store)
+                .doHandleRequest((MBeanServerConnection) null,
+                                 new JmxRequestBuilder(RequestType.HISTORY, "test:*").<JmxHistoryRequest>build());
+    }
+
+    private List<Map> export(HistoryHandler pHandler, JmxHistoryRequest pRequest) throws Exception {
+        return new ArrayList<Map>((Collection<Map>) pHandler.handleRequest(getMBeanServerManager(), pRequest));
+    }
+}
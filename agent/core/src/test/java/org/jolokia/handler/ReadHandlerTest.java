@@ -77,9 +77,7 @@ public class ReadHandlerTest extends BaseHandlerTest {
         String attrs[] = new String[] {"attr0","atrr1","attr2"};
         String vals[]  = new String[] {"val0", "val1", "val2"};
         prepareMBeanInfos(server, testBeanName, attrs);
-        for (int i=0;i<attrs.length;i++) {
-            expect(server.getAttribute(testBeanName,attrs[i])).andReturn(vals[i]);
-        }
+        expectAttributes(server, testBeanName, attrs, (Object[]) vals);
         replay(server);
 
         Map res = (Map) handler.handleRequest(getMBeanServerManager(server),request);
@@ -99,8 +97,7 @@ public class ReadHandlerTest extends BaseHandlerTest {
 
         MBeanServer server = createMock(MBeanServer.class);
         expect(server.isRegistered(testBeanName)).andStubReturn(true);
-        expect(server.getAttribute(testBeanName,"attr0")).andReturn("val0");
-        expect(server.getAttribute(testBeanName,"attr1")).andReturn("val1");
+        expectAttributes(server, testBeanName, new String[] { "attr0", "attr1" }, "val0", "val1");
         replay(server);
 
         Map res = (Map) handler.handleRequest(getMBeanServerManager(server),request);
@@ -118,7 +115,7 @@ public class ReadHandlerTest extends BaseHandlerTest {
 
         MBeanServer server = createMock(MBeanServer.class);
         expect(server.isRegistered(testBeanName)).andStubReturn(true);
-        expect(server.getAttribute(testBeanName,"attr0")).andReturn("val0");
+        expectAttributes(server, testBeanName, new String[] { "attr0", "attr1" }, "val0");
         expect(server.getAttribute(testBeanName,"attr1")).andThrow(new AttributeNotFoundException("Couldn't find attr1"));
         replay(server);
 
@@ -134,7 +131,7 @@ public class ReadHandlerTest extends BaseHandlerTest {
 
         MBeanServer server = createMock(MBeanServer.class);
         expect(server.isRegistered(testBeanName)).andStubReturn(true);
-        expect(server.getAttribute(testBeanName,"attr0")).andReturn("val0");
+        expectAttributes(server, testBeanName, new String[] { "attr0", "attr1" }, "val0");
         expect(server.getAttribute(testBeanName,"attr1")).andThrow(new AttributeNotFoundException("Couldn't find attr1"));
         replay(server);
 
@@ -146,6 +143,26 @@ public class ReadHandlerTest extends BaseHandlerTest {
         assertTrue(err != null && err.contains("ERROR"));
     }
 
+    @Test
+    public void singleBeanMultiAttributesWithFailingBulkRead() throws Exception {
+        JmxReadRequest request = new JmxRequestBuilder(READ, testBeanName.getCanonicalName()).
+                attributes(Arrays.asList("attr0", "attr1")).
+                build();
+
+        MBeanServer server = createMock(MBeanServer.class);
+        expect(server.isRegistered(testBeanName)).andStubReturn(true);
+        expect(server.getAttributes(eq(testBeanName), aryEq(new String[] { "attr0", "attr1" })))
+                .andThrow(new ReflectionException(new IllegalStateException("No bulk read")));
+        expect(server.getAttribute(testBeanName,"attr0")).andReturn("val0");
+        expect(server.getAttribute(testBeanName,"attr1")).andReturn("val1");
+        replay(server);
+
+        Map res = (Map) handler.handleRequest(getMBeanServerManager(server),request);
+        verify(server);
+        assertEquals("val0", res.get("attr0"));
+        assertEquals("val1",res.get("attr1"));
+    }
+
     // ======================================================================================================
 
     @Test(groups = "java6")
@@ -204,13 +221,10 @@ public class ReadHandlerTest extends BaseHandlerTest {
                     new ObjectName("java.lang:type=GarbageCollection")
             };
             MBeanServer server = prepareMultiAttributeTest(patternMBean, beans);
-            expect(server.getAttribute(beans[0],"mem0")).andReturn("memval0");
-            expect(server.getAttribute(beans[0],"mem1")).andReturn("memval1");
-            expect(server.getAttribute(beans[0],"common")).andReturn("commonVal0");
-            expect(server.getAttribute(beans[1],"gc0")).andReturn("gcval0");
-            expect(server.getAttribute(beans[1],"gc1")).andReturn("gcval1");
-            expect(server.getAttribute(beans[1],"gc3")).andReturn("gcval3");
-            expect(server.getAttribute(beans[1],"common")).andReturn("commonVal1");
+            expectAttributes(server, beans[0], new String[] { "mem0", "mem1", "common" },
+                             "memval0", "memval1", "commonVal0");
+            expectAttributes(server, beans[1], new String[] { "gc0", "gc1", "gc3", "common" },
+                             "gcval0", "gcval1", "gcval3", "commonVal1");
             replay(server);
 
             Map res = (Map) handler.handleRequest(getMBeanServerManager(server), request);
@@ -420,6 +434,16 @@ public class ReadHandlerTest extends BaseHandlerTest {
 
     // ==============================================================================================================
 
+    // Expect a bulk read for the given attributes, returning the given values for the first attributes
+    private void expectAttributes(MBeanServerConnection pConnection, ObjectName pObjectName, String[] pAttrs, Object ... pValues)
+            throws InstanceNotFoundException, ReflectionException, IOException {
+        AttributeList ret = new AttributeList();
+        for (int i = 0; i < pValues.length; i++) {
+            ret.add(new Attribute(pAttrs[i], pValues[i]));
+        }
+        expect(pConnection.getAttributes(eq(pObjectName), aryEq(pAttrs))).andReturn(ret);
+    }
+
     private MBeanAttributeInfo[] prepareMBeanInfos(MBeanServerConnection pConnection, ObjectName pObjectName, String pAttrs[])
             throws MBeanException, AttributeNotFoundException, InstanceNotFoundException, ReflectionException, IOException, IntrospectionException {
         MBeanInfo mBeanInfo = createMock(MBeanInfo.class);
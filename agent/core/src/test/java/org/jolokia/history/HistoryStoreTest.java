@@ -16,10 +16,15 @@ package org.jolokia.history;
  * limitations under the License.
  */
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.*;
 
 import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
+import org.jolokia.config.ConfigKey;
 import org.jolokia.request.*;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -237,6 +242,638 @@ public class HistoryStoreTest {
         assertTrue(store.getSize() > 100);
     }
 
+    @Test
+    public void sizeAccounting() throws Exception {
+        HistoryKey numKey = new HistoryKey("test:type=num", "attr", null, null);
+        HistoryKey textKey = new HistoryKey("test:type=text", "attr", null, null);
+        store.configure(numKey, new HistoryLimit(5, 0L));
+        store.configure(textKey, new HistoryLimit(5, 0L));
+        int empty = store.getSize();
+        assertTrue(empty > 0);
+
+        // Numeric values are accounted by the capacity of their buffer
+        store.addValue(numKey, 1L, 100);
+        int numeric = store.getSize();
+        assertTrue(numeric > empty);
+        store.addValue(numKey, 2L, 101);
+        assertEquals(numeric, store.getSize());
+
+        // Generic values by their own size, and old values are subtracted when trimmed
+        for (int i = 0; i < 5; i++) {
+            store.addValue(textKey, "value" + i, 100 + i);
+        }
+        int full = store.getSize();
+        store.addValue(textKey, "value5", 105);
+        assertEquals(full, store.getSize());
+        store.addValue(textKey, "a much longer value than before", 106);
+        assertTrue(store.getSize() > full);
+
+        // Only the overhead of the numeric entry is left
+        store.configure(textKey, null);
+        assertEquals(numeric - empty / 2, store.getSize());
+        store.reset();
+        assertEquals(0, store.getSize());
+    }
+
+    @Test
+    public void tracked() throws Exception {
+        JmxReadRequest readReq = new JmxRequestBuilder(READ,"test:type=read").attribute("attr").build();
+        JmxReadRequest otherReq = new JmxRequestBuilder(READ,"test:type=read").attribute("other").build();
+        JmxReadRequest patternReadReq = new JmxRequestBuilder(READ,"test:type=pattern").attribute("attr").build();
+        JmxReadRequest multiReq = new JmxRequestBuilder(READ,"test:type=read").attributes("attr", "other").build();
+        JmxExecRequest execReq = new JmxRequestBuilder(EXEC,"test:type=exec").operation("op").build();
+        assertFalse(store.isTracked(readReq));
+        assertFalse(store.isTracked(multiReq));
+
+        store.configure(new HistoryKey(readReq), new HistoryLimit(3, 0L));
+        store.configure(new HistoryKey("test:type=pat*", "attr", null, null), new HistoryLimit(3, 0L));
+        assertTrue(store.isTracked(readReq));
+        assertFalse(store.isTracked(otherReq));
+        assertTrue(store.isTracked(patternReadReq));
+        assertTrue(store.isTracked(multiReq));
+        assertFalse(store.isTracked(execReq));
+
+        store.configure(new HistoryKey(execReq), new HistoryLimit(3, 0L));
+        assertTrue(store.isTracked(execReq));
+    }
+
+    @Test
+    public void memoryBudget() throws Exception {
+        // Explicitly configured entry which has been updated least recently
+        HistoryKey configured = new HistoryKey("test:type=configured", "attr", null, null);
+        store.configure(configured, new HistoryLimit(5, 0L));
+        store.addValue(configured, "configured", 99);
+
+        store.configure(new HistoryKey("test:type=*", "attr", null, null), new HistoryLimit(5, 0L));
+        HistoryKey[] keys = new HistoryKey[10];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new HistoryKey("test:type=t" + i, "attr", null, null);
+            store.addValue(keys[i], "text" + i, 100 + i);
+        }
+        int size = store.getSize();
+        assertEquals(0, store.getMaxSize());
+
+        store.setMaxSize(size / 2);
+        assertTrue(store.getSize() <= size / 2);
+        assertTrue(store.getEvictedEntries() >= 5);
+        // Entries updated least recently are gone
+        assertNull(store.getHistory(keys[0], false));
+        assertNotNull(store.getHistory(keys[9], false));
+        // The configured entry only lost its values
+        assertEquals(0, ((JSONArray) store.getHistory(configured, false)).size());
+        store.addValue(configured, "configured", 150);
+        assertEquals(1, ((JSONArray) store.getHistory(configured, false)).size());
+
+        // Updates which exceed the budget evict as well
+        long evicted = store.getEvictedEntries();
+        for (int i = 0; i < 5; i++) {
+            store.addValue(keys[9], "a value which needs some more space " + i, 200 + i);
+        }
+        assertTrue(store.getSize() <= size / 2);
+        assertTrue(store.getEvictedEntries() > evicted);
+        assertNotNull(store.getHistory(keys[9], false));
+        assertNotNull(store.getHistory(configured, false));
+
+        // Entries of a pattern are recreated
+        store.setMaxSize(0);
+        store.addValue(keys[0], "text0", 300);
+        assertNotNull(store.getHistory(keys[0], false));
+    }
+
+    @Test
+    public void memoryBudgetClearsConfiguredEntries() throws Exception {
+        HistoryKey key = new HistoryKey("test:type=configured", "attr", null, null);
+        store.configure(key, new HistoryLimit(5, 0L, 10, 0));
+        store.addValue(key, 1L, 100);
+        int size = store.getSize();
+        store.setMaxSize(1);
+        assertEquals(1, store.getEvictedEntries());
+        assertTrue(store.getSize() < size);
+        assertEquals(0, ((JSONArray) store.getHistory(key, false)).size());
+        // Nothing left to evict
+        store.addValue(key, "text", 101);
+        assertEquals(2, store.getEvictedEntries());
+        store.setMaxSize(1);
+        assertEquals(2, store.getEvictedEntries());
+
+        // Values and aggregates are recorded again
+        store.setMaxSize(0);
+        store.addValue(key, 2L, 200);
+        assertEquals(1, ((JSONArray) store.getHistory(key, false)).size());
+    }
+
+    @Test
+    public void domainPatternGetEntries() throws MalformedObjectNameException {
+        store.configure(new HistoryKey("jav*:type=Memory", "HeapMemoryUsage", null, null), new HistoryLimit(4, 0L));
+        store.configure(new HistoryKey("other:*", "HeapMemoryUsage", null, null), new HistoryLimit(2, 0L));
+
+        JmxReadRequest req =
+                new JmxRequestBuilder(READ,"java.lang:type=Memory")
+                        .attribute("HeapMemoryUsage")
+                        .build();
+
+        JSONArray history = updateNTimesAsList(req, 6, 4711);
+        assertEquals(history.size(), 4);
+    }
+
+    @Test
+    public void concurrentUpdates() throws Exception {
+        store.configure(new HistoryKey("test:*", "attr", null, null), new HistoryLimit(5, 0L));
+        final int nrThreads = 8;
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[nrThreads];
+        for (int i = 0; i < nrThreads; i++) {
+            final JmxReadRequest req =
+                    new JmxRequestBuilder(READ,"test:type=t" + (i % 4))
+                            .attribute("attr")
+                            .build();
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            JSONObject res = new JSONObject();
+                            res.put("value",j);
+                            store.updateAndAdd(req,res);
+                            if (((List) res.get("history")).size() > 5) {
+                                throw new IllegalStateException("History too large: " + res.get("history"));
+                            }
+                        }
+                    } catch (Throwable exp) {
+                        errors.add(exp);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertTrue(store.getSize() > 100);
+        JmxReadRequest req = new JmxRequestBuilder(READ,"test:type=t0").attribute("attr").build();
+        assertEquals(updateNTimesAsList(req,1,"42").size(), 5);
+    }
+
+    @Test
+    public void configureEntryOfPattern() throws Exception {
+        HistoryKey key = new HistoryKey("test:type=t0", "attr", null, null);
+        store.configure(new HistoryKey("test:*", "attr", null, null), new HistoryLimit(5, 0L));
+        store.addValue(key, "a", 100);
+        int size = store.getSize();
+
+        // The entry created for the pattern is taken over with its values
+        store.configure(key, new HistoryLimit(3, 0L));
+        assertEquals(size, store.getSize());
+        assertEquals(1, ((JSONArray) store.getHistory(key, false)).size());
+        store.configure(new HistoryKey("test:*", "attr", null, null), null);
+        store.configure(key, null);
+        assertEquals(0, store.getSize());
+    }
+
+    @Test
+    public void concurrentConfiguration() throws Exception {
+        store.configure(new HistoryKey("test:*", "attr", null, null), new HistoryLimit(5, 0L));
+        final int nrKeys = 50;
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread updater = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < nrKeys; i++) {
+                        store.addValue(new HistoryKey("test:type=t" + i, "attr", null, null), i, 100 + i);
+                    }
+                } catch (Throwable exp) {
+                    errors.add(exp);
+                }
+            }
+        };
+        updater.start();
+        for (int i = 0; i < nrKeys; i++) {
+            store.configure(new HistoryKey("test:type=t" + i, "attr", null, null), new HistoryLimit(3, 0L));
+        }
+        updater.join();
+        assertTrue(errors.toString(), errors.isEmpty());
+        // No entry has been displaced without releasing it
+        store.reset();
+        assertEquals(0, store.getSize());
+    }
+
+    @Test
+    public void numericValues() throws Exception {
+        HistoryEntry entry = new HistoryEntry(new HistoryLimit(3, 0L));
+        for (int i = 0; i < 5; i++) {
+            entry.add(i, 100L + i);
+        }
+        JSONArray values = entry.jsonifyValues();
+        assertEquals(3, values.size());
+        assertEquals(4L, ((Map) values.get(0)).get("value"));
+        assertEquals(104L, ((Map) values.get(0)).get("timestamp"));
+        assertEquals(2L, ((Map) values.get(2)).get("value"));
+        assertTrue(entry.toString().contains("NumericHistoryBuffer"));
+
+        // Shrink and grow again
+        entry.setMaxEntries(2);
+        entry.add(5L, 105L);
+        entry.setMaxEntries(4);
+        entry.add(6L, 106L);
+        values = entry.jsonifyValues();
+        assertEquals(3, values.size());
+        assertEquals(6L, ((Map) values.get(0)).get("value"));
+        assertEquals(4L, ((Map) values.get(2)).get("value"));
+
+        // Non numeric value switches to the generic representation
+        entry.add("text", 107L);
+        values = entry.jsonifyValues();
+        assertEquals(4, values.size());
+        assertEquals("text", ((Map) values.get(0)).get("value"));
+        assertEquals(4L, ((Map) values.get(3)).get("value"));
+        assertFalse(entry.toString().contains("NumericHistoryBuffer"));
+    }
+
+    @Test
+    public void numericValuesWithDuration() throws Exception {
+        HistoryEntry entry = new HistoryEntry(new HistoryLimit(10, 5L));
+        for (int i = 0; i < 10; i++) {
+            entry.add(i * 1.5, 100L + 2 * i);
+        }
+        JSONArray values = entry.jsonifyValues();
+        // Timestamps 118, 116, 114
+        assertEquals(3, values.size());
+        assertEquals(13.5, ((Map) values.get(0)).get("value"));
+        assertEquals(114L, ((Map) values.get(2)).get("timestamp"));
+
+        // A long can't be stored in a double buffer
+        entry.add(42L, 119L);
+        values = entry.jsonifyValues();
+        assertEquals(4, values.size());
+        assertEquals(42L, ((Map) values.get(0)).get("value"));
+        assertEquals(13.5, ((Map) values.get(1)).get("value"));
+    }
+
+    @Test
+    public void compactHistory() throws Exception {
+        JmxReadRequest req =
+                new JmxRequestBuilder(READ,"test:type=read")
+                        .attribute("attr")
+                        .option(ConfigKey.HISTORY_COMPACT, "true")
+                        .build();
+        store.configure(new HistoryKey(req), new HistoryLimit(3, 0L));
+        JSONObject history = updateNTimesAsMap(req, 4, 42);
+        List values = (List) history.get("values");
+        List timestamps = (List) history.get("timestamps");
+        assertEquals(3, values.size());
+        assertEquals(3, timestamps.size());
+        assertEquals(42L, values.get(0));
+        assertTrue(timestamps.get(0) instanceof Long);
+
+        JmxReadRequest multiReq =
+                new JmxRequestBuilder(READ,"test:type=read")
+                        .attributes("attr", "other")
+                        .option(ConfigKey.HISTORY_COMPACT, "true")
+                        .build();
+        Map<String, Object> attrs = new HashMap<String, Object>();
+        attrs.put("attr", "text");
+        attrs.put("other", 1);
+        JSONObject multiHistory = updateNTimesAsMap(multiReq, 1, attrs);
+        assertEquals(1, multiHistory.size());
+        assertEquals(3, ((List) ((Map) multiHistory.get("attr")).get("values")).size());
+    }
+
+    @Test
+    public void rollups() throws Exception {
+        HistoryEntry entry = new HistoryEntry(new HistoryLimit(5, 0L, 3, 2));
+        // Four minutes, with values 0..9 each
+        for (long minute = 0; minute < 4; minute++) {
+            for (int i = 0; i < 10; i++) {
+                entry.add(minute * 100 + i, 7200 + minute * 60 + i * 5);
+            }
+        }
+        // Values older than the current bucket are ignored, but still count for the hour
+        entry.add(-1000, 7200);
+        JSONArray minutes = (JSONArray) entry.jsonifyRollup(HistoryEntry.MINUTE, false);
+        assertEquals(3, minutes.size());
+        Map latest = (Map) minutes.get(0);
+        assertEquals(7380L, latest.get("timestamp"));
+        assertEquals(300.0, latest.get("min"));
+        assertEquals(309.0, latest.get("max"));
+        assertEquals(304.5, latest.get("avg"));
+        assertEquals(10L, latest.get("count"));
+        assertEquals(309.0, latest.get("last"));
+        assertEquals(7260L, ((Map) minutes.get(2)).get("timestamp"));
+
+        JSONArray hours = (JSONArray) entry.jsonifyRollup(HistoryEntry.HOUR, false);
+        assertEquals(1, hours.size());
+        assertEquals(41L, ((Map) hours.get(0)).get("count"));
+        assertEquals(-1000.0, ((Map) hours.get(0)).get("min"));
+
+        // Raw values are limited independently
+        assertEquals(5, entry.jsonifyValues().size());
+
+        JSONObject compact = (JSONObject) entry.jsonifyRollup(HistoryEntry.MINUTE, true);
+        assertEquals(3, ((List) compact.get("timestamps")).size());
+        assertEquals(304.5, ((List) compact.get("avgs")).get(0));
+
+        // Shrinking keeps the most recent buckets
+        entry.setMaxEntries(2);
+        entry.setLimit(new HistoryLimit(2, 0L, 1, 0));
+        minutes = (JSONArray) entry.jsonifyRollup(HistoryEntry.MINUTE, false);
+        assertEquals(1, minutes.size());
+        assertEquals(7380L, ((Map) minutes.get(0)).get("timestamp"));
+        assertEquals(0, ((JSONArray) entry.jsonifyRollup(HistoryEntry.HOUR, false)).size());
+    }
+
+    @Test
+    public void rollupsViaRequest() throws Exception {
+        JmxReadRequest req =
+                new JmxRequestBuilder(READ,"test:type=read")
+                        .attribute("attr")
+                        .option(ConfigKey.HISTORY_RESOLUTION, "minute")
+                        .build();
+        store.configure(new HistoryKey(req), new HistoryLimit(3, 0L, 10, 0));
+        JSONArray history = updateNTimesAsList(req, 4, 42);
+        assertEquals(1, history.size());
+        assertEquals(3L, ((Map) history.get(0)).get("count"));
+
+        JmxReadRequest hourReq =
+                new JmxRequestBuilder(READ,"test:type=read")
+                        .attribute("attr")
+                        .option(ConfigKey.HISTORY_RESOLUTION, "hour")
+                        .build();
+        assertEquals(0, updateNTimesAsList(hourReq, 1, 42).size());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*resolution.*")
+    public void invalidResolution() throws Exception {
+        JmxReadRequest req =
+                new JmxRequestBuilder(READ,"test:type=read")
+                        .attribute("attr")
+                        .option(ConfigKey.HISTORY_RESOLUTION, "second")
+                        .build();
+        store.configure(new HistoryKey(req), new HistoryLimit(3, 0L));
+        updateNTimesAsList(req, 1, 42);
+    }
+
+    @Test
+    public void valuesSince() throws Exception {
+        HistoryEntry entry = new HistoryEntry(new HistoryLimit(10, 0L, 5, 0));
+        for (int i = 0; i < 6; i++) {
+            entry.add(i, 1000 + i * 30);
+        }
+        JSONArray values = entry.jsonifyValues(1060);
+        assertEquals(3, values.size());
+        assertEquals(1150L, ((Map) values.get(0)).get("timestamp"));
+        assertEquals(1090L, ((Map) values.get(2)).get("timestamp"));
+        assertEquals(0, entry.jsonifyValues(1150).size());
+        assertEquals(6, entry.jsonifyValues().size());
+        assertEquals(3, ((List) entry.jsonifyValuesCompact(1060).get("values")).size());
+
+        // Non numeric values
+        entry.add("text", 1180);
+        assertEquals(1, entry.jsonifyValues(1150).size());
+        assertEquals(1, ((List) entry.jsonifyValuesCompact(1150).get("timestamps")).size());
+
+        // Minute buckets start at 960, 1020, 1080 and 1140. The bucket covering the watermark is included,
+        // since it might have been updated
+        JSONArray minutes = (JSONArray) entry.jsonifyRollup(HistoryEntry.MINUTE, false, 1100);
+        assertEquals(2, minutes.size());
+        assertEquals(1080L, ((Map) minutes.get(1)).get("timestamp"));
+        assertEquals(0, ((JSONArray) entry.jsonifyRollup(HistoryEntry.MINUTE, false, 1200)).size());
+    }
+
+    @Test
+    public void exportHistory() throws Exception {
+        HistoryKey memKey = new HistoryKey("test:type=mem", "used", null, null);
+        HistoryKey threadKey = new HistoryKey("test:type=thread", "count", null, null);
+        HistoryKey opKey = new HistoryKey("test:type=thread", "dump", null);
+        HistoryKey otherKey = new HistoryKey("other:type=thread", "count", null, null);
+        for (HistoryKey key : new HistoryKey[] { memKey, threadKey, opKey, otherKey }) {
+            store.configure(key, new HistoryLimit(5, 0L));
+            for (int i = 0; i < 3; i++) {
+                store.addValue(key, i, 100 + i);
+            }
+        }
+
+        List<HistoryKey> keys = store.getHistoryKeys(new ObjectName("test:*"), null);
+        assertEquals(3, keys.size());
+        assertFalse(keys.contains(otherKey));
+        keys = store.getHistoryKeys(new ObjectName("test:*"), "count");
+        assertEquals(1, keys.size());
+        assertEquals(threadKey, keys.get(0));
+
+        JmxRequest req = new JmxRequestBuilder(HISTORY, "test:*")
+                .option(ConfigKey.HISTORY_SINCE, "100")
+                .build();
+        Collection<JSONObject> export = store.exportHistory(Arrays.asList(threadKey, opKey), req);
+        assertEquals(2, export.size());
+        Iterator<JSONObject> it = export.iterator();
+        JSONObject json = it.next();
+        assertEquals("test:type=thread", json.get("mbean"));
+        assertEquals("count", json.get("attribute"));
+        assertEquals(2, ((List) json.get("history")).size());
+        json = it.next();
+        assertEquals("dump", json.get("operation"));
+        assertFalse(it.hasNext());
+
+        // Removed keys are skipped
+        store.configure(threadKey, null);
+        assertEquals(1, store.exportHistory(Arrays.asList(threadKey, opKey), req).size());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*timestamp.*")
+    public void invalidHistorySince() throws Exception {
+        HistoryKey key = new HistoryKey("test:type=mem", "used", null, null);
+        store.configure(key, new HistoryLimit(5, 0L));
+        store.addValue(key, 1, 100);
+        JmxRequest req = new JmxRequestBuilder(HISTORY, "test:*")
+                .option(ConfigKey.HISTORY_SINCE, "yesterday")
+                .build();
+        store.exportHistory(Arrays.asList(key), req).iterator().next();
+    }
+
+    @Test
+    public void persistentStore() throws Exception {
+        File file = File.createTempFile("jolokia-history", ".dat");
+        try {
+            store = new HistoryStore(10, file);
+            JmxReadRequest numReq = new JmxRequestBuilder(READ,"test:type=read").attribute("num").build();
+            JmxReadRequest textReq = new JmxRequestBuilder(READ,"test:type=read").attribute("text").build();
+            JmxReadRequest patternReq = new JmxRequestBuilder(READ,"test:type=pattern").attribute("double").build();
+            JmxReadRequest removedReq = new JmxRequestBuilder(READ,"test:type=read").attribute("removed").build();
+            store.configure(new HistoryKey(numReq), new HistoryLimit(3, 0L));
+            store.configure(new HistoryKey(textReq), new HistoryLimit(3, 0L));
+            store.configure(new HistoryKey(removedReq), new HistoryLimit(3, 0L));
+            store.configure(new HistoryKey("test:type=pat*", "double", null, null), new HistoryLimit(2, 0L));
+            for (int i = 0; i < 5; i++) {
+                updateNTimesAsList(numReq, 1, i);
+                updateNTimesAsList(patternReq, 1, i + 0.5);
+                updateNTimesAsList(textReq, 1, "text" + i);
+                updateNTimesAsList(removedReq, 1, i);
+            }
+            store.configure(new HistoryKey(removedReq), null);
+            store.close();
+
+            store = new HistoryStore(10, file);
+            JSONArray history = updateNTimesAsList(numReq, 1, 5);
+            assertEquals(3, history.size());
+            assertEquals(4L, ((Map) history.get(0)).get("value"));
+            assertEquals(2L, ((Map) history.get(2)).get("value"));
+            history = updateNTimesAsList(patternReq, 1, 5.5);
+            assertEquals(2, history.size());
+            assertEquals(4.5, ((Map) history.get(0)).get("value"));
+            // Only the configuration is kept for non numeric values
+            assertEquals(0, updateNTimesAsList(textReq, 1, "text").size());
+            assertNull(updateNTimesAsList(removedReq, 1, 5));
+            // Pattern is restored, too
+            JmxReadRequest otherPatternReq = new JmxRequestBuilder(READ,"test:type=patternOther").attribute("double").build();
+            assertEquals(2, updateNTimesAsList(otherPatternReq, 2, 1.0).size());
+
+            // Reset removes everything
+            store.reset();
+            store.close();
+            store = new HistoryStore(10, file);
+            assertTrue(store.isEmpty());
+            store.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void persistentStoreKeepsConfiguredEntries() throws Exception {
+        File file = File.createTempFile("jolokia-history", ".dat");
+        try {
+            HistoryKey configured = new HistoryKey("test:type=configured", "attr", null, null);
+            HistoryKey created = new HistoryKey("test:type=created", "attr", null, null);
+            store = new HistoryStore(10, file);
+            store.configure(configured, new HistoryLimit(3, 0L));
+            store.configure(new HistoryKey("test:type=*", "attr", null, null), new HistoryLimit(3, 0L));
+            store.addValue(configured, "text", 100);
+            store.addValue(created, "text", 101);
+            store.close();
+
+            store = new HistoryStore(10, file);
+            store.setMaxSize(1);
+            assertNotNull(store.getHistory(configured, false));
+            assertNull(store.getHistory(created, false));
+            store.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void persistentStoreWithRollups() throws Exception {
+        File file = File.createTempFile("jolokia-history", ".dat");
+        try {
+            HistoryKey key = new HistoryKey("test:type=mem", "used", null, null);
+            store = new HistoryStore(10, file);
+            store.configure(key, new HistoryLimit(5, 0L, 4, 2));
+            // Three minutes, with values 0..9 each
+            for (long minute = 0; minute < 3; minute++) {
+                for (int i = 0; i < 10; i++) {
+                    store.addValue(key, minute * 100 + i, 7200 + minute * 60 + i * 5);
+                }
+            }
+            // Rewrites the record with smaller rollups
+            store.configure(key, new HistoryLimit(5, 0L, 2, 2));
+            store.addValue(key, 210L, 7370);
+            store.close();
+
+            store = new HistoryStore(10, file);
+            JSONArray minutes = exportRollup(key, "minute");
+            assertEquals(2, minutes.size());
+            Map latest = (Map) minutes.get(0);
+            assertEquals(7320L, latest.get("timestamp"));
+            assertEquals(200.0, latest.get("min"));
+            assertEquals(210.0, latest.get("max"));
+            assertEquals(11L, latest.get("count"));
+            assertEquals(210.0, latest.get("last"));
+            assertEquals(7260L, ((Map) minutes.get(1)).get("timestamp"));
+            JSONArray hours = exportRollup(key, "hour");
+            assertEquals(1, hours.size());
+            assertEquals(31L, ((Map) hours.get(0)).get("count"));
+
+            // Restored buckets are continued and written again
+            store.addValue(key, 300L, 7375);
+            store.close();
+            store = new HistoryStore(10, file);
+            latest = (Map) exportRollup(key, "minute").get(0);
+            assertEquals(12L, latest.get("count"));
+            assertEquals(300.0, latest.get("max"));
+            assertEquals(32L, ((Map) exportRollup(key, "hour").get(0)).get("count"));
+            store.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private JSONArray exportRollup(HistoryKey pKey, String pResolution) throws Exception {
+        JmxRequest req = new JmxRequestBuilder(HISTORY, "test:*")
+                .option(ConfigKey.HISTORY_RESOLUTION, pResolution)
+                .build();
+        return (JSONArray) store.exportHistory(Arrays.asList(pKey), req).iterator().next().get("history");
+    }
+
+    @Test
+    public void persistentStoreReusesSpace() throws Exception {
+        File file = File.createTempFile("jolokia-history", ".dat");
+        try {
+            store = new HistoryStore(100, file);
+            for (int i = 0; i < 200; i++) {
+                JmxReadRequest req = new JmxRequestBuilder(READ,"test:type=read").attribute("attr" + (i % 5)).build();
+                store.configure(new HistoryKey(req), new HistoryLimit(100, 0L));
+                updateNTimesAsList(req, 10, (long) i);
+                store.configure(new HistoryKey(req), null);
+            }
+            store.close();
+            // Only the initially mapped region is used
+            assertTrue(file.length() <= 64 * 1024);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void persistentStoreLocked() throws Exception {
+        File file = File.createTempFile("jolokia-history", ".dat");
+        try {
+            HistoryKey key = new HistoryKey("test:type=mem", "used", null, null);
+            store = new HistoryStore(10, file);
+            store.configure(key, new HistoryLimit(3, 0L));
+            store.addValue(key, 1L, 100);
+            try {
+                new HistoryStore(10, file);
+                fail("File is in use");
+            } catch (IOException exp) {
+                assertTrue(exp.getMessage().contains("in use"));
+            }
+            store.close();
+
+            // Not touched by the failed attempt
+            store = new HistoryStore(10, file);
+            assertEquals(1, ((JSONArray) store.getHistory(key, false)).size());
+            store.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void persistentStoreWithInvalidFile() throws Exception {
+        File file = File.createTempFile("jolokia-history", ".dat");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write("no history file".getBytes());
+            out.close();
+            store = new HistoryStore(10, file);
+            assertTrue(store.isEmpty());
+            store.close();
+        } finally {
+            file.delete();
+        }
+    }
+
     @Test(groups = "java6")
     public void patternAttributeRead() throws Exception {
         JmxReadRequest req =
@@ -306,6 +943,11 @@ public class HistoryStoreTest {
         new HistoryLimit(0,-1L);
     }
 
+    @Test(expectedExceptions = IllegalArgumentException.class,expectedExceptionsMessageRegExp = ".*rollups.*")
+    public void invalidRollupsHistoryLimit() {
+        new HistoryLimit(10,0L,-1,0);
+    }
+
     @Test
     public void valueEntryTest() {
         ValueEntry entry = new ValueEntry("Test",42L);
@@ -19,6 +19,8 @@ package org.jolokia.http;
 import java.io.*;
 import java.net.SocketException;
 import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.management.JMException;
 import javax.servlet.*;
@@ -558,6 +560,63 @@ public class AgentServletTest {
         servlet.destroy();
     }
 
+    @Test
+    public void compressedGet() throws ServletException, IOException {
+        prepareStandardInitialisation(ConfigKey.COMPRESSION_THRESHOLD.getKeyValue(), "0");
+        ByteArrayOutputStream sw = initRequestResponseMocks();
+        expect(request.getPathInfo()).andReturn(HttpTestUtil.HEAP_MEMORY_GET_REQUEST);
+        expect(request.getParameter(ConfigKey.MIME_TYPE.getKeyValue())).andReturn(null);
+        expect(request.getHeader("Accept-Encoding")).andReturn("gzip, deflate");
+        response.setHeader("Vary", "Accept-Encoding");
+        response.setHeader("Content-Encoding", "gzip");
+        replay(request, response);
+
+        servlet.doGet(request, response);
+
+        assertTrue(gunzip(sw.toByteArray()).contains("used"));
+        servlet.destroy();
+        verify(request, response);
+    }
+
+    @Test
+    public void compressedPost() throws ServletException, IOException {
+        prepareStandardInitialisation();
+        ByteArrayOutputStream responseWriter = initRequestResponseMocks();
+        expect(request.getCharacterEncoding()).andReturn("utf-8");
+        expect(request.getParameter(ConfigKey.MIME_TYPE.getKeyValue())).andReturn("text/plain");
+        expect(request.getAttribute("subject")).andReturn(null);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(body);
+        gzip.write(HttpTestUtil.HEAP_MEMORY_POST_REQUEST.getBytes("utf-8"));
+        gzip.close();
+        final ByteArrayInputStream bis = new ByteArrayInputStream(body.toByteArray());
+        expect(request.getInputStream()).andReturn(new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return bis.read();
+            }
+        });
+        expect(request.getHeader("Content-Encoding")).andReturn("gzip");
+        replay(request, response);
+
+        servlet.doPost(request, response);
+
+        assertTrue(responseWriter.toString().contains("used"));
+        servlet.destroy();
+    }
+
+    private String gunzip(byte[] pData) throws IOException {
+        InputStream is = new GZIPInputStream(new ByteArrayInputStream(pData));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int len;
+        while ((len = is.read(buf)) >= 0) {
+            out.write(buf, 0, len);
+        }
+        return out.toString("utf-8");
+    }
+
     @Test
     public void withException() throws ServletException, IOException {
         servlet = new AgentServlet(new AllowAllRestrictor());
@@ -696,6 +755,7 @@ public class AgentServletTest {
     private void preparePostRequest(String pReq) throws IOException {
         ServletInputStream is = HttpTestUtil.createServletInputStream(pReq);
         expect(request.getInputStream()).andReturn(is);
+        expect(request.getHeader("Content-Encoding")).andReturn(null);
     }
 
     private void prepareStandardInitialisation(Restrictor restrictor, String ... params) throws ServletException {
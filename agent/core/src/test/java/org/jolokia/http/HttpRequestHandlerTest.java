@@ -18,21 +18,27 @@ package org.jolokia.http;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.management.*;
 
 import org.easymock.EasyMock;
 import org.easymock.IArgumentMatcher;
+import org.jolokia.config.ConfigKey;
 import org.jolokia.config.Configuration;
 import org.jolokia.backend.BackendManager;
+import org.jolokia.backend.executor.MBeanCallTimeoutException;
 import org.jolokia.request.JmxReadRequest;
 import org.jolokia.request.JmxRequest;
+import org.jolokia.request.JmxVersionRequest;
 import org.jolokia.test.util.HttpTestUtil;
 import org.jolokia.util.LogHandler;
 import org.jolokia.util.RequestType;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
 import org.testng.annotations.*;
 
 import static org.easymock.EasyMock.*;
@@ -159,6 +165,50 @@ public class HttpRequestHandlerTest {
         assertTrue(response.get(1) == resp);
     }
 
+    @Test
+    public void parallelPost() throws IOException, InstanceNotFoundException, ReflectionException, AttributeNotFoundException, MBeanException {
+        JSONObject readResp = new JSONObject();
+        JSONObject versionResp = new JSONObject();
+        expect(backend.handleRequest(isA(JmxReadRequest.class))).andReturn(readResp).times(3);
+        expect(backend.handleRequest(isA(JmxVersionRequest.class))).andReturn(versionResp).times(3);
+        replay(backend);
+
+        String version = "{ \"type\": \"version\" }";
+        StringBuilder bulk = new StringBuilder("[");
+        for (int i = 0; i < 3; i++) {
+            bulk.append(i > 0 ? "," : "").append(HttpTestUtil.HEAP_MEMORY_POST_REQUEST).append(",").append(version);
+        }
+        bulk.append("]");
+        Map<String,String[]> params = new HashMap<String, String[]>();
+        params.put(ConfigKey.BULK_PARALLEL.getKeyValue(), new String[] { "true" });
+        InputStream is = HttpTestUtil.createServletInputStream(bulk.toString());
+        JSONArray response = (JSONArray) handler.handlePostRequest("/jolokia", is, "utf-8", params);
+        assertEquals(response.size(),6);
+        for (int i = 0; i < 6; i += 2) {
+            assertTrue(response.get(i) == readResp);
+            assertTrue(response.get(i + 1) == versionResp);
+        }
+        handler.destroy();
+    }
+
+    @Test
+    public void streamingPost() throws IOException, InstanceNotFoundException, ReflectionException, AttributeNotFoundException, MBeanException {
+        JSONObject resp = new JSONObject();
+        resp.put("status", 200);
+        expect(backend.handleRequest(isA(JmxReadRequest.class))).andReturn(resp).times(2);
+        replay(backend);
+
+        Map<String,String[]> params = new HashMap<String, String[]>();
+        params.put(ConfigKey.BULK_STREAMING.getKeyValue(), new String[] { "true" });
+        InputStream is = HttpTestUtil.createServletInputStream("[" + HttpTestUtil.HEAP_MEMORY_POST_REQUEST + "," + HttpTestUtil.HEAP_MEMORY_POST_REQUEST + "]");
+        JSONStreamAware response = (JSONStreamAware) handler.handlePostRequest("/jolokia", is, "utf-8", params);
+        assertTrue(response instanceof StreamingBulkResponse);
+
+        StringWriter writer = new StringWriter();
+        response.writeJSONString(writer);
+        assertEquals(writer.toString(), "[{\"status\":200},{\"status\":200}]");
+    }
+
     @Test
     public void preflightCheck() {
         String origin = "http://bla.com";
@@ -204,6 +254,7 @@ public class HttpRequestHandlerTest {
                 new AttributeNotFoundException(), 404, 500,
                 new UnsupportedOperationException(), 500, 500,
                 new IOException(), 500, 500,
+                new MBeanCallTimeoutException("timeout"), 504, 500,
                 new IllegalArgumentException(), 400, 400,
                 new SecurityException(),403, 403,
                 new RuntimeMBeanException(new NullPointerException()), 500, 500
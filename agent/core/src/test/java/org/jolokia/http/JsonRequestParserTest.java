@@ -0,0 +1,106 @@
+package org.jolokia.http;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+
+import org.jolokia.config.*;
+import org.jolokia.request.*;
+import org.jolokia.util.RequestType;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author roland
+ * @since 18.10.26
+ */
+public class JsonRequestParserTest {
+
+    private static final String READ_REQUEST =
+            "{ \"type\": \"read\", \"mbean\": \"java.lang:type=Memory\", \"attribute\": \"HeapMemoryUsage\", " +
+            "\"path\": \"used\", \"config\": { \"maxDepth\": \"2\" } }";
+
+    private static final String EXEC_REQUEST =
+            "{ \"type\": \"exec\", \"mbean\": \"java.lang:type=Threading\", \"operation\": \"getThreadInfo\", " +
+            "\"arguments\": [ 1, [ \"a\", \"b\" ], { \"x\": null } ] }";
+
+    @Test
+    public void single() throws IOException {
+        JmxReadRequest request = (JmxReadRequest) parse(new JsonRequestParser(0, 0), READ_REQUEST);
+        assertEquals(request.getObjectNameAsString(), "java.lang:type=Memory");
+        assertEquals(request.getAttributeName(), "HeapMemoryUsage");
+        assertEquals(request.getPath(), "used");
+        assertEquals(request.getParameterAsInt(ConfigKey.MAX_DEPTH), 2);
+    }
+
+    @Test
+    public void bulk() throws IOException {
+        List<JmxRequest> requests =
+                (List<JmxRequest>) parse(new JsonRequestParser(0, 0), "[" + READ_REQUEST + "," + EXEC_REQUEST + "]");
+        assertEquals(requests.size(), 2);
+        assertEquals(requests.get(0).getType(), RequestType.READ);
+        JmxExecRequest exec = (JmxExecRequest) requests.get(1);
+        List args = exec.getArguments();
+        assertEquals(args.size(), 3);
+        assertEquals(args.get(0), 1L);
+        assertEquals(args.get(1), Arrays.asList("a", "b"));
+        assertTrue(((Map) args.get(2)).containsKey("x"));
+    }
+
+    @Test
+    public void emptyBulk() throws IOException {
+        assertEquals(((List) parse(new JsonRequestParser(0, 0), "[]")).size(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*maximum size.*")
+    public void tooLarge() throws IOException {
+        parse(new JsonRequestParser(READ_REQUEST.length() + 10, 0), "[" + READ_REQUEST + "," + READ_REQUEST + "]");
+    }
+
+    @Test
+    public void sizeWithinLimit() throws IOException {
+        assertNotNull(parse(new JsonRequestParser(READ_REQUEST.length(), 0), READ_REQUEST));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*more than 2.*")
+    public void tooManyRequests() throws IOException {
+        parse(new JsonRequestParser(0, 2), "[" + READ_REQUEST + "," + READ_REQUEST + "," + READ_REQUEST + "]");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*Expected map.*")
+    public void noMapInBulk() throws IOException {
+        parse(new JsonRequestParser(0, 0), "[" + READ_REQUEST + ", 12]");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void primitive() throws IOException {
+        parse(new JsonRequestParser(0, 0), "\"read\"");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidJson() throws IOException {
+        parse(new JsonRequestParser(0, 0), "[" + READ_REQUEST + ", { \"type\": ");
+    }
+
+    private Object parse(JsonRequestParser pParser, String pRequest) throws IOException {
+        ProcessingParameters params = new Configuration().getProcessingParameters(new HashMap<String, String>());
+        return pParser.parse(new StringReader(pRequest), params);
+    }
+}
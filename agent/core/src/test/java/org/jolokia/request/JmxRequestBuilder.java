@@ -63,6 +63,7 @@ public class JmxRequestBuilder {
             case VERSION: return (R) new JmxVersionRequest(request,params);
             case SEARCH: return (R) new JmxSearchRequest(request,params);
             case LIST: return (R) new JmxListRequest(request,params);
+            case HISTORY: return (R) new JmxHistoryRequest(request,params);
         }
         throw new IllegalArgumentException("Unknown type " + type);
     }
@@ -18,6 +18,8 @@ package org.jolokia.request;
 
 import java.util.*;
 
+import javax.management.ObjectName;
+
 import org.jolokia.config.*;
 import org.jolokia.util.HttpMethod;
 import org.jolokia.util.RequestType;
@@ -25,7 +27,7 @@ import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import static org.jolokia.request.JmxRequestBuilder.createMap;
-import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.*;
 
 /**
  * @author roland
@@ -50,6 +52,55 @@ public class JmxRequestFactoryTest {
         assert req.getPath() == null : "Path is null";
     }
 
+    @Test
+    public void cachedGet() {
+        GetRequestCache cache = new GetRequestCache(2);
+        String url = "read/java.lang:type=Memory/HeapMemoryUsage/used";
+        ObjectName name = null;
+        for (int i = 0; i < 3; i++) {
+            JmxReadRequest req = JmxRequestFactory.createGetRequest(url, procParams, cache);
+            assertEquals(req.getObjectNameAsString(), "java.lang:type=Memory");
+            if (name != null) {
+                // Parsed only once
+                assertSame(req.getObjectName(), name);
+            }
+            name = req.getObjectName();
+            assertEquals(req.getAttributeName(), "HeapMemoryUsage");
+            assertEquals(req.getPathParts(), Arrays.asList("used"));
+            assertEquals(cache.size(), 1);
+        }
+        JmxVersionRequest version = JmxRequestFactory.createGetRequest("", procParams, cache);
+        assertEquals(version.getType(), RequestType.VERSION);
+        JmxRequestFactory.createGetRequest("list", procParams, cache);
+        assertEquals(cache.size(), 2);
+
+        try {
+            JmxRequestFactory.createGetRequest("read", procParams, cache);
+        } catch (IllegalArgumentException exp) {
+            // Invalid requests are not cached
+        }
+        try {
+            JmxRequestFactory.createGetRequest("read/bla", procParams, cache);
+            fail("Invalid object name");
+        } catch (IllegalArgumentException exp) {
+            assertTrue(exp.getMessage().contains("Invalid object name"));
+        }
+        assertEquals(cache.size(), 2);
+
+        cache.clear();
+        for (int i = 0; i < 2; i++) {
+            JmxExecRequest exec = JmxRequestFactory.createGetRequest("exec/java.lang:type=Memory/gc", procParams, cache);
+            assertEquals(exec.getObjectNameAsString(), "java.lang:type=Memory");
+            assertEquals(exec.getOperation(), "gc");
+            JmxWriteRequest write = JmxRequestFactory.createGetRequest("write/java.lang:type=Memory/Verbose/true", procParams, cache);
+            assertEquals(write.getAttributeName(), "Verbose");
+            assertEquals(write.getValue(), "true");
+            JmxSearchRequest search = JmxRequestFactory.createGetRequest("search/java.lang:*", procParams, cache);
+            assertTrue(search.getObjectName().isPattern());
+        }
+        assertEquals(cache.size(), 2);
+    }
+
     @Test
     public void simplePost() {
         Map<String,Object> reqMap = createMap(
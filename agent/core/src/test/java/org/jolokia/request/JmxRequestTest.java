@@ -270,6 +270,26 @@ public class JmxRequestTest {
         }
     }
 
+    @Test
+    public void historyRequest() {
+        for (JmxHistoryRequest req : new JmxHistoryRequest[] {
+                (JmxHistoryRequest) JmxRequestFactory.createGetRequest("history/java.lang:*/HeapMemoryUsage", procParams),
+                (JmxHistoryRequest) JmxRequestFactory.createPostRequest(
+                        createMap("type", "history", "mbean", "java.lang:*", "attribute", "HeapMemoryUsage"),procParams)
+        }) {
+            assertEquals(req.getType(),RequestType.HISTORY);
+            assertTrue(req.getObjectName().isPattern());
+            assertEquals(req.getAttributeName(),"HeapMemoryUsage");
+
+            verify(req,"type","history");
+            verify(req,"mbean","java.lang:*");
+            verify(req,"attribute","HeapMemoryUsage");
+        }
+        JmxHistoryRequest req = JmxRequestFactory.createGetRequest("history/java.lang:type=Memory", procParams);
+        assertNull(req.getAttributeName());
+        assertFalse(req.toJSON().containsKey("attribute"));
+    }
+
     private void verify(JmxRequest pReq, String pKey, String pValue) {
         JSONObject json = pReq.toJSON();
         assertEquals(json.get(pKey),pValue);
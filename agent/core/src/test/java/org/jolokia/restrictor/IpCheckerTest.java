@@ -3,6 +3,7 @@ package org.jolokia.restrictor;
 import org.jolokia.util.IpChecker;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.fail;
 import static org.testng.AssertJUnit.assertEquals;
 
@@ -48,6 +49,42 @@ public class IpCheckerTest {
         }
     }
 
+    @Test
+    public void ipv6() {
+        String [][] fixture = new String[][]{
+                // IP-tocheck, expected net/ip, result
+                { "fd00:0:0:0:0:0:0:1", "fd00::1", "true" },
+                { "[fd00::1%eth0]", "fd00::1", "true" },
+                { "fd00:1:2::17", "fd00:1::/32", "true"},
+                { "fd00:2:2::17", "fd00:1::/32", "false"},
+                { "::1", "::1/128", "true"},
+                { "::ffff:10.0.15.16", "10.0.0.1/16", "true"},
+                { "10.0.15.16", "fd00::/8", "false"},
+                { "1:2:3:4:5:6:10.0.15.16", "1:2:3:4:5:6:a00:0/112", "true"},
+        };
+        for (int i = 0; i < fixture.length; i ++) {
+            String result = IpChecker.matches(fixture[i][1],fixture[i][0]) ?
+                    "true" : "false";
+            assertEquals("Expected mask: " + fixture[i][1] + ", IP to check: " + fixture[i][0],
+                         fixture[i][2],result);
+        }
+        for (String invalid : new String[] { "fd00::1::2", "1:2:3:4:5:6:7:8:9", "fd00:12345::", "1:2:3:4:5:6:7", "g::1", ":1:2:3:4:5:6:7" }) {
+            assertNull(IpChecker.parseAddress(invalid), invalid);
+        }
+        try {
+            IpChecker.matches("fd00::/129","fd00::1");
+            fail("Invalid netmask");
+        } catch (IllegalArgumentException exp) {}
+    }
+
+    @Test
+    public void prefixLength() {
+        assertEquals(IpChecker.getPrefixLength(IpChecker.parseNetmask("255.255.240.0", 4)), 20);
+        assertEquals(IpChecker.getPrefixLength(IpChecker.parseNetmask("0.0.0.0", 4)), 0);
+        assertEquals(IpChecker.getPrefixLength(IpChecker.parseNetmask("255.0.255.0", 4)), -1);
+        assertEquals(IpChecker.getPrefixLength(IpChecker.parseNetmask("48", 16)), 48);
+    }
+
     @Test
     public void invalidFormat() {
         try {
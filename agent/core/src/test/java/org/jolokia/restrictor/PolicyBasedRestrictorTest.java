@@ -16,6 +16,7 @@ package org.jolokia.restrictor;
  * limitations under the License.
  */
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 import javax.management.MalformedObjectNameException;
@@ -73,6 +74,23 @@ public class PolicyBasedRestrictorTest {
         }
     }
 
+    @Test
+    public void restrictIpv6AndSubnetsWithGaps() {
+        String policy =
+                "<restrict><remote>" +
+                "  <host>fd00:1::/32</host>" +
+                "  <host>::1</host>" +
+                "  <host>10.0.0.0/255.0.255.0</host>" +
+                "</remote></restrict>";
+        PolicyRestrictor restrictor = new PolicyRestrictor(new ByteArrayInputStream(policy.getBytes()));
+        assertTrue(restrictor.isRemoteAccessAllowed("fd00:1:0:0:0:0:0:1"));
+        assertTrue(restrictor.isRemoteAccessAllowed("0:0:0:0:0:0:0:1"));
+        assertFalse(restrictor.isRemoteAccessAllowed("fd00:2::1"));
+        assertTrue(restrictor.isRemoteAccessAllowed("10.1.0.3"));
+        assertFalse(restrictor.isRemoteAccessAllowed("10.1.1.3"));
+        assertTrue(restrictor.isRemoteAccessAllowed("localhost", "::1"));
+    }
+
     @Test
     public void patterns() throws MalformedObjectNameException {
         InputStream is = getClass().getResourceAsStream("/access-sample2.xml");
@@ -87,6 +105,24 @@ public class PolicyBasedRestrictorTest {
 
     }
 
+    @Test
+    public void domainPatternsAndRepeatedChecks() throws MalformedObjectNameException {
+        String policy =
+                "<restrict><commands><command>list</command></commands><mbeans>" +
+                "  <mbean><name>*:type=Cache,*</name><attribute mode=\"read\">Hit*</attribute></mbean>" +
+                "  <mbean><name>java.lang:type=Memory</name><attribute>Verbose</attribute></mbean>" +
+                "</mbeans></restrict>";
+        PolicyRestrictor restrictor = new PolicyRestrictor(new ByteArrayInputStream(policy.getBytes()));
+        for (int i = 0; i < 2; i++) {
+            assertTrue(restrictor.isAttributeReadAllowed(new ObjectName("app:type=Cache,name=users"), "HitCount"));
+            assertFalse(restrictor.isAttributeWriteAllowed(new ObjectName("app:type=Cache,name=users"), "HitCount"));
+            assertFalse(restrictor.isAttributeReadAllowed(new ObjectName("app:type=Cache,name=users"), "MissCount"));
+            assertFalse(restrictor.isAttributeReadAllowed(new ObjectName("app:type=Pool"), "HitCount"));
+            assertTrue(restrictor.isAttributeWriteAllowed(new ObjectName("java.lang:type=Memory"), "Verbose"));
+            assertFalse(restrictor.isAttributeReadAllowed(new ObjectName("java.lang:type=Memory"), "HitCount"));
+        }
+    }
+
     @Test
     public void noRestrictions() throws MalformedObjectNameException {
         InputStream is = getClass().getResourceAsStream("/access-sample3.xml");
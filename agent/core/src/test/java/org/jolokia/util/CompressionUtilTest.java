@@ -0,0 +1,159 @@
+package org.jolokia.util;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author roland
+ * @since 18.10.26
+ */
+public class CompressionUtilTest {
+
+    @Test
+    public void selectEncoding() {
+        assertNull(CompressionUtil.selectEncoding(null));
+        assertNull(CompressionUtil.selectEncoding(""));
+        assertNull(CompressionUtil.selectEncoding("identity"));
+        assertNull(CompressionUtil.selectEncoding("br"));
+        assertNull(CompressionUtil.selectEncoding("gzip;q=0, deflate;q=0"));
+        assertNull(CompressionUtil.selectEncoding("*;q=0"));
+        assertEquals(CompressionUtil.selectEncoding("gzip"), "gzip");
+        assertEquals(CompressionUtil.selectEncoding("x-gzip"), "gzip");
+        assertEquals(CompressionUtil.selectEncoding("deflate, gzip"), "gzip");
+        assertEquals(CompressionUtil.selectEncoding("deflate"), "deflate");
+        assertEquals(CompressionUtil.selectEncoding("gzip;q=0.5, deflate"), "deflate");
+        assertEquals(CompressionUtil.selectEncoding("br, GZIP ; q=0.8"), "gzip");
+        assertEquals(CompressionUtil.selectEncoding("*"), "gzip");
+        assertEquals(CompressionUtil.selectEncoding("gzip;q=0, *"), "deflate");
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] data = createData();
+        for (String encoding : new String[] { CompressionUtil.GZIP, CompressionUtil.DEFLATE }) {
+            byte[] compressed = CompressionUtil.compress(data, encoding, 9);
+            assertTrue(compressed.length < data.length / 2);
+            InputStream is = CompressionUtil.decompress(new ByteArrayInputStream(compressed), encoding, 0);
+            assertEquals(readFully(is), data);
+            is = CompressionUtil.decompress(new ByteArrayInputStream(compressed), encoding, data.length);
+            assertEquals(readFully(is), data);
+        }
+        InputStream is = new ByteArrayInputStream(data);
+        assertSame(CompressionUtil.decompress(is, null, 10), is);
+        assertSame(CompressionUtil.decompress(is, "identity", 10), is);
+    }
+
+    @Test
+    public void decompressedSizeLimit() throws IOException {
+        byte[] data = createData();
+        for (String encoding : new String[] { CompressionUtil.GZIP, CompressionUtil.DEFLATE }) {
+            InputStream is = CompressionUtil.decompress(new ByteArrayInputStream(CompressionUtil.compress(data, encoding, 9)),
+                                                        encoding, data.length - 1);
+            try {
+                readFully(is);
+                fail("Limit exceeded");
+            } catch (IllegalArgumentException exp) {
+                assertTrue(exp.getMessage().contains(String.valueOf(data.length - 1)));
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*br.*")
+    public void unsupportedRequestEncoding() throws IOException {
+        CompressionUtil.decompress(new ByteArrayInputStream(new byte[0]), "br", 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*level.*")
+    public void invalidLevel() {
+        assertEquals(CompressionUtil.checkLevel(1), 1);
+        CompressionUtil.checkLevel(10);
+    }
+
+    @Test
+    public void streamAboveThreshold() throws IOException {
+        RecordingOpener opener = new RecordingOpener();
+        byte[] data = createData();
+        OutputStream out = new CompressingOutputStream(opener, CompressionUtil.GZIP, 100, 6);
+        out.write(data, 0, 50);
+        out.flush();
+        assertNull(opener.out);
+        out.write(data, 50, data.length - 50);
+        out.close();
+        out.close();
+        assertEquals(opener.encoding, "gzip");
+        assertEquals(opener.length, -1);
+        assertEquals(readFully(CompressionUtil.decompress(new ByteArrayInputStream(opener.out.toByteArray()), "gzip", 0)), data);
+    }
+
+    @Test
+    public void streamBelowThreshold() throws IOException {
+        RecordingOpener opener = new RecordingOpener();
+        OutputStream out = new CompressingOutputStream(opener, CompressionUtil.DEFLATE, 100, 6);
+        out.write('[');
+        out.write("1,2,3]".getBytes("UTF-8"));
+        out.close();
+        assertNull(opener.encoding);
+        assertEquals(opener.length, 7);
+        assertEquals(opener.out.toString("UTF-8"), "[1,2,3]");
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void writeAfterClose() throws IOException {
+        OutputStream out = new CompressingOutputStream(new RecordingOpener(), CompressionUtil.GZIP, 100, 6);
+        out.close();
+        out.write(1);
+    }
+
+    // ===========================================================================================
+
+    private byte[] createData() throws UnsupportedEncodingException {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            buf.append("{\"value\":").append(i).append("},");
+        }
+        return buf.toString().getBytes("UTF-8");
+    }
+
+    private byte[] readFully(InputStream pIs) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int len;
+        while ((len = pIs.read(buf)) >= 0) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private static class RecordingOpener implements CompressingOutputStream.ResponseOpener {
+        private String encoding;
+        private int length;
+        private ByteArrayOutputStream out;
+
+        public OutputStream open(String pEncoding, int pLength) {
+            assertNull(out);
+            encoding = pEncoding;
+            length = pLength;
+            out = new ByteArrayOutputStream();
+            return out;
+        }
+    }
+}
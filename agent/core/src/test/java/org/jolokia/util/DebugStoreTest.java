@@ -16,6 +16,9 @@ package org.jolokia.util;
  *  limitations under the License.
  */
 
+import java.util.*;
+
+import org.json.simple.JSONObject;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.*;
@@ -72,6 +75,65 @@ public class DebugStoreTest {
         assertTrue(store.debugInfo().contains("Test3"));
     }
 
+    @Test
+    public void json() {
+        DebugStore store = new DebugStore(3,true);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            store.log("Test" + i);
+        }
+        store.log("Error", new IllegalStateException("bla"));
+        List<JSONObject> entries = store.debugInfoAsJson();
+        assertEquals(entries.size(), 3);
+        assertEquals(entries.get(0).get("message"), "Test3");
+        assertEquals(entries.get(1).get("message"), "Test4");
+        assertEquals(entries.get(0).get("thread"), Thread.currentThread().getName());
+        assertTrue((Long) entries.get(0).get("timestamp") >= start);
+        assertNull(entries.get(0).get("exception"));
+        assertTrue(((String) entries.get(2).get("exception")).contains("bla"));
+        assertTrue(store.debugInfo().contains("[" + Thread.currentThread().getName() + "] Test3"));
+
+        store.setDebug(false);
+        assertEquals(store.debugInfoAsJson().size(), 0);
+    }
+
+    @Test
+    public void concurrentLogging() throws InterruptedException {
+        final DebugStore store = new DebugStore(50,true);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread("logger-" + i) {
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        store.log("Message " + j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // No slot is overwritten by an older entry, so the newest entries are all there
+        List<JSONObject> entries = store.debugInfoAsJson();
+        assertEquals(entries.size(), 50);
+        Map<String, Integer> lastMessages = new HashMap<String, Integer>();
+        for (JSONObject entry : entries) {
+            String thread = (String) entry.get("thread");
+            assertTrue(thread.startsWith("logger-"));
+            int nr = Integer.parseInt(((String) entry.get("message")).substring("Message ".length()));
+            // Messages of a thread are in the order they were logged
+            Integer last = lastMessages.get(thread);
+            assertTrue(last == null || nr > last, thread + ": " + nr + " after " + last);
+            lastMessages.put(thread, nr);
+        }
+        assertTrue(lastMessages.containsValue(999));
+
+        store.setMaxDebugEntries(0);
+        store.log("Test");
+        assertEquals(store.debugInfoAsJson().size(), 0);
+    }
+
     @Test
     public void noDebug() {
         DebugStore store = new DebugStore(2,false);
@@ -0,0 +1,63 @@
+package org.jolokia.util;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author roland
+ * @since 18.10.26
+ */
+public class IpPrefixTrieTest {
+
+    @Test
+    public void lookup() {
+        IpPrefixTrie trie = new IpPrefixTrie();
+        trie.add(IpChecker.parseAddress("10.0.0.0"), 8);
+        trie.add(IpChecker.parseAddress("192.168.15.3"), 32);
+        trie.add(IpChecker.parseAddress("fd00:1::"), 32);
+
+        assertTrue(trie.contains(IpChecker.parseAddress("10.1.2.3")));
+        assertFalse(trie.contains(IpChecker.parseAddress("11.1.2.3")));
+        assertTrue(trie.contains(IpChecker.parseAddress("192.168.15.3")));
+        assertFalse(trie.contains(IpChecker.parseAddress("192.168.15.4")));
+        assertTrue(trie.contains(IpChecker.parseAddress("fd00:1:ffff::1")));
+        assertFalse(trie.contains(IpChecker.parseAddress("fd00:2::1")));
+
+        // More specific networks are covered by less specific ones
+        trie.add(IpChecker.parseAddress("10.1.0.0"), 16);
+        trie.add(IpChecker.parseAddress("192.168.0.0"), 16);
+        assertTrue(trie.contains(IpChecker.parseAddress("10.2.0.1")));
+        assertTrue(trie.contains(IpChecker.parseAddress("192.168.16.1")));
+    }
+
+    @Test
+    public void everything() {
+        IpPrefixTrie trie = new IpPrefixTrie();
+        assertFalse(trie.contains(IpChecker.parseAddress("1.2.3.4")));
+        trie.add(IpChecker.parseAddress("0.0.0.0"), 0);
+        assertTrue(trie.contains(IpChecker.parseAddress("1.2.3.4")));
+        assertFalse(trie.contains(IpChecker.parseAddress("::1")));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidPrefix() {
+        new IpPrefixTrie().add(IpChecker.parseAddress("1.2.3.4"), 33);
+    }
+}
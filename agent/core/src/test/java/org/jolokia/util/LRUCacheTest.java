@@ -0,0 +1,67 @@
+package org.jolokia.util;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author roland
+ * @since 18.10.26
+ */
+public class LRUCacheTest {
+
+    @Test
+    public void eviction() {
+        LRUCache<String, Integer> cache = new LRUCache<String, Integer>(2);
+        cache.put("one", 1);
+        cache.put("two", 2);
+        // Access "one" so that "two" is the least recently used entry
+        assertEquals(cache.get("one"), Integer.valueOf(1));
+        cache.put("three", 3);
+        assertEquals(cache.size(), 2);
+        assertNull(cache.get("two"));
+        assertEquals(cache.get("one"), Integer.valueOf(1));
+        assertEquals(cache.get("three"), Integer.valueOf(3));
+        cache.clear();
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void segments() throws InterruptedException {
+        final LRUCache<Integer, Integer> cache = new LRUCache<Integer, Integer>(1000);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int offset = i * 10000;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 5000; j++) {
+                        cache.put(offset + j, j);
+                        assertEquals(cache.get(offset + j), Integer.valueOf(j));
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // Bound is kept across all segments
+        assertEquals(cache.size(), 1000);
+    }
+}
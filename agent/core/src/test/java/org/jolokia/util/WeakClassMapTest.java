@@ -0,0 +1,63 @@
+package org.jolokia.util;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.lang.reflect.Proxy;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author roland
+ * @since 18.10.26
+ */
+public class WeakClassMapTest {
+
+    @Test
+    public void simple() {
+        WeakClassMap<String> map = new WeakClassMap<String>();
+        assertNull(map.get(String.class));
+        map.put(String.class, "string");
+        map.put(Integer.class, "integer");
+        assertEquals(map.get(String.class), "string");
+        assertEquals(map.get(Integer.class), "integer");
+        assertNull(map.get(Long.class));
+        map.put(String.class, "other");
+        assertEquals(map.get(String.class), "other");
+        assertEquals(map.size(), 2);
+        map.clear();
+        assertEquals(map.size(), 0);
+    }
+
+    @Test
+    public void classLoaderReleased() throws InterruptedException {
+        WeakClassMap<String> map = new WeakClassMap<String>();
+        map.put(createClassInOwnClassLoader(), "proxy");
+        assertEquals(map.size(), 1);
+        for (int i = 0; i < 50 && map.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(map.size(), 0);
+    }
+
+    private Class createClassInOwnClassLoader() {
+        ClassLoader loader = new ClassLoader(getClass().getClassLoader()) { };
+        return Proxy.getProxyClass(loader, Runnable.class);
+    }
+}
@@ -17,6 +17,7 @@ package org.jolokia.jvmagent;
  */
 
 import java.io.*;
+import java.lang.reflect.InvocationTargetException;
 import java.net.*;
 import java.security.*;
 import java.security.cert.CertificateException;
@@ -28,7 +29,9 @@ import javax.net.ssl.*;
 import com.sun.net.httpserver.*;
 import com.sun.net.httpserver.Authenticator;
 import org.jolokia.config.ConfigKey;
+import org.jolokia.jvmagent.handler.AdmissionControlFilter;
 import org.jolokia.jvmagent.handler.JolokiaHttpHandler;
+import org.jolokia.jvmagent.nio.NioHttpServer;
 import org.jolokia.jvmagent.security.KeyStoreUtil;
 import org.jolokia.util.NetworkUtil;
 
@@ -184,6 +187,9 @@ public class JolokiaServer {
         final String contextPath = pConfig.getContextPath();
         jolokiaHttpHandler = new JolokiaHttpHandler(pConfig.getJolokiaConfig());
         HttpContext context = pServer.createContext(contextPath, jolokiaHttpHandler);
+        context.getFilters().add(new AdmissionControlFilter(contextPath, pConfig.getMaxInFlight(),
+                                                            getMaxRunning(pServer, pConfig),
+                                                            pConfig.getQueueSize(), pConfig.getRetryAfter()));
         // Add authentication if configured
         final Authenticator authenticator = pConfig.getAuthenticator();
         if (authenticator != null) {
@@ -193,6 +199,16 @@ public class JolokiaServer {
         url = detectAgentUrl(pServer, pConfig, contextPath);
     }
 
+    // Heavy requests may occupy all but one thread of our own fixed pool, so that lightweight
+    // requests never wait behind them. Nothing can be reserved for a single thread or for
+    // an executor we don't know.
+    private int getMaxRunning(HttpServer pServer, JolokiaServerConfig pConfig) {
+        if (pServer == httpServer && "fixed".equalsIgnoreCase(pConfig.getExecutor()) && pConfig.getThreadNr() > 1) {
+            return pConfig.getThreadNr() - 1;
+        }
+        return 0;
+    }
+
     private String detectAgentUrl(HttpServer pServer, JolokiaServerConfig pConfig, String pContextPath) {
         serverAddress= pServer.getAddress();
         InetAddress realAddress;
@@ -233,9 +249,15 @@ public class JolokiaServer {
         InetAddress address = pConfig.getAddress();
         InetSocketAddress socketAddress = new InetSocketAddress(address,port);
 
-        HttpServer server = pConfig.useHttps() ?
-                        createHttpsServer(socketAddress, pConfig) :
-                        HttpServer.create(socketAddress, pConfig.getBacklog());
+        HttpServer server;
+        if (pConfig.useHttps()) {
+            server = createHttpsServer(socketAddress, pConfig);
+        } else if (pConfig.useNioListener()) {
+            server = new NioHttpServer(socketAddress, pConfig.getBacklog(), pConfig.getMaxConnections(),
+                                       pConfig.getIdleTimeout(), pConfig.getMaxHeaderSize(), pConfig.getMaxBodySize());
+        } else {
+            server = HttpServer.create(socketAddress, pConfig.getBacklog());
+        }
 
         // Thread factory which creates only daemon threads
         ThreadFactory daemonThreadFactory = new DaemonThreadFactory(pConfig.getThreadNamePrefix());
@@ -243,17 +265,61 @@ public class JolokiaServer {
         Executor executor;
         String mode = pConfig.getExecutor();
         if ("fixed".equalsIgnoreCase(mode)) {
-            executor = Executors.newFixedThreadPool(pConfig.getThreadNr(), daemonThreadFactory);
+            executor = createBoundedExecutor(pConfig.getThreadNr(), pConfig.getQueueSize(), daemonThreadFactory);
         } else if ("cached".equalsIgnoreCase(mode)) {
             executor = Executors.newCachedThreadPool(daemonThreadFactory);
+        } else if ("virtual".equalsIgnoreCase(mode)) {
+            executor = createVirtualThreadExecutor(pConfig.getThreadNamePrefix());
+            if (executor == null) {
+                // No virtual threads available (Java < 21), use the closest match
+                executor = Executors.newCachedThreadPool(daemonThreadFactory);
+            }
         } else {
-            executor = Executors.newSingleThreadExecutor(daemonThreadFactory);
+            executor = createBoundedExecutor(1, pConfig.getQueueSize(), daemonThreadFactory);
         }
         server.setExecutor(executor);
 
         return server;
     }
 
+    // Thread pool with a fixed number of threads whose queue is bounded. When the queue is full,
+    // requests are answered with a 503 by the AdmissionControlFilter outside of the dispatcher thread.
+    private ExecutorService createBoundedExecutor(int pThreads, int pQueueSize, ThreadFactory pThreadFactory) {
+        BlockingQueue<Runnable> queue = pQueueSize > 0 ?
+                new ArrayBlockingQueue<Runnable>(pQueueSize) :
+                new LinkedBlockingQueue<Runnable>();
+        return new ThreadPoolExecutor(pThreads, pThreads, 0L, TimeUnit.MILLISECONDS, queue, pThreadFactory,
+                                      new AdmissionControlFilter.LoadSheddingPolicy());
+    }
+
+    /**
+     * Create an executor which starts a new virtual thread for every exchange. Since the agent must
+     * still run on old JVMs, the Java 21 API is looked up reflectively.
+     *
+     * @param pThreadNamePrefix prefix for the names of the virtual threads
+     * @return the executor or null if virtual threads are not supported by this JVM
+     */
+    static ExecutorService createVirtualThreadExecutor(String pThreadNamePrefix) {
+        try {
+            // Thread.ofVirtual().name(prefix, 0).factory()
+            Class builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, pThreadNamePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                                                    .invoke(null, factory);
+        } catch (ClassNotFoundException exp) {
+            return null;
+        } catch (NoSuchMethodException exp) {
+            return null;
+        } catch (IllegalAccessException exp) {
+            return null;
+        } catch (InvocationTargetException exp) {
+            // E.g. virtual threads are only a preview feature of this JVM
+            return null;
+        }
+    }
+
     // =========================================================================================================
     // HTTPS handling
     private HttpServer createHttpsServer(InetSocketAddress pSocketAddress, JolokiaServerConfig pConfig) {
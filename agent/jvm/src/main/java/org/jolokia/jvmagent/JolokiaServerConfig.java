@@ -56,6 +56,14 @@ public class JolokiaServerConfig {
     private String        executor;
     private String        threadNamePrefix;
     private int           threadNr;
+    private int           queueSize;
+    private int           maxInFlight;
+    private int           retryAfter;
+    private String        listener;
+    private int           maxConnections;
+    private int           idleTimeout;
+    private int           maxHeaderSize;
+    private int           maxBodySize;
     private String        keystore;
     private String        context;
     private boolean       useSslClientAuthentication;
@@ -199,7 +207,7 @@ public class JolokiaServerConfig {
 
     /**
      * Executor to use as provided by the 'executor' option or "single" as default
-     * @return the executor model ("fixed", "single" or "cached")
+     * @return the executor model ("fixed", "single", "cached" or "virtual")
      */
     public String getExecutor() {
         return executor;
@@ -221,6 +229,79 @@ public class JolokiaServerConfig {
         return threadNr;
     }
 
+    /**
+     * Maximum number of requests waiting for a thread when executor model is "fixed" or "single"
+     * @return queue size, 0 for an unbounded queue
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Maximum number of requests processed concurrently. "version" and "search" requests
+     * are not counted.
+     * @return maximum number of requests in flight, 0 for no limit
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Seconds a client should wait before retrying a request rejected because of overload
+     * @return value for the Retry-After header
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * HTTP server implementation as provided by the 'listener' option or "jdk" as default
+     * @return the listener ("jdk" or "nio")
+     */
+    public String getListener() {
+        return listener;
+    }
+
+    /**
+     * Whether the NIO based listener should be used instead of the JDK's HTTP server
+     * @return true if the "nio" listener is configured
+     */
+    public boolean useNioListener() {
+        return "nio".equalsIgnoreCase(listener);
+    }
+
+    /**
+     * Maximum number of open connections for the "nio" listener
+     * @return maximum number of connections, 0 for no limit
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Time in milliseconds after which the "nio" listener closes an idle connection
+     * @return idle timeout in milliseconds
+     */
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Maximum size in bytes of a request's line and headers accepted by the "nio" listener
+     * @return maximum header size
+     */
+    public int getMaxHeaderSize() {
+        return maxHeaderSize;
+    }
+
+    /**
+     * Maximum size in bytes of a request body accepted by the "nio" listener
+     * @return maximum body size
+     */
+    public int getMaxBodySize() {
+        return maxBodySize;
+    }
+
     /**
      * When the protocol is 'https' then this property indicates whether SSL client certificate
      * authentication should be used or not
@@ -360,6 +441,8 @@ public class JolokiaServerConfig {
         initExecutor(agentConfig);
         initThreadNamePrefix(agentConfig);
         initThreadNr(agentConfig);
+        initAdmissionControl(agentConfig);
+        initListener(agentConfig);
         initHttpsRelatedSettings(agentConfig);
         initAuthenticator();
     }
@@ -557,12 +640,39 @@ public class JolokiaServerConfig {
         executor = agentConfig.containsKey("executor") ? agentConfig.get("executor") : "single";
         if (!"single".equalsIgnoreCase(executor) &&
                 !"fixed".equalsIgnoreCase(executor) &&
-                !"cached".equalsIgnoreCase(executor)) {
+                !"cached".equalsIgnoreCase(executor) &&
+                !"virtual".equalsIgnoreCase(executor)) {
             throw new IllegalArgumentException("Executor model can be '" + executor +
-                                               "' but most be either 'single', 'fixed' or 'cached'");
+                                               "' but most be either 'single', 'fixed', 'cached' or 'virtual'");
         }
     }
 
+    private void initAdmissionControl(Map<String, String> agentConfig) {
+        queueSize = getIntOption(agentConfig, "queueSize", 100);
+        maxInFlight = getIntOption(agentConfig, "maxInFlight", 0);
+        retryAfter = getIntOption(agentConfig, "retryAfter", 5);
+    }
+
+    private void initListener(Map<String, String> agentConfig) {
+        listener = agentConfig.containsKey("listener") ? agentConfig.get("listener") : "jdk";
+        if (!"jdk".equalsIgnoreCase(listener) && !"nio".equalsIgnoreCase(listener)) {
+            throw new IllegalArgumentException("Listener can be '" + listener +
+                                               "' but must be either 'jdk' or 'nio'");
+        }
+        if (useNioListener() && useHttps()) {
+            throw new IllegalArgumentException("Listener 'nio' can be used only with protocol 'http'");
+        }
+        maxConnections = getIntOption(agentConfig, "maxConnections", 1000);
+        idleTimeout = getIntOption(agentConfig, "idleTimeout", 30000);
+        maxHeaderSize = getIntOption(agentConfig, "maxHeaderSize", 8192);
+        maxBodySize = getIntOption(agentConfig, "maxBodySize", 4 * 1024 * 1024);
+    }
+
+    private int getIntOption(Map<String, String> pAgentConfig, String pKey, int pDefault) {
+        String value = pAgentConfig.get(pKey);
+        return value != null ? Integer.parseInt(value) : pDefault;
+    }
+
     private void initThreadNamePrefix(Map<String, String> agentConfig) {
         threadNamePrefix = agentConfig.get("threadNamePrefix");
         if (threadNamePrefix == null || threadNamePrefix.isEmpty()) {
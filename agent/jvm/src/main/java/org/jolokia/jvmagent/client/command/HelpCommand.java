@@ -89,9 +89,21 @@ public class HelpCommand extends AbstractBaseCommand {
 "                                     \"fixed\"  -- Thread pool with a fixed number of threads (default: 5)\n" +
 "                                     \"cached\" -- Cached Thread Pool, creates threads on demand\n" +
 "                                     \"single\" -- Single Thread\n" +
+"                                     \"virtual\" -- New virtual thread per request (Java 21+, otherwise \"cached\")\n" +
 "    --threadNamePrefix <prefix>     Thread name prefix that executor will use while creating new thread(s)\n" +
 "                                    (default: jolokia-)\n" +
 "    --threadNr <nr threads>         Number of fixed threads if \"fixed\" is used as executor\n" +
+"    --queueSize <size>              Maximum number of queued requests for \"fixed\" and \"single\" executors,\n" +
+"                                    0 for no limit (default: 100)\n" +
+"    --maxInFlight <nr>              Maximum number of requests processed concurrently, \"version\" and \"search\"\n" +
+"                                    requests excluded. 0 for no limit (default: 0)\n" +
+"    --retryAfter <seconds>          Retry-After for requests rejected because of overload (default: 5)\n" +
+"    --listener <jdk|nio>            HTTP server implementation: \"jdk\" for the JDK's HTTP server, \"nio\" for a\n" +
+"                                    non-blocking NIO listener (http only) (default: jdk)\n" +
+"    --maxConnections <nr>           Maximum number of open connections (nio only, default: 1000)\n" +
+"    --idleTimeout <ms>              Close connections idle for this many milliseconds (nio only, default: 30000)\n" +
+"    --maxHeaderSize <bytes>         Maximum size of request line and headers (nio only, default: 8192)\n" +
+"    --maxBodySize <bytes>           Maximum size of a request body (nio only, default: 4194304)\n" +
 "    --backlog <backlog>             How many request to keep in the backlog (default: 10)\n" +
 "    --protocol <http|https>         Protocol which must be either \"http\" or \"https\" (default: http)\n" +
 "    --keystore <keystore>           Path to keystore (https only)\n" +
@@ -42,6 +42,8 @@ public final class OptionsAndArgs {
             // JVM Agent options:
             "host", "port", "agentContext", "user", "password",
             "quiet!", "verbose!", "version!", "executor", "threadNamePrefix", "threadNr",
+            "queueSize", "maxInFlight", "retryAfter",
+            "listener", "maxConnections", "idleTimeout", "maxHeaderSize", "maxBodySize",
             "backlog", "hide!", "protocol","authMode","authClass",
             "authUrl", "authPrincipalSpec", "authIgnoreCerts!",
             //https options:
@@ -0,0 +1,357 @@
+package org.jolokia.jvmagent.handler;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.*;
+import org.jolokia.jvmagent.ParsedUri;
+import org.jolokia.util.RequestType;
+
+/**
+ * Filter limiting the number of requests processed concurrently. Requests exceeding
+ * the limit are answered immediately with a 503 and a <code>Retry-After</code> header
+ * so that a JVM which is already in trouble is not burdened further by piled up
+ * monitoring requests.
+ *
+ * Lightweight <code>version</code> and <code>search</code> GET requests don't count
+ * against the limit, so that health checks keep working while heavy traffic is shed.
+ * In addition, the number of heavy requests running at the same time can be restricted
+ * so that a worker thread is always left for lightweight requests. Further heavy requests
+ * are parked without occupying a worker thread and are processed by the next thread
+ * finishing a heavy request.
+ *
+ * When used together with {@link LoadSheddingPolicy} for the executor of the HTTP server,
+ * heavy requests which don't fit into the executor's queue anymore are rejected, too,
+ * whereas lightweight requests are still processed.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class AdmissionControlFilter extends Filter {
+
+    // Set while a request is executed by the LoadSheddingPolicy
+    private static final ThreadLocal<Boolean> SHEDDING = new ThreadLocal<Boolean>();
+
+    // Context path used for extracting the request type
+    private final String context;
+
+    // Permits for heavy requests or null if not limited
+    private final Semaphore permits;
+
+    // Permits for running heavy requests or null if all can run at once
+    private final Semaphore running;
+
+    // Heavy requests waiting for a running permit
+    private final Queue<ParkedExchange> parked = new ConcurrentLinkedQueue<ParkedExchange>();
+    private final AtomicInteger nrParked = new AtomicInteger();
+    private final int maxParked;
+
+    // Value for the Retry-After header in seconds
+    private final int retryAfter;
+
+    /**
+     * Create the filter
+     *
+     * @param pContext context path of the agent
+     * @param pMaxInFlight maximum number of heavy requests processed concurrently, 0 or less for no limit
+     * @param pRetryAfter seconds a client should wait before retrying a rejected request
+     */
+    public AdmissionControlFilter(String pContext, int pMaxInFlight, int pRetryAfter) {
+        this(pContext, pMaxInFlight, 0, 0, pRetryAfter);
+    }
+
+    /**
+     * Create the filter with a reserved lane for lightweight requests
+     *
+     * @param pContext context path of the agent
+     * @param pMaxInFlight maximum number of heavy requests processed concurrently, 0 or less for no limit
+     * @param pMaxRunning maximum number of heavy requests occupying a worker thread at the same time,
+     *                    0 or less for no limit. This should be less than the number of worker threads.
+     * @param pMaxParked maximum number of heavy requests waiting for a worker thread, further requests
+     *                   are rejected. 0 or less for no limit.
+     * @param pRetryAfter seconds a client should wait before retrying a rejected request
+     */
+    public AdmissionControlFilter(String pContext, int pMaxInFlight, int pMaxRunning, int pMaxParked, int pRetryAfter) {
+        context = pContext;
+        permits = pMaxInFlight > 0 ? new Semaphore(pMaxInFlight) : null;
+        running = pMaxRunning > 0 ? new Semaphore(pMaxRunning) : null;
+        maxParked = pMaxParked;
+        retryAfter = pRetryAfter;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void doFilter(HttpExchange pExchange, Chain pChain) throws IOException {
+        boolean shedding = Boolean.TRUE.equals(SHEDDING.get());
+        if (isLightweight(pExchange)) {
+            pChain.doFilter(pExchange);
+        } else if (shedding) {
+            sendServiceUnavailable(pExchange, "Request queue is full");
+        } else if (permits != null && !permits.tryAcquire()) {
+            sendServiceUnavailable(pExchange, "Too many requests in progress");
+        } else if (running == null) {
+            process(pExchange, pChain);
+        } else if (running.tryAcquire()) {
+            try {
+                process(pExchange, pChain);
+            } finally {
+                processParked();
+            }
+        } else if (!park(pExchange, pChain)) {
+            releaseInFlight();
+            sendServiceUnavailable(pExchange, "Too many requests waiting");
+        }
+    }
+
+    /**
+     * Get the number of heavy requests currently waiting for a worker thread
+     *
+     * @return number of parked requests
+     */
+    public int getParkedRequests() {
+        return nrParked.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String description() {
+        return "Jolokia admission control";
+    }
+
+    /**
+     * Check whether a request belongs to the priority lane. Only GET requests are classified,
+     * since the type of a POST request is known only after parsing its body.
+     *
+     * @param pExchange exchange to check
+     * @return true for a version or search GET request
+     */
+    boolean isLightweight(HttpExchange pExchange) {
+        if (!"GET".equalsIgnoreCase(pExchange.getRequestMethod())) {
+            return false;
+        }
+        ParsedUri uri = new ParsedUri(pExchange.getRequestURI(), context);
+        String path = uri.getParameter("p");
+        if (path == null) {
+            path = uri.getPathInfo();
+        }
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        int idx = path.indexOf('/');
+        String type = idx >= 0 ? path.substring(0, idx) : path;
+        // An empty path is a version request
+        return type.length() == 0 ||
+               RequestType.VERSION.getName().equals(type) ||
+               RequestType.SEARCH.getName().equals(type);
+    }
+
+    // ========================================================================================
+
+    private void process(HttpExchange pExchange, Chain pChain) throws IOException {
+        try {
+            pChain.doFilter(pExchange);
+        } finally {
+            releaseInFlight();
+        }
+    }
+
+    private void releaseInFlight() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    // Park a heavy request until a running permit becomes available. The exchange
+    // is answered later from another thread, so the current worker is free again.
+    private boolean park(HttpExchange pExchange, Chain pChain) {
+        int nr = nrParked.incrementAndGet();
+        if (maxParked > 0 && nr > maxParked) {
+            nrParked.decrementAndGet();
+            return false;
+        }
+        parked.add(new ParkedExchange(pExchange, pChain));
+        // All running requests could have finished in the meantime
+        if (running.tryAcquire()) {
+            processParked();
+        }
+        return true;
+    }
+
+    // Process parked requests while holding a running permit, which is released when done
+    private void processParked() {
+        boolean holding = true;
+        try {
+            while (true) {
+                ParkedExchange next = parked.poll();
+                if (next != null) {
+                    nrParked.decrementAndGet();
+                    next.run();
+                } else {
+                    running.release();
+                    holding = false;
+                    // Check for a request parked after the poll() above
+                    if (parked.isEmpty() || !running.tryAcquire()) {
+                        return;
+                    }
+                    holding = true;
+                }
+            }
+        } finally {
+            if (holding) {
+                running.release();
+            }
+        }
+    }
+
+    private void sendServiceUnavailable(HttpExchange pExchange, String pReason) throws IOException {
+        byte[] response = ("503 (Service Unavailable)\n\n" + pReason + "\n").getBytes("UTF-8");
+        Headers headers = pExchange.getResponseHeaders();
+        headers.set("Content-Type", "text/plain");
+        headers.set("Retry-After", Integer.toString(retryAfter));
+        pExchange.sendResponseHeaders(503, response.length);
+        OutputStream os = pExchange.getResponseBody();
+        os.write(response);
+        os.close();
+    }
+
+    /**
+     * Rejection policy for the executor of the HTTP server. Instead of dropping a task when the
+     * queue is full, the task is handed over to a small executor of its own, where all heavy Jolokia
+     * requests are answered with a 503 by the {@link AdmissionControlFilter} and lightweight requests
+     * are still processed. The JDK server reads the request (including the TLS handshake) within the
+     * task, so a slow client only blocks one of these threads but never the dispatcher thread of the
+     * server. When this executor is saturated, too, the connection is closed right away.
+     */
+    public static class LoadSheddingPolicy implements RejectedExecutionHandler {
+
+        // Threads and queue size of the shedding executor if not given
+        private static final int DEFAULT_THREADS = 2;
+        private static final int DEFAULT_QUEUE_SIZE = 10;
+
+        private final ThreadPoolExecutor sheddingExecutor;
+
+        /**
+         * Create a policy with a default sized executor for rejected tasks
+         */
+        public LoadSheddingPolicy() {
+            this(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+        }
+
+        /**
+         * Create a policy
+         *
+         * @param pThreads number of threads for processing rejected tasks
+         * @param pQueueSize number of rejected tasks which can wait for a thread
+         */
+        public LoadSheddingPolicy(int pThreads, int pQueueSize) {
+            final AtomicInteger threadNr = new AtomicInteger();
+            sheddingExecutor = new ThreadPoolExecutor(pThreads, pThreads, 10L, TimeUnit.SECONDS,
+                                                      new ArrayBlockingQueue<Runnable>(Math.max(pQueueSize, 1)),
+                                                      new ThreadFactory() {
+                                                          /** {@inheritDoc} */
+                                                          public Thread newThread(Runnable pRunnable) {
+                                                              Thread thread = new Thread(pRunnable, "jolokia-shedding-" + threadNr.getAndIncrement());
+                                                              thread.setDaemon(true);
+                                                              return thread;
+                                                          }
+                                                      });
+            // Threads are only needed while shedding load
+            sheddingExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        /** {@inheritDoc} */
+        public void rejectedExecution(final Runnable pTask, ThreadPoolExecutor pExecutor) {
+            if (pExecutor.isShutdown()) {
+                return;
+            }
+            try {
+                sheddingExecutor.execute(new Runnable() {
+                    /** {@inheritDoc} */
+                    public void run() {
+                        SHEDDING.set(Boolean.TRUE);
+                        try {
+                            pTask.run();
+                        } finally {
+                            SHEDDING.remove();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException exp) {
+                if (!closeConnection(pTask)) {
+                    // The NIO listener answers with a 503, the JDK server (Java 11 and later) closes the connection
+                    throw exp;
+                }
+            }
+        }
+
+        // The JDK server of Java 6 to 8 doesn't close the connection of a task whose execution is rejected,
+        // so this is done here for its exchange tasks. Returns false if the task is of another kind.
+        private boolean closeConnection(Runnable pTask) {
+            if (!"sun.net.httpserver.ServerImpl$Exchange".equals(pTask.getClass().getName())) {
+                return false;
+            }
+            try {
+                Field serverField = pTask.getClass().getDeclaredField("this$0");
+                Field connectionField = pTask.getClass().getDeclaredField("connection");
+                serverField.setAccessible(true);
+                connectionField.setAccessible(true);
+                Object server = serverField.get(pTask);
+                Object connection = connectionField.get(pTask);
+                Method close = server.getClass().getDeclaredMethod("closeConnection", connectionField.getType());
+                close.setAccessible(true);
+                close.invoke(server, connection);
+                return true;
+            } catch (Exception exp) {
+                // E.g. not accessible with Java 9 and later, where the server closes the connection on its own
+                return false;
+            }
+        }
+    }
+
+    // Heavy exchange which is processed outside of the worker thread which received it
+    private final class ParkedExchange implements Runnable {
+
+        private final HttpExchange exchange;
+        private final Chain chain;
+
+        private ParkedExchange(HttpExchange pExchange, Chain pChain) {
+            exchange = pExchange;
+            chain = pChain;
+        }
+
+        /** {@inheritDoc} */
+        public void run() {
+            try {
+                chain.doFilter(exchange);
+            } catch (IOException exp) {
+                // The server is not aware of this exchange anymore, so it must be finished here
+                exchange.close();
+            } catch (RuntimeException exp) {
+                exchange.close();
+            } finally {
+                releaseInFlight();
+            }
+        }
+    }
+}
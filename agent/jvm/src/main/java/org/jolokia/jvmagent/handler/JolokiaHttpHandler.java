@@ -73,6 +73,15 @@ public class JolokiaHttpHandler implements HttpHandler {
     // Respond for discovery mc requests
     private DiscoveryMulticastResponder discoveryMulticastResponder;
 
+    // Minimal size of a response for compressing it, negative if switched off
+    private final int compressionThreshold;
+
+    // Compression level for compressed responses
+    private final int compressionLevel;
+
+    // Maximum size of a decompressed request body, 0 if unlimited
+    private final int maxDecompressedRequestSize;
+
     /**
      * Create a new HttpHandler for processing HTTP request
      *
@@ -95,6 +104,9 @@ public class JolokiaHttpHandler implements HttpHandler {
             context += "/";
         }
         logHandler = pLogHandler != null ? pLogHandler : createLogHandler(pConfig.get(ConfigKey.LOGHANDLER_CLASS), pConfig.get(ConfigKey.DEBUG));
+        compressionThreshold = pConfig.getAsInt(ConfigKey.COMPRESSION_THRESHOLD);
+        compressionLevel = CompressionUtil.checkLevel(pConfig.getAsInt(ConfigKey.COMPRESSION_LEVEL));
+        maxDecompressedRequestSize = pConfig.getAsInt(ConfigKey.MAX_DECOMPRESSED_REQUEST_SIZE);
     }
 
     /**
@@ -156,6 +168,7 @@ public class JolokiaHttpHandler implements HttpHandler {
             discoveryMulticastResponder.stop();
             discoveryMulticastResponder = null;
         }
+        requestHandler.destroy();
         backendManager.destroy();
         backendManager = null;
         requestHandler = null;
@@ -288,7 +301,8 @@ public class JolokiaHttpHandler implements HttpHandler {
                 encoding = matcher.group(1);
             }
         }
-        InputStream is = pExchange.getRequestBody();
+        InputStream is = CompressionUtil.decompress(pExchange.getRequestBody(), headers.getFirst("Content-Encoding"),
+                                                    maxDecompressedRequestSize);
         return requestHandler.handlePostRequest(pUri.toString(),is, encoding, pUri.getParameterMap());
     }
 
@@ -341,22 +355,50 @@ public class JolokiaHttpHandler implements HttpHandler {
 
     private void sendResponse(HttpExchange pExchange, ParsedUri pParsedUri, JSONAware pJson) throws IOException {
         boolean streaming = configuration.getAsBoolean(ConfigKey.STREAMING);
+        String encoding = getResponseEncoding(pExchange);
         if (streaming) {
             JSONStreamAware jsonStream = (JSONStreamAware)pJson;
-            sendStreamingResponse(pExchange, pParsedUri, jsonStream);
+            sendStreamingResponse(pExchange, pParsedUri, jsonStream, encoding);
         } else {
             // Fallback, send as one object
             // TODO: Remove for 2.0
-            sendAllJSON(pExchange, pParsedUri, pJson);
+            sendAllJSON(pExchange, pParsedUri, pJson, encoding);
         }
     }
 
-    private void sendStreamingResponse(HttpExchange pExchange, ParsedUri pParsedUri, JSONStreamAware pJson) throws IOException {
-        Headers headers = pExchange.getResponseHeaders();
+    // Content encoding to use for compressing the response or null if the response should be sent uncompressed
+    private String getResponseEncoding(HttpExchange pExchange) {
+        if (compressionThreshold < 0) {
+            return null;
+        }
+        pExchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        return CompressionUtil.selectEncoding(pExchange.getRequestHeaders().getFirst("Accept-Encoding"));
+    }
+
+    private void sendStreamingResponse(final HttpExchange pExchange, ParsedUri pParsedUri, JSONStreamAware pJson, String pEncoding)
+            throws IOException {
+        final Headers headers = pExchange.getResponseHeaders();
         if (pJson != null) {
             headers.set("Content-Type", getMimeType(pParsedUri) + "; charset=utf-8");
-            pExchange.sendResponseHeaders(200, 0);
-            Writer writer = new OutputStreamWriter(pExchange.getResponseBody(), "UTF-8");
+            OutputStream out;
+            if (pEncoding != null) {
+                out = new CompressingOutputStream(new CompressingOutputStream.ResponseOpener() {
+                    /** {@inheritDoc} */
+                    public OutputStream open(String pUsedEncoding, int pLength) throws IOException {
+                        if (pUsedEncoding != null) {
+                            headers.set("Content-Encoding", pUsedEncoding);
+                            pExchange.sendResponseHeaders(200, 0);
+                        } else {
+                            pExchange.sendResponseHeaders(200, pLength > 0 ? pLength : -1);
+                        }
+                        return pExchange.getResponseBody();
+                    }
+                }, pEncoding, compressionThreshold, compressionLevel);
+            } else {
+                pExchange.sendResponseHeaders(200, 0);
+                out = pExchange.getResponseBody();
+            }
+            Writer writer = new OutputStreamWriter(out, "UTF-8");
 
             String callback = pParsedUri.getParameter(ConfigKey.CALLBACK.getKeyValue());
             IoUtil.streamResponseAndClose(writer, pJson, callback != null && MimeTypeUtil.isValidCallback(callback) ? callback : null);
@@ -366,7 +408,7 @@ public class JolokiaHttpHandler implements HttpHandler {
         }
     }
 
-    private void sendAllJSON(HttpExchange pExchange, ParsedUri pParsedUri, JSONAware pJson) throws IOException {
+    private void sendAllJSON(HttpExchange pExchange, ParsedUri pParsedUri, JSONAware pJson, String pEncoding) throws IOException {
         OutputStream out = null;
         try {
             Headers headers = pExchange.getResponseHeaders();
@@ -376,6 +418,10 @@ public class JolokiaHttpHandler implements HttpHandler {
                 String callback = pParsedUri.getParameter(ConfigKey.CALLBACK.getKeyValue());
                 String content = callback != null && MimeTypeUtil.isValidCallback(callback) ? callback + "(" + json + ");" : json;
                 byte[] response = content.getBytes("UTF8");
+                if (pEncoding != null && response.length >= compressionThreshold) {
+                    response = CompressionUtil.compress(response, pEncoding, compressionLevel);
+                    headers.set("Content-Encoding", pEncoding);
+                }
                 pExchange.sendResponseHeaders(200,response.length);
                 out = pExchange.getResponseBody();
                 out.write(response);
@@ -0,0 +1,109 @@
+package org.jolokia.jvmagent.nio;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct buffers of a fixed size. Direct buffers are expensive to allocate and
+ * are freed only by the garbage collector, so they are reused for all connections.
+ * At most a given number of buffers is kept, buffers returned beyond this number are dropped.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+class BufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Create a pool
+     *
+     * @param pBufferSize size of each buffer
+     * @param pMaxPooled maximum number of buffers to keep
+     */
+    BufferPool(int pBufferSize, int pMaxPooled) {
+        bufferSize = pBufferSize;
+        maxPooled = pMaxPooled;
+    }
+
+    /**
+     * Get a cleared buffer, either from the pool or a newly allocated one
+     *
+     * @return buffer ready for writing into it
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = pool.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool. Buffers not obtained from this pool are ignored.
+     *
+     * @param pBuffer buffer to return, which must not be used afterwards anymore
+     */
+    void release(ByteBuffer pBuffer) {
+        if (!isPooled(pBuffer)) {
+            return;
+        }
+        if (pooled.incrementAndGet() <= maxPooled) {
+            pBuffer.clear();
+            pool.offer(pBuffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * Whether the given buffer is one which is managed by this pool
+     *
+     * @param pBuffer buffer to check
+     * @return true if the buffer should be released to this pool after use
+     */
+    boolean isPooled(ByteBuffer pBuffer) {
+        return pBuffer.isDirect() && pBuffer.capacity() == bufferSize && !pBuffer.isReadOnly();
+    }
+
+    /**
+     * Size of the buffers handed out
+     *
+     * @return buffer size
+     */
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Number of buffers currently available in the pool
+     *
+     * @return number of pooled buffers
+     */
+    int getPooled() {
+        return pooled.get();
+    }
+}
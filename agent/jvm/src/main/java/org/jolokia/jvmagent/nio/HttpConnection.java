@@ -0,0 +1,404 @@
+package org.jolokia.jvmagent.nio;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * A single client connection of a {@link NioHttpServer}. Reading and parsing of requests
+ * as well as writing to the channel happens exclusively on the selector thread. A worker
+ * thread processing a request only adds buffers to the output queue of the connection
+ * and asks the selector thread to write them out.
+ *
+ * Only one request is processed at a time. While a request is processed, no further
+ * data is read from the client, which provides a natural backpressure for pipelined
+ * requests.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+class HttpConnection {
+
+    // Maximum number of pooled buffers a worker can queue before it has to wait for the client
+    private static final int MAX_QUEUED_BUFFERS = 8;
+
+    // Size up to which the input buffer is kept between requests
+    private static final int MAX_RETAINED_INPUT = 64 * 1024;
+
+    // Connection states
+    private static final int READING = 0;
+    private static final int PROCESSING = 1;
+    private static final int CLOSED = 2;
+
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(RequestHead.ISO_8859_1);
+
+    private final NioHttpServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final InetSocketAddress localAddress;
+    private final InetSocketAddress remoteAddress;
+
+    // Received data which has not been consumed yet. Only accessed by the selector thread.
+    private byte[] input = new byte[1024];
+    private int inputLength;
+    private int scanned;
+    private RequestHead head;
+    private int headLength;
+
+    private volatile int state = READING;
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    // Response data, filled by a worker thread and drained by the selector thread
+    private final ConcurrentLinkedQueue<ByteBuffer> output = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final Semaphore outputPermits = new Semaphore(MAX_QUEUED_BUFFERS);
+    private volatile boolean responseComplete;
+    private volatile boolean keepAlive;
+    private volatile boolean closeRequested;
+
+    /**
+     * Create a connection and register it for reading
+     *
+     * @param pServer server owning this connection
+     * @param pKey selection key of the connection's channel
+     */
+    HttpConnection(NioHttpServer pServer, SelectionKey pKey) {
+        server = pServer;
+        key = pKey;
+        channel = (SocketChannel) pKey.channel();
+        localAddress = (InetSocketAddress) channel.socket().getLocalSocketAddress();
+        remoteAddress = (InetSocketAddress) channel.socket().getRemoteSocketAddress();
+        pKey.attach(this);
+    }
+
+    // ===================================================================================
+    // Selector thread
+
+    /**
+     * Read available data from the channel and dispatch a request if one has been
+     * received completely
+     *
+     * @param pReadBuffer buffer to use for reading
+     * @throws IOException if reading fails
+     */
+    void read(ByteBuffer pReadBuffer) throws IOException {
+        pReadBuffer.clear();
+        int read = channel.read(pReadBuffer);
+        if (read < 0) {
+            close();
+            return;
+        }
+        if (read > 0) {
+            lastActivity = System.currentTimeMillis();
+            pReadBuffer.flip();
+            ensureInputCapacity(inputLength + read);
+            pReadBuffer.get(input, inputLength, read);
+            inputLength += read;
+            processInput();
+        }
+    }
+
+    /**
+     * Write out as much queued data as the channel accepts. When the response
+     * is complete, the connection either waits for the next request or is closed.
+     *
+     * @param pBatch array used for a gathering write
+     * @throws IOException if writing fails
+     */
+    void write(ByteBuffer[] pBatch) throws IOException {
+        if (state == CLOSED) {
+            return;
+        }
+        if (closeRequested) {
+            close();
+            return;
+        }
+        while (true) {
+            while (!output.isEmpty()) {
+                int n = 0;
+                for (ByteBuffer buffer : output) {
+                    pBatch[n++] = buffer;
+                    if (n == pBatch.length) {
+                        break;
+                    }
+                }
+                long written = channel.write(pBatch, 0, n);
+                Arrays.fill(pBatch, 0, n, null);
+                if (written > 0) {
+                    lastActivity = System.currentTimeMillis();
+                }
+                ByteBuffer buffer;
+                while ((buffer = output.peek()) != null && !buffer.hasRemaining()) {
+                    output.poll();
+                    releaseBuffer(buffer);
+                }
+                if (!output.isEmpty()) {
+                    // Socket buffer is full, continue when the channel is writable again
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            if (!responseComplete) {
+                key.interestOps(state == READING ? SelectionKey.OP_READ : 0);
+                return;
+            }
+            // All data queued before completion must have been written, too
+            if (output.isEmpty()) {
+                responseComplete = false;
+                finishResponse();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Close the connection and release all buffers. Workers waiting for
+     * space in the output queue are released.
+     */
+    void close() {
+        if (state == CLOSED) {
+            return;
+        }
+        state = CLOSED;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException exp) {
+            // Ignore, we are done with this connection anyway
+        }
+        ByteBuffer buffer;
+        while ((buffer = output.poll()) != null) {
+            releaseBuffer(buffer);
+        }
+        outputPermits.release(MAX_QUEUED_BUFFERS);
+        server.connectionClosed(this);
+    }
+
+    /**
+     * Whether this connection has been waiting for a request for longer than the given timeout
+     *
+     * @param pNow current time in milliseconds
+     * @param pTimeout idle timeout in milliseconds
+     * @return true if the connection should be closed
+     */
+    boolean isIdle(long pNow, long pTimeout) {
+        // A complete response which is not consumed by the client counts as idle, too
+        return (state == READING || responseComplete) && pNow - lastActivity > pTimeout;
+    }
+
+    /**
+     * Whether the connection is currently processing a request
+     *
+     * @return true if a worker is busy with a request of this connection
+     */
+    boolean isProcessing() {
+        return state == PROCESSING;
+    }
+
+    /**
+     * Send an error response without a body and close the connection afterwards.
+     * Must be called only when no request is processed for this connection.
+     *
+     * @param pCode status code
+     * @throws IOException if writing fails
+     */
+    void sendError(int pCode) throws IOException {
+        state = PROCESSING;
+        keepAlive = false;
+        String response = "HTTP/1.1 " + pCode + " " + NioHttpExchange.getReasonPhrase(pCode) + "\r\n" +
+                          "Content-Length: 0\r\n" +
+                          "Connection: close\r\n\r\n";
+        output.add(ByteBuffer.wrap(response.getBytes(RequestHead.ISO_8859_1)));
+        responseComplete = true;
+        write(new ByteBuffer[1]);
+    }
+
+    // ===================================================================================
+    // Worker threads
+
+    /**
+     * Queue buffers for writing them to the client. The caller must not touch the
+     * buffers afterwards. If too many buffers are queued already, this method blocks
+     * until the client has consumed enough data.
+     *
+     * @param pBuffers buffers to write
+     * @throws IOException if the connection is closed or the client does not read in time
+     */
+    void enqueue(List<ByteBuffer> pBuffers) throws IOException {
+        for (ByteBuffer buffer : pBuffers) {
+            if (server.getBufferPool().isPooled(buffer)) {
+                acquirePermit();
+            }
+            if (state == CLOSED) {
+                releaseBuffer(buffer);
+                throw new IOException("Connection closed");
+            }
+            output.add(buffer);
+        }
+        server.requestWrite(this);
+    }
+
+    /**
+     * Mark the current response as complete. The connection will wait for the next
+     * request when all data has been written or will be closed.
+     *
+     * @param pKeepAlive whether the connection can be reused
+     */
+    void complete(boolean pKeepAlive) {
+        keepAlive = pKeepAlive;
+        responseComplete = true;
+        server.requestWrite(this);
+    }
+
+    /**
+     * Close the connection from a worker thread, e.g. when a response could not be finished
+     */
+    void abort() {
+        closeRequested = true;
+        server.requestWrite(this);
+    }
+
+    /**
+     * Whether the connection has been closed
+     *
+     * @return true if closed
+     */
+    boolean isClosed() {
+        return state == CLOSED;
+    }
+
+    InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    // ===================================================================================
+
+    // Parse the received data and dispatch a request as soon as it is complete
+    private void processInput() throws IOException {
+        if (state != READING) {
+            return;
+        }
+        if (head == null) {
+            int end = RequestHead.findEnd(input, scanned, inputLength);
+            int maxHeaderSize = server.getMaxHeaderSize();
+            if (end < 0) {
+                scanned = Math.max(0, inputLength - 3);
+                if (inputLength > maxHeaderSize) {
+                    sendError(431);
+                }
+                return;
+            }
+            if (end > maxHeaderSize) {
+                sendError(431);
+                return;
+            }
+            RequestHead newHead;
+            try {
+                newHead = RequestHead.parse(input, end);
+            } catch (IllegalArgumentException exp) {
+                sendError(400);
+                return;
+            }
+            if (newHead.isChunked()) {
+                sendError(411);
+                return;
+            }
+            if (newHead.getContentLength() > server.getMaxBodySize()) {
+                sendError(413);
+                return;
+            }
+            head = newHead;
+            headLength = end;
+            if (head.isExpectContinue() && inputLength - end < head.getContentLength()) {
+                output.add(ByteBuffer.wrap(CONTINUE));
+                write(new ByteBuffer[1]);
+            }
+        }
+        int contentLength = (int) head.getContentLength();
+        if (inputLength - headLength < contentLength) {
+            // Wait for the rest of the body
+            return;
+        }
+        byte[] body = new byte[contentLength];
+        System.arraycopy(input, headLength, body, 0, contentLength);
+        consumeInput(headLength + contentLength);
+        RequestHead request = head;
+        head = null;
+        state = PROCESSING;
+        key.interestOps(0);
+        server.dispatch(this, request, body);
+    }
+
+    // Called when a response has been written completely
+    private void finishResponse() throws IOException {
+        if (!keepAlive || closeRequested) {
+            close();
+            return;
+        }
+        state = READING;
+        lastActivity = System.currentTimeMillis();
+        key.interestOps(SelectionKey.OP_READ);
+        // A pipelined request might be waiting already
+        processInput();
+    }
+
+    private void consumeInput(int pLength) {
+        System.arraycopy(input, pLength, input, 0, inputLength - pLength);
+        inputLength -= pLength;
+        if (inputLength == 0 && input.length > MAX_RETAINED_INPUT) {
+            // Don't keep the buffer of a large request body for the lifetime of the connection
+            input = new byte[1024];
+        }
+        scanned = 0;
+        headLength = 0;
+    }
+
+    private void ensureInputCapacity(int pCapacity) {
+        if (pCapacity > input.length) {
+            input = Arrays.copyOf(input, Math.max(pCapacity, input.length * 2));
+        }
+    }
+
+    private void acquirePermit() throws IOException {
+        try {
+            if (!outputPermits.tryAcquire(server.getIdleTimeout(), TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timeout while waiting for client " + remoteAddress + " to read the response");
+            }
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for client " + remoteAddress + " to read the response");
+        }
+    }
+
+    private void releaseBuffer(ByteBuffer pBuffer) {
+        BufferPool pool = server.getBufferPool();
+        if (pool.isPooled(pBuffer)) {
+            pool.release(pBuffer);
+            outputPermits.release();
+        }
+    }
+}
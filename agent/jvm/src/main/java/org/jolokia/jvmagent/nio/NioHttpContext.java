@@ -0,0 +1,115 @@
+package org.jolokia.jvmagent.nio;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sun.net.httpserver.*;
+
+/**
+ * Context of a {@link NioHttpServer}, i.e. a handler registered for a path prefix
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+class NioHttpContext extends HttpContext {
+
+    private final NioHttpServer server;
+    private final String path;
+    private volatile HttpHandler handler;
+    private volatile Authenticator authenticator;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+    private final List<Filter> filters = new CopyOnWriteArrayList<Filter>();
+
+    NioHttpContext(NioHttpServer pServer, String pPath, HttpHandler pHandler) {
+        server = pServer;
+        path = pPath;
+        handler = pHandler;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HttpHandler getHandler() {
+        return handler;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setHandler(HttpHandler pHandler) {
+        if (pHandler == null) {
+            throw new NullPointerException("Null handler parameter");
+        }
+        if (handler != null) {
+            throw new IllegalArgumentException("Handler already set");
+        }
+        handler = pHandler;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HttpServer getServer() {
+        return server;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Filter> getFilters() {
+        return filters;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Authenticator setAuthenticator(Authenticator pAuthenticator) {
+        Authenticator old = authenticator;
+        authenticator = pAuthenticator;
+        return old;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Authenticator getAuthenticator() {
+        return authenticator;
+    }
+
+    /**
+     * Check whether a request path belongs to this context
+     *
+     * @param pRequestPath path to check
+     * @return true if the path starts with the context path
+     */
+    boolean matches(String pRequestPath) {
+        if (!pRequestPath.startsWith(path)) {
+            return false;
+        }
+        // "/jolokia" should not match "/jolokiafoo"
+        return path.endsWith("/") || pRequestPath.length() == path.length() || pRequestPath.charAt(path.length()) == '/';
+    }
+}
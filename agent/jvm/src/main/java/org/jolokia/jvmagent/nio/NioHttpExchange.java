@@ -0,0 +1,411 @@
+package org.jolokia.jvmagent.nio;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import com.sun.net.httpserver.*;
+
+/**
+ * Exchange for a single request received by a {@link NioHttpServer}. The request body
+ * has been read completely before the exchange is created. The response body is
+ * written into pooled direct buffers which are handed over to the connection when
+ * full or when flushed.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+class NioHttpExchange extends HttpExchange {
+
+    private static final byte[] CRLF = "\r\n".getBytes(RequestHead.ISO_8859_1);
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(RequestHead.ISO_8859_1);
+
+    private static final Map<Integer, String> REASON_PHRASES = new HashMap<Integer, String>();
+
+    static {
+        String[] phrases = {
+                "100", "Continue",
+                "200", "OK",
+                "204", "No Content",
+                "301", "Moved Permanently",
+                "302", "Found",
+                "304", "Not Modified",
+                "400", "Bad Request",
+                "401", "Unauthorized",
+                "403", "Forbidden",
+                "404", "Not Found",
+                "405", "Method Not Allowed",
+                "411", "Length Required",
+                "413", "Payload Too Large",
+                "417", "Expectation Failed",
+                "431", "Request Header Fields Too Large",
+                "500", "Internal Server Error",
+                "503", "Service Unavailable",
+                "505", "HTTP Version Not Supported"
+        };
+        for (int i = 0; i < phrases.length; i += 2) {
+            REASON_PHRASES.put(Integer.parseInt(phrases[i]), phrases[i + 1]);
+        }
+    }
+
+    private final HttpConnection connection;
+    private final NioHttpContext context;
+    private final BufferPool bufferPool;
+    private final RequestHead request;
+    private final Runnable completion;
+    private final Headers responseHeaders = new Headers();
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+    private final ResponseStream responseStream = new ResponseStream();
+
+    private InputStream requestBody;
+    private OutputStream responseBody;
+    private int responseCode = -1;
+    private HttpPrincipal principal;
+    private boolean keepAlive;
+
+    /**
+     * Create an exchange
+     *
+     * @param pConnection connection on which the request was received
+     * @param pContext context responsible for the request or null if there is none
+     * @param pBufferPool pool for response buffers
+     * @param pRequest request line and headers
+     * @param pBody request body
+     * @param pCompletion called once when the response has been finished or aborted, which
+     *                    might happen in another thread than the one which received the exchange
+     */
+    NioHttpExchange(HttpConnection pConnection, NioHttpContext pContext, BufferPool pBufferPool,
+                    RequestHead pRequest, byte[] pBody, Runnable pCompletion) {
+        connection = pConnection;
+        context = pContext;
+        bufferPool = pBufferPool;
+        request = pRequest;
+        completion = pCompletion;
+        requestBody = new ByteArrayInputStream(pBody);
+        responseBody = responseStream;
+        keepAlive = pRequest.isKeepAlive();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Headers getRequestHeaders() {
+        return request.getHeaders();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public URI getRequestURI() {
+        return request.getUri();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getRequestMethod() {
+        return request.getMethod();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HttpContext getHttpContext() {
+        return context;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        try {
+            requestBody.close();
+        } catch (IOException exp) {
+            // Nothing to do, request body is kept in memory
+        }
+        try {
+            responseBody.close();
+        } catch (IOException exp) {
+            connection.abort();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void sendResponseHeaders(int pCode, long pLength) throws IOException {
+        if (responseCode >= 0) {
+            throw new IOException("Response headers have already been sent");
+        }
+        responseCode = pCode;
+        boolean head = "HEAD".equals(request.getMethod());
+        boolean noContent = pCode < 200 || pCode == 204 || pCode == 304;
+        if (pLength > 0) {
+            responseHeaders.set("Content-Length", Long.toString(pLength));
+            responseStream.init(head ? 0 : pLength, false);
+        } else if (pLength == 0) {
+            if ("HTTP/1.1".equals(request.getVersion())) {
+                responseHeaders.set("Transfer-Encoding", "chunked");
+                responseStream.init(head ? 0 : -1, !head);
+            } else {
+                // Response ends when the connection is closed
+                keepAlive = false;
+                responseStream.init(head ? 0 : -1, false);
+            }
+        } else {
+            if (!noContent) {
+                responseHeaders.set("Content-Length", "0");
+            }
+            responseStream.init(0, false);
+        }
+        if (hasConnectionClose(responseHeaders)) {
+            keepAlive = false;
+        }
+        if (!keepAlive) {
+            responseHeaders.set("Connection", "close");
+        } else if (!"HTTP/1.1".equals(request.getVersion())) {
+            responseHeaders.set("Connection", "keep-alive");
+        }
+        responseStream.setHead(createResponseHead(pCode));
+        if (pLength == -1) {
+            responseStream.close();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.getRemoteAddress();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.getLocalAddress();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getProtocol() {
+        return request.getVersion();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object getAttribute(String pName) {
+        return attributes.get(pName);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setAttribute(String pName, Object pValue) {
+        attributes.put(pName, pValue);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setStreams(InputStream pInput, OutputStream pOutput) {
+        if (pInput != null) {
+            requestBody = pInput;
+        }
+        if (pOutput != null) {
+            responseBody = pOutput;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return principal;
+    }
+
+    /**
+     * Set the principal after a successful authentication
+     *
+     * @param pPrincipal authenticated principal
+     */
+    void setPrincipal(HttpPrincipal pPrincipal) {
+        principal = pPrincipal;
+    }
+
+    /**
+     * Reason phrase for a status code
+     *
+     * @param pCode status code
+     * @return reason phrase or an empty string for an unknown code
+     */
+    static String getReasonPhrase(int pCode) {
+        String phrase = REASON_PHRASES.get(pCode);
+        return phrase != null ? phrase : "";
+    }
+
+    // ========================================================================================
+
+    private ByteBuffer createResponseHead(int pCode) {
+        StringBuilder buf = new StringBuilder();
+        buf.append("HTTP/1.1 ").append(pCode).append(' ').append(getReasonPhrase(pCode)).append("\r\n");
+        for (Map.Entry<String, List<String>> entry : responseHeaders.entrySet()) {
+            for (String value : entry.getValue()) {
+                buf.append(entry.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        buf.append("\r\n");
+        return ByteBuffer.wrap(buf.toString().getBytes(RequestHead.ISO_8859_1));
+    }
+
+    private boolean hasConnectionClose(Headers pHeaders) {
+        String value = pHeaders.getFirst("Connection");
+        return value != null && "close".equalsIgnoreCase(value.trim());
+    }
+
+    // Stream writing into pooled buffers. The response head is sent along with the first body data.
+    private final class ResponseStream extends OutputStream {
+
+        private ByteBuffer head;
+        private ByteBuffer current;
+        private long remaining;
+        private boolean chunked;
+        private boolean closed;
+
+        void init(long pLength, boolean pChunked) {
+            remaining = pLength;
+            chunked = pChunked;
+        }
+
+        void setHead(ByteBuffer pHead) {
+            head = pHead;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+            if (responseCode < 0) {
+                throw new IOException("Response headers have not been sent yet");
+            }
+            if ("HEAD".equals(request.getMethod())) {
+                // No body for HEAD requests
+                return;
+            }
+            if (remaining >= 0) {
+                if (len > remaining) {
+                    throw new IOException("Too many bytes to write to stream");
+                }
+                remaining -= len;
+            }
+            while (len > 0) {
+                if (current == null) {
+                    current = bufferPool.acquire();
+                }
+                int n = Math.min(len, current.remaining());
+                current.put(b, off, n);
+                off += n;
+                len -= n;
+                if (!current.hasRemaining()) {
+                    send(false);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!closed && responseCode >= 0) {
+                send(false);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (responseCode < 0) {
+                    // No response at all, the client gets nothing but a closed connection
+                    connection.abort();
+                    return;
+                }
+                if (remaining > 0) {
+                    // Announced content length has not been reached
+                    keepAlive = false;
+                }
+                send(true);
+                connection.complete(keepAlive);
+            } finally {
+                completion.run();
+            }
+        }
+
+        // Hand over the response head and the current buffer to the connection
+        private void send(boolean pLast) throws IOException {
+            List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(4);
+            if (head != null) {
+                buffers.add(head);
+                head = null;
+            }
+            if (current != null && current.position() > 0) {
+                current.flip();
+                if (chunked) {
+                    buffers.add(ByteBuffer.wrap((Integer.toHexString(current.remaining()) + "\r\n").getBytes(RequestHead.ISO_8859_1)));
+                    buffers.add(current);
+                    buffers.add(ByteBuffer.wrap(CRLF));
+                } else {
+                    buffers.add(current);
+                }
+                current = null;
+            } else if (current != null && pLast) {
+                bufferPool.release(current);
+                current = null;
+            }
+            if (pLast && chunked) {
+                buffers.add(ByteBuffer.wrap(LAST_CHUNK));
+            }
+            if (!buffers.isEmpty()) {
+                connection.enqueue(buffers);
+            }
+        }
+    }
+}
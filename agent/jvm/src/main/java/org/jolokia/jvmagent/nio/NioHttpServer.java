@@ -0,0 +1,510 @@
+package org.jolokia.jvmagent.nio;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.*;
+
+/**
+ * HTTP server built on NIO selectors which can be used instead of the JDK's
+ * HTTP server. A single selector thread accepts connections, reads and parses
+ * requests and writes responses, while the requests themselves are processed by
+ * the configured executor. Connections are kept alive according to HTTP/1.1 and
+ * closed when idle for too long. The size of request headers and bodies is limited.
+ *
+ * Only plain HTTP is supported, and request bodies must be announced with a
+ * <code>Content-Length</code> header.
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+public class NioHttpServer extends HttpServer {
+
+    // Size of the direct buffers used for reading and writing
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    // Maximum number of unused direct buffers to keep
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    // Maximum time to block in select() so that idle connections are detected
+    private static final long SELECT_TIMEOUT = 1000;
+
+    private final int maxConnections;
+    private final int idleTimeout;
+    private final int maxHeaderSize;
+    private final int maxBodySize;
+
+    private final BufferPool bufferPool = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final List<NioHttpContext> contexts = new CopyOnWriteArrayList<NioHttpContext>();
+
+    // Connections which have data to write or are to be closed
+    private final ConcurrentLinkedQueue<HttpConnection> pendingWrites = new ConcurrentLinkedQueue<HttpConnection>();
+
+    // All open connections, only accessed from the selector thread
+    private final Set<HttpConnection> connections = new HashSet<HttpConnection>();
+
+    // Number of requests currently being processed, i.e. whose response has not been finished yet
+    private final AtomicInteger activeExchanges = new AtomicInteger();
+
+    // Called by an exchange when its response is finished
+    private final Runnable exchangeCompletion = new Runnable() {
+        /** {@inheritDoc} */
+        public void run() {
+            activeExchanges.decrementAndGet();
+        }
+    };
+
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private Executor executor;
+    private ExecutorService defaultExecutor;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private volatile boolean accepting;
+
+    /**
+     * Create a server bound to the given address
+     *
+     * @param pAddress address to bind to
+     * @param pBacklog socket backlog
+     * @param pMaxConnections maximum number of open connections, further connections are refused with
+     *                        a 503 response. 0 or less means no limit.
+     * @param pIdleTimeout time in milliseconds after which an idle connection is closed
+     * @param pMaxHeaderSize maximum size of the request line and headers in bytes
+     * @param pMaxBodySize maximum size of a request body in bytes
+     * @throws IOException if the server can not be bound
+     */
+    public NioHttpServer(InetSocketAddress pAddress, int pBacklog, int pMaxConnections,
+                         int pIdleTimeout, int pMaxHeaderSize, int pMaxBodySize) throws IOException {
+        maxConnections = pMaxConnections;
+        idleTimeout = pIdleTimeout;
+        maxHeaderSize = pMaxHeaderSize;
+        maxBodySize = pMaxBodySize;
+        bind(pAddress, pBacklog);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final void bind(InetSocketAddress pAddress, int pBacklog) throws IOException {
+        if (serverChannel != null) {
+            throw new BindException("Server is already bound");
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.socket().setReuseAddress(true);
+            channel.socket().bind(pAddress, pBacklog);
+            channel.configureBlocking(false);
+        } catch (IOException exp) {
+            channel.close();
+            throw exp;
+        }
+        serverChannel = channel;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void start() {
+        if (serverChannel == null || selectorThread != null) {
+            throw new IllegalStateException("Server is not bound or has already been started");
+        }
+        try {
+            selector = Selector.open();
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException exp) {
+            throw new IllegalStateException("Cannot start NIO HTTP server: " + exp, exp);
+        }
+        if (executor == null) {
+            defaultExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable pRunnable) {
+                    Thread thread = new Thread(pRunnable, "jolokia-nio-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor = defaultExecutor;
+        }
+        running = true;
+        accepting = true;
+        selectorThread = new Thread(new Runnable() {
+            public void run() {
+                selectorLoop();
+            }
+        }, "jolokia-nio-listener");
+        selectorThread.start();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void setExecutor(Executor pExecutor) {
+        if (selectorThread != null) {
+            throw new IllegalStateException("Server has already been started");
+        }
+        executor = pExecutor;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Executor getExecutor() {
+        return executor == defaultExecutor ? null : executor;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stop(int pDelay) {
+        if (pDelay < 0) {
+            throw new IllegalArgumentException("Negative delay " + pDelay);
+        }
+        Thread thread;
+        synchronized (this) {
+            thread = selectorThread;
+            if (thread == null || !running) {
+                closeServerChannel();
+                return;
+            }
+        }
+        accepting = false;
+        selector.wakeup();
+        long end = System.currentTimeMillis() + pDelay * 1000L;
+        while (activeExchanges.get() > 0 && System.currentTimeMillis() < end) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException exp) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HttpContext createContext(String pPath, HttpHandler pHandler) {
+        if (pPath == null || !pPath.startsWith("/")) {
+            throw new IllegalArgumentException("Invalid context path " + pPath);
+        }
+        synchronized (contexts) {
+            for (NioHttpContext context : contexts) {
+                if (context.getPath().equals(pPath)) {
+                    throw new IllegalArgumentException("Context " + pPath + " already exists");
+                }
+            }
+            NioHttpContext context = new NioHttpContext(this, pPath, pHandler);
+            contexts.add(context);
+            return context;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HttpContext createContext(String pPath) {
+        return createContext(pPath, null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void removeContext(String pPath) {
+        synchronized (contexts) {
+            for (NioHttpContext context : contexts) {
+                if (context.getPath().equals(pPath)) {
+                    contexts.remove(context);
+                    return;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No context " + pPath + " registered");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void removeContext(HttpContext pContext) {
+        if (!contexts.remove(pContext)) {
+            throw new IllegalArgumentException("Context " + pContext.getPath() + " is not registered");
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverChannel.socket().getLocalSocketAddress();
+    }
+
+    // ==============================================================================================
+    // Called by connections
+
+    /**
+     * Hand over a completely received request to a worker
+     *
+     * @param pConnection connection on which the request was received
+     * @param pRequest request head
+     * @param pBody request body
+     * @throws IOException if the request is rejected and the error response can not be written
+     */
+    void dispatch(HttpConnection pConnection, RequestHead pRequest, byte[] pBody) throws IOException {
+        activeExchanges.incrementAndGet();
+        try {
+            executor.execute(new ExchangeTask(pConnection, pRequest, pBody));
+        } catch (RejectedExecutionException exp) {
+            activeExchanges.decrementAndGet();
+            pConnection.sendError(503);
+        }
+    }
+
+    /**
+     * Ask the selector thread to write the pending output of a connection
+     *
+     * @param pConnection connection with pending output
+     */
+    void requestWrite(HttpConnection pConnection) {
+        pendingWrites.add(pConnection);
+        Selector sel = selector;
+        if (sel != null) {
+            sel.wakeup();
+        }
+    }
+
+    /**
+     * Called from the selector thread when a connection has been closed
+     *
+     * @param pConnection closed connection
+     */
+    void connectionClosed(HttpConnection pConnection) {
+        connections.remove(pConnection);
+    }
+
+    BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    int getMaxHeaderSize() {
+        return maxHeaderSize;
+    }
+
+    int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    // ==============================================================================================
+
+    private void selectorLoop() {
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        ByteBuffer[] batch = new ByteBuffer[16];
+        long nextIdleCheck = System.currentTimeMillis() + SELECT_TIMEOUT;
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT);
+                if (!accepting) {
+                    closeServerChannel();
+                }
+                processPendingWrites(batch);
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept();
+                    } else {
+                        handleIo(key, readBuffer, batch);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextIdleCheck) {
+                    closeIdleConnections(now);
+                    nextIdleCheck = now + SELECT_TIMEOUT;
+                }
+            }
+        } catch (IOException exp) {
+            // Selector failed, nothing we can do but shutting down
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void handleIo(SelectionKey pKey, ByteBuffer pReadBuffer, ByteBuffer[] pBatch) {
+        HttpConnection connection = (HttpConnection) pKey.attachment();
+        try {
+            if (pKey.isValid() && pKey.isReadable()) {
+                connection.read(pReadBuffer);
+            }
+            if (pKey.isValid() && pKey.isWritable()) {
+                connection.write(pBatch);
+            }
+        } catch (IOException exp) {
+            connection.close();
+        } catch (CancelledKeyException exp) {
+            connection.close();
+        }
+    }
+
+    private void processPendingWrites(ByteBuffer[] pBatch) {
+        HttpConnection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            try {
+                connection.write(pBatch);
+            } catch (IOException exp) {
+                connection.close();
+            } catch (CancelledKeyException exp) {
+                connection.close();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while (serverChannel.isOpen() && (channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            HttpConnection connection = new HttpConnection(this, channel.register(selector, SelectionKey.OP_READ));
+            connections.add(connection);
+            if (maxConnections > 0 && connections.size() > maxConnections) {
+                connection.sendError(503);
+            }
+        }
+    }
+
+    private void closeIdleConnections(long pNow) {
+        for (HttpConnection connection : new ArrayList<HttpConnection>(connections)) {
+            if (connection.isIdle(pNow, idleTimeout)) {
+                connection.close();
+            }
+        }
+    }
+
+    private void closeServerChannel() {
+        if (serverChannel.isOpen()) {
+            try {
+                serverChannel.close();
+            } catch (IOException exp) {
+                // Ignore, we are stopping anyway
+            }
+        }
+    }
+
+    private void shutdown() {
+        closeServerChannel();
+        for (HttpConnection connection : new ArrayList<HttpConnection>(connections)) {
+            connection.close();
+        }
+        try {
+            selector.close();
+        } catch (IOException exp) {
+            // Ignore
+        }
+        if (defaultExecutor != null) {
+            defaultExecutor.shutdownNow();
+        }
+        running = false;
+    }
+
+    // Context with the longest path matching the request
+    private NioHttpContext findContext(String pPath) {
+        NioHttpContext ret = null;
+        for (NioHttpContext context : contexts) {
+            if (context.matches(pPath) && (ret == null || context.getPath().length() > ret.getPath().length())) {
+                ret = context;
+            }
+        }
+        return ret;
+    }
+
+    // Processing of a single request within a worker thread. Like for the JDK server, the exchange must
+    // be closed by the handler, but this may happen in another thread after the task has finished.
+    private final class ExchangeTask implements Runnable {
+
+        private final HttpConnection connection;
+        private final RequestHead request;
+        private final byte[] body;
+
+        private ExchangeTask(HttpConnection pConnection, RequestHead pRequest, byte[] pBody) {
+            connection = pConnection;
+            request = pRequest;
+            body = pBody;
+        }
+
+        /** {@inheritDoc} */
+        public void run() {
+            String path = request.getUri().getPath();
+            final NioHttpContext context = findContext(path != null ? path : "/");
+            final NioHttpExchange exchange =
+                    new NioHttpExchange(connection, context, bufferPool, request, body, exchangeCompletion);
+            try {
+                if (context == null || context.getHandler() == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    // Same order as the JDK server: filters of the context first, then authentication.
+                    // A filter may finish the exchange later on in another thread.
+                    new Filter.Chain(context.getFilters(), new HttpHandler() {
+                        /** {@inheritDoc} */
+                        public void handle(HttpExchange pExchange) throws IOException {
+                            if (authenticate(context, exchange)) {
+                                context.getHandler().handle(pExchange);
+                            }
+                        }
+                    }).doFilter(exchange);
+                }
+            } catch (Throwable exp) {
+                if (exchange.getResponseCode() < 0) {
+                    try {
+                        exchange.sendResponseHeaders(500, -1);
+                    } catch (IOException ioExp) {
+                        connection.abort();
+                    }
+                } else {
+                    // Response is incomplete, the client must not reuse the connection
+                    connection.abort();
+                }
+                exchange.close();
+            }
+        }
+
+        private boolean authenticate(NioHttpContext pContext, NioHttpExchange pExchange) throws IOException {
+            Authenticator authenticator = pContext.getAuthenticator();
+            if (authenticator == null) {
+                return true;
+            }
+            Authenticator.Result result = authenticator.authenticate(pExchange);
+            if (result instanceof Authenticator.Success) {
+                pExchange.setPrincipal(((Authenticator.Success) result).getPrincipal());
+                return true;
+            } else if (result instanceof Authenticator.Failure) {
+                pExchange.sendResponseHeaders(((Authenticator.Failure) result).getResponseCode(), -1);
+            } else if (result instanceof Authenticator.Retry) {
+                pExchange.sendResponseHeaders(((Authenticator.Retry) result).getResponseCode(), -1);
+            } else {
+                pExchange.sendResponseHeaders(500, -1);
+            }
+            return false;
+        }
+    }
+}
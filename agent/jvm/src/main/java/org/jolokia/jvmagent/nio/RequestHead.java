@@ -0,0 +1,206 @@
+package org.jolokia.jvmagent.nio;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import com.sun.net.httpserver.Headers;
+
+/**
+ * Request line and headers of an HTTP/1.x request as received by a {@link NioHttpServer}
+ *
+ * @author roland
+ * @since 18.10.26
+ */
+final class RequestHead {
+
+    /** Charset used for the request line and headers */
+    static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private final String method;
+    private final URI uri;
+    private final String version;
+    private final Headers headers;
+    private final long contentLength;
+    private final boolean chunked;
+    private final boolean expectContinue;
+    private final boolean keepAlive;
+
+    private RequestHead(String pMethod, URI pUri, String pVersion, Headers pHeaders) {
+        method = pMethod;
+        uri = pUri;
+        version = pVersion;
+        headers = pHeaders;
+        contentLength = extractContentLength(pHeaders);
+        String te = pHeaders.getFirst("Transfer-Encoding");
+        chunked = te != null && !"identity".equalsIgnoreCase(te.trim());
+        String expect = pHeaders.getFirst("Expect");
+        expectContinue = expect != null && "100-continue".equalsIgnoreCase(expect.trim());
+        keepAlive = "HTTP/1.1".equals(pVersion) ?
+                !hasConnectionToken(pHeaders, "close") :
+                hasConnectionToken(pHeaders, "keep-alive");
+    }
+
+    /**
+     * Parse the request line and the headers
+     *
+     * @param pData buffer holding the request
+     * @param pLength length of the head, including the terminating empty line
+     * @return the parsed head
+     * @throws IllegalArgumentException if the request is malformed
+     */
+    static RequestHead parse(byte[] pData, int pLength) {
+        String[] lines = new String(pData, 0, pLength, ISO_8859_1).split("\r\n");
+        int idx = 0;
+        // Empty lines before the request line are allowed
+        while (idx < lines.length && lines[idx].length() == 0) {
+            idx++;
+        }
+        if (idx == lines.length) {
+            throw new IllegalArgumentException("No request line");
+        }
+        String[] requestLine = lines[idx++].split(" ");
+        if (requestLine.length != 3 || requestLine[0].length() == 0) {
+            throw new IllegalArgumentException("Invalid request line");
+        }
+        String version = requestLine[2];
+        if (!"HTTP/1.1".equals(version) && !"HTTP/1.0".equals(version)) {
+            throw new IllegalArgumentException("Unsupported HTTP version " + version);
+        }
+        URI uri;
+        try {
+            uri = new URI(requestLine[1]);
+        } catch (URISyntaxException exp) {
+            throw new IllegalArgumentException("Invalid request URI: " + exp.getMessage(), exp);
+        }
+        Headers headers = new Headers();
+        for (; idx < lines.length; idx++) {
+            String line = lines[idx];
+            if (line.length() == 0) {
+                break;
+            }
+            int colon = line.indexOf(':');
+            if (colon <= 0 || line.charAt(0) == ' ' || line.charAt(0) == '\t' ||
+                Character.isWhitespace(line.charAt(colon - 1))) {
+                throw new IllegalArgumentException("Invalid header line");
+            }
+            headers.add(line.substring(0, colon), line.substring(colon + 1).trim());
+        }
+        return new RequestHead(requestLine[0], uri, version, headers);
+    }
+
+    /**
+     * Find the end of the request head, i.e. the position after the first empty line
+     *
+     * @param pData data received
+     * @param pFrom position from where to start searching
+     * @param pLength number of valid bytes in the buffer
+     * @return position after the empty line or -1 if the head is not complete yet
+     */
+    static int findEnd(byte[] pData, int pFrom, int pLength) {
+        for (int i = Math.max(pFrom, 3); i < pLength; i++) {
+            if (pData[i] == '\n' && pData[i - 1] == '\r' && pData[i - 2] == '\n' && pData[i - 3] == '\r') {
+                // Ignore empty lines before the request line
+                if (!isOnlyLineBreaks(pData, i - 3)) {
+                    return i + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    URI getUri() {
+        return uri;
+    }
+
+    String getVersion() {
+        return version;
+    }
+
+    Headers getHeaders() {
+        return headers;
+    }
+
+    long getContentLength() {
+        return contentLength;
+    }
+
+    boolean isChunked() {
+        return chunked;
+    }
+
+    boolean isExpectContinue() {
+        return expectContinue;
+    }
+
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    // ========================================================================================
+
+    private static boolean isOnlyLineBreaks(byte[] pData, int pEnd) {
+        for (int i = 0; i < pEnd; i++) {
+            if (pData[i] != '\r' && pData[i] != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long extractContentLength(Headers pHeaders) {
+        List<String> values = pHeaders.get("Content-Length");
+        if (values == null || values.isEmpty()) {
+            return 0;
+        }
+        long ret = -1;
+        for (String value : values) {
+            long length;
+            try {
+                length = Long.parseLong(value.trim());
+            } catch (NumberFormatException exp) {
+                throw new IllegalArgumentException("Invalid Content-Length " + value, exp);
+            }
+            if (length < 0 || (ret >= 0 && ret != length)) {
+                throw new IllegalArgumentException("Invalid Content-Length " + value);
+            }
+            ret = length;
+        }
+        return ret;
+    }
+
+    private static boolean hasConnectionToken(Headers pHeaders, String pToken) {
+        List<String> values = pHeaders.get("Connection");
+        if (values != null) {
+            for (String value : values) {
+                for (String token : value.split(",")) {
+                    if (pToken.equalsIgnoreCase(token.trim())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
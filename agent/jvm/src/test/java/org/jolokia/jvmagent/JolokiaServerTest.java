@@ -26,6 +26,9 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.net.ssl.*;
 
 import com.sun.net.httpserver.HttpServer;
@@ -55,6 +58,13 @@ public class JolokiaServerTest {
                 "executor=cached,threadNamePrefix=JolokiaServerTestExecutorFixedCached",
                 "executor=single,threadNamePrefix=JolokiaServerTestExecutorFixedSingle",
                 "executor=fixed,threadNamePrefix=jolokia-,threadNr=5",
+                "executor=virtual",
+                "executor=virtual,threadNamePrefix=JolokiaServerTestExecutorVirtual",
+                "executor=fixed,threadNr=2,queueSize=5,maxInFlight=1,retryAfter=2",
+                "executor=single,queueSize=0",
+                "listener=nio",
+                "listener=nio,executor=fixed,threadNr=5",
+                "listener=nio,maxConnections=10,idleTimeout=5000,maxHeaderSize=4096,maxBodySize=65536",
         };
 
         for (String c : configs) {
@@ -63,6 +73,33 @@ public class JolokiaServerTest {
     }
 
 
+    @Test
+    public void virtualThreadExecutor() throws Exception {
+        ExecutorService executor = JolokiaServer.createVirtualThreadExecutor("jolokia-virtual-");
+        boolean supported;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            supported = true;
+        } catch (NoSuchMethodException exp) {
+            supported = false;
+        }
+        if (!supported) {
+            assertNull(executor);
+            return;
+        }
+        assertNotNull(executor);
+        try {
+            Future<String> name = executor.submit(new Callable<String>() {
+                public String call() {
+                    return Thread.currentThread().getName();
+                }
+            });
+            assertEquals(name.get(), "jolokia-virtual-0");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test(expectedExceptions = IOException.class,expectedExceptionsMessageRegExp = ".*401.*")
     public void httpWithAuthenticationRejected() throws Exception {
         Map config = new HashMap();
@@ -72,6 +109,26 @@ public class JolokiaServerTest {
         roundtrip(config, true);
     }
 
+    @Test(expectedExceptions = IOException.class,expectedExceptionsMessageRegExp = ".*401.*")
+    public void nioListenerWithAuthenticationRejected() throws Exception {
+        Map config = new HashMap();
+        config.put("user", "roland");
+        config.put("password", "s!cr!t");
+        config.put("port", "0");
+        config.put("listener", "nio");
+        roundtrip(config, true);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class,expectedExceptionsMessageRegExp = ".*nio.*")
+    public void nioListenerWithHttps() throws Exception {
+        new JvmAgentConfig(prepareConfigString("listener=nio,protocol=https"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class,expectedExceptionsMessageRegExp = ".*blub.*")
+    public void invalidListener() throws Exception {
+        new JvmAgentConfig(prepareConfigString("listener=blub"));
+    }
+
     @Test
     public void serverPicksThePort() throws Exception {
         roundtrip("host=localhost,port=0", true);
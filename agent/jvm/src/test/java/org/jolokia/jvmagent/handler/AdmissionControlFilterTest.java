@@ -0,0 +1,377 @@
+package org.jolokia.jvmagent.handler;
+
+/*
+ * Copyright 2009-2026 Roland Huss
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.*;
+import org.testng.annotations.Test;
+
+import static org.easymock.EasyMock.*;
+import static org.testng.Assert.*;
+
+/**
+ * @author roland
+ * @since 18.10.26
+ */
+public class AdmissionControlFilterTest {
+
+    @Test
+    public void lightweightRequests() {
+        AdmissionControlFilter filter = new AdmissionControlFilter("/jolokia/", 1, 5);
+        assertTrue(filter.isLightweight(prepareExchange("GET", "/jolokia/")));
+        assertTrue(filter.isLightweight(prepareExchange("GET", "/jolokia/version")));
+        assertTrue(filter.isLightweight(prepareExchange("GET", "/jolokia/search/java.lang:*")));
+        assertTrue(filter.isLightweight(prepareExchange("GET", "/jolokia/?p=/version")));
+        assertFalse(filter.isLightweight(prepareExchange("GET", "/jolokia/read/java.lang:type=Memory")));
+        assertFalse(filter.isLightweight(prepareExchange("GET", "/jolokia/list")));
+        assertFalse(filter.isLightweight(prepareExchange("GET", "/jolokia/?p=/exec/java.lang:type=Memory/gc")));
+        assertFalse(filter.isLightweight(prepareExchange("POST", "/jolokia/")));
+    }
+
+    @Test
+    public void maxInFlight() throws Exception {
+        final AdmissionControlFilter filter = new AdmissionControlFilter("/jolokia/", 1, 7);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger handled = new AtomicInteger();
+        final HttpHandler handler = new HttpHandler() {
+            public void handle(HttpExchange pExchange) throws IOException {
+                if (handled.incrementAndGet() == 1) {
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException exp) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> blocking = executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    filter.doFilter(prepareExchange("GET", "/jolokia/read/java.lang:type=Memory"), createChain(handler));
+                    return null;
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // Heavy request is rejected
+            HttpExchange rejected = prepareExchange("POST", "/jolokia/");
+            Headers headers = new Headers();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            expectServiceUnavailable(rejected, headers, out);
+            filter.doFilter(rejected, createChain(handler));
+            verify(rejected);
+            assertEquals(headers.getFirst("Retry-After"), "7");
+            assertTrue(out.toString("UTF-8").contains("Too many requests"));
+            assertEquals(handled.get(), 1);
+
+            // Priority lane is still open
+            filter.doFilter(prepareExchange("GET", "/jolokia/version"), createChain(handler));
+            assertEquals(handled.get(), 2);
+
+            // Permit is returned when the first request is done
+            release.countDown();
+            blocking.get(10, TimeUnit.SECONDS);
+            filter.doFilter(prepareExchange("GET", "/jolokia/list"), createChain(handler));
+            assertEquals(handled.get(), 3);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void noLimit() throws IOException {
+        AdmissionControlFilter filter = new AdmissionControlFilter("/jolokia/", 0, 5);
+        final AtomicInteger handled = new AtomicInteger();
+        HttpHandler handler = new HttpHandler() {
+            public void handle(HttpExchange pExchange) {
+                handled.incrementAndGet();
+            }
+        };
+        filter.doFilter(prepareExchange("GET", "/jolokia/list"), createChain(handler));
+        assertEquals(handled.get(), 1);
+    }
+
+    @Test
+    public void reservedLane() throws Exception {
+        final AdmissionControlFilter filter = new AdmissionControlFilter("/jolokia/", 0, 1, 1, 5);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> handledBy = Collections.synchronizedList(new ArrayList<String>());
+        final HttpHandler handler = new HttpHandler() {
+            public void handle(HttpExchange pExchange) {
+                handledBy.add(pExchange.getRequestURI().getPath() + " " + Thread.currentThread().getName());
+                if (pExchange.getRequestURI().getPath().endsWith("Memory")) {
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException exp) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable pRunnable) {
+                return new Thread(pRunnable, "worker");
+            }
+        });
+        try {
+            Future<?> blocking = executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    filter.doFilter(prepareExchange("GET", "/jolokia/read/java.lang:type=Memory"), createChain(handler));
+                    return null;
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // Parked without blocking the calling thread
+            filter.doFilter(prepareExchange("GET", "/jolokia/list"), createChain(handler));
+            assertEquals(filter.getParkedRequests(), 1);
+            assertEquals(handledBy.size(), 1);
+
+            // No more room for waiting requests
+            HttpExchange rejected = prepareExchange("POST", "/jolokia/");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            expectServiceUnavailable(rejected, new Headers(), out);
+            filter.doFilter(rejected, createChain(handler));
+            verify(rejected);
+            assertTrue(out.toString("UTF-8").contains("Too many requests waiting"));
+
+            // Lightweight requests don't wait for the heavy ones
+            filter.doFilter(prepareExchange("GET", "/jolokia/version"), createChain(handler));
+            assertEquals(handledBy.get(1), "/jolokia/version " + Thread.currentThread().getName());
+
+            // Parked request is processed by the thread finishing the running one
+            release.countDown();
+            blocking.get(10, TimeUnit.SECONDS);
+            assertEquals(handledBy.get(2), "/jolokia/list worker");
+            assertEquals(filter.getParkedRequests(), 0);
+
+            // Lane is free again
+            filter.doFilter(prepareExchange("GET", "/jolokia/list"), createChain(handler));
+            assertEquals(handledBy.size(), 4);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void loadShedding() throws Exception {
+        final AdmissionControlFilter filter = new AdmissionControlFilter("/jolokia/", 0, 5);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger handled = new AtomicInteger();
+        final HttpHandler handler = new HttpHandler() {
+            public void handle(HttpExchange pExchange) {
+                handled.incrementAndGet();
+            }
+        };
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1),
+                                       new AdmissionControlFilter.LoadSheddingPolicy(1, 1));
+        try {
+            // Occupy the thread and the queue
+            Runnable blocker = new Runnable() {
+                public void run() {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException exp) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            executor.execute(blocker);
+            executor.execute(blocker);
+
+            // Executed by a shedding thread and rejected by the filter
+            final HttpExchange shed = prepareExchange("GET", "/jolokia/read/java.lang:type=Memory");
+            Headers headers = new Headers();
+            expectServiceUnavailable(shed, headers, new ByteArrayOutputStream());
+            final Thread[] runner = new Thread[1];
+            CountDownLatch done = new CountDownLatch(1);
+            executor.execute(createFilterTask(filter, shed, handler, runner, done));
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertTrue(runner[0].getName().startsWith("jolokia-shedding-"));
+            verify(shed);
+            assertEquals(headers.getFirst("Retry-After"), "5");
+            assertEquals(handled.get(), 0);
+
+            // Lightweight requests are still served
+            done = new CountDownLatch(1);
+            executor.execute(createFilterTask(filter, prepareExchange("GET", "/jolokia/version"), handler, runner, done));
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertTrue(runner[0].getName().startsWith("jolokia-shedding-"));
+            assertEquals(handled.get(), 1);
+
+            // Filter is back to normal outside the rejection
+            filter.doFilter(prepareExchange("GET", "/jolokia/list"), createChain(handler));
+            assertEquals(handled.get(), 2);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+
+        // No execution after shutdown
+        final AtomicInteger executed = new AtomicInteger();
+        new AdmissionControlFilter.LoadSheddingPolicy().rejectedExecution(new Runnable() {
+            public void run() {
+                executed.incrementAndGet();
+            }
+        }, executor);
+        assertEquals(executed.get(), 0);
+    }
+
+    @Test
+    public void sheddingExecutorSaturated() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocker = new Runnable() {
+            public void run() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException exp) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1),
+                                       new AdmissionControlFilter.LoadSheddingPolicy(1, 1));
+        try {
+            // Worker, queue, shedding thread and its queue
+            for (int i = 0; i < 4; i++) {
+                executor.execute(blocker);
+            }
+            try {
+                executor.execute(blocker);
+                fail("Rejection expected");
+            } catch (RejectedExecutionException exp) {
+                // Expected, the server has to close the connection
+            }
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void stalledClientsDontBlockDispatcher() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 10);
+        server.createContext("/jolokia", new HttpHandler() {
+            public void handle(HttpExchange pExchange) throws IOException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException exp) {
+                    Thread.currentThread().interrupt();
+                }
+                pExchange.sendResponseHeaders(200, -1);
+                pExchange.close();
+            }
+        });
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1),
+                                       new AdmissionControlFilter.LoadSheddingPolicy(1, 1));
+        server.setExecutor(executor);
+        server.start();
+        List<Socket> sockets = new ArrayList<Socket>();
+        try {
+            // Occupy the worker and the queue
+            for (int i = 0; i < 2; i++) {
+                sockets.add(send(server, "GET /jolokia/version HTTP/1.1\r\nHost: localhost\r\n\r\n"));
+            }
+            Thread.sleep(200);
+            // Stalled clients occupy the shedding thread and its queue, but not the dispatcher
+            for (int i = 0; i < 2; i++) {
+                sockets.add(send(server, "GET /jol"));
+            }
+            Thread.sleep(200);
+            // The connection of a further client is closed right away
+            Socket rejected = send(server, "GET /jolokia/version HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            sockets.add(rejected);
+            rejected.setSoTimeout(5000);
+            try {
+                assertEquals(rejected.getInputStream().read(), -1);
+            } catch (SocketException exp) {
+                // Connection reset, closed as well
+            }
+        } finally {
+            release.countDown();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    // ==========================================================================================
+
+    private Filter.Chain createChain(HttpHandler pHandler) {
+        // The filter under test is called directly, so the chain contains only the handler
+        return new Filter.Chain(Collections.<Filter>emptyList(), pHandler);
+    }
+
+    private Runnable createFilterTask(final AdmissionControlFilter pFilter, final HttpExchange pExchange,
+                                      final HttpHandler pHandler, final Thread[] pRunner, final CountDownLatch pDone) {
+        return new Runnable() {
+            public void run() {
+                pRunner[0] = Thread.currentThread();
+                try {
+                    pFilter.doFilter(pExchange, createChain(pHandler));
+                } catch (IOException exp) {
+                    throw new IllegalStateException(exp);
+                } finally {
+                    pDone.countDown();
+                }
+            }
+        };
+    }
+
+    private Socket send(HttpServer pServer, String pRequest) throws IOException {
+        Socket socket = new Socket("localhost", pServer.getAddress().getPort());
+        socket.getOutputStream().write(pRequest.getBytes("UTF-8"));
+        socket.getOutputStream().flush();
+        return socket;
+    }
+
+    private HttpExchange prepareExchange(String pMethod, String pUri) {
+        HttpExchange exchange = createMock(HttpExchange.class);
+        expect(exchange.getRequestMethod()).andStubReturn(pMethod);
+        expect(exchange.getRequestURI()).andStubReturn(URI.create(pUri));
+        replay(exchange);
+        return exchange;
+    }
+
+    private void expectServiceUnavailable(HttpExchange pExchange, Headers pHeaders, ByteArrayOutputStream pOut) throws IOException {
+        reset(pExchange);
+        expect(pExchange.getRequestMethod()).andStubReturn("POST");
+        expect(pExchange.getResponseHeaders()).andStubReturn(pHeaders);
+        pExchange.sendResponseHeaders(eq(503), anyLong());
+        expect(pExchange.getResponseBody()).andReturn(pOut);
+        replay(pExchange);
+    }
+}
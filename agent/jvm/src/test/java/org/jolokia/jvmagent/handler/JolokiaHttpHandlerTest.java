@@ -20,6 +20,7 @@ import java.io.*;
 import java.net.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.zip.*;
 
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
@@ -353,6 +354,74 @@ public class JolokiaHttpHandlerTest {
         assertTrue(resp.containsKey("value"));
     }
 
+    @Test
+    public void compressedStreamingResponse() throws IOException, URISyntaxException, ParseException {
+        JSONObject resp = compressedListRequest("true", "0", "gzip;q=0.8, deflate;q=0.5", "gzip");
+        assertTrue(resp.containsKey("value"));
+    }
+
+    @Test
+    public void compressedResponse() throws IOException, URISyntaxException, ParseException {
+        JSONObject resp = compressedListRequest("false", "0", "deflate, gzip;q=0", "deflate");
+        assertTrue(resp.containsKey("value"));
+    }
+
+    @Test
+    public void responseBelowCompressionThreshold() throws IOException, URISyntaxException, ParseException {
+        compressedListRequest("true", "10000000", "gzip", null);
+        compressedListRequest("false", "10000000", "gzip", null);
+        compressedListRequest("true", "0", "identity", null);
+    }
+
+    @Test
+    public void compressedPostRequest() throws URISyntaxException, IOException, ParseException {
+        HttpExchange exchange = prepareExchange("http://localhost:8080/jolokia",
+                                                "Content-Type","text/plain; charset=UTF-8",
+                                                "Content-Encoding", "gzip");
+        expect(exchange.getRequestMethod()).andReturn("POST");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(body);
+        gzip.write("{\"mbean\":\"java.lang:type=Memory\",\"attribute\":\"HeapMemoryUsage\",\"type\":\"read\"}".getBytes("utf-8"));
+        gzip.close();
+        expect(exchange.getRequestBody()).andReturn(new ByteArrayInputStream(body.toByteArray()));
+        Headers header = new Headers();
+        ByteArrayOutputStream out = prepareResponse(handler, exchange, header);
+        handler.doHandle(exchange);
+
+        JSONObject resp = (JSONObject) new JSONParser().parse(out.toString("utf-8"));
+        assertEquals(resp.get("status"), 200L);
+        assertTrue(((Map) resp.get("value")).containsKey("used"));
+    }
+
+    private JSONObject compressedListRequest(String pStreaming, String pThreshold, String pAcceptEncoding, String pExpectedEncoding)
+            throws URISyntaxException, IOException, ParseException {
+        Configuration config = getConfig(ConfigKey.STREAMING, pStreaming,
+                                         ConfigKey.COMPRESSION_THRESHOLD, pThreshold);
+        JolokiaHttpHandler newHandler = new JolokiaHttpHandler(config);
+        newHandler.start(false);
+        try {
+            HttpExchange exchange = prepareExchange("http://localhost:8080/jolokia/list?maxDepth=1",
+                                                    "Accept-Encoding", pAcceptEncoding);
+            expect(exchange.getRequestMethod()).andReturn("GET");
+
+            Headers header = new Headers();
+            ByteArrayOutputStream out = prepareResponse(newHandler, exchange, header);
+            newHandler.doHandle(exchange);
+
+            assertEquals(header.getFirst("Content-Encoding"), pExpectedEncoding);
+            assertEquals(header.getFirst("Vary"), "Accept-Encoding");
+            InputStream is = new ByteArrayInputStream(out.toByteArray());
+            if ("gzip".equals(pExpectedEncoding)) {
+                is = new GZIPInputStream(is);
+            } else if ("deflate".equals(pExpectedEncoding)) {
+                is = new InflaterInputStream(is);
+            }
+            return (JSONObject) new JSONParser().parse(new InputStreamReader(is, "utf-8"));
+        } finally {
+            newHandler.stop();
+        }
+    }
+
     private HttpExchange prepareExchange(String pUri) throws URISyntaxException {
         return prepareExchange(pUri,"Origin",null);
     }